@@ -0,0 +1,139 @@
+package pos;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CartRecoveryLogTest {
+    @TempDir File dir;
+
+    @Test
+    void anOpenCartSurvivesAReopen() throws IOException {
+        File f = new File(dir, "lanes/1.cart");
+        try (CartRecoveryLog log = new CartRecoveryLog(f)) {
+            log.begin(new Customer(7, "Ann, \"the\" regular", "0771234567", "G1"), "Main, Colombo");
+            log.added(101, 2, 15000);
+            log.added(102, 1, 999);
+            log.added(103, 4, 50);
+            log.quantity(0, 3);
+            log.removed(1);
+            log.discount(1250, 0);
+        }
+        try (CartRecoveryLog log = new CartRecoveryLog(f)) {
+            CartRecoveryLog.Saved s = log.read();
+            assertEquals("Ann, \"the\" regular", s.getCustomer().getName());
+            assertEquals("G1", s.getCustomer().getLoyalty());
+            assertEquals("Main, Colombo", s.getShowroom());
+            assertEquals(List.of("101x3@15000", "103x4@50"), lines(s));
+            assertEquals(1250, s.getDiscountBasisPoints());
+            assertEquals(0, s.getConfirmingSince());
+
+            log.confirming();
+            assertTrue(log.read().getConfirmingSince() > 0);
+            log.finished();
+        }
+        try (CartRecoveryLog log = new CartRecoveryLog(f)) {
+            assertNull(log.read(), "a finished cart is not offered back");
+        }
+    }
+
+    @Test
+    void theRingWrapsWithoutLosingTheCart() throws IOException {
+        File f = new File(dir, "ring.cart");
+        Random r = new Random(3);
+        List<int[]> model = new ArrayList<>();   // item, qty
+        try (CartRecoveryLog log = new CartRecoveryLog(f, 2048)) {
+            for (int cart = 0; cart < 20; cart++) {
+                log.begin(new Customer(cart + 1, "Customer " + cart), "Lane");
+                model.clear();
+                for (int edit = 0; edit < 300; edit++) {
+                    int kind = r.nextInt(10);
+                    if (model.isEmpty() || (kind < 3 && model.size() < 6)) {
+                        int item = 100 + r.nextInt(50), qty = 1 + r.nextInt(9);
+                        log.added(item, qty, item * 10L);
+                        model.add(new int[]{item, qty});
+                    } else if (kind < 9) {
+                        int row = r.nextInt(model.size()), qty = 1 + r.nextInt(99);
+                        log.quantity(row, qty);
+                        model.get(row)[1] = qty;
+                    } else {
+                        int row = r.nextInt(model.size());
+                        log.removed(row);
+                        model.remove(row);
+                    }
+                    assertEquals(expected(model), lines(log.read()), "cart " + cart + " edit " + edit);
+                }
+            }
+        }
+        try (CartRecoveryLog log = new CartRecoveryLog(f, 2048)) {
+            assertEquals(expected(model), lines(log.read()));
+            assertEquals("Customer 19", log.read().getCustomer().getName());
+        }
+    }
+
+    @Test
+    void replayStopsAtADamagedRecord() throws IOException {
+        File f = new File(dir, "torn.cart");
+        try (CartRecoveryLog log = new CartRecoveryLog(f)) {
+            log.begin(new Customer(1, "Ann"), "Lane");
+            log.added(101, 2, 100);
+            log.added(102, 1, 200);
+            log.quantity(1, 77);
+        }
+        byte[] bytes = Files.readAllBytes(f.toPath());
+        int at = indexOf(bytes, "Q,1,77".getBytes(StandardCharsets.UTF_8));
+        bytes[at + 4] = '8';                  // as if the write was cut off mid-record
+        Files.write(f.toPath(), bytes);
+
+        try (CartRecoveryLog log = new CartRecoveryLog(f)) {
+            assertEquals(List.of("101x2@100", "102x1@200"), lines(log.read()), "edits before the damaged one survive");
+            log.quantity(0, 5);                // the lane carries on from there
+            assertEquals(List.of("101x5@100", "102x1@200"), lines(log.read()));
+        }
+        try (CartRecoveryLog log = new CartRecoveryLog(f)) {
+            assertEquals(List.of("101x5@100", "102x1@200"), lines(log.read()));
+        }
+    }
+
+    @Test
+    void aCartTooBigForTheRingIsDropped() throws IOException {
+        try (CartRecoveryLog log = new CartRecoveryLog(new File(dir, "small.cart"), 1024)) {
+            log.begin(new Customer(1, "Ann"), "Lane");
+            for (int i = 0; i < 40; i++) log.added(1000 + i, 1, 100);
+            assertNull(log.read(), "better no cart than a wrong one");
+            log.added(2000, 1, 100);
+            assertNull(log.read());
+            log.begin(new Customer(2, "Bob"), "Lane");
+            log.added(1, 1, 100);
+            assertEquals(List.of("1x1@100"), lines(log.read()), "the next cart is kept again");
+        }
+    }
+
+    private static List<String> lines(CartRecoveryLog.Saved s) {
+        List<String> out = new ArrayList<>();
+        for (CartRecoveryLog.Line l : s.getLines()) out.add(l.itemId + "x" + l.getQuantity() + "@" + l.unitCents);
+        return out;
+    }
+
+    private static List<String> expected(List<int[]> model) {
+        List<String> out = new ArrayList<>();
+        for (int[] l : model) out.add(l[0] + "x" + l[1] + "@" + l[0] * 10L);
+        return out;
+    }
+
+    private static int indexOf(byte[] in, byte[] what) {
+        outer:
+        for (int i = 0; i + what.length <= in.length; i++) {
+            for (int j = 0; j < what.length; j++) if (in[i + j] != what[j]) continue outer;
+            return i;
+        }
+        throw new AssertionError("not found");
+    }
+}
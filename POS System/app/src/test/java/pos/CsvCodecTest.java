@@ -0,0 +1,73 @@
+package pos;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CsvCodecTest {
+    private static final CsvCodec.RowMapper<String> ID_NAME = row -> row.getInt(0) + "|" + row.getString(1);
+
+    @TempDir File dir;
+
+    @Test
+    void rowsAcrossChunkBoundariesAreParsedOnce() throws IOException {
+        // 8 threads over ~4 MiB gives MIN_CHUNK-sized chunks, so the guessed boundaries are
+        // the first newlines after 1, 2 and 3 MiB
+        StringBuilder text = new StringBuilder("\uFEFF"); // a BOM, skipped
+        List<String> expected = new ArrayList<>();
+        long[] targets = {CsvCodec.MIN_CHUNK, 2L * CsvCodec.MIN_CHUNK, 3L * CsvCodec.MIN_CHUNK};
+        int next = 0;
+        for (int id = 1; text.length() < 4 * CsvCodec.MIN_CHUNK + 1000; id++) {
+            String name;
+            if (next < targets.length && text.length() > targets[next] - 400) {
+                StringBuilder sb = new StringBuilder();
+                if (next == 1) {
+                    // Runs on past the guess by more than ROW_SLACK: the chunk before reads again with more slack
+                    while (sb.length() < 3 * CsvCodec.ROW_SLACK) sb.append("a long note, line ").append(sb.length()).append('\n');
+                } else {
+                    // A quoted field whose newlines straddle the boundary: the guess lands inside it
+                    for (int l = 0; l < 100; l++) sb.append("line ").append(l).append(", \"quoted\"\n");
+                }
+                name = sb.toString();
+                next++;
+            } else name = id % 7 == 0 ? "Tea, \"Ceylon\"" : "Item " + id;
+            expected.add(id + "|" + name);
+            text.append(id).append(',').append(quote(name)).append(id % 5 == 0 ? "\r\n" : "\n");
+            if (id % 1000 == 0) text.append('\n'); // blank lines are skipped
+        }
+        assertEquals(targets.length, next);
+        File f = new File(dir, "rows.csv");
+        Files.write(f.toPath(), text.toString().getBytes(StandardCharsets.UTF_8));
+
+        CsvCodec.Result<String> parallel = CsvCodec.read(f, ID_NAME, 8);
+        CsvCodec.Result<String> serial = CsvCodec.read(f, ID_NAME, 1);
+        assertEquals(0, parallel.rejected);
+        assertEquals(expected.size(), parallel.rows.size());
+        for (int i = 0; i < expected.size(); i++) assertEquals(expected.get(i), parallel.rows.get(i), "row " + (i + 1));
+        assertEquals(serial.rows, parallel.rows);
+        assertEquals(f.length(), parallel.bytes);
+    }
+
+    @Test
+    void mapperOutcomesAreCounted() throws IOException {
+        File f = new File(dir, "mixed.csv");
+        Files.writeString(f.toPath(), "1,a\nx,b\n\n3,c\n4,skip\n\"5\",\"e\"\"\"\n", StandardCharsets.UTF_8);
+        CsvCodec.Result<String> r = CsvCodec.read(f, row -> "skip".equals(row.getString(1)) ? null : ID_NAME.map(row), 4);
+        assertEquals(List.of("1|a", "3|c", "5|e\""), r.rows);
+        assertEquals(1, r.rejected);
+        assertEquals(1, r.skipped);
+        assertTrue(CsvCodec.read(new File(dir, "missing.csv"), ID_NAME, 4).rows.isEmpty());
+    }
+
+    /** Like {@link CsvCodec#field}, but keeps line breaks, as a file from elsewhere may. */
+    private static String quote(String s) {
+        return s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0 ? s : '"' + s.replace("\"", "\"\"") + '"';
+    }
+}
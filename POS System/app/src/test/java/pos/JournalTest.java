@@ -0,0 +1,119 @@
+package pos;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JournalTest {
+    @TempDir File dir;
+
+    @Test
+    void replayStopsAtATornTail() throws IOException {
+        write("a", "b", "c");
+        Files.write(segment().toPath(), "4\t1f2e".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        Journal j = new Journal(dir);
+        assertEquals(List.of("a", "b", "c"), firstOps(j));
+        assertEquals(3, j.lastSeq());
+        long seq = j.append("d");
+        assertEquals(4, seq, "sequence carries on past the torn record");
+        j.awaitDurable(seq);
+        j.close();
+    }
+
+    @Test
+    void replayStopsAtARecordWithABadChecksum() throws IOException {
+        write("first", "second", "third");
+        File seg = segment();
+        String text = Files.readString(seg.toPath(), StandardCharsets.UTF_8);
+        Files.writeString(seg.toPath(), text.replace("second", "secont"), StandardCharsets.UTF_8);
+
+        Journal j = new Journal(dir);
+        assertEquals(List.of("first"), firstOps(j), "nothing after the damaged record is applied");
+        j.close();
+    }
+
+    @Test
+    void aRecordIsReplayedWholeOrNotAtAll() throws IOException {
+        String[] sale = {"customer\t7\tAnn\nSmith", "stock\t101\t4", "stock\t102\t0", "sale\tline with \\ and \t tab"};
+        Journal j = new Journal(dir);
+        j.replay(ops -> fail("empty journal replayed a record"));
+        j.append("item\t101\t10");
+        j.awaitDurable(j.append(sale));
+        j.close();
+
+        List<String[]> records = new ArrayList<>();
+        j = new Journal(dir);
+        j.replay(records::add);
+        j.close();
+        assertEquals(2, records.size());
+        assertArrayEquals(sale, records.get(1), "ops of one record come back together, tabs and newlines intact");
+
+        // Cut the file inside the sale record: none of its ops may be applied
+        File seg = segment();
+        try (RandomAccessFile f = new RandomAccessFile(seg, "rw")) { f.setLength(f.length() - 10); }
+        records.clear();
+        j = new Journal(dir);
+        j.replay(records::add);
+        j.close();
+        assertEquals(1, records.size());
+        assertArrayEquals(new String[]{"item\t101\t10"}, records.get(0));
+    }
+
+    @Test
+    void checkpointRotatesAndDropsCoveredSegments() {
+        Journal j = new Journal(dir);
+        j.replay(ops -> {});
+        j.append("before");
+        int upto = j.rotate();
+        j.awaitDurable(j.append("after"));
+        j.checkpointed(upto, 123);
+        j.close();
+        assertFalse(new File(dir, String.format("journal-%06d.log", upto)).exists(), "covered segment deleted");
+        assertEquals(1, segments().length, "records after the rotate stay in their own segment");
+
+        j = new Journal(dir);
+        assertEquals(upto, j.getCoveredSegment());
+        assertEquals(123, j.getCoveredSalesLength());
+        assertEquals(List.of("after"), firstOps(j), "only what the checkpoint did not cover is replayed");
+        assertEquals(2, j.lastSeq());
+        j.close();
+    }
+
+    private void write(String... records) {
+        Journal j = new Journal(dir);
+        j.replay(ops -> {});
+        long last = 0;
+        for (String r : records) last = j.append(r);
+        j.awaitDurable(last);
+        j.close();
+    }
+
+    /** Replays {@code j} (which starts its writer) and returns the first op of every record. */
+    private static List<String> firstOps(Journal j) {
+        List<String> out = new ArrayList<>();
+        j.replay(ops -> out.add(ops[0]));
+        return out;
+    }
+
+    private File[] segments() {
+        File[] files = dir.listFiles((d, n) -> n.startsWith("journal-") && n.endsWith(".log"));
+        Arrays.sort(files);
+        return files;
+    }
+
+    private File segment() {
+        File[] files = segments();
+        assertEquals(1, files.length);
+        return files[0];
+    }
+}
@@ -0,0 +1,77 @@
+package pos;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MoneyTest {
+    @Test
+    void percentRoundsHalfAwayFromZero() {
+        assertEquals(13, Money.percent(100, 1250));    // 12.50 -> 13
+        assertEquals(12, Money.percent(100, 1249));    // 12.49 -> 12
+        assertEquals(-13, Money.percent(-100, 1250));
+        assertEquals(-12, Money.percent(-100, 1249));
+        assertEquals(1, Money.percent(1, 5000));       // half a cent
+        assertEquals(0, Money.percent(1, 4999));
+        assertEquals(-1, Money.percent(-1, 5000));
+        assertEquals(15, Money.percent(100, 1500));
+        assertEquals(0, Money.percent(0, 1500));
+    }
+
+    @Test
+    void percentAgreesWithBigDecimal() {
+        Random r = new Random(7);
+        for (int i = 0; i < 100_000; i++) {
+            long cents = r.nextInt(2_000_000_000) - 1_000_000_000L, bp = r.nextInt(20_001);
+            long want = BigDecimal.valueOf(cents).multiply(BigDecimal.valueOf(bp))
+                    .divide(BigDecimal.valueOf(10_000), 0, RoundingMode.HALF_UP).longValueExact();
+            assertEquals(want, Money.percent(cents, bp), cents + " x " + bp + " bp");
+        }
+    }
+
+    @Test
+    void overflowThrowsInsteadOfWrapping() {
+        assertThrows(ArithmeticException.class, () -> Money.times(Long.MAX_VALUE / 2, 3));
+        assertThrows(ArithmeticException.class, () -> Money.percent(Long.MAX_VALUE / 100, 1500));
+        assertThrows(ArithmeticException.class, () -> Money.format(Long.MIN_VALUE));
+        assertEquals(-600, Money.times(-200, 3));
+    }
+
+    @Test
+    void parseRoundsPastTheSecondDecimalHalfUp() {
+        assertEquals(123450, Money.parse("1,234.5"));
+        assertEquals(-5, Money.parse("-0.05"));
+        assertEquals(13, Money.parse("0.125"));
+        assertEquals(12, Money.parse("0.1249"));
+        assertEquals(-13, Money.parse("-0.125"));
+        assertEquals(99900, Money.parse("999.0"));     // as written by builds that stored double
+        assertEquals(1_000_000_000, Money.parse("1.0E7"));
+        assertEquals(700, Money.parse(" +7 "));
+        for (String bad : new String[]{"", " ", ".", "-", "12a", "1.2.3", "LKR5"})
+            assertThrows(NumberFormatException.class, () -> Money.parse(bad), bad);
+    }
+
+    @Test
+    void ofDoubleRoundsTheWrittenValue() {
+        assertEquals(13, Money.ofDouble(0.125));
+        assertEquals(110, Money.ofDouble(1.1));         // not 1.10000000000000008882
+        assertEquals(-13, Money.ofDouble(-0.125));
+    }
+
+    @Test
+    void formatsWithAndWithoutGrouping() {
+        assertEquals("LKR1,234.50", Money.format(123450));
+        assertEquals("-LKR3.46", Money.format(-346));
+        assertEquals("LKR0.05", Money.format(5));
+        assertEquals("LKR1,000,000.00", Money.format(100_000_000));
+        assertEquals("LKR1,002,003.04", Money.format(100_200_304));
+        assertEquals("-1234.50", Money.plain(-123450));
+        assertEquals("0.00", Money.plain(0));
+        for (long c : new long[]{0, 5, -5, 99, 100, 123456789, -987654321})
+            assertEquals(c, Money.parse(Money.plain(c)), "plain round trip of " + c);
+    }
+}
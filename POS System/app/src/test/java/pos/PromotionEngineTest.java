@@ -0,0 +1,116 @@
+package pos;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.*;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PromotionEngineTest {
+    private static final ZoneId UTC = ZoneOffset.UTC;
+    private static final long MONDAY_10 = millis(2025, 3, 3, 10), SATURDAY_10 = millis(2025, 3, 8, 10);
+
+    @Test
+    void theBestItemLevelPromotionApplies() {
+        PromotionEngine.Session s = session(null, MONDAY_10, "PERCENT p items=101 percent=10", "AMOUNT a items=101 off=20.00");
+        s.update(101, 15000, 2);
+        assertEquals(4000, s.discountCents());          // 20.00 off each beats 10%
+        assertEquals(List.of("a"), s.applied());
+        s.update(101, 15000, -1);
+        assertEquals(2000, s.discountCents());
+        s.update(101, 15000, -1);
+        assertEquals(0, s.discountCents());
+        assertTrue(s.applied().isEmpty());
+    }
+
+    @Test
+    void buyXGetYFreesTheCheapestUnits() {
+        PromotionEngine.Session s = session(null, MONDAY_10, "BUYXGETY b items=105,106 buy=2 get=1");
+        s.update(105, 10000, 1);
+        s.update(106, 6000, 1);
+        assertEquals(0, s.discountCents());
+        s.update(105, 10000, 1);
+        assertEquals(6000, s.discountCents());
+        s.update(106, 6000, 3);                           // 6 units: two free
+        assertEquals(12000, s.discountCents());
+        s.update(105, 10000, -2);                         // 4 units: one free
+        assertEquals(6000, s.discountCents());
+    }
+
+    @Test
+    void mixAndMatchPricesTheDearestSets() {
+        PromotionEngine.Session s = session(null, MONDAY_10, "MIXMATCH m items=101,102,103 qty=3 price=250.00");
+        s.update(101, 10000, 1);
+        s.update(102, 10000, 1);
+        s.update(103, 9000, 1);
+        assertEquals(4000, s.discountCents());
+        s.update(103, 9000, 1);                           // the fourth unit is not in a set
+        assertEquals(4000, s.discountCents());
+    }
+
+    @Test
+    void aFreeUnitIsValuedNetOfItemLevelPromotions() {
+        PromotionEngine.Session s = session(null, MONDAY_10, "PERCENT half items=105 percent=50", "BUYXGETY b items=105 buy=1 get=1");
+        s.update(105, 10000, 2);
+        assertEquals(15000, s.discountCents());           // 50.00 off each, then the free unit's remaining 50.00
+        assertEquals(List.of("half", "b"), s.applied());
+    }
+
+    @Test
+    void windowsAndTiersAreJudgedAtSessionStart() {
+        String[] promos = {"PERCENT wkend items=1 percent=10 days=SAT,SUN", "PERCENT morning items=2 percent=10 hours=09-12",
+                "PERCENT march items=3 percent=10 from=2025-03-01 to=2025-03-31", "PERCENT gold items=4 percent=10 tier=G",
+                "PERCENT member items=5 percent=10 tier=*"};
+        Customer gold = new Customer(1, "Ann", "", "g-123"), silver = new Customer(2, "Bob", "", "S-9"), walkIn = new Customer(3, "Cy");
+        assertEquals(List.of("morning", "march", "gold", "member"), applied(session(gold, MONDAY_10, promos)));
+        assertEquals(List.of("wkend", "morning", "march", "member"), applied(session(silver, SATURDAY_10, promos)));
+        assertEquals(List.of("march"), applied(session(walkIn, millis(2025, 3, 3, 12), promos)));
+        assertEquals(List.of(), applied(session(null, millis(2025, 4, 1, 8), promos)));
+    }
+
+    @Test
+    void runningTotalMatchesAFreshEvaluation() {
+        String[] promos = {"PERCENT p items=1,2 percent=12.5", "AMOUNT a items=2,3 off=3.00", "BUYXGETY b items=1,3,4 buy=2 get=1",
+                "MIXMATCH m items=2,4,5 qty=3 price=20.00", "BUYXGETY c items=5 buy=1 get=1"};
+        long[] price = {0, 1099, 2450, 500, 875, 1200};
+        Random r = new Random(11);
+        for (int cart = 0; cart < 200; cart++) {
+            PromotionEngine.Session s = session(null, MONDAY_10, promos);
+            int[] qty = new int[price.length];
+            for (int edit = 0; edit < 40; edit++) {
+                int item = 1 + r.nextInt(5), d = r.nextInt(7) - 2;
+                if (qty[item] + d < 0) d = -qty[item];
+                s.update(item, price[item], d);
+                qty[item] += d;
+
+                PromotionEngine.Session fresh = session(null, MONDAY_10, promos);
+                for (int i = 1; i < price.length; i++) fresh.update(i, price[i], qty[i]);
+                assertEquals(fresh.discountCents(), s.discountCents(), "cart " + cart + " after edit " + edit + " " + Arrays.toString(qty));
+            }
+        }
+    }
+
+    @Test
+    void badLinesAreRejected() {
+        for (String bad : new String[]{"PERCENT x items=1 percent=120", "BUYXGETY x items=1 buy=2 get=0",
+                "MIXMATCH x items=1 qty=0 price=1", "AMOUNT x items=1 off=-1", "PERCENT x items=1 10", "FREE x items=1"})
+            assertThrows(RuntimeException.class, () -> PromotionEngine.parse(bad), bad);
+    }
+
+    private static PromotionEngine.Session session(Customer c, long at, String... lines) {
+        List<PromotionEngine.Promotion> list = new ArrayList<>();
+        for (String l : lines) list.add(PromotionEngine.parse(l));
+        return new PromotionEngine(list, 0, UTC).newSession(c, at);
+    }
+
+    /** Ids of the promotions that give 100.00 of items 1-5 something off. */
+    private static List<String> applied(PromotionEngine.Session s) {
+        for (int item = 1; item <= 5; item++) s.update(item, 10000, 1);
+        return s.applied();
+    }
+
+    private static long millis(int y, int m, int d, int hour) {
+        return LocalDateTime.of(y, m, d, hour, 0).toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+}
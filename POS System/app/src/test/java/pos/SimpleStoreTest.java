@@ -0,0 +1,56 @@
+package pos;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SimpleStoreTest {
+    @TempDir File dir;
+
+    @Test
+    void aDataFolderOpensOnceAtATime() throws Exception {
+        SimpleStore store = new SimpleStore(dir);
+        try {
+            IllegalStateException e = assertThrows(IllegalStateException.class, () -> new SimpleStore(dir));
+            assertTrue(e.getMessage().contains("in use"), e.getMessage());
+
+            // Another process, as BulkImport started next to a running till
+            Process p = new ProcessBuilder(new File(System.getProperty("java.home"), "bin/java").getPath(),
+                    "-cp", System.getProperty("java.class.path"), "pos.BulkImport", dir.getPath(), "feeds")
+                    .redirectErrorStream(true).start();
+            assertTrue(p.waitFor(60, TimeUnit.SECONDS));
+            String out = new String(p.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+            assertEquals(1, p.exitValue(), out);
+            assertTrue(out.contains("in use by another till or a BulkImport"), out);
+        } finally { store.close(); }
+
+        new SimpleStore(dir).close(); // released on close
+    }
+
+    @Test
+    void theStartupMergeWaitsForCustomersAndAReview() {
+        File marker = new File(dir, "customers.dedup");
+        SimpleStore store = new SimpleStore(dir);
+        assertFalse(marker.exists(), "only the sample catalogue: the pass runs again next time");
+        store.putCustomer(new Customer(1, "Ann Perera", "0771234567", ""));
+        store.putCustomer(new Customer(2, "ann  perera", "0771234567", ""));
+        store.putCustomer(new Customer(3, "Bob Silva"));
+        store.putCustomer(new Customer(4, "Bob Silva", "0719876543", ""));
+        store.close();
+
+        store = new SimpleStore(dir);
+        try {
+            assertFalse(store.getCustomers().get(2).isActive(), "phone in common: merged at startup");
+            assertTrue(store.needsDuplicateReview(), "same name only: left for the cashier");
+            assertFalse(marker.exists());
+            store.markDuplicatesReviewed();
+            assertFalse(store.needsDuplicateReview());
+        } finally { store.close(); }
+        assertTrue(marker.exists());
+    }
+}
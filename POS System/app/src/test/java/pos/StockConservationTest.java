@@ -0,0 +1,133 @@
+package pos;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A few lanes selling a few scarce items at once, so that no unit is made or lost. Each lane
+ * loops over carts through {@link CheckoutService} (holds, quantity changes, removals, refused
+ * confirms, abandoned carts), takes with {@link SimpleStore#tryReserve} that are then sold or put
+ * back, and restocks. At the end stock must add up per item, match the store's own sale records
+ * and survive a reopen from the journal.
+ */
+class StockConservationTest {
+    private static final int LANES = 4, SECONDS = 3, ITEMS = 8, STOCK = 20;
+
+    @TempDir File dir;
+
+    @Test
+    void lanesNeitherMakeNorLoseStock() throws Exception {
+        SimpleStore store = new SimpleStore(dir);
+        Item[] hot = new Item[ITEMS];
+        for (int i = 0; i < ITEMS; i++) {
+            hot[i] = new Item(100 + i, "Item " + i, 150 + i, STOCK);
+            store.putItem(hot[i]);
+        }
+        Customer[] regulars = new Customer[5];
+        for (int i = 0; i < regulars.length; i++) {
+            regulars[i] = new Customer(i + 1, "Customer " + (i + 1));
+            store.putCustomer(regulars[i]);
+        }
+        CheckoutService checkout = new CheckoutService(store, 0);
+
+        AtomicLongArray sold = new AtomicLongArray(ITEMS), restocked = new AtomicLongArray(ITEMS);
+        ExecutorService pool = Executors.newFixedThreadPool(LANES);
+        long deadline = System.nanoTime() + SECONDS * 1_000_000_000L;
+        List<Future<?>> lanes = new ArrayList<>();
+        for (int l = 0; l < LANES; l++) {
+            Random r = new Random(500 + l);
+            lanes.add(pool.submit(() -> {
+                while (System.nanoTime() < deadline) {
+                    int kind = r.nextInt(10);
+                    Customer c = regulars[r.nextInt(regulars.length)];
+                    if (kind < 6) cart(checkout, hot, c, r, sold);
+                    else if (kind < 9) take(store, hot, c, r, sold);
+                    else {
+                        int i = r.nextInt(ITEMS), qty = 1 + r.nextInt(5);
+                        store.adjustStock(hot[i], qty);
+                        restocked.addAndGet(i, qty);
+                    }
+                }
+                return null;
+            }));
+        }
+        try {
+            for (Future<?> f : lanes) f.get();
+        } finally { pool.shutdown(); }
+
+        Map<Integer, Long> recorded = new HashMap<>();
+        for (Invoice inv : store.getSalesHistory())
+            for (Invoice.Line line : inv.getLines()) recorded.merge(line.getItem().getId(), (long) line.getQuantity(), Long::sum);
+        Map<Integer, Integer> expected = new HashMap<>();
+        for (int i = 0; i < ITEMS; i++) {
+            int id = hot[i].getId();
+            long want = STOCK + restocked.get(i) - sold.get(i);
+            expected.put(id, (int) want);
+            assertEquals(want, hot[i].getStock(), "stock of item " + id + " = start + restocked - sold");
+            assertTrue(hot[i].getStock() >= 0, "item " + id + " oversold");
+            assertEquals(sold.get(i), (long) recorded.getOrDefault(id, 0L), "sale records of item " + id);
+            assertEquals(0, store.getLedger().getHeld(id), "units of item " + id + " still held");
+        }
+        int sales = store.getSalesHistory().size();
+        assertTrue(sales > 0, "no sale went through");
+        store.close();
+
+        SimpleStore reopened = new SimpleStore(dir);
+        try {
+            assertEquals(sales, reopened.getSalesHistory().size());
+            for (Map.Entry<Integer, Integer> e : expected.entrySet())
+                assertEquals((int) e.getValue(), reopened.getInventory().get(e.getKey()).getStock(), "reopened stock of item " + e.getKey());
+        } finally { reopened.close(); }
+    }
+
+    /** One cart through the checkout service: edits that are refused are skipped. */
+    private static void cart(CheckoutService checkout, Item[] hot, Customer customer, Random r, AtomicLongArray sold) {
+        Invoice cart = checkout.start(customer, "Lane");
+        for (int n = 1 + r.nextInt(6); n > 0; n--) {
+            try {
+                checkout.addItem(cart, hot[r.nextInt(hot.length)].getId(), 1 + r.nextInt(3));
+            } catch (IllegalArgumentException e) { continue; }
+            try {
+                if (r.nextInt(5) == 0) checkout.setQuantity(cart, r.nextInt(cart.getLineCount()), 1 + r.nextInt(4));
+                else if (r.nextInt(8) == 0) checkout.removeLine(cart, r.nextInt(cart.getLineCount()));
+            } catch (IllegalArgumentException ignored) {}
+        }
+        if (cart.getLineCount() == 0 || r.nextInt(10) == 0) { checkout.clear(cart); return; }
+        try {
+            checkout.confirm(cart);
+        } catch (IllegalArgumentException e) {
+            checkout.clear(cart);
+            return;
+        }
+        count(hot, cart, sold);
+    }
+
+    /** Takes stock line by line, then sells it or puts it back. */
+    private static void take(SimpleStore store, Item[] hot, Customer customer, Random r, AtomicLongArray sold) {
+        Invoice inv = new Invoice(customer, "Lane", 0);
+        for (int n = 1 + r.nextInt(4); n > 0; n--) {
+            Item it = hot[r.nextInt(hot.length)];
+            int qty = 1 + r.nextInt(3);
+            if (store.tryReserve(it.getId(), qty)) inv.addItem(it, qty);
+        }
+        if (inv.getLineCount() == 0) return;
+        if (r.nextInt(4) == 0) {
+            for (Invoice.Line line : inv.getLines()) store.adjustStock(line.getItem(), line.getQuantity());
+            return;
+        }
+        store.logSale(inv);
+        count(hot, inv, sold);
+    }
+
+    private static void count(Item[] hot, Invoice inv, AtomicLongArray sold) {
+        for (Invoice.Line line : inv.getLines())
+            for (int i = 0; i < hot.length; i++) if (hot[i] == line.getItem()) sold.addAndGet(i, line.getQuantity());
+    }
+}
@@ -0,0 +1,139 @@
+package pos.bench;
+
+import pos.*;
+
+import javax.swing.SwingUtilities;
+import java.io.File;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load test of {@link StoreApiServer} over loopback while a cashier keeps ringing up sales in the
+ * same process. Runs twice, first without and then with {@code clients} HTTP clients issuing
+ * price-check reads (nine item lookups to one search), and reports:
+ * <ul>
+ * <li>read requests per second and their p50/p99/p999 latency,</li>
+ * <li>the cashier's add/confirm latency through {@link CheckoutService},</li>
+ * <li>how late a task posted to the Swing event thread every 5 ms runs: what a cashier would
+ *     feel as UI lag.</li>
+ * </ul>
+ *
+ * <pre>java -cp target/benchmarks.jar pos.bench.ApiLoadTest clients=32 seconds=20 items=10000</pre>
+ */
+public final class ApiLoadTest {
+    /** Mean pause between a cashier's scans; a person at a till, only much faster. */
+    static final int THINK_MILLIS = 20;
+
+    private ApiLoadTest(){}
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        Map<String, String> opt = new HashMap<>();
+        for (String a : args) {
+            int eq = a.indexOf('=');
+            if (eq > 0) opt.put(a.substring(0, eq), a.substring(eq + 1));
+        }
+        int clients = Integer.parseInt(opt.getOrDefault("clients", "32"));
+        int seconds = Integer.parseInt(opt.getOrDefault("seconds", "20"));
+        int items = Integer.parseInt(opt.getOrDefault("items", "10000"));
+
+        File dir = Files.createTempDirectory("pos-api").toFile();
+        DataGenerator.writeStore(dir, items, Math.max(3, items / 5), 0, 42);
+        SimpleStore store = new SimpleStore(dir);
+        CheckoutService checkout = new CheckoutService(store, 0);
+        StoreApiServer server = new StoreApiServer(checkout, InetAddress.getLoopbackAddress(), 0, null);
+        server.start();
+        try {
+            System.out.println("== cashier alone");
+            phase(checkout, server.getPort(), 0, seconds, items);
+            System.out.println("== cashier with " + clients + " API clients");
+            phase(checkout, server.getPort(), clients, seconds, items);
+        } finally {
+            server.stop(1);
+            store.close();
+            DataGenerator.deleteStore(dir);
+        }
+    }
+
+    private static void phase(CheckoutService checkout, int port, int clients, int seconds, int items) throws Exception {
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        AtomicLong errors = new AtomicLong();
+        List<long[]> clientSamples = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> threads = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            Random r = new Random(c);
+            Thread t = new Thread(() -> clientSamples.add(readLoop(port, items, r, deadline, errors)), "api-client-" + c);
+            t.setDaemon(true);
+            threads.add(t);
+        }
+        long[] edt = new long[seconds * 400];
+        int[] edtCount = {0};
+        Thread probe = new Thread(() -> {
+            while (System.nanoTime() < deadline) {
+                long posted = System.nanoTime();
+                SwingUtilities.invokeLater(() -> {
+                    if (edtCount[0] < edt.length) edt[edtCount[0]++] = System.nanoTime() - posted;
+                });
+                try { Thread.sleep(5); } catch (InterruptedException e) { return; }
+            }
+        }, "edt-probe");
+        probe.setDaemon(true);
+
+        long start = System.nanoTime();
+        threads.forEach(Thread::start);
+        probe.start();
+        LoadGenerator.Report cashier = LoadGenerator.run(checkout, 1, seconds * 1000L, 12, THINK_MILLIS);
+        for (Thread t : threads) t.join();
+        probe.join();
+        double secs = (System.nanoTime() - start) / 1e9;
+
+        if (clients > 0) {
+            long[] all = clientSamples.stream().flatMapToLong(Arrays::stream).sorted().toArray();
+            System.out.printf("reads: %d in %.1f s = %.0f/s, %d errors; p50 %.2f ms, p99 %.2f ms, p999 %.2f ms%n",
+                    all.length, secs, all.length / secs, errors.get(), q(all, .5) / 1e6, q(all, .99) / 1e6, q(all, .999) / 1e6);
+        }
+        System.out.printf("cashier: %d sales; add p50 %.1f us, p99 %.1f us; confirm p50 %.2f ms, p99 %.2f ms%n", cashier.getSales(),
+                cashier.percentile(LoadGenerator.Op.ADD, .5) / 1e3, cashier.percentile(LoadGenerator.Op.ADD, .99) / 1e3,
+                cashier.percentile(LoadGenerator.Op.CONFIRM, .5) / 1e6, cashier.percentile(LoadGenerator.Op.CONFIRM, .99) / 1e6);
+        SwingUtilities.invokeAndWait(() -> {});
+        long[] lag = Arrays.copyOf(edt, edtCount[0]);
+        Arrays.sort(lag);
+        System.out.printf("event thread lag: p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                q(lag, .5) / 1e6, q(lag, .99) / 1e6, q(lag, 1) / 1e6);
+    }
+
+    private static long[] readLoop(int port, int items, Random r, long deadline, AtomicLong errors) {
+        String[] words = {"sam", "dell lap", "phone", "canon", "aptop", "sony head"};
+        long[] samples = new long[1 << 16];
+        int n = 0;
+        while (System.nanoTime() < deadline) {
+            String path = r.nextInt(10) == 0
+                    ? "/api/items?limit=10&q=" + words[r.nextInt(words.length)].replace(" ", "+")
+                    : "/api/items/" + (DataGenerator.FIRST_ITEM_ID + r.nextInt(items));
+            long t = System.nanoTime();
+            try {
+                // keep-alive: the JDK reuses the connection once the body has been read
+                HttpURLConnection con = (HttpURLConnection) new URL("http://127.0.0.1:" + port + path).openConnection();
+                int status = con.getResponseCode();
+                try (InputStream in = status < 400 ? con.getInputStream() : con.getErrorStream()) { in.readAllBytes(); }
+                if (status != 200 && status != 503) errors.incrementAndGet();
+            } catch (Exception e) {
+                errors.incrementAndGet();
+                continue;
+            }
+            if (n == samples.length) samples = Arrays.copyOf(samples, n * 2);
+            samples[n++] = System.nanoTime() - t;
+        }
+        return Arrays.copyOf(samples, n);
+    }
+
+    private static long q(long[] sorted, double p) {
+        return sorted.length == 0 ? 0 : sorted[Math.max(0, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+}
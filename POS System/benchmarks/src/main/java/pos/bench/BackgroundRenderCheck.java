@@ -0,0 +1,132 @@
+package pos.bench;
+
+import pos.BackgroundRenderer;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * CPU use and frame time of the till's animated background, before and after
+ * {@link BackgroundRenderer}: the previous panel, which repainted the whole 1400x800 window with
+ * a fresh gradient and antialiased grid every 100 ms, against the renderer in both modes.
+ *
+ * Runs headless, painting a stand-in of the till's window (a 3x5 button grid over a 50-row cart
+ * table) into an offscreen image exactly when the panel would have repainted. Each mode runs in
+ * real time for {@code seconds}; CPU is the whole process, including the renderer's worker.
+ * "Scroll" is a repaint clipped to the table, as when the cart scrolls.
+ *
+ * <pre>java -cp target/benchmarks.jar pos.bench.BackgroundRenderCheck seconds=20</pre>
+ */
+public final class BackgroundRenderCheck {
+    private BackgroundRenderCheck(){}
+
+    /** The panel as it was, kept here for comparison. */
+    static final class LegacyPanel extends JPanel {
+        float hue;
+
+        LegacyPanel(){ setOpaque(false); }
+
+        boolean advance(){ hue = (hue + 0.003f) % 1.0f; return true; }
+
+        @Override protected void paintComponent(Graphics g) {
+            super.paintComponent(g);
+            Graphics2D g2d = (Graphics2D) g;
+            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            int w = getWidth(), h = getHeight();
+            Color darkBlue = Color.getHSBColor(hue, 0.4f, 0.15f);
+            Color darkTeal = Color.getHSBColor((hue + 0.2f) % 1.0f, 0.3f, 0.2f);
+            g2d.setPaint(new GradientPaint(0, 0, darkBlue, w, h, darkTeal));
+            g2d.fillRect(0, 0, w, h);
+            g2d.setColor(new Color(255, 255, 255, 10));
+            for (int x = 0; x < w; x += 60) g2d.drawLine(x, 0, x, h);
+            for (int y = 0; y < h; y += 60) g2d.drawLine(0, y, w, y);
+        }
+    }
+
+    static final class RendererPanel extends JPanel {
+        final BackgroundRenderer renderer;
+        RendererPanel(BackgroundRenderer.Mode mode){ setOpaque(true); renderer = new BackgroundRenderer(mode); }
+        @Override protected void paintComponent(Graphics g){ renderer.paint(g, this); }
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        int seconds = 20;
+        for (String a : args) if (a.startsWith("seconds=")) seconds = Integer.parseInt(a.substring(8));
+
+        System.out.printf("%-9s %8s %9s %14s %14s %14s%n", "mode", "cpu", "repaints", "frame p50 ms", "frame max ms", "scroll p50 ms");
+        run("before", new LegacyPanel(), seconds);
+        for (BackgroundRenderer.Mode m : BackgroundRenderer.Mode.values()) {
+            RendererPanel p = new RendererPanel(m);
+            run(m.name().toLowerCase(), p, seconds);
+            if (m == BackgroundRenderer.Mode.ANIMATED) System.out.println("          (" + p.renderer.getFrameCount() + " distinct frames per " + BackgroundRenderer.TICK_MILLIS * 333 / 1000 + " s cycle)");
+            p.renderer.close();
+        }
+    }
+
+    private static void run(String name, JPanel panel, int seconds) throws Exception {
+        JScrollPane[] table = new JScrollPane[1];
+        SwingUtilities.invokeAndWait(() -> table[0] = populate(panel));
+        BufferedImage screen = new BufferedImage(1400, 800, BufferedImage.TYPE_INT_RGB);
+        int ticks = seconds * 1000 / BackgroundRenderer.TICK_MILLIS;
+        long[] frames = new long[ticks + 1], scrolls = new long[ticks];
+        int[] n = {0};
+        SwingUtilities.invokeAndWait(() -> frames[n[0]++] = paint(panel, screen, null)); // first paint renders the cache
+
+        var os = (com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
+        long cpu0 = os.getProcessCpuTime(), wall0 = System.nanoTime();
+        for (int i = 0; i < ticks; i++) {
+            long due = wall0 + (i + 1L) * BackgroundRenderer.TICK_MILLIS * 1_000_000L;
+            int tick = i;
+            SwingUtilities.invokeAndWait(() -> {
+                boolean changed = panel instanceof LegacyPanel l ? l.advance() : ((RendererPanel) panel).renderer.advance();
+                if (changed) frames[n[0]++] = paint(panel, screen, null);
+                if (tick % 5 == 0) scrolls[tick / 5] = paint(panel, screen, table[0].getBounds());
+            });
+            long sleep = due - System.nanoTime();
+            if (sleep > 0) Thread.sleep(sleep / 1_000_000, (int) (sleep % 1_000_000));
+        }
+        double cpu = (os.getProcessCpuTime() - cpu0) / (double) (System.nanoTime() - wall0);
+        long[] f = Arrays.copyOf(frames, n[0]), s = Arrays.copyOf(scrolls, ticks / 5);
+        Arrays.sort(f);
+        Arrays.sort(s);
+        System.out.printf("%-9s %7.1f%% %9d %14.2f %14.2f %14.2f%n", name, cpu * 100, n[0] - 1,
+                f[f.length / 2] / 1e6, f[f.length - 1] / 1e6, s[s.length / 2] / 1e6);
+    }
+
+    private static long paint(JPanel panel, BufferedImage screen, Rectangle clip) {
+        long t = System.nanoTime();
+        Graphics2D g = screen.createGraphics();
+        if (clip != null) g.setClip(clip);
+        panel.paint(g);
+        g.dispose();
+        return System.nanoTime() - t;
+    }
+
+    /** Roughly the till's window: the button grid on top, the cart table below. */
+    private static JScrollPane populate(JPanel panel) {
+        panel.setLayout(new BorderLayout());
+        JPanel buttons = new JPanel(new GridLayout(3, 5, 12, 10));
+        buttons.setOpaque(false);
+        for (int i = 0; i < 15; i++) buttons.add(new JButton("Button " + i));
+        DefaultTableModel model = new DefaultTableModel(new String[]{"Item", "Name", "Price", "Qty", "Total"}, 0);
+        for (int i = 0; i < 50; i++) model.addRow(new Object[]{100_000 + i, "Item " + i, "9.99", 1, "9.99"});
+        JTable t = new JTable(model);
+        t.setOpaque(false);
+        JScrollPane sp = new JScrollPane(t);
+        sp.setOpaque(false);
+        sp.getViewport().setOpaque(false);
+        panel.add(buttons, BorderLayout.NORTH);
+        panel.add(sp, BorderLayout.CENTER);
+        panel.setSize(1400, 800);
+        panel.doLayout();
+        buttons.doLayout();
+        sp.doLayout();
+        sp.getViewport().doLayout();
+        return sp;
+    }
+}
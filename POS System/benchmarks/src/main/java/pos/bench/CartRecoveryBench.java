@@ -0,0 +1,62 @@
+package pos.bench;
+
+import org.openjdk.jmh.annotations.*;
+import pos.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What the lane's cart recovery file ({@link CartRecoveryLog}) adds to a scan, and how long a
+ * restarted till takes to read back a cart of {@code lines} lines left after a long session of
+ * edits.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CartRecoveryBench {
+    @Param({"100"})
+    int lines;
+
+    File dir;
+    CartRecoveryLog live, crashed;
+    Customer customer;
+    int edits;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        dir = Files.createTempDirectory("pos-bench").toFile();
+        customer = new Customer(1, "Bench Customer", "0771234567", "G1");
+        live = new CartRecoveryLog(new File(dir, "live.cart"));
+        live.begin(customer, "Bench");
+        crashed = new CartRecoveryLog(new File(dir, "crashed.cart"));
+        crashed.begin(customer, "Bench");
+        for (int i = 0; i < lines; i++) crashed.added(DataGenerator.FIRST_ITEM_ID + i, 1, 1999);
+        for (int i = 0; i < 10 * lines; i++) crashed.quantity(i % lines, 1 + i % 7);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws IOException {
+        live.close();
+        crashed.close();
+        DataGenerator.deleteStore(dir);
+    }
+
+    /** One scan's record; the cart is cleared now and then so it stays a cart. */
+    @Benchmark
+    public void added() {
+        if (++edits == lines) { live.cleared(); edits = 0; }
+        else live.added(DataGenerator.FIRST_ITEM_ID + edits, 1, 1999);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public CartRecoveryLog.Saved read() {
+        return crashed.read();
+    }
+}
@@ -0,0 +1,76 @@
+package pos.bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Compares a JMH result file ({@code -rf csv}) against the checked-in baseline and exits with
+ * status 1 if any benchmark got worse by more than the tolerance (default 20%). Throughput
+ * scores must not drop; time scores must not rise. Benchmarks missing from either side are
+ * listed but do not fail the run.
+ *
+ * <pre>java -cp target/benchmarks.jar pos.bench.CompareBaseline baseline/results.csv results.csv [tolerance%]</pre>
+ */
+public final class CompareBaseline {
+    private CompareBaseline(){}
+
+    record Score(String mode, double value, String unit) {}
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: CompareBaseline <baseline.csv> <results.csv> [tolerance%]");
+            System.exit(2);
+        }
+        Map<String, Score> base = read(Paths.get(args[0])), now = read(Paths.get(args[1]));
+        double tolerance = args.length > 2 ? Double.parseDouble(args[2]) / 100 : 0.20;
+        int regressions = 0;
+        for (Map.Entry<String, Score> e : now.entrySet()) {
+            Score b = base.get(e.getKey()), n = e.getValue();
+            if (b == null) { System.out.printf("  new      %s%n", e.getKey()); continue; }
+            if (!b.unit().equals(n.unit())) { System.out.printf("  ?unit    %s (%s vs %s)%n", e.getKey(), b.unit(), n.unit()); continue; }
+            boolean higherIsBetter = n.mode().equals("thrpt");
+            double change = (n.value() - b.value()) / b.value();
+            boolean worse = higherIsBetter ? change < -tolerance : change > tolerance;
+            if (worse) regressions++;
+            System.out.printf("%s %+7.1f%%  %s  %.3f -> %.3f %s%n", worse ? "REGRESSED" : "  ok     ",
+                    change * 100, e.getKey(), b.value(), n.value(), n.unit());
+        }
+        for (String k : base.keySet()) if (!now.containsKey(k)) System.out.printf("  missing  %s%n", k);
+        System.out.println(regressions == 0 ? "no regressions" : regressions + " regression(s)");
+        System.exit(regressions == 0 ? 0 : 1);
+    }
+
+    /** Benchmark name plus its parameters -> score. */
+    static Map<String, Score> read(Path csv) throws IOException {
+        List<String> lines = Files.readAllLines(csv, StandardCharsets.UTF_8);
+        Map<String, Score> out = new TreeMap<>();
+        if (lines.isEmpty()) return out;
+        List<String> head = fields(lines.get(0));
+        for (String line : lines.subList(1, lines.size())) {
+            if (line.isBlank()) continue;
+            List<String> f = fields(line);
+            StringBuilder key = new StringBuilder(f.get(0));
+            for (int i = 7; i < f.size() && i < head.size(); i++) {
+                if (!f.get(i).isEmpty()) key.append(' ').append(head.get(i).replace("Param: ", "")).append('=').append(f.get(i));
+            }
+            out.put(key.toString(), new Score(f.get(1), Double.parseDouble(f.get(4)), f.get(6)));
+        }
+        return out;
+    }
+
+    private static List<String> fields(String line) {
+        List<String> out = new ArrayList<>();
+        StringBuilder cur = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') quoted = !quoted;
+            else if (c == ',' && !quoted) { out.add(cur.toString()); cur.setLength(0); }
+            else cur.append(c);
+        }
+        out.add(cur.toString());
+        return out;
+    }
+}
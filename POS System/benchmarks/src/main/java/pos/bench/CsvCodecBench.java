@@ -0,0 +1,54 @@
+package pos.bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import pos.Item;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** {@link Item#toCsv()} / {@link Item#fromCsv(String)}, per line and over a whole catalogue. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CsvCodecBench {
+    @Param({"1000", "100000"})
+    int items;
+
+    Item[] catalogue;
+    String[] lines;
+    int next;
+
+    @Setup
+    public void setup() {
+        List<Item> list = DataGenerator.items(items, 42);
+        catalogue = list.toArray(new Item[0]);
+        lines = new String[items];
+        for (int i = 0; i < items; i++) lines[i] = catalogue[i].toCsv();
+    }
+
+    @Benchmark
+    public String encodeOne() {
+        return catalogue[next++ % items].toCsv();
+    }
+
+    @Benchmark
+    public Item decodeOne() {
+        return Item.fromCsv(lines[next++ % items]);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void encodeAll(Blackhole bh) {
+        for (Item it : catalogue) bh.consume(it.toCsv());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void decodeAll(Blackhole bh) {
+        for (String l : lines) bh.consume(Item.fromCsv(l));
+    }
+}
@@ -0,0 +1,100 @@
+package pos.bench;
+
+import pos.*;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Synthetic store data for the benchmarks: items, customers and promotions written straight
+ * into a data directory in the store's own CSV formats, reproducible from a seed.
+ *
+ * <pre>java -cp target/benchmarks.jar pos.bench.DataGenerator &lt;dir&gt; &lt;items&gt; [customers] [promotions]</pre>
+ */
+public final class DataGenerator {
+    private static final String[] BRANDS = {"Apple", "Samsung", "Dell", "HP", "Logitech", "Sony", "Lenovo", "Asus", "Canon", "Philips"};
+    private static final String[] KINDS = {"Phone", "Laptop", "Printer", "Mouse", "Keyboard", "Monitor", "Headphones", "Camera", "Tablet", "Speaker"};
+    private static final String[] FIRST = {"John", "Jane", "Ibrahim", "Amal", "Nimal", "Kasun", "Fatima", "Ravi", "Sara", "Chen"};
+    private static final String[] LAST = {"Doe", "Smith", "Khan", "Perera", "Silva", "Fernando", "Ali", "Kumar", "Wong", "Jay"};
+
+    private DataGenerator(){}
+
+    public static final int FIRST_ITEM_ID = 100_000;
+
+    /** Item {@code i} of a generated catalogue (ids start at {@link #FIRST_ITEM_ID}). */
+    public static Item item(Random r, int i) {
+        String name = BRANDS[r.nextInt(BRANDS.length)] + " " + KINDS[r.nextInt(KINDS.length)] + " " + (char) ('A' + r.nextInt(26)) + (10 + r.nextInt(990));
+        return new Item(FIRST_ITEM_ID + i, name, 100 + r.nextInt(500_000), 1_000_000);
+    }
+
+    public static List<Item> items(int n, long seed) {
+        Random r = new Random(seed);
+        List<Item> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) out.add(item(r, i));
+        return out;
+    }
+
+    public static Customer customer(Random r, int id) {
+        String phone = r.nextInt(3) == 0 ? "" : "07" + (10_000_000 + r.nextInt(90_000_000));
+        String loyalty = r.nextInt(4) == 0 ? (r.nextBoolean() ? "G" : "S") + id : "";
+        return new Customer(id, FIRST[r.nextInt(FIRST.length)] + " " + LAST[r.nextInt(LAST.length)] + " " + id, phone, loyalty);
+    }
+
+    /** A promotions file over items {@code [FIRST_ITEM_ID, FIRST_ITEM_ID + items)}, mixing every kind. */
+    public static List<String> promotions(int n, int items, long seed) {
+        Random r = new Random(seed);
+        List<String> out = new ArrayList<>(n);
+        for (int p = 0; p < n; p++) {
+            int k = 1 + r.nextInt(p % 10 == 0 ? 50 : 5);
+            StringJoiner ids = new StringJoiner(",");
+            for (int i = 0; i < k; i++) ids.add(String.valueOf(FIRST_ITEM_ID + r.nextInt(items)));
+            out.add(switch (p % 4) {
+                case 0 -> "PERCENT P" + p + " items=" + ids + " percent=" + (1 + r.nextInt(30));
+                case 1 -> "AMOUNT P" + p + " items=" + ids + " off=" + (1 + r.nextInt(20)) + ".00";
+                case 2 -> "BUYXGETY P" + p + " items=" + ids + " buy=2 get=1";
+                default -> "MIXMATCH P" + p + " items=" + ids + " qty=3 price=" + (50 + r.nextInt(100)) + ".00";
+            });
+        }
+        return out;
+    }
+
+    /** Writes items.csv, customers.csv and promotions.txt into {@code dir}, replacing any store there. */
+    public static void writeStore(File dir, int items, int customers, int promotions, long seed) throws IOException {
+        deleteStore(dir);
+        dir.mkdirs();
+        List<String> lines = new ArrayList<>(items);
+        for (Item it : items(items, seed)) lines.add(it.toCsv());
+        write(new File(dir, "items.csv"), lines);
+        Random r = new Random(seed + 1);
+        lines = new ArrayList<>(customers);
+        for (int c = 1; c <= customers; c++) lines.add(customer(r, c).toCsv());
+        write(new File(dir, "customers.csv"), lines);
+        write(new File(dir, "promotions.txt"), promotions(promotions, Math.max(1, items), seed + 2));
+    }
+
+    public static void deleteStore(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) for (File f : files) f.delete();
+        dir.delete();
+    }
+
+    private static void write(File f, List<String> lines) throws IOException {
+        try (Writer w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(f), StandardCharsets.UTF_8), 1 << 16)) {
+            for (String l : lines) { w.write(l); w.write('\n'); }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: DataGenerator <dir> <items> [customers] [promotions]");
+            System.exit(2);
+        }
+        File dir = new File(args[0]);
+        int items = Integer.parseInt(args[1]);
+        int customers = args.length > 2 ? Integer.parseInt(args[2]) : Math.max(3, items / 10);
+        int promotions = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+        writeStore(dir, items, customers, promotions, 42);
+        System.out.printf("wrote %d items, %d customers, %d promotions to %s%n", items, customers, promotions, dir);
+    }
+}
@@ -0,0 +1,125 @@
+package pos.bench;
+
+import pos.SimpleStore;
+import pos.SupplierFeeds;
+import pos.SupplierOffer;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * Supplier feed ingestion over a generated catalogue: {@code suppliers} feeds, each offering a
+ * random half of {@code items} items plus some unmapped SKUs and unknown item ids. The first run
+ * takes every offer; then {@code changePercent} of each feed's rows get a new cost and shelf
+ * price, and only those may be applied; a third run over the same feeds must change nothing.
+ * Finally the store is reopened and must hold the same offers and prices.
+ *
+ * <pre>java -cp target/benchmarks.jar pos.bench.FeedCheck items=1000000 suppliers=3 changePercent=1</pre>
+ * Exits 1 if a check fails.
+ */
+public final class FeedCheck {
+    private FeedCheck(){}
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opt = new HashMap<>();
+        for (String a : args) { int eq = a.indexOf('='); if (eq > 0) opt.put(a.substring(0, eq), a.substring(eq + 1)); }
+        int items = Integer.parseInt(opt.getOrDefault("items", "1000000"));
+        int suppliers = Integer.parseInt(opt.getOrDefault("suppliers", "3"));
+        double changePercent = Double.parseDouble(opt.getOrDefault("changePercent", "1"));
+
+        File dir = Files.createTempDirectory("pos-feeds").toFile();
+        DataGenerator.writeStore(dir, items, 100, 0, 42);
+        List<String> names = new ArrayList<>();
+        for (int s = 0; s < suppliers; s++) names.add("Supplier " + (char) ('A' + s) + ", Ltd.");
+        try (Writer w = new OutputStreamWriter(new FileOutputStream(new File(dir, "suppliers.txt")), StandardCharsets.UTF_8)) {
+            for (String n : names) w.write("\"" + n + "\"\n");
+        }
+        new File(dir, "feeds").mkdirs();
+
+        Random r = new Random(11);
+        List<List<String[]>> feeds = new ArrayList<>();
+        for (String n : names) {
+            List<String[]> rows = new ArrayList<>();
+            for (int i = 0; i < items; i++) {
+                if (!r.nextBoolean()) continue;
+                long cost = 50 + r.nextInt(200_000);
+                rows.add(new String[]{"SKU-" + i, String.valueOf(DataGenerator.FIRST_ITEM_ID + i), cents(cost), cents(cost * 13 / 10), String.valueOf(r.nextInt(500))});
+            }
+            for (int i = 0; i < items / 1000; i++) rows.add(new String[]{"NEW-" + i, "", "1.00", "2.00", "5"});
+            for (int i = 0; i < items / 1000; i++) rows.add(new String[]{"GONE-" + i, String.valueOf(DataGenerator.FIRST_ITEM_ID + items + i), "1.00", "2.00", "5"});
+            feeds.add(rows);
+            write(new File(dir, "feeds/" + n + ".csv"), rows);
+        }
+        long feedBytes = 0;
+        for (String n : names) feedBytes += new File(dir, "feeds/" + n + ".csv").length();
+        System.out.printf("%d items, %d feeds, %.1f MB of feed, %d threads available%n", items, suppliers, feedBytes / 1e6, Runtime.getRuntime().availableProcessors());
+
+        boolean ok = true;
+        SimpleStore store = new SimpleStore(dir);
+        SupplierFeeds.Report first = store.ingestSupplierFeeds();
+        System.out.println("first run:   " + first);
+        long offered = 0;
+        for (List<String[]> rows : feeds) offered += rows.size() - 2L * (items / 1000);
+        ok &= check(first.changedOffers == offered, "first run takes every offer");
+
+        long expected = 0;
+        for (int s = 0; s < suppliers; s++) {
+            for (String[] row : feeds.get(s)) {
+                if (row[1].isEmpty() || !row[0].startsWith("SKU-") || r.nextDouble() * 100 >= changePercent) continue;
+                long cost = 50 + r.nextInt(200_000);
+                row[2] = cents(cost);
+                row[3] = cents(cost * 13 / 10);
+                expected++;
+            }
+            write(new File(dir, "feeds/" + names.get(s) + ".csv"), feeds.get(s));
+        }
+        SupplierFeeds.Report second = store.ingestSupplierFeeds();
+        System.out.println("second run:  " + second);
+        ok &= check(second.changedOffers == expected && second.droppedOffers == 0, "second run applies only the " + expected + " changed rows");
+
+        SupplierFeeds.Report third = store.ingestSupplierFeeds();
+        System.out.println("unchanged:   " + third);
+        ok &= check(third.changedOffers == 0 && third.repriced == 0, "unchanged feeds change nothing");
+
+        Map<Integer, Long> prices = new HashMap<>();
+        store.getInventory().forEach((id, it) -> prices.put(id, it.getPriceCents()));
+        List<Map<Integer, SupplierOffer>> offers = new ArrayList<>();
+        for (String n : names) offers.add(new HashMap<>(store.getOffers(n)));
+        store.close();
+
+        SimpleStore reopened = new SimpleStore(dir);
+        boolean same = true;
+        for (int s = 0; s < suppliers; s++) {
+            Map<Integer, SupplierOffer> got = reopened.getOffers(names.get(s));
+            same &= got.size() == offers.get(s).size();
+            for (SupplierOffer o : offers.get(s).values()) same &= o.sameTerms(got.get(o.getItemId()));
+        }
+        for (Map.Entry<Integer, Long> e : prices.entrySet()) same &= reopened.getInventory().get(e.getKey()).getPriceCents() == e.getValue();
+        // Every item with an offer sells at its first supplier's price
+        for (int id = DataGenerator.FIRST_ITEM_ID; id < DataGenerator.FIRST_ITEM_ID + items; id++) {
+            List<SupplierOffer> of = reopened.getOffers(id);
+            if (!of.isEmpty()) same &= reopened.getInventory().get(id).getPriceCents() == of.get(0).getListPriceCents();
+        }
+        reopened.close();
+        ok &= check(same, "reopened store holds the same offers and prices");
+
+        DataGenerator.deleteStore(new File(dir, "feeds"));
+        DataGenerator.deleteStore(dir);
+        if (!ok) System.exit(1);
+    }
+
+    private static boolean check(boolean ok, String what) {
+        System.out.println((ok ? "ok:   " : "FAIL: ") + what);
+        return ok;
+    }
+
+    private static String cents(long c){ return c / 100 + "." + (c % 100 < 10 ? "0" : "") + c % 100; }
+
+    private static void write(File f, List<String[]> rows) throws IOException {
+        try (Writer w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(f), StandardCharsets.UTF_8), 1 << 16)) {
+            for (String[] row : rows) { w.write(String.join(",", row)); w.write('\n'); }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package pos.bench;
+
+import org.openjdk.jmh.annotations.*;
+import pos.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What ringing a line up and taking it off again costs eight lanes over a small set of hot
+ * items: {@code hold} puts the units on a cart's reservation ({@link ReservationLedger}), as
+ * the till does now; {@code reserve} takes them from stock and journals the level twice, as it
+ * did before. The trial fails if anything is still held at the end, or stock moved.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class HoldBench {
+    static final int HOT = 16, STOCK = 1_000_000;
+
+    File dir;
+    SimpleStore store;
+    Item[] hot;
+
+    @State(Scope.Thread)
+    public static class Lane {
+        ReservationLedger.Reservation cart;
+        @Setup public void open(HoldBench b){ cart = b.store.getLedger().open(); }
+    }
+
+    @Setup(Level.Trial)
+    public void open() throws IOException {
+        dir = Files.createTempDirectory("pos-bench").toFile();
+        DataGenerator.writeStore(dir, HOT, 3, 0, 42);
+        store = new SimpleStore(dir);
+        hot = store.getInventory().values().toArray(new Item[0]);
+        for (Item it : hot) store.adjustStock(it, STOCK - it.getStock());
+    }
+
+    @TearDown(Level.Trial)
+    public void verify() {
+        long held = 0, onHand = 0;
+        for (Item it : hot) { held += store.getLedger().getHeld(it.getId()); onHand += it.getStock(); }
+        store.close();
+        DataGenerator.deleteStore(dir);
+        if (held != 0 || onHand != (long) HOT * STOCK) throw new IllegalStateException("held " + held + ", on hand " + onHand);
+    }
+
+    @Benchmark
+    public boolean hold(Lane lane) {
+        ThreadLocalRandom r = ThreadLocalRandom.current();
+        Item it = hot[r.nextInt(HOT)];
+        int qty = 1 + r.nextInt(3);
+        if (!store.hold(lane.cart, it.getId(), qty)) return false;
+        return store.release(lane.cart, it.getId(), qty) == qty;
+    }
+
+    @Benchmark
+    public boolean reserve() {
+        ThreadLocalRandom r = ThreadLocalRandom.current();
+        Item it = hot[r.nextInt(HOT)];
+        int qty = 1 + r.nextInt(3);
+        if (!store.tryReserve(it.getId(), qty)) return false;
+        store.adjustStock(it, qty);
+        return true;
+    }
+}
@@ -0,0 +1,99 @@
+package pos.bench;
+
+import pos.CsvCodec;
+import pos.Item;
+import pos.SimpleStore;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * Reading a large item file the way the store used to (a BufferedReader and
+ * {@link Item#fromCsv(String)} per line) against {@link CsvCodec#read} on one thread and on
+ * {@code threads}, then {@link SimpleStore#importItems} of the same file into a store. One name
+ * in fifty carries commas and quotes. Every reader must give the same items.
+ *
+ * <pre>java -cp target/benchmarks.jar pos.bench.ImportCheck rows=2000000 threads=4</pre>
+ * Exits 1 if the readers disagree.
+ */
+public final class ImportCheck {
+    private ImportCheck(){}
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opt = new HashMap<>();
+        for (String a : args) { int eq = a.indexOf('='); if (eq > 0) opt.put(a.substring(0, eq), a.substring(eq + 1)); }
+        int rows = Integer.parseInt(opt.getOrDefault("rows", "2000000"));
+        int threads = Integer.parseInt(opt.getOrDefault("threads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+
+        File root = Files.createTempDirectory("pos-import").toFile();
+        File csv = new File(root, "import.csv");
+        Random r = new Random(7);
+        try (Writer w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(csv), StandardCharsets.UTF_8), 1 << 16)) {
+            for (int i = 0; i < rows; i++) {
+                Item it = DataGenerator.item(r, i);
+                if (i % 50 == 0) it.setName(it.getName() + ", 6\" \"family\" pack");
+                w.write(it.toCsv());
+                w.write('\n');
+            }
+        }
+        System.out.printf("%d rows, %.1f MB, %d threads available%n", rows, csv.length() / 1e6, Runtime.getRuntime().availableProcessors());
+
+        List<Item> expected = null;
+        for (int round = 0; round < 3; round++) {  // the first round warms up
+            long t = System.nanoTime();
+            List<Item> before = new ArrayList<>();
+            try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(csv), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = br.readLine()) != null) {
+                    line = line.trim(); if (line.isEmpty()) continue;
+                    before.add(Item.fromCsv(line));
+                }
+            }
+            report(round, "before: line by line", rows, csv, System.nanoTime() - t);
+            expected = before;
+
+            for (int n : new int[]{1, threads}) {
+                t = System.nanoTime();
+                CsvCodec.Result<Item> res = CsvCodec.read(csv, Item::fromCsv, n);
+                report(round, "after: CsvCodec.read, " + n + " thread" + (n == 1 ? "" : "s"), rows, csv, System.nanoTime() - t);
+                if (!same(expected, res.rows) || res.rejected != 0) {
+                    System.out.println("FAIL: CsvCodec.read on " + n + " threads differs from the line reader");
+                    System.exit(1);
+                }
+            }
+        }
+
+        File dir = new File(root, "store");
+        DataGenerator.writeStore(dir, 1000, 100, 0, 42);
+        SimpleStore store = new SimpleStore(dir);
+        SimpleStore.ImportResult res = store.importItems(csv);
+        store.close();
+        System.out.printf("%-36s %s%n", "after: importItems (journal, checkpoint)", res);
+        SimpleStore reopened = new SimpleStore(dir);
+        boolean ok = reopened.getInventory().size() == Math.max(rows, 1000);
+        for (Item it : expected) {
+            Item got = reopened.getInventory().get(it.getId());
+            ok &= got != null && got.toCsv().equals(it.toCsv());
+        }
+        reopened.close();
+        System.out.println(ok ? "reopened store holds every imported item" : "FAIL: reopened store differs from the file");
+
+        DataGenerator.deleteStore(dir);
+        csv.delete();
+        root.delete();
+        if (!ok) System.exit(1);
+    }
+
+    private static void report(int round, String what, int rows, File csv, long nanos) {
+        if (round == 0) return;
+        System.out.printf("%-36s %8.0f ms %12.0f rows/s %8.1f MB/s%n", what, nanos / 1e6, rows * 1e9 / nanos, csv.length() * 1e3 / nanos);
+    }
+
+    private static boolean same(List<Item> a, List<Item> b) {
+        if (a.size() != b.size()) return false;
+        for (int i = 0; i < a.size(); i++) if (!a.get(i).toCsv().equals(b.get(i).toCsv())) return false;
+        return true;
+    }
+}
@@ -0,0 +1,62 @@
+package pos.bench;
+
+import org.openjdk.jmh.annotations.*;
+import pos.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Building, totalling and rendering an invoice of {@code lines} lines. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InvoiceBench {
+    @Param({"10", "100", "1000", "10000"})
+    int lines;
+
+    Item[] items;
+    Customer customer;
+    Invoice invoice;
+
+    @Setup
+    public void setup() {
+        List<Item> list = DataGenerator.items(lines, 42);
+        items = list.toArray(new Item[0]);
+        customer = new Customer(1, "Bench Customer", "0771234567", "G1");
+        invoice = build();
+        invoice.setDiscountPercent(500);
+    }
+
+    private Invoice build() {
+        Invoice inv = new Invoice(customer, "Bench", 1000);
+        for (int i = 0; i < items.length; i++) inv.addItem(items[i], 1 + (i & 3));
+        return inv;
+    }
+
+    /** Scanning and totalling a whole basket. */
+    @Benchmark
+    public long buildAndTotal() {
+        return build().totalCents();
+    }
+
+    /** The total of a built basket, as the till reads it after every edit. */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public long total() {
+        return invoice.totalCents();
+    }
+
+    @Benchmark
+    public String render() {
+        return invoice.toString();
+    }
+
+    /** The sales-log record written on checkout. */
+    @Benchmark
+    public String salesLogRecord() {
+        return SalesLog.format(invoice);
+    }
+}
@@ -0,0 +1,222 @@
+package pos.bench;
+
+import pos.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Simulates a store's worth of cashiers ringing up sales through {@link CheckoutService} against a
+ * real {@link SimpleStore}, and reports throughput and p50/p99/p999 latency per operation.
+ *
+ * Baskets are drawn to look like a shop floor: mostly small (exponential around {@code basket}
+ * lines) with one in twenty a large shop, items picked with Zipf-like popularity, quantities
+ * mostly 1. Along the way cashiers change quantities, void lines, give discounts and abandon
+ * a cart now and then; three customers in ten are walk-ins registered on the spot.
+ *
+ * <pre>java -cp target/benchmarks.jar pos.bench.LoadGenerator lanes=8 seconds=30 items=10000 basket=12 think=0 [dir=path]</pre>
+ *
+ * Without {@code dir=} a generated store in a temporary directory is used and deleted afterwards.
+ */
+public final class LoadGenerator {
+    public enum Op { START, ADD, QUANTITY, REMOVE, DISCOUNT, CONFIRM, CANCEL }
+
+    private LoadGenerator(){}
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opt = new HashMap<>();
+        for (String a : args) {
+            int eq = a.indexOf('=');
+            if (eq <= 0) { System.err.println("expected key=value: " + a); System.exit(2); }
+            opt.put(a.substring(0, eq), a.substring(eq + 1));
+        }
+        int lanes = Integer.parseInt(opt.getOrDefault("lanes", "8"));
+        int seconds = Integer.parseInt(opt.getOrDefault("seconds", "30"));
+        int items = Integer.parseInt(opt.getOrDefault("items", "10000"));
+        double basket = Double.parseDouble(opt.getOrDefault("basket", "12"));
+        int thinkMillis = Integer.parseInt(opt.getOrDefault("think", "0"));
+
+        boolean temp = !opt.containsKey("dir");
+        File dir = temp ? Files.createTempDirectory("pos-load").toFile() : new File(opt.get("dir"));
+        if (temp) DataGenerator.writeStore(dir, items, Math.max(3, items / 5), 0, 42);
+        SimpleStore store = new SimpleStore(dir);
+        try {
+            Report report = run(new CheckoutService(store, 0), lanes, seconds * 1000L, basket, thinkMillis);
+            report.print(System.out, lanes);
+        } finally {
+            store.close();
+            if (temp) DataGenerator.deleteStore(dir);
+        }
+    }
+
+    /** Runs {@code lanes} cashiers for {@code millis} and merges what they measured. */
+    public static Report run(CheckoutService checkout, int lanes, long millis, double basket, int thinkMillis) throws InterruptedException {
+        Item[] catalogue = checkout.getStore().getInventory().values().toArray(new Item[0]);
+        Customer[] regulars = checkout.getStore().getCustomers().values().stream().filter(Customer::isActive).toArray(Customer[]::new);
+        double[] popularity = zipf(catalogue.length, 0.9);
+        ExecutorService pool = Executors.newFixedThreadPool(lanes, r -> {
+            Thread t = new Thread(r, "pos-lane");
+            t.setDaemon(true);
+            return t;
+        });
+        long start = System.nanoTime(), deadline = start + millis * 1_000_000;
+        List<Future<Report>> futures = new ArrayList<>();
+        for (int l = 0; l < lanes; l++) {
+            Cashier c = new Cashier(checkout, catalogue, regulars, popularity, basket, thinkMillis, new Random(1000 + l));
+            futures.add(pool.submit(() -> c.work(deadline)));
+        }
+        Report total = new Report();
+        for (Future<Report> f : futures) {
+            try { total.merge(f.get()); } catch (ExecutionException e) { throw new IllegalStateException(e.getCause()); }
+        }
+        pool.shutdown();
+        total.nanos = System.nanoTime() - start;
+        return total;
+    }
+
+    /** Cumulative weights of ranks {@code 1..n} under {@code 1/rank^s}, normalised to 1. */
+    static double[] zipf(int n, double s) {
+        double[] cum = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) cum[i] = sum += 1 / Math.pow(i + 1, s);
+        for (int i = 0; i < n; i++) cum[i] /= sum;
+        return cum;
+    }
+
+    private static final class Cashier {
+        final CheckoutService checkout;
+        final Item[] catalogue;
+        final Customer[] regulars;
+        final double[] popularity;
+        final double basket;
+        final int thinkMillis;
+        final Random r;
+        final Report report = new Report();
+
+        Cashier(CheckoutService checkout, Item[] catalogue, Customer[] regulars, double[] popularity,
+                double basket, int thinkMillis, Random r) {
+            this.checkout = checkout; this.catalogue = catalogue; this.regulars = regulars; this.popularity = popularity;
+            this.basket = basket; this.thinkMillis = thinkMillis; this.r = r;
+        }
+
+        Report work(long deadline) throws InterruptedException {
+            while (System.nanoTime() < deadline) sale();
+            return report;
+        }
+
+        private void sale() throws InterruptedException {
+            long t = System.nanoTime();
+            Customer customer = regulars.length == 0 || r.nextInt(10) < 3
+                    ? checkout.newCustomer("Walk-in " + r.nextInt(1_000_000), "") : regulars[r.nextInt(regulars.length)];
+            Invoice cart = checkout.start(customer, "Lane");
+            t = report.record(Op.START, t);
+
+            double mean = r.nextInt(20) == 0 ? basket * 5 : basket;
+            int lines = Math.min(500, 1 + (int) (-Math.log(1 - r.nextDouble()) * mean));
+            for (int i = 0; i < lines; i++) {
+                think();
+                int q = r.nextInt(100);
+                int qty = q < 80 ? 1 : q < 95 ? 2 : 3 + r.nextInt(4);
+                t = System.nanoTime();
+                try {
+                    checkout.addItem(cart, pick().getId(), qty);
+                    t = report.record(Op.ADD, t);
+                } catch (IllegalArgumentException e) {
+                    report.rejected++;
+                    continue;
+                }
+                if (r.nextInt(15) == 0) {
+                    try {
+                        checkout.setQuantity(cart, r.nextInt(cart.getLineCount()), 1 + r.nextInt(3));
+                        report.record(Op.QUANTITY, t);
+                    } catch (IllegalArgumentException e) { report.rejected++; }
+                } else if (r.nextInt(30) == 0) {
+                    checkout.removeLine(cart, r.nextInt(cart.getLineCount()));
+                    report.record(Op.REMOVE, t);
+                }
+            }
+            if (r.nextInt(10) == 0) {
+                t = System.nanoTime();
+                if (r.nextBoolean()) checkout.discountPercent(cart, 500 + 500L * r.nextInt(3));
+                else checkout.discountAmount(cart, 100L * (1 + r.nextInt(50)));
+                report.record(Op.DISCOUNT, t);
+            }
+            think();
+            t = System.nanoTime();
+            if (cart.getLineCount() == 0 || r.nextInt(40) == 0) {
+                checkout.clear(cart);
+                report.record(Op.CANCEL, t);
+            } else {
+                checkout.confirm(cart);
+                report.record(Op.CONFIRM, t);
+                report.sales++;
+            }
+        }
+
+        private Item pick() {
+            int i = Arrays.binarySearch(popularity, r.nextDouble());
+            return catalogue[Math.min(catalogue.length - 1, i < 0 ? -i - 1 : i)];
+        }
+
+        private void think() throws InterruptedException {
+            if (thinkMillis > 0) Thread.sleep(r.nextInt(2 * thinkMillis + 1));
+        }
+    }
+
+    /** Latency samples per operation (nanoseconds) plus counters. */
+    public static final class Report {
+        final long[][] samples = new long[Op.values().length][];
+        final int[] counts = new int[Op.values().length];
+        long sales, rejected, nanos;
+
+        Report() { for (int i = 0; i < samples.length; i++) samples[i] = new long[1024]; }
+
+        /** Records the time since {@code since} and returns now. */
+        long record(Op op, long since) {
+            long now = System.nanoTime();
+            int o = op.ordinal();
+            if (counts[o] == samples[o].length) samples[o] = Arrays.copyOf(samples[o], counts[o] * 2);
+            samples[o][counts[o]++] = now - since;
+            return now;
+        }
+
+        void merge(Report other) {
+            for (int o = 0; o < samples.length; o++) {
+                long[] a = Arrays.copyOf(samples[o], counts[o] + other.counts[o]);
+                System.arraycopy(other.samples[o], 0, a, counts[o], other.counts[o]);
+                samples[o] = a;
+                counts[o] = a.length;
+            }
+            sales += other.sales;
+            rejected += other.rejected;
+        }
+
+        public long getSales(){ return sales; }
+
+        /** The {@code p}-quantile (0..1) of {@code op}'s latency in nanoseconds; sorts on first use. */
+        public long percentile(Op op, double p) {
+            int o = op.ordinal();
+            if (counts[o] == 0) return 0;
+            long[] a = samples[o];
+            if (a.length != counts[o]) a = samples[o] = Arrays.copyOf(a, counts[o]);
+            Arrays.sort(a);
+            return a[Math.max(0, (int) Math.ceil(p * a.length) - 1)];
+        }
+
+        void print(java.io.PrintStream out, int lanes) {
+            double secs = nanos / 1e9;
+            long ops = 0;
+            for (int c : counts) ops += c;
+            out.printf("%d lanes, %.1f s: %d sales (%.1f/s), %d operations (%.0f/s), %d rejected%n",
+                    lanes, secs, sales, sales / secs, ops, ops / secs, rejected);
+            out.printf("%-9s %9s %10s %10s %10s %10s%n", "op", "count", "p50 us", "p99 us", "p999 us", "max us");
+            for (Op op : Op.values()) {
+                if (counts[op.ordinal()] == 0) continue;
+                out.printf("%-9s %9d %10.1f %10.1f %10.1f %10.1f%n", op.name().toLowerCase(Locale.ROOT), counts[op.ordinal()],
+                        percentile(op, 0.50) / 1e3, percentile(op, 0.99) / 1e3, percentile(op, 0.999) / 1e3, percentile(op, 1.0) / 1e3);
+            }
+        }
+    }
+}
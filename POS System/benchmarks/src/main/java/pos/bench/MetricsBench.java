@@ -0,0 +1,36 @@
+package pos.bench;
+
+import org.openjdk.jmh.annotations.*;
+import pos.LatencyHistogram;
+import pos.Metrics;
+
+import java.util.concurrent.TimeUnit;
+
+/** What instrumenting a call costs: recording a value, a whole span without JFR, and a snapshot. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBench {
+    final LatencyHistogram histogram = new LatencyHistogram();
+    final Metrics.Timer timer = Metrics.timer("bench");
+    long value = 1;
+
+    @Benchmark
+    public void record() {
+        value = value * 6364136223846793005L + 1442695040888963407L;
+        histogram.record((value >>> 40) & 0xFFFFF);
+    }
+
+    @Benchmark
+    public void span() {
+        try (Metrics.Span s = timer.begin()) { value++; }
+    }
+
+    @Benchmark
+    public long snapshotP99() {
+        return histogram.snapshot().percentile(.99);
+    }
+}
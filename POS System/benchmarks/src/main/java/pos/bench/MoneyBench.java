@@ -0,0 +1,69 @@
+package pos.bench;
+
+import org.openjdk.jmh.annotations.*;
+import pos.Money;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/** Totalling a 300-line basket in long cents against double and BigDecimal, and formatting amounts. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyBench {
+    static final int LINES = 300;
+
+    long[] cents = new long[LINES];
+    double[] amounts = new double[LINES];
+    BigDecimal[] decimals = new BigDecimal[LINES];
+    int[] qty = new int[LINES];
+    final StringBuilder sb = new StringBuilder(32);
+
+    @Setup
+    public void setup() {
+        Random r = new Random(42);
+        for (int i = 0; i < LINES; i++) {
+            cents[i] = 100 + r.nextInt(500_000);
+            amounts[i] = cents[i] / 100.0;
+            decimals[i] = BigDecimal.valueOf(cents[i], 2);
+            qty[i] = 1 + r.nextInt(5);
+        }
+    }
+
+    @Benchmark
+    public long totalLong() {
+        long sum = 0;
+        for (int i = 0; i < LINES; i++) sum += Money.times(cents[i], qty[i]);
+        return sum + Money.percent(sum, 1000);
+    }
+
+    @Benchmark
+    public double totalDouble() {
+        double sum = 0;
+        for (int i = 0; i < LINES; i++) sum += amounts[i] * qty[i];
+        return sum + sum * 0.10;
+    }
+
+    @Benchmark
+    public BigDecimal totalBigDecimal() {
+        BigDecimal sum = BigDecimal.ZERO;
+        for (int i = 0; i < LINES; i++) sum = sum.add(decimals[i].multiply(BigDecimal.valueOf(qty[i])));
+        return sum.add(sum.multiply(new BigDecimal("0.10")).setScale(2, RoundingMode.HALF_UP));
+    }
+
+    @Benchmark
+    public int formatAppend() {
+        sb.setLength(0);
+        return Money.append(sb, cents[LINES / 2] * 1000).length();
+    }
+
+    @Benchmark
+    public String formatString() {
+        return String.format("LKR%,.2f", amounts[LINES / 2] * 1000);
+    }
+}
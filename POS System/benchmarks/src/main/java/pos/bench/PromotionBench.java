@@ -0,0 +1,63 @@
+package pos.bench;
+
+import org.openjdk.jmh.annotations.*;
+import pos.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/** Pricing carts against 5000 promotions over 20 000 items. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PromotionBench {
+    static final int ITEMS = 20_000, PROMOTIONS = 5000;
+
+    @Param({"10", "300"})
+    int lines;
+
+    PromotionEngine engine;
+    Item[] items;
+    Customer customer = new Customer(1, "Bench Customer", "", "G1");
+    Invoice cart;
+    int edit;
+
+    @Setup
+    public void setup() throws IOException {
+        Path file = Files.createTempFile("promotions", ".txt");
+        Files.write(file, DataGenerator.promotions(PROMOTIONS, ITEMS, 42));
+        engine = PromotionEngine.load(file.toFile());
+        Files.delete(file);
+        items = DataGenerator.items(ITEMS, 42).toArray(new Item[0]);
+        cart = basket();
+    }
+
+    private Invoice basket() {
+        Invoice inv = new Invoice(customer, "Bench", 1000);
+        inv.setPromotions(engine.newSession(customer, System.currentTimeMillis()));
+        Random r = new Random(7);
+        for (int i = 0; i < lines; i++) inv.addItem(items[r.nextInt(ITEMS)], 1 + r.nextInt(3));
+        return inv;
+    }
+
+    /** Scanning a whole basket with promotions re-evaluated per line. */
+    @Benchmark
+    public long buildBasket() {
+        return basket().totalCents();
+    }
+
+    /** One quantity change on a full basket and the new total. */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public long editLine() {
+        int row = edit++ % lines;
+        cart.setQuantity(row, 1 + (edit & 3));
+        return cart.totalCents();
+    }
+}
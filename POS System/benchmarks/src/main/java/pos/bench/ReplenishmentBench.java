@@ -0,0 +1,97 @@
+package pos.bench;
+
+import org.openjdk.jmh.annotations.*;
+import pos.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ReplenishmentEngine} over a large catalogue with 30 days of skewed sales history: the
+ * cost of a sale and of a stock change, keeping the draft orders current after a hundred sales,
+ * working them out afresh from the index, and for comparison finding the low-cover items by
+ * scanning every item.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class ReplenishmentBench {
+    @Param({"1000000"})
+    int items;
+
+    static final long DAY = 86_400_000L;
+
+    ReplenishmentEngine engine;
+    Map<Integer, Item> inventory;
+    long now;
+    double reorderDays = 7;
+    Random random = new Random(5);
+
+    @Setup(Level.Trial)
+    public void setup() {
+        inventory = new HashMap<>();
+        for (Item it : DataGenerator.items(items, 42)) { it.setStock(random.nextInt(200)); inventory.put(it.getId(), it); }
+        Map<Integer, List<SupplierOffer>> offers = new HashMap<>();
+        for (int i = 0; i < items; i++) {
+            int id = DataGenerator.FIRST_ITEM_ID + i;
+            List<SupplierOffer> of = new ArrayList<>();
+            for (int s = 0; s < 3; s++) if (random.nextInt(3) == 0) of.add(new SupplierOffer("S" + s, "K" + i, id, 100 + random.nextInt(10_000), 0, random.nextInt(100)));
+            offers.put(id, of);
+        }
+        engine = new ReplenishmentEngine(inventory, id -> offers.getOrDefault(id, List.of()));
+        now = 1_700_000_000_000L;
+        int sales = items * 3;
+        for (int i = 0; i < sales; i++) engine.recordSale(skewed(), 1 + random.nextInt(3), now - 30 * DAY + i * (30 * DAY / sales));
+    }
+
+    /** Item ids skewed so a few sell most. */
+    int skewed() {
+        double u = random.nextDouble();
+        return DataGenerator.FIRST_ITEM_ID + (int) (items * u * u * u);
+    }
+
+    @Benchmark
+    public void recordSale() {
+        engine.recordSale(skewed(), 1, now);
+    }
+
+    @Benchmark
+    public void stockChange() {
+        Item it = inventory.get(skewed());
+        it.setStock(random.nextInt(200));
+        engine.inventoryChanged(new InventoryEvent(InventoryEvent.Type.STOCK, it));
+    }
+
+    /** The usual case: a hundred sales since the last draft. */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int draftAfter100Sales() {
+        for (int i = 0; i < 100; i++) engine.recordSale(skewed(), 1, now);
+        return lines(engine.draftOrders(7, 21, now));
+    }
+
+    /** Other terms each time, so the draft is worked out again from the index. */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int draftFromIndex() {
+        reorderDays = reorderDays == 7 ? 7.001 : 7;
+        return lines(engine.draftOrders(reorderDays, 21, now));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public int fullScan() {
+        int n = 0;
+        for (int id : inventory.keySet()) if (engine.getDaysOfCover(id, now) < 7) n++;
+        return n;
+    }
+
+    static int lines(Map<String, ReplenishmentEngine.PurchaseOrder> orders) {
+        int n = 0;
+        for (ReplenishmentEngine.PurchaseOrder po : orders.values()) n += po.lines.size();
+        return n;
+    }
+}
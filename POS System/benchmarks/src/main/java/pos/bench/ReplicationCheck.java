@@ -0,0 +1,140 @@
+package pos.bench;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * Replication end to end with separate JVMs over loopback: one primary and {@code followers}
+ * followers, each a {@link ReplicationNode}. Every node sells and reserves/returns stock at
+ * random; halfway through one follower is killed without warning and started again over the
+ * same directory. At the end every follower must have caught up and match the primary exactly,
+ * and the primary's stock must equal the starting stock minus everything sold.
+ *
+ * <pre>java -cp target/benchmarks.jar pos.bench.ReplicationCheck followers=2 rounds=2000 items=200</pre>
+ * Exits 1 if any check fails.
+ */
+public final class ReplicationCheck {
+    private ReplicationCheck(){}
+
+    static final class Node implements Closeable {
+        final String name;
+        final List<String> command;
+        Process process;
+        BufferedReader out;
+        Writer in;
+
+        Node(String name, List<String> command){ this.name = name; this.command = command; }
+
+        String start() throws IOException {
+            process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+            out = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8));
+            in = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8);
+            return out.readLine();
+        }
+
+        String ask(String cmd) throws IOException {
+            in.write(cmd + "\n");
+            in.flush();
+            String r = out.readLine();
+            if (r == null) throw new EOFException(name + " died");
+            return r;
+        }
+
+        void kill(){ process.destroyForcibly(); try { process.waitFor(); } catch (InterruptedException ignored) {} }
+
+        @Override public void close() throws IOException {
+            if (process.isAlive()) { ask("quit"); try { process.waitFor(); } catch (InterruptedException ignored) {} }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opt = new HashMap<>();
+        for (String a : args) { int eq = a.indexOf('='); if (eq > 0) opt.put(a.substring(0, eq), a.substring(eq + 1)); }
+        int followers = Integer.parseInt(opt.getOrDefault("followers", "2"));
+        int rounds = Integer.parseInt(opt.getOrDefault("rounds", "2000"));
+        int items = Integer.parseInt(opt.getOrDefault("items", "200"));
+
+        File root = Files.createTempDirectory("pos-repl").toFile();
+        File primaryDir = new File(root, "primary");
+        DataGenerator.writeStore(primaryDir, items, 20, 0, 42);
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        String cp = System.getProperty("java.class.path");
+        String secret = Long.toHexString(new Random().nextLong());
+
+        Node primary = new Node("primary", List.of(java, "-cp", cp, ReplicationNode.class.getName(), "primary", primaryDir.getPath(), "0", secret));
+        int port = Integer.parseInt(primary.start().split(" ")[1]);
+        List<Node> nodes = new ArrayList<>(List.of(primary));
+        for (int f = 0; f < followers; f++) {
+            Node n = new Node("follower-" + f, List.of(java, "-cp", cp, ReplicationNode.class.getName(), "follower",
+                    new File(root, "follower-" + f).getPath(), "127.0.0.1:" + port, secret));
+            n.start();
+            nodes.add(n);
+        }
+        long startStock = stock(primary.ask("digest"));
+        for (Node n : nodes.subList(1, nodes.size())) n.ask("wait " + primary.ask("pos"));
+
+        Random r = new Random(7);
+        long sold = 0, sales = 0, rejected = 0;
+        long t0 = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            if (followers > 0 && i == rounds / 2) {
+                Node victim = nodes.get(nodes.size() - 1);
+                victim.kill();
+                System.out.println("killed " + victim.name + " at round " + i);
+                for (int k = 0; k < rounds / 10; k++) primary.ask("sell " + (DataGenerator.FIRST_ITEM_ID + r.nextInt(items)) + " 1");
+                sold += rounds / 10;
+                sales += rounds / 10;
+                victim.start();
+                System.out.println("restarted " + victim.name);
+            }
+            Node n = nodes.get(r.nextInt(nodes.size()));
+            int item = DataGenerator.FIRST_ITEM_ID + r.nextInt(items), qty = 1 + r.nextInt(3);
+            if (r.nextInt(4) == 0) {
+                if (n.ask("reserve " + item + " " + qty).equals("ok")) n.ask("return " + item + " " + qty);
+            } else {
+                String res = n.ask("sell " + item + " " + qty);
+                if (res.startsWith("ok")) { sold += qty; sales++; } else rejected++;
+            }
+        }
+        double secs = (System.nanoTime() - t0) / 1e9;
+
+        String head = primary.ask("pos");
+        boolean ok = true;
+        String expected = primary.ask("digest");
+        System.out.printf("%d rounds in %.1f s (%.0f/s): %d sales, %d units, %d rejected; primary at %s%n",
+                rounds, secs, rounds / secs, sales, sold, rejected, head);
+        System.out.println("primary     " + expected);
+        if (stock(expected) != startStock - sold) {
+            System.out.println("FAIL stock: expected " + (startStock - sold));
+            ok = false;
+        }
+        for (Node n : nodes.subList(1, nodes.size())) {
+            String w = n.ask("wait " + head);
+            String d = n.ask("digest");
+            boolean same = w.equals("ok") && sameCatalogue(d, expected);
+            System.out.printf("%-11s %s %s%n", n.name, d, same ? "ok" : "MISMATCH");
+            ok &= same;
+        }
+        for (Node n : nodes) n.close();
+        DataGenerator.deleteStore(new File(root, "primary"));
+        for (int f = 0; f < followers; f++) DataGenerator.deleteStore(new File(root, "follower-" + f));
+        root.delete();
+        System.out.println(ok ? "replicas consistent" : "replicas INCONSISTENT");
+        System.exit(ok ? 0 : 1);
+    }
+
+    private static long stock(String digest){ return Long.parseLong(field(digest, "stock")); }
+
+    /** Stock, items, customers and the item hash must agree; sales only count what each node saw. */
+    private static boolean sameCatalogue(String a, String b) {
+        for (String k : List.of("stock", "items", "customers", "hash")) if (!field(a, k).equals(field(b, k))) return false;
+        return true;
+    }
+
+    private static String field(String digest, String key) {
+        for (String kv : digest.split(" ")) if (kv.startsWith(key + "=")) return kv.substring(key.length() + 1);
+        return "";
+    }
+}
@@ -0,0 +1,83 @@
+package pos.bench;
+
+import pos.*;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * A headless till for replication tests: a primary or a follower driven by one command per line
+ * on stdin, answering one line each on stdout.
+ *
+ * <pre>
+ * java -cp target/benchmarks.jar pos.bench.ReplicationNode primary  &lt;dir&gt; &lt;port&gt; &lt;secret&gt;
+ * java -cp target/benchmarks.jar pos.bench.ReplicationNode follower &lt;dir&gt; &lt;host:port&gt; &lt;secret&gt;
+ *
+ * sell id qty [id qty ...]   reserve every line and confirm   -> ok saleId | no
+ * reserve id qty / return id qty                              -> ok | no
+ * pos                        journal position (primary) or position applied (follower)
+ * wait seq                   until the follower has applied seq  -> ok | timeout
+ * digest                     stock total, item/customer/sale counts and a hash of every item
+ * quit
+ * </pre>
+ */
+public final class ReplicationNode {
+    private ReplicationNode(){}
+
+    public static void main(String[] args) throws Exception {
+        boolean primary = args[0].equals("primary");
+        SimpleStore store = new SimpleStore(new File(args[1]));
+        CheckoutService checkout = new CheckoutService(store, 0);
+        ReplicationServer server = primary ? new ReplicationServer(store, InetAddress.getLoopbackAddress(), Integer.parseInt(args[2]), args[3]) : null;
+        Replica replica = primary ? null : Replica.follow(store, args[2], args[3]);
+        PrintStream out = new PrintStream(new FileOutputStream(FileDescriptor.out), true, StandardCharsets.UTF_8);
+        out.println("ready " + (primary ? server.getPort() : 0));
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = in.readLine()) != null) {
+            String[] c = line.trim().split("\\s+");
+            try {
+                switch (c[0]) {
+                    case "sell" -> {
+                        Invoice inv = checkout.start(store.getCustomers().values().iterator().next(), "Lane");
+                        for (int i = 1; i + 1 < c.length; i += 2) checkout.addItem(inv, Integer.parseInt(c[i]), Integer.parseInt(c[i + 1]));
+                        checkout.confirm(inv);
+                        out.println("ok " + inv.getId());
+                    }
+                    case "reserve" -> out.println(store.tryReserve(Integer.parseInt(c[1]), Integer.parseInt(c[2])) ? "ok" : "no");
+                    case "return" -> {
+                        store.adjustStock(store.getInventory().get(Integer.parseInt(c[1])), Integer.parseInt(c[2]));
+                        out.println("ok");
+                    }
+                    case "pos" -> out.println(primary ? server.getPosition() : replica.getPosition());
+                    case "wait" -> out.println(primary || replica.awaitPosition(Long.parseLong(c[1]), 30_000) ? "ok" : "timeout");
+                    case "digest" -> out.println(digest(store));
+                    case "quit" -> {
+                        if (replica != null) replica.close();
+                        if (server != null) server.close();
+                        store.close();
+                        out.println("bye");
+                        return;
+                    }
+                    default -> out.println("err unknown " + c[0]);
+                }
+            } catch (IllegalArgumentException e) {
+                out.println("no " + e.getMessage());
+            } catch (RuntimeException e) {
+                out.println("err " + e);
+            }
+        }
+    }
+
+    static String digest(SimpleStore store) {
+        long stock = 0, hash = 1;
+        for (Item it : store.getInventory().values()) {
+            stock += it.getStock();
+            hash = hash * 31 + it.toCsv().hashCode();
+        }
+        return "stock=" + stock + " items=" + store.getInventory().size() + " customers=" + store.getCustomers().size()
+                + " sales=" + store.getSalesHistory().size() + " hash=" + Long.toHexString(hash);
+    }
+}
@@ -0,0 +1,64 @@
+package pos.bench;
+
+import org.openjdk.jmh.annotations.*;
+import pos.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Checkout throughput against a live store: reserve stock for every line, then
+ * {@link SimpleStore#logSale} (one journal record, waits until it is durable).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class SaleBench {
+    @Param({"10", "100"})
+    int lines;
+
+    static final int ITEMS = 10_000;
+
+    File dir;
+    SimpleStore store;
+    Item[] items;
+    Customer[] customers;
+
+    @Setup(Level.Trial)
+    public void open() throws IOException {
+        dir = Files.createTempDirectory("pos-bench").toFile();
+        DataGenerator.writeStore(dir, ITEMS, 1000, 0, 42);
+        store = new SimpleStore(dir);
+        items = store.getInventory().values().toArray(new Item[0]);
+        customers = store.getCustomers().values().toArray(new Customer[0]);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        store.close();
+        DataGenerator.deleteStore(dir);
+    }
+
+    @State(Scope.Thread)
+    public static class Lane {
+        final Random random = new Random(7);
+    }
+
+    @Benchmark
+    public Invoice checkout(Lane lane) {
+        Random r = lane.random;
+        Invoice inv = new Invoice(customers[r.nextInt(customers.length)], "Bench", 1000);
+        for (int i = 0; i < lines; i++) {
+            Item it = items[r.nextInt(items.length)];
+            if (store.tryReserve(it.getId(), 1)) inv.addItem(it, 1);
+        }
+        store.logSale(inv);
+        return inv;
+    }
+}
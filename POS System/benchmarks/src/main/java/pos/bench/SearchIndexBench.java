@@ -0,0 +1,50 @@
+package pos.bench;
+
+import org.openjdk.jmh.annotations.*;
+import pos.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Type-ahead queries against {@link ItemSearchIndex} over a generated catalogue. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class SearchIndexBench {
+    @Param({"10000", "100000"})
+    int items;
+
+    File dir;
+    SimpleStore store;
+    ItemSearchIndex index;
+
+    @Setup(Level.Trial)
+    public void open() throws IOException {
+        dir = Files.createTempDirectory("pos-bench").toFile();
+        DataGenerator.writeStore(dir, items, 3, 0, 42);
+        store = new SimpleStore(dir);
+        index = new ItemSearchIndex(store);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        store.close();
+        DataGenerator.deleteStore(dir);
+    }
+
+    @Benchmark
+    public List<Item> prefix(){ return index.search("sam", 50); }
+
+    @Benchmark
+    public List<Item> twoTokens(){ return index.search("dell lap", 50); }
+
+    /** Inside a word, served by the trigram postings. */
+    @Benchmark
+    public List<Item> infix(){ return index.search("aptop", 50); }
+}
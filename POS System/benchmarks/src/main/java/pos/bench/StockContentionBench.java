@@ -0,0 +1,70 @@
+package pos.bench;
+
+import org.openjdk.jmh.annotations.*;
+import pos.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Eight lanes reserving and restocking a small set of hot items. Besides the throughput it checks
+ * that stock is conserved: at the end, stock on hand plus units taken must equal what was there
+ * plus units put back, or the trial fails.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class StockContentionBench {
+    static final int HOT = 16, STOCK = 1000;
+
+    File dir;
+    SimpleStore store;
+    Item[] hot;
+    long initial;
+    final AtomicLong taken = new AtomicLong(), returned = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void open() throws IOException {
+        dir = Files.createTempDirectory("pos-bench").toFile();
+        DataGenerator.writeStore(dir, HOT, 3, 0, 42);
+        store = new SimpleStore(dir);
+        hot = store.getInventory().values().toArray(new Item[0]);
+        for (Item it : hot) store.adjustStock(it, STOCK - it.getStock());
+        for (Item it : hot) initial += it.getStock();
+    }
+
+    @TearDown(Level.Trial)
+    public void verify() {
+        long onHand = 0;
+        for (Item it : hot) onHand += it.getStock();
+        store.close();
+        DataGenerator.deleteStore(dir);
+        if (onHand + taken.get() != initial + returned.get()) {
+            throw new IllegalStateException("stock not conserved: on hand " + onHand + ", taken " + taken
+                    + ", returned " + returned + ", initial " + initial);
+        }
+    }
+
+    @Benchmark
+    public boolean reserveOrRestock() {
+        ThreadLocalRandom r = ThreadLocalRandom.current();
+        Item it = hot[r.nextInt(HOT)];
+        int qty = 1 + r.nextInt(3);
+        if (r.nextBoolean()) {
+            store.adjustStock(it, qty);
+            returned.addAndGet(qty);
+            return true;
+        }
+        if (!store.tryReserve(it.getId(), qty)) return false;
+        taken.addAndGet(qty);
+        return true;
+    }
+}
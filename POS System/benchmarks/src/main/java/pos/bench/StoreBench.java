@@ -0,0 +1,67 @@
+package pos.bench;
+
+import org.openjdk.jmh.annotations.*;
+import pos.Item;
+import pos.SimpleStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/** Opening and checkpointing a store of {@code items} items kept in its CSV files. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class StoreBench {
+    @Param({"1000", "10000", "100000", "1000000"})
+    int items;
+
+    File dir;
+    SimpleStore store;
+
+    @Setup(Level.Trial)
+    public void generate() throws IOException {
+        dir = Files.createTempDirectory("pos-bench").toFile();
+        DataGenerator.writeStore(dir, items, Math.max(3, items / 10), 0, 42);
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() {
+        DataGenerator.deleteStore(dir);
+    }
+
+    @TearDown(Level.Invocation)
+    public void close() {
+        if (store != null) store.close();
+        store = null;
+    }
+
+    /** Open: every item comes from items.csv. */
+    @Benchmark
+    public SimpleStore loadFromCsv() {
+        return store = new SimpleStore(dir);
+    }
+
+    /** Journal one change and checkpoint it: items.csv and customers.csv rewritten. */
+    @Benchmark
+    public void checkpoint(Opened o) {
+        Item it = o.store.getInventory().get(DataGenerator.FIRST_ITEM_ID);
+        o.store.setItemPrice(it.getId(), it.getPriceCents() + 1);
+        o.store.saveAll();
+    }
+
+    @State(Scope.Thread)
+    public static class Opened {
+        SimpleStore store;
+
+        @Setup(Level.Trial)
+        public void open(StoreBench b){ store = new SimpleStore(b.dir); }
+
+        @TearDown(Level.Trial)
+        public void close(){ store.close(); }
+    }
+}
@@ -0,0 +1,109 @@
+package pos.bench;
+
+import pos.ThumbnailCache;
+
+import javax.imageio.ImageIO;
+import javax.swing.ImageIcon;
+import javax.swing.SwingUtilities;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Building a catalogue grid's pictures the old way ({@code new ImageIcon(path)} then
+ * {@code getScaledInstance(100, 100, SCALE_SMOOTH)} for every product, on the calling thread)
+ * against {@link ThumbnailCache}: the first screenful from a cold cache, the same from
+ * thumbnails saved on disk by an earlier run, and every product, with the heap held afterwards.
+ *
+ * <pre>java -cp target/benchmarks.jar pos.bench.ThumbnailCheck images=300 px=1600 visible=24</pre>
+ */
+public final class ThumbnailCheck {
+    private ThumbnailCheck(){}
+
+    public static void main(String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        Map<String, String> opt = new HashMap<>();
+        for (String a : args) { int eq = a.indexOf('='); if (eq > 0) opt.put(a.substring(0, eq), a.substring(eq + 1)); }
+        int count = Integer.parseInt(opt.getOrDefault("images", "300"));
+        int px = Integer.parseInt(opt.getOrDefault("px", "1600"));
+        int visible = Integer.parseInt(opt.getOrDefault("visible", "24"));
+
+        File root = Files.createTempDirectory("pos-thumbs").toFile();
+        File images = new File(root, "images");
+        images.mkdirs();
+        List<File> files = new ArrayList<>();
+        Random r = new Random(3);
+        for (int i = 0; i < count; i++) files.add(photo(new File(images, "p" + i + ".png"), px, r));
+        System.out.printf("%d images of %dx%d, %.1f MB on disk%n", count, px, px, folderBytes(images) / 1e6);
+
+        // The cache first: the old way leaves every full-size picture in the toolkit's image cache
+        File thumbs = new File(root, "thumbs");
+        ThumbnailCache cold = new ThumbnailCache(thumbs, 100, 32L << 20);
+        report("after, cold:   first " + visible + " on screen", cold, files.subList(0, visible));
+        report("after, cold:   all " + count, cold, files);
+        System.out.printf("%-32s heap %6.1f MB, thumbnails in memory %.1f MB%n", "", heapMb(), cold.getMemoryBytes() / 1e6);
+        cold.shutdown();
+        ThumbnailCache warm = new ThumbnailCache(thumbs, 100, 32L << 20);
+        report("after, disk:   first " + visible + " on screen", warm, files.subList(0, visible));
+        report("after, memory: first " + visible + " again", warm, files.subList(0, visible));
+        warm.shutdown();
+
+        long t = System.nanoTime();
+        List<ImageIcon> legacy = new ArrayList<>();
+        for (File f : files) {
+            ImageIcon icon = new ImageIcon(f.getPath());
+            legacy.add(new ImageIcon(icon.getImage().getScaledInstance(100, 100, Image.SCALE_SMOOTH)));
+        }
+        double took = (System.nanoTime() - t) / 1e6;
+        System.out.printf("%-32s %8.0f ms, event thread busy %8.0f ms, heap %6.1f MB%n", "before: all " + count, took, took, heapMb());
+
+        for (File f : Objects.requireNonNull(thumbs.listFiles())) f.delete();
+        for (File f : files) f.delete();
+        thumbs.delete(); images.delete(); root.delete();
+    }
+
+    /** Wall time until every picture has arrived, and how long the event thread spent asking. */
+    private static void report(String what, ThumbnailCache cache, List<File> files) throws Exception {
+        CountDownLatch done = new CountDownLatch(files.size());
+        long[] edt = new long[1];
+        long t = System.nanoTime();
+        SwingUtilities.invokeAndWait(() -> {
+            long s = System.nanoTime();
+            for (File f : files) cache.load(f, img -> done.countDown());
+            edt[0] = System.nanoTime() - s;
+        });
+        done.await();
+        System.out.printf("%-32s %8.0f ms, event thread busy %8.2f ms%n", what, (System.nanoTime() - t) / 1e6, edt[0] / 1e6);
+    }
+
+    /** A noisy gradient, which compresses about as badly as a product photo. */
+    private static File photo(File f, int px, Random r) throws Exception {
+        BufferedImage img = new BufferedImage(px, px, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = img.createGraphics();
+        g.setPaint(new GradientPaint(0, 0, new Color(r.nextInt()), px, px, new Color(r.nextInt())));
+        g.fillRect(0, 0, px, px);
+        for (int i = 0; i < 400; i++) {
+            g.setColor(new Color(r.nextInt(), true));
+            g.fillOval(r.nextInt(px), r.nextInt(px), 20 + r.nextInt(px / 4), 20 + r.nextInt(px / 4));
+        }
+        g.dispose();
+        ImageIO.write(img, "png", f);
+        return f;
+    }
+
+    private static long folderBytes(File dir) {
+        long n = 0;
+        for (File f : Objects.requireNonNull(dir.listFiles())) n += f.length();
+        return n;
+    }
+
+    private static double heapMb() {
+        for (int i = 0; i < 3; i++) System.gc();
+        Runtime rt = Runtime.getRuntime();
+        return (rt.totalMemory() - rt.freeMemory()) / 1e6;
+    }
+}
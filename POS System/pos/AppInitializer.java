@@ -3,6 +3,23 @@ package pos;
 import javax.swing.*;
 
 public class AppInitializer {
+    /** Tax rate of every sale, basis points. */
+    static final long TAX_BASIS_POINTS = 0;
+
+    /**
+     * System properties:
+     * {@code -Dpos.http.port=8080} also serves the store to price checkers and kiosks ({@link StoreApiServer});
+     * {@code -Dpos.http.bind=127.0.0.1} the address it listens on; set the till's store-network address for devices to reach it;
+     * {@code -Dpos.http.token=...} the token kiosks send to open and fill carts; without it the API only looks items up;
+     * {@code -Dpos.replication.port=7070} makes this till the primary other tills follow ({@link ReplicationServer});
+     * {@code -Dpos.replication.bind=127.0.0.1} the address it listens on; set the till's store-network address for other tills to reach it;
+     * {@code -Dpos.replication.primary=host:7070} makes it a follower of that primary ({@link Replica});
+     * {@code -Dpos.replication.secret=...} required with either: the shared secret the primary and its followers all know;
+     * {@code -Dpos.hold.minutes=15} how long an untouched cart holds its stock ({@link ReservationLedger});
+     * {@code -Dpos.lane=1} names this till's data/lanes file, where its open cart survives a crash ({@link CartRecoveryLog});
+     * {@code -Dpos.metrics.seconds=60} how often data/metrics.txt is rewritten, 0 for never ({@link Metrics});
+     * {@code -Dpos.edt.stallMillis=250} how long the screen may freeze before data/stalls.log records why, 0 for never ({@link EdtWatchdog}).
+     */
     public static void main(String[] args) {
         try {
             for (UIManager.LookAndFeelInfo info : UIManager.getInstalledLookAndFeels()) {
@@ -12,6 +29,58 @@ public class AppInitializer {
                 }
             }
         } catch (Exception ignored) {}
-        SwingUtilities.invokeLater(() -> new POSSystemGUI(new SimpleStore()).setVisible(true));
+        SimpleStore store;
+        try {
+            store = new SimpleStore();
+        } catch (IllegalStateException e) {
+            JOptionPane.showMessageDialog(null, e.getMessage(), "POS not started", JOptionPane.ERROR_MESSAGE);
+            System.exit(1);
+            return;
+        }
+        CheckoutService checkout = new CheckoutService(store, TAX_BASIS_POINTS);
+        java.util.List<Runnable> onShutdown = new java.util.ArrayList<>();
+        Metrics.register();
+        long metricsSeconds = Long.getLong("pos.metrics.seconds", 60);
+        if (metricsSeconds > 0) {
+            Metrics.startDump(new java.io.File("data", "metrics.txt"), metricsSeconds);
+            onShutdown.add(Metrics::stopDump);
+        }
+        try {
+            String port = System.getProperty("pos.http.port");
+            if (port != null) {
+                StoreApiServer api = new StoreApiServer(checkout, java.net.InetAddress.getByName(System.getProperty("pos.http.bind", "127.0.0.1")),
+                        Integer.parseInt(port), System.getProperty("pos.http.token"));
+                api.start();
+                onShutdown.add(() -> api.stop(2));
+            }
+            String replicationPort = System.getProperty("pos.replication.port");
+            if (replicationPort != null) {
+                java.net.InetAddress bind = java.net.InetAddress.getByName(System.getProperty("pos.replication.bind", "127.0.0.1"));
+                ReplicationServer primary = new ReplicationServer(store, bind, Integer.parseInt(replicationPort),
+                        System.getProperty("pos.replication.secret"));
+                onShutdown.add(primary::close);
+            }
+            String primary = System.getProperty("pos.replication.primary");
+            if (primary != null) {
+                Replica replica = Replica.follow(store, primary, System.getProperty("pos.replication.secret"));
+                onShutdown.add(replica::close);
+            }
+        } catch (Exception e) {
+            System.err.println("Not started: " + e);
+        }
+        long stallMillis = Long.getLong("pos.edt.stallMillis", 250);
+        if (stallMillis > 0) EdtWatchdog.install(new java.io.File("data", "stalls.log"), stallMillis);
+        CartRecoveryLog lane = null;
+        try {
+            lane = new CartRecoveryLog(new java.io.File("data/lanes", System.getProperty("pos.lane", "1") + ".cart"));
+        } catch (java.io.IOException e) {
+            System.err.println("No cart recovery: " + e);
+        }
+        CartRecoveryLog recovery = lane;
+        SwingUtilities.invokeLater(() -> {
+            POSSystemGUI gui = new POSSystemGUI(checkout, recovery);
+            onShutdown.forEach(gui::onShutdown);
+            gui.setVisible(true);
+        });
     }
 }
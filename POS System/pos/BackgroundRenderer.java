@@ -0,0 +1,147 @@
+package pos;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.*;
+
+/**
+ * The till's background: a diagonal gradient whose hue drifts through a full cycle every
+ * {@link #TICKS} ticks of {@link #TICK_MILLIS} ms, under a faint grid.
+ *
+ * The colours are dark enough that most ticks do not change a single pixel value, so ticks are
+ * grouped into frames of identical colours up front and only a new frame is worth a repaint.
+ * Each frame is rendered once, off the event thread, into an opaque image compatible with the
+ * screen (Java2D keeps such an image in video memory once it is drawn repeatedly; a
+ * VolatileImage would have to be rendered on the event thread and checked for loss). Painting is
+ * then a single blit of the dirty region. {@link Mode#STATIC} renders one frame and never ticks.
+ *
+ * All methods except the background rendering run on the event thread.
+ */
+public class BackgroundRenderer {
+    public enum Mode {
+        ANIMATED, STATIC;
+
+        /** {@code -Dpos.background=static|animated}, animated when unset or unknown. */
+        public static Mode fromProperty() {
+            return "static".equalsIgnoreCase(System.getProperty("pos.background")) ? STATIC : ANIMATED;
+        }
+    }
+
+    public static final int TICK_MILLIS = 100;
+    static final int TICKS = 333;            // 0.003 of the hue circle per tick
+    static final int GRID = 60;
+    private static final Color GRID_COLOR = new Color(255, 255, 255, 10);
+
+    private final Mode mode;
+    private final Color[] from = new Color[TICKS], to = new Color[TICKS];
+    private final int[] frameAt = new int[TICKS];  // tick -> first tick of its run of identical colours
+    private final ExecutorService worker;          // null when static
+
+    private int tick;
+    private int shown;                  // frame on screen, as its first tick
+    private BufferedImage image;        // rendering of shown at the panel's size
+    private BufferedImage spare;        // the previous image, reused for the next frame
+    private Future<BufferedImage> next;
+    private int nextFrame = -1;
+    private GraphicsConfiguration gc;
+    private int frames;                 // distinct frames in a cycle
+
+    public BackgroundRenderer(Mode mode) {
+        this.mode = mode;
+        for (int t = 0; t < TICKS; t++) {
+            float hue = t / (float) TICKS;
+            from[t] = Color.getHSBColor(hue, 0.4f, 0.15f);
+            to[t] = Color.getHSBColor((hue + 0.2f) % 1.0f, 0.3f, 0.2f);
+            boolean same = t > 0 && from[t].equals(from[t - 1]) && to[t].equals(to[t - 1]);
+            frameAt[t] = same ? frameAt[t - 1] : t;
+            if (!same) frames++;
+        }
+        worker = mode == Mode.STATIC ? null : Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "pos-background");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+    }
+
+    public Mode getMode(){ return mode; }
+
+    /** Distinct pictures in one hue cycle; the rest of the ticks change nothing. */
+    public int getFrameCount(){ return frames; }
+
+    /**
+     * Moves the animation on by one tick. Returns true when the picture changed and the
+     * component should be repainted; a frame that is not rendered yet is shown on a later tick.
+     */
+    public boolean advance() {
+        if (mode == Mode.STATIC || image == null) return false;
+        tick = (tick + 1) % TICKS;
+        int f = frameAt[tick];
+        if (f == shown) return false;
+        if (next == null || nextFrame != f) { prefetch(f); return false; }
+        if (!next.isDone()) return false;
+        BufferedImage img;
+        try { img = next.get(); } catch (Exception e) { img = null; }
+        next = null;
+        if (img == null || img.getWidth() != image.getWidth() || img.getHeight() != image.getHeight()) {
+            prefetch(f);
+            return false;
+        }
+        spare = image;
+        image = img;
+        shown = f;
+        prefetch(frameAfter(f));
+        return true;
+    }
+
+    /** Paints the current frame over {@code c}'s bounds, rendering it first after a resize. */
+    public void paint(Graphics g, Component c) {
+        int w = Math.max(1, c.getWidth()), h = Math.max(1, c.getHeight());
+        if (image == null || image.getWidth() != w || image.getHeight() != h) {
+            gc = c.getGraphicsConfiguration();
+            spare = null;
+            image = render(shown, w, h, null);
+            if (mode == Mode.ANIMATED) prefetch(frameAfter(shown));
+        }
+        g.drawImage(image, 0, 0, null);
+    }
+
+    public void close() {
+        if (worker != null) worker.shutdownNow();
+    }
+
+    private void prefetch(int frame) {
+        if (next != null) next.cancel(false);
+        BufferedImage reuse = spare;
+        spare = null;
+        int w = image.getWidth(), h = image.getHeight();
+        nextFrame = frame;
+        try {
+            next = worker.submit(() -> render(frame, w, h, reuse));
+        } catch (RejectedExecutionException e) {
+            next = null;
+        }
+    }
+
+    private int frameAfter(int frame) {
+        int t = frame;
+        do t = (t + 1) % TICKS; while (frameAt[t] == frame);
+        return frameAt[t];
+    }
+
+    /** Draws frame {@code t} at w x h, into {@code reuse} when it has that size. */
+    BufferedImage render(int t, int w, int h, BufferedImage reuse) {
+        BufferedImage img = reuse != null && reuse.getWidth() == w && reuse.getHeight() == h ? reuse
+                : gc != null ? gc.createCompatibleImage(w, h, Transparency.OPAQUE)
+                : new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = img.createGraphics();
+        try {
+            g.setPaint(new GradientPaint(0, 0, from[t], w, h, to[t]));
+            g.fillRect(0, 0, w, h);
+            g.setColor(GRID_COLOR);   // straight one-pixel lines need no antialiasing
+            for (int x = 0; x < w; x += GRID) g.drawLine(x, 0, x, h);
+            for (int y = 0; y < h; y += GRID) g.drawLine(0, y, w, y);
+        } finally { g.dispose(); }
+        return img;
+    }
+}
@@ -0,0 +1,46 @@
+package pos;
+
+import java.io.File;
+
+/**
+ * Loads a supplier's item list or a customer export into the store from the command line, with
+ * no till running on the same data folder (the till would overwrite it at its next checkpoint; the
+ * store's folder lock refuses to open it while one is).
+ *
+ * <pre>java -cp . pos.BulkImport data items=new-items.csv customers=new-customers.csv feeds</pre>
+ *
+ * Both files use the layout of the store's own items.csv and customers.csv; rows that cannot be
+ * read are counted and skipped. {@code feeds} then reads every supplier's feed ({@link SupplierFeeds}).
+ */
+public final class BulkImport {
+    private BulkImport(){}
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("usage: pos.BulkImport <data folder> [items=file.csv] [customers=file.csv] [feeds]");
+            System.exit(2);
+        }
+        SimpleStore store;
+        try {
+            store = new SimpleStore(new File(args[0]));
+        } catch (IllegalStateException e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+            return;
+        }
+        try {
+            for (int i = 1; i < args.length; i++) {
+                int eq = args[i].indexOf('=');
+                String what = eq < 0 ? args[i] : args[i].substring(0, eq);
+                File file = new File(args[i].substring(eq + 1));
+                Object r = switch (what) {
+                    case "items" -> store.importItems(file);
+                    case "customers" -> store.importCustomers(file);
+                    case "feeds" -> store.ingestSupplierFeeds();
+                    default -> throw new IllegalArgumentException("items=..., customers=... or feeds, not " + args[i]);
+                };
+                System.out.println(what + ": " + r);
+            }
+        } finally { store.close(); }
+    }
+}
@@ -0,0 +1,255 @@
+package pos;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.CRC32C;
+
+/**
+ * The cart a lane has open, kept so it survives the till going down. {@link CheckoutService}
+ * appends every edit of the cart to a small memory-mapped ring file; the writes land in the page
+ * cache, which outlives the JVM, so an edit costs a few hundred nanoseconds and no fsync (a power
+ * cut may lose the last edits). At the next start {@link #read} replays the edits of the
+ * unfinished cart, and the till restores it ({@link CheckoutService#restore}) or drops it.
+ * Stock is only held while a cart is open (see {@link ReservationLedger}), so dropping it has
+ * nothing to undo.
+ *
+ * Layout: a header (magic, then the offset of the cart's first record, -1 with no cart open)
+ * and a ring of records {@code length, crc32c, epoch, seq, payload}, wrapping at the end of the
+ * file. A cart's records start at a {@code B} record with seq 0 and follow each other with
+ * rising seq; the first record that does not (stale, torn or from an older cart) ends it.
+ * Before a cart's records fill half the ring it is written out afresh as {@code B} plus its
+ * lines under a new epoch, in the free half, and the header is switched over with one write.
+ *
+ * Payloads are CSV like the journal's: {@code B,showroom,customer} starts a cart; {@code A,item,qty,unit}
+ * adds a line; {@code Q,row,qty}, {@code X,row}, {@code Z} change, remove and clear lines;
+ * {@code P,basisPoints} and {@code M,cents} set the discount; {@code C,millis} marks a confirm
+ * under way. One lane per file; methods are synchronized.
+ */
+public class CartRecoveryLog implements AutoCloseable {
+    static final int MAGIC = 0x504F5343;  // "POSC"
+    static final int HEADER = 16;
+    static final int RECORD_HEADER = 20;  // length, crc, epoch, seq
+    static final int DEFAULT_CAPACITY = 1 << 20;
+
+    /** An unfinished cart as its edits left it. */
+    public static final class Saved {
+        private final Customer customer;
+        private final String showroom;
+        private final List<Line> lines = new ArrayList<>();
+        private long discountBasisPoints, discountCents;
+        private long confirmingSince;   // 0 unless a confirm was under way
+
+        Saved(Customer customer, String showroom){ this.customer = customer; this.showroom = showroom; }
+        public Customer getCustomer(){ return customer; }
+        public String getShowroom(){ return showroom; }
+        public List<Line> getLines(){ return Collections.unmodifiableList(lines); }
+        public long getDiscountBasisPoints(){ return discountBasisPoints; }
+        public long getDiscountCents(){ return discountCents; }
+        /** When the till started confirming the cart, or 0; the sale may then have gone through. */
+        public long getConfirmingSince(){ return confirmingSince; }
+    }
+
+    /** A line of a saved cart. */
+    public static final class Line {
+        public final int itemId;
+        private int quantity;
+        public final long unitCents;
+        Line(int itemId, int quantity, long unitCents){ this.itemId = itemId; this.quantity = quantity; this.unitCents = unitCents; }
+        public int getQuantity(){ return quantity; }
+    }
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final MappedByteBuffer map;
+    private final int end;             // file size; records live in [HEADER, end)
+    private final CRC32C crc = new CRC32C();
+
+    private Saved cart;                // what the records since the header's offset add up to; null with no cart
+    private long epoch;
+    private int seq;
+    private int head = HEADER;         // where the next record goes
+    private int used;                  // bytes of the ring the cart's records take, padding included
+
+    public CartRecoveryLog(File file) throws IOException { this(file, DEFAULT_CAPACITY); }
+
+    CartRecoveryLog(File file, int capacity) throws IOException {
+        this.file = file;
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null) dir.mkdirs();
+        raf = new RandomAccessFile(file, "rw");
+        if (raf.length() < HEADER + capacity) raf.setLength(HEADER + capacity);
+        end = (int) Math.min(raf.length(), Integer.MAX_VALUE);
+        map = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, end);
+        if (map.getInt(0) != MAGIC) {
+            map.putLong(8, -1);
+            map.putInt(0, MAGIC);
+        }
+        cart = scan();   // also moves head past the records in use
+    }
+
+    public File getFile(){ return file; }
+
+    /** The unfinished cart left in the file, or null if there is none. */
+    public synchronized Saved read() {
+        return scan();
+    }
+
+    // ---- Edits, as CheckoutService makes them ----
+
+    public synchronized void begin(Customer customer, String showroom) {
+        cart = new Saved(customer, showroom);
+        rewrite();
+    }
+    public synchronized void added(int itemId, int qty, long unitCents) {
+        append("A," + itemId + "," + qty + "," + unitCents);
+    }
+    public synchronized void quantity(int row, int qty){ append("Q," + row + "," + qty); }
+    public synchronized void removed(int row){ append("X," + row); }
+    public synchronized void cleared(){ append("Z"); }
+    public synchronized void discount(long basisPoints, long cents) {
+        append(basisPoints > 0 ? "P," + basisPoints : "M," + cents);
+    }
+    /** The sale is about to be logged; if the till goes down now, it may or may not have been. */
+    public synchronized void confirming(){ append("C," + System.currentTimeMillis()); }
+
+    /** The cart was sold or dropped; nothing is left to recover. */
+    public synchronized void finished() {
+        cart = null;
+        map.putLong(8, -1);
+    }
+
+    @Override public synchronized void close() throws IOException {
+        map.force();
+        raf.close();
+    }
+
+    // ---- Ring ----
+
+    private void append(String op) {
+        if (cart == null) return;             // no cart, or it outgrew the ring
+        apply(cart, op);
+        byte[] payload = op.getBytes(StandardCharsets.UTF_8);
+        int size = RECORD_HEADER + payload.length;
+        if (used + size + RECORD_HEADER > (end - HEADER) / 2) rewrite();  // the cart as it now is, in the free half
+        else write(payload);
+    }
+
+    /** Writes the cart out as a new chain and points the header at it. */
+    private void rewrite() {
+        List<byte[]> ops = new ArrayList<>(cart.lines.size() + 2);
+        ops.add(("B," + Item.escape(cart.showroom) + "," + Item.escape(cart.customer.toCsv())).getBytes(StandardCharsets.UTF_8));
+        for (Line l : cart.lines) ops.add(("A," + l.itemId + "," + l.quantity + "," + l.unitCents).getBytes(StandardCharsets.UTF_8));
+        if (cart.discountBasisPoints > 0 || cart.discountCents > 0)
+            ops.add((cart.discountBasisPoints > 0 ? "P," + cart.discountBasisPoints : "M," + cart.discountCents).getBytes(StandardCharsets.UTF_8));
+        if (cart.confirmingSince > 0) ops.add(("C," + cart.confirmingSince).getBytes(StandardCharsets.UTF_8));
+        long bytes = 0;
+        for (byte[] p : ops) bytes += 2L * (RECORD_HEADER + p.length);   // room for wrap padding too
+        if (bytes > (end - HEADER) / 2) {
+            // Too big to keep: better no cart than a wrong one
+            cart = null;
+            map.putLong(8, -1);
+            return;
+        }
+        epoch = ThreadLocalRandom.current().nextLong() | 1;
+        seq = 0;
+        used = 0;
+        if (end - head < RECORD_HEADER + ops.get(0).length) wrap();
+        int start = head;
+        used = 0;
+        for (byte[] p : ops) write(p);
+        map.putLong(8, start);
+    }
+
+    private void write(byte[] payload) {
+        int size = RECORD_HEADER + payload.length;
+        if (end - head < size) wrap();
+        map.putLong(head + 8, epoch);
+        map.putInt(head + 16, seq);
+        map.put(head + RECORD_HEADER, payload);
+        map.putInt(head + 4, checksum(head, size));
+        map.putInt(head, size);
+        head += size;
+        used += size;
+        seq++;
+    }
+
+    private void wrap() {
+        if (end - head >= 4) map.putInt(head, 0);
+        used += end - head;
+        head = HEADER;
+    }
+
+    /** Replays the chain the header points at; leaves head after its last record. */
+    private Saved scan() {
+        long start = map.getLong(8);
+        if (start < HEADER || start >= end) return null;
+        int pos = (int) start, read = 0;
+        long ep = 0;
+        int expect = 0;
+        Saved out = null;
+        while (read < end - HEADER) {
+            if (end - pos < RECORD_HEADER || map.getInt(pos) == 0) {
+                read += end - pos;
+                pos = HEADER;
+                continue;
+            }
+            int size = map.getInt(pos);
+            if (size < RECORD_HEADER || size > end - pos) break;
+            long e = map.getLong(pos + 8);
+            int s = map.getInt(pos + 16);
+            if (expect == 0 ? s != 0 : e != ep || s != expect) break;
+            if (checksum(pos, size) != map.getInt(pos + 4)) break;
+            byte[] payload = new byte[size - RECORD_HEADER];
+            map.get(pos + RECORD_HEADER, payload);
+            String op = new String(payload, StandardCharsets.UTF_8);
+            try {
+                if (expect == 0) {
+                    if (op.charAt(0) != 'B') break;
+                    String[] p = Item.split(op, 3);
+                    out = new Saved(Customer.fromCsv(p[2]), p[1]);
+                } else apply(out, op);
+            } catch (RuntimeException bad) { break; }
+            ep = e;
+            expect = s + 1;
+            pos += size;
+            read += size;
+        }
+        if (out != null) {
+            epoch = ep;
+            seq = expect;
+            head = pos;
+            used = read;
+        }
+        return out;
+    }
+
+    /** CRC-32C of a record from its epoch on. */
+    private int checksum(int pos, int size) {
+        crc.reset();
+        crc.update(map.slice(pos + 8, size - 8));
+        return (int) crc.getValue();
+    }
+
+    private static void apply(Saved c, String op) {
+        String[] p = Item.split(op, 4);
+        switch (p[0]) {
+            case "A" -> c.lines.add(new Line(Integer.parseInt(p[1]), Integer.parseInt(p[2]), Long.parseLong(p[3])));
+            case "Q" -> c.lines.get(Integer.parseInt(p[1])).quantity = Integer.parseInt(p[2]);
+            case "X" -> c.lines.remove(Integer.parseInt(p[1]));
+            case "Z" -> { c.lines.clear(); c.discountBasisPoints = c.discountCents = 0; }
+            case "P" -> { c.discountBasisPoints = Long.parseLong(p[1]); c.discountCents = 0; }
+            case "M" -> { c.discountCents = Long.parseLong(p[1]); c.discountBasisPoints = 0; }
+            case "C" -> c.confirmingSince = Long.parseLong(p[1]);
+            default -> throw new IllegalArgumentException("Unknown cart edit " + p[0]);
+        }
+        if (!p[0].equals("C")) c.confirmingSince = 0;   // edited after a confirm that failed
+    }
+}
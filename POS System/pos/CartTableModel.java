@@ -0,0 +1,62 @@
+package pos;
+
+import javax.swing.table.AbstractTableModel;
+
+/**
+ * Table view over the live cart {@link Invoice}. The invoice holds the lines and the running
+ * totals and {@link CheckoutService} edits it; this model is told which row changed and fires
+ * the matching row-level event, so an edit costs the same on a 3-line and a 300-line basket.
+ * Used on the EDT only.
+ */
+public class CartTableModel extends AbstractTableModel {
+    private static final String[] COLS = {"Item ID", "Name", "Qty", "Price", "Total"};
+
+    private Invoice invoice;
+
+    /** Shows {@code inv} (null for an empty table). */
+    public void setInvoice(Invoice inv) {
+        invoice = inv;
+        fireTableDataChanged();
+    }
+
+    public Invoice getInvoice(){ return invoice; }
+
+    public Invoice.Line getLine(int row){ return invoice.getLines().get(row); }
+
+    // ---- Change notifications: the edit itself goes through CheckoutService ----
+    public void lineAdded() {
+        int row = invoice.getLineCount() - 1;
+        fireTableRowsInserted(row, row);
+    }
+
+    public void lineChanged(int row){ fireTableRowsUpdated(row, row); }
+
+    public void lineRemoved(int row){ fireTableRowsDeleted(row, row); }
+
+    /** After the cart was emptied; {@code rows} is how many lines it had. */
+    public void cleared(int rows) {
+        if (rows > 0) fireTableRowsDeleted(0, rows - 1);
+    }
+
+    @Override public int getRowCount(){ return invoice == null ? 0 : invoice.getLineCount(); }
+    @Override public int getColumnCount(){ return COLS.length; }
+    @Override public String getColumnName(int c){ return COLS[c]; }
+    @Override public Class<?> getColumnClass(int c) {
+        return switch (c) {
+            case 0, 2 -> Integer.class;
+            case 3, 4 -> Long.class; // cents
+            default -> String.class;
+        };
+    }
+
+    @Override public Object getValueAt(int row, int col) {
+        Invoice.Line l = getLine(row);
+        return switch (col) {
+            case 0 -> l.getItem().getId();
+            case 1 -> l.getItem().getName();
+            case 2 -> l.getQuantity();
+            case 3 -> l.getUnitCents();
+            default -> l.getLineCents();
+        };
+    }
+}
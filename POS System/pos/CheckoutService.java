@@ -0,0 +1,212 @@
+package pos;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The till's business rules without the till: starting a cart, ringing up and changing lines,
+ * discounts and confirming the sale, over a {@link SimpleStore}. Lines hold their units in the
+ * store's {@link ReservationLedger} rather than taking them; the sale takes them from stock at
+ * {@link #confirm}. A cart left alone longer than the hold time loses its holds, and confirm
+ * then takes what is still available; a till that goes down with a cart open takes nothing.
+ * A cart started with a {@link CartRecoveryLog} logs each edit there, so the till can bring it
+ * back after a crash ({@link #unfinished}, {@link #restore}).
+ *
+ * A rejected operation throws {@link IllegalArgumentException} with a message fit for the
+ * cashier and leaves the cart and the stock as they were. Safe for any number of lanes at once;
+ * each cart ({@link Invoice}) belongs to one lane.
+ */
+public class CheckoutService {
+    private final SimpleStore store;
+    private final long taxBasisPoints;
+    private volatile ItemSearchIndex searchIndex;
+    private final AtomicBoolean indexing = new AtomicBoolean();
+
+    public CheckoutService(SimpleStore store, long taxBasisPoints) {
+        this.store = store;
+        this.taxBasisPoints = taxBasisPoints;
+    }
+
+    public SimpleStore getStore(){ return store; }
+    public long getTaxBasisPoints(){ return taxBasisPoints; }
+
+    /**
+     * The store's type-ahead index, one for the till and the API alike; null while it is being
+     * built. The first call starts building it on a background thread.
+     */
+    public ItemSearchIndex getSearchIndex() {
+        ItemSearchIndex index = searchIndex;
+        if (index == null && indexing.compareAndSet(false, true)) {
+            Thread t = new Thread(() -> searchIndex = new ItemSearchIndex(store), "pos-search-index");
+            t.setDaemon(true);
+            t.start();
+        }
+        return index;
+    }
+
+    /** A new customer with the next id; saved together with their first sale. */
+    public Customer newCustomer(String name, String phone) {
+        if (name == null || name.trim().isEmpty()) throw new IllegalArgumentException("Name cannot be empty.");
+        return new Customer(store.getCustomerRegistry().nextId(), name.trim(), phone == null ? "" : phone.trim(), "");
+    }
+
+    /** Opens an empty cart priced with the promotions in force now. */
+    public Invoice start(Customer customer, String showroom) {
+        return start(customer, showroom, null);
+    }
+
+    /** The same, logging every edit of the cart to {@code log} (one per lane) from now on. */
+    public Invoice start(Customer customer, String showroom, CartRecoveryLog log) {
+        if (customer == null) throw new IllegalArgumentException("No customer.");
+        String room = showroom == null || showroom.trim().isEmpty() ? "Showroom" : showroom.trim();
+        Invoice inv = new Invoice(customer, room, taxBasisPoints);
+        inv.setPromotions(store.getPromotions().newSession(customer, System.currentTimeMillis()));
+        inv.setReservation(store.getLedger().open());
+        if (log != null) {
+            log.begin(customer, room);
+            inv.setRecovery(log);
+        }
+        return inv;
+    }
+
+    /**
+     * The cart {@code log} was left with when the till went down, or null. A cart that was being
+     * confirmed counts as sold, and is not offered, if the store has a sale to the same customer
+     * with the same lines since then.
+     */
+    public CartRecoveryLog.Saved unfinished(CartRecoveryLog log) {
+        CartRecoveryLog.Saved saved = log.read();
+        if (saved == null) return null;
+        if (saved.getConfirmingSince() > 0) {
+            for (Invoice sale : store.getRecentSales(saved.getConfirmingSince())) {
+                if (sameCart(sale, saved)) { log.finished(); return null; }
+            }
+        }
+        return saved;
+    }
+
+    /**
+     * Opens a cart like the saved one, holding its stock again; lines whose item is gone or
+     * short of stock are left out. A customer registered with the cart and never saved gets a
+     * fresh id, as theirs may have been given out since.
+     */
+    public Invoice restore(CartRecoveryLog.Saved saved, CartRecoveryLog log) {
+        Customer c = saved.getCustomer();
+        Customer known = store.getCustomers().get(c.getId());
+        if (known != null && known.getName().equals(c.getName())) c = known;
+        else c = new Customer(store.getCustomerRegistry().nextId(), c.getName(), c.getPhone(), c.getLoyalty());
+        Invoice inv = start(c, saved.getShowroom(), log);
+        for (CartRecoveryLog.Line l : saved.getLines()) {
+            Item item = store.getInventory().get(l.itemId);
+            if (item == null || !store.hold(holds(inv), l.itemId, l.getQuantity())) continue;
+            inv.addLine(new Invoice.Line(item, l.getQuantity(), l.unitCents));
+            log.added(l.itemId, l.getQuantity(), l.unitCents);
+        }
+        if (saved.getDiscountBasisPoints() > 0) discountPercent(inv, saved.getDiscountBasisPoints());
+        else if (saved.getDiscountCents() > 0) discountAmount(inv, saved.getDiscountCents());
+        return inv;
+    }
+
+    /** Holds {@code qty} of item {@code itemId} and adds it to the cart as a new line. */
+    public Invoice.Line addItem(Invoice inv, int itemId, int qty) {
+        try (Metrics.Span s = Metrics.ADD_ITEM.begin()) {
+            Item item = store.getInventory().get(itemId);
+            if (item == null) throw new IllegalArgumentException("Item not found!");
+            if (qty <= 0 || !store.hold(holds(inv), itemId, qty)) throw new IllegalArgumentException("Invalid quantity!");
+            Invoice.Line line = new Invoice.Line(item, qty);
+            inv.addLine(line);
+            if (inv.getRecovery() != null) inv.getRecovery().added(itemId, qty, line.getUnitCents());
+            return line;
+        }
+    }
+
+    /** Sets the quantity of line {@code row}, holding or releasing the difference; returns the old quantity. */
+    public int setQuantity(Invoice inv, int row, int qty) {
+        if (qty <= 0) throw new IllegalArgumentException("Must be > 0");
+        Invoice.Line line = inv.getLines().get(row);
+        int diff = qty - line.getQuantity();
+        if (diff > 0 && !store.hold(holds(inv), line.getItem().getId(), diff)) throw new IllegalArgumentException("Not enough stock!");
+        if (diff < 0) release(inv, line.getItem().getId(), -diff);
+        int old = inv.setQuantity(row, qty);
+        if (inv.getRecovery() != null) inv.getRecovery().quantity(row, qty);
+        return old;
+    }
+
+    /** Removes line {@code row} and releases its units. */
+    public Invoice.Line removeLine(Invoice inv, int row) {
+        Invoice.Line line = inv.removeLine(row);
+        release(inv, line.getItem().getId(), line.getQuantity());
+        if (inv.getRecovery() != null) inv.getRecovery().removed(row);
+        return line;
+    }
+
+    /** Drops every line of an item that has been deleted from the catalogue; its stock went with it. */
+    public int dropItem(Invoice inv, int itemId) {
+        int dropped = 0;
+        for (int i = inv.getLineCount() - 1; i >= 0; i--) {
+            if (inv.getLines().get(i).getItem().getId() != itemId) continue;
+            inv.removeLine(i);
+            if (inv.getRecovery() != null) inv.getRecovery().removed(i);
+            dropped++;
+        }
+        if (dropped > 0) release(inv, itemId, Integer.MAX_VALUE);
+        return dropped;
+    }
+
+    /** Empties the cart, releasing everything it holds. */
+    public void clear(Invoice inv) {
+        if (inv.getReservation() != null) store.releaseAll(inv.getReservation());
+        inv.clear();
+        if (inv.getRecovery() != null) inv.getRecovery().cleared();
+    }
+
+    /** Percent discount; {@code basisPoints} as {@link Money#parse} reads a typed percent. */
+    public void discountPercent(Invoice inv, long basisPoints) {
+        if (basisPoints < 0) throw new IllegalArgumentException("Cannot be negative.");
+        if (basisPoints > 10_000) throw new IllegalArgumentException("Percent ≤ 100");
+        inv.setDiscountPercent(basisPoints);
+        if (inv.getRecovery() != null) inv.getRecovery().discount(basisPoints, 0);
+    }
+
+    public void discountAmount(Invoice inv, long cents) {
+        if (cents < 0) throw new IllegalArgumentException("Cannot be negative.");
+        inv.setDiscountAmount(cents);
+        if (inv.getRecovery() != null) inv.getRecovery().discount(0, cents);
+    }
+
+    /**
+     * Records the sale; returns once it is durable. The cart must not be used afterwards.
+     * On a follower that lost the primary mid-sale, throws {@link IllegalStateException} and the
+     * cart stays confirming: confirm it again, which finds the sale if it went through, or clear it.
+     */
+    public void confirm(Invoice inv) {
+        if (inv.getLineCount() == 0) throw new IllegalArgumentException("No items.");
+        try (Metrics.Span s = Metrics.CONFIRM.begin()) {
+            CartRecoveryLog log = inv.getRecovery();
+            if (log != null) log.confirming();
+            store.logSale(inv, holds(inv));
+            if (log != null) log.finished();
+        }
+    }
+
+    /** The cart's holds; a cart not opened by {@link #start} gets them on first use. */
+    private ReservationLedger.Reservation holds(Invoice inv) {
+        if (inv.getReservation() == null) inv.setReservation(store.getLedger().open());
+        return inv.getReservation();
+    }
+
+    private static boolean sameCart(Invoice sale, CartRecoveryLog.Saved saved) {
+        if (!sale.getCustomer().getName().equals(saved.getCustomer().getName()) || sale.getLineCount() != saved.getLines().size()) return false;
+        for (int i = 0; i < sale.getLineCount(); i++) {
+            Invoice.Line a = sale.getLines().get(i);
+            CartRecoveryLog.Line b = saved.getLines().get(i);
+            if (a.getItem().getId() != b.itemId || a.getQuantity() != b.getQuantity()) return false;
+        }
+        return true;
+    }
+
+    private void release(Invoice inv, int itemId, int qty) {
+        if (inv.getReservation() == null) return;
+        store.release(inv.getReservation(), itemId, qty);
+        store.getLedger().touch(inv.getReservation());
+    }
+}
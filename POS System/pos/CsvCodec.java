@@ -0,0 +1,324 @@
+package pos;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * RFC 4180 CSV for the store's files. A field holding a comma or a double quote is written in
+ * double quotes, with its quotes doubled; everything else is written as is, so plain files look
+ * as they always did. Files from before quoting wrote a comma in text as '⎜'; reading an
+ * unquoted field still turns that back into a comma, so a real '⎜' is now written quoted.
+ *
+ * {@link #read} streams a whole file: it splits it into chunks at line ends and reads and parses
+ * the chunks in parallel, each through one positional read into a buffer of its own. The file is
+ * not mapped: a mapping would outlive the call and keep the file from being replaced at the next
+ * checkpoint on Windows. Fields are located in place and only
+ * turned into values when asked for through {@link Row}; numbers never become strings. A chunk
+ * boundary is guessed at the first newline after an even split and confirmed once the previous
+ * chunk has been parsed up to it; in the rare file where that newline sits inside a quoted field,
+ * the chunk is parsed again from the right place.
+ */
+public final class CsvCodec {
+    private CsvCodec(){}
+
+    static final char LEGACY_COMMA = '⎜';
+    static final int MIN_CHUNK = 1 << 20;
+    static final long MAX_CHUNK = 1 << 26;   // and no row may be longer than this
+    static final int ROW_SLACK = 1 << 16;     // read past a chunk's end for the row that crosses it
+
+    // ---- Single lines (journal ops, sales records) ----
+
+    /** The field as written in a file: quoted when it has to be. Line breaks become spaces. */
+    public static String field(String s) {
+        if (s.indexOf('\n') >= 0 || s.indexOf('\r') >= 0) s = s.replace("\r\n", " ").replace('\n', ' ').replace('\r', ' ');
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf(LEGACY_COMMA) < 0) return s;
+        return '"' + s.replace("\"", "\"\"") + '"';
+    }
+
+    /** The fields of one line, unquoted (or legacy text read back); padded with "" up to {@code n}. */
+    public static String[] split(String line, int n) {
+        List<String> out = new ArrayList<>(Math.max(n, 4));
+        int i = 0, len = line.length();
+        while (true) {
+            if (i < len && line.charAt(i) == '"') {
+                StringBuilder sb = new StringBuilder();
+                i++;
+                while (i < len) {
+                    char c = line.charAt(i++);
+                    if (c != '"') sb.append(c);
+                    else if (i < len && line.charAt(i) == '"') { sb.append('"'); i++; }
+                    else break;
+                }
+                int comma = line.indexOf(',', i);  // stray text after the closing quote is dropped
+                out.add(sb.toString());
+                if (comma < 0) break;
+                i = comma + 1;
+            } else {
+                int comma = line.indexOf(',', i);
+                if (comma < 0) { out.add(legacy(line.substring(i))); break; }
+                out.add(legacy(line.substring(i, comma)));
+                i = comma + 1;
+            }
+        }
+        while (out.size() < n) out.add("");
+        return out.toArray(new String[0]);
+    }
+
+    /** An unquoted text field, which may come from a file written before quoting. */
+    static String legacy(String s) {
+        return s.indexOf(LEGACY_COMMA) < 0 ? s : s.replace(LEGACY_COMMA, ',');
+    }
+
+    // ---- Whole files ----
+
+    /** One parsed row, valid only inside the {@link RowMapper} call that receives it. */
+    public static final class Row {
+        private ByteBuffer buf;
+        private int[] start = new int[8], end = new int[8];
+        private boolean[] quoted = new boolean[8];
+        private int count;
+        private byte[] bytes = new byte[64];
+        private final StringBuilder chars = new StringBuilder(24);
+
+        public int size(){ return count; }
+
+        public boolean isBlank(int i) {
+            if (i >= count) return true;
+            for (int p = start[i]; p < end[i]; p++) if (buf.get(p) != ' ') return false;
+            return true;
+        }
+
+        public int getInt(int i) {
+            long v = getLong(i);
+            if (v != (int) v) throw new NumberFormatException("out of range");
+            return (int) v;
+        }
+
+        public long getLong(int i) {
+            if (i >= count) throw new NumberFormatException("missing field " + i);
+            int p = start[i], e = end[i];
+            while (p < e && buf.get(p) == ' ') p++;
+            while (e > p && buf.get(e - 1) == ' ') e--;
+            boolean neg = p < e && buf.get(p) == '-';
+            if (neg || p < e && buf.get(p) == '+') p++;
+            if (p == e) throw new NumberFormatException("empty field " + i);
+            long v = 0;
+            for (; p < e; p++) {
+                int d = buf.get(p) - '0';
+                if (d < 0 || d > 9) throw new NumberFormatException("not a number in field " + i);
+                v = Math.addExact(Math.multiplyExact(v, 10), d);
+            }
+            return neg ? -v : v;
+        }
+
+        /** An amount such as "12.50", in cents; see {@link Money#parse}. */
+        public long getCents(int i) {
+            if (i >= count) throw new NumberFormatException("missing field " + i);
+            chars.setLength(0);
+            for (int p = start[i]; p < end[i]; p++) chars.append((char) (buf.get(p) & 0xFF));
+            return Money.parse(chars);
+        }
+
+        public String getString(int i) {
+            if (i >= count) return "";
+            int len = 0;
+            boolean ascii = true;
+            if (bytes.length < end[i] - start[i]) bytes = new byte[Math.max(end[i] - start[i], bytes.length * 2)];
+            for (int p = start[i]; p < end[i]; p++) {
+                byte b = buf.get(p);
+                if (quoted[i] && b == '"') p++;   // a doubled quote inside quotes: keep one
+                bytes[len++] = b;
+                ascii &= b >= 0;
+            }
+            String s = new String(bytes, 0, len, ascii ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+            return ascii || quoted[i] ? s : legacy(s);
+        }
+    }
+
+    /** Makes a value of one row; return null to skip it, throw to count it as rejected. */
+    public interface RowMapper<T> {
+        T map(Row row);
+    }
+
+    /** Rows of a file in file order, plus how many could not be read and how many the mapper skipped. */
+    public static final class Result<T> {
+        public final List<T> rows;
+        public final long rejected, skipped;
+        public final long bytes;
+        Result(List<T> rows, long rejected, long skipped, long bytes){ this.rows = rows; this.rejected = rejected; this.skipped = skipped; this.bytes = bytes; }
+    }
+
+    /**
+     * Parses every row of {@code file} with {@code mapper} on up to {@code threads} threads.
+     * Blank lines are skipped; a row the mapper throws on is counted in {@link Result#rejected}.
+     * A missing file gives no rows.
+     */
+    public static <T> Result<T> read(File file, RowMapper<T> mapper, int threads) throws IOException {
+        if (!file.isFile()) return new Result<>(new ArrayList<>(), 0, 0, 0);
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = ch.size();
+            int bom = 0;
+            if (size >= 3) {
+                ByteBuffer head = readAt(ch, 0, 3);
+                if ((head.get(0) & 0xFF) == 0xEF && (head.get(1) & 0xFF) == 0xBB && (head.get(2) & 0xFF) == 0xBF) bom = 3;
+            }
+            long chunk = Math.min(MAX_CHUNK, Math.max(MIN_CHUNK, (size + threads - 1) / Math.max(1, threads)));
+            List<Long> starts = new ArrayList<>();
+            starts.add((long) bom);
+            for (long target = bom + chunk; target < size; target += chunk) {
+                long s = nextLine(ch, target, size);
+                if (s >= size) break;
+                if (s > starts.get(starts.size() - 1)) starts.add(s);
+            }
+            int n = starts.size();
+            List<Chunk<T>> chunks = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) chunks.add(new Chunk<>(ch, starts.get(i), i + 1 < n ? starts.get(i + 1) : size, size, mapper));
+
+            if (n == 1 || threads <= 1) {
+                for (Chunk<T> c : chunks) c.parse();
+            } else {
+                ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, n), r -> {
+                    Thread t = new Thread(r, "pos-csv");
+                    t.setDaemon(true);
+                    return t;
+                });
+                try {
+                    List<Future<?>> done = new ArrayList<>();
+                    for (Chunk<T> c : chunks) done.add(pool.submit(() -> { c.parse(); return null; }));
+                    for (Future<?> f : done) f.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("interrupted", e);
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+                } finally { pool.shutdownNow(); }
+            }
+
+            // Confirm every guessed boundary; re-parse from where the previous chunk really ended
+            List<T> rows = new ArrayList<>();
+            long rejected = 0, skipped = 0;
+            for (int i = 0; i < n; i++) {
+                Chunk<T> c = chunks.get(i);
+                if (i > 0 && c.from != chunks.get(i - 1).stoppedAt) {
+                    c.from = chunks.get(i - 1).stoppedAt;
+                    c.parse();
+                }
+                rows.addAll(c.rows);
+                rejected += c.rejected;
+                skipped += c.skipped;
+            }
+            return new Result<>(rows, rejected, skipped, size);
+        }
+    }
+
+    /** Position just after the first newline at or after {@code pos}, or {@code size}. */
+    private static long nextLine(FileChannel ch, long pos, long size) throws IOException {
+        while (pos < size) {
+            ByteBuffer b = readAt(ch, pos, (int) Math.min(1 << 16, size - pos));
+            for (int i = 0; i < b.limit(); i++) if (b.get(i) == '\n') return pos + i + 1;
+            if (b.limit() == 0) break;
+            pos += b.limit();
+        }
+        return size;
+    }
+
+    /** Up to {@code len} bytes from {@code pos}, fewer only at the end of the file; position 0. */
+    private static ByteBuffer readAt(FileChannel ch, long pos, int len) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(len);
+        while (b.hasRemaining() && ch.read(b, pos + b.position()) >= 0) {}
+        return b.flip();
+    }
+
+    private static final class Chunk<T> {
+        final FileChannel ch;
+        final long until, size;
+        final RowMapper<T> mapper;
+        long from, stoppedAt;
+        List<T> rows;
+        long rejected, skipped;
+
+        Chunk(FileChannel ch, long from, long until, long size, RowMapper<T> mapper) {
+            this.ch = ch; this.from = from; this.until = until; this.size = size; this.mapper = mapper;
+        }
+
+        /** Parses the rows that start in [from, until); the last may run past until. */
+        void parse() throws IOException {
+            // Reads a little past until; in the odd file whose last row runs further, reads again with more
+            for (long slack = ROW_SLACK; !parse(slack); slack *= 16) {
+                if (slack >= MAX_CHUNK) throw new IOException("row longer than " + MAX_CHUNK + " bytes at " + from);
+            }
+        }
+
+        /** False if a row ran past the bytes read. */
+        private boolean parse(long slack) throws IOException {
+            rows = new ArrayList<>();
+            rejected = skipped = 0;
+            if (from >= until) { stoppedAt = from; return true; }
+            long len = Math.min(size - from, (until - from) + Math.min(slack, MAX_CHUNK));
+            if (len > Integer.MAX_VALUE) len = Integer.MAX_VALUE;
+            ByteBuffer buf = readAt(ch, from, (int) len);
+            int limit = buf.limit(), stop = (int) (until - from);
+            boolean eof = from + limit == size;
+            Row row = new Row();
+            row.buf = buf;
+            int p = 0;
+            while (p < stop) {
+                p = parseRow(buf, p, limit, eof, row);
+                if (p < 0) return false;
+                if (row.count == 1 && row.isBlank(0) && !row.quoted[0]) continue;
+                try {
+                    T v = mapper.map(row);
+                    if (v != null) rows.add(v); else skipped++;
+                } catch (RuntimeException e) {
+                    rejected++;
+                }
+            }
+            stoppedAt = from + p;
+            return true;
+        }
+
+        /** One row from {@code p}: records its fields and returns where the next row starts, -1 if cut off. */
+        private static int parseRow(ByteBuffer b, int p, int limit, boolean eof, Row row) {
+            row.count = 0;
+            while (true) {
+                if (row.count == row.start.length) {
+                    int m = row.count * 2;
+                    row.start = Arrays.copyOf(row.start, m);
+                    row.end = Arrays.copyOf(row.end, m);
+                    row.quoted = Arrays.copyOf(row.quoted, m);
+                }
+                int f = row.count++;
+                if (p < limit && b.get(p) == '"') {
+                    row.quoted[f] = true;
+                    row.start[f] = ++p;
+                    while (true) {
+                        if (p >= limit) { row.end[f] = p; return eof ? p : -1; }   // unterminated: to the end
+                        byte c = b.get(p);
+                        if (c == '"') {
+                            if (p + 1 < limit && b.get(p + 1) == '"') { p += 2; continue; }
+                            break;
+                        }
+                        p++;
+                    }
+                    row.end[f] = p++;              // past the closing quote
+                    while (p < limit && b.get(p) != ',' && b.get(p) != '\n') p++;  // stray text after it is dropped
+                } else {
+                    row.quoted[f] = false;
+                    row.start[f] = p;
+                    while (p < limit && b.get(p) != ',' && b.get(p) != '\n') p++;
+                    int e = p;
+                    if (e > row.start[f] && b.get(e - 1) == '\r') e--;
+                    row.end[f] = e;
+                }
+                if (p >= limit) return eof ? p : -1;
+                if (b.get(p++) == '\n') return p;
+            }
+        }
+    }
+}
@@ -3,17 +3,47 @@ package pos;
 public class Customer {
     private final int id;
     private String name;
+    private String phone = "";
+    private String loyalty = "";
+    private int mergedInto; // 0 = active; otherwise the id this duplicate was merged into
 
     public Customer(int id, String name) {
         this.id = id; this.name = name;
     }
+    public Customer(int id, String name, String phone, String loyalty) {
+        this(id, name);
+        this.phone = phone == null ? "" : phone; this.loyalty = loyalty == null ? "" : loyalty;
+    }
     public int getId(){ return id; }
     public String getName(){ return name; }
+    public String getPhone(){ return phone; }
+    public String getLoyalty(){ return loyalty; }
+    public int getMergedInto(){ return mergedInto; }
+    public boolean isActive(){ return mergedInto == 0; }
     public void setName(String name){ this.name = name; }
+    public void setPhone(String phone){ this.phone = phone == null ? "" : phone; }
+    public void setLoyalty(String loyalty){ this.loyalty = loyalty == null ? "" : loyalty; }
+    public void setMergedInto(int id){ this.mergedInto = id; }
+
+    public Customer copy(){
+        Customer c = new Customer(id, name, phone, loyalty);
+        c.mergedInto = mergedInto;
+        return c;
+    }
 
-    public String toCsv(){ return id + "," + Item.escape(name); }
+    // Older files have only id,name; the extra columns default to blank/active
+    public String toCsv(){
+        return id + "," + Item.escape(name) + "," + Item.escape(phone) + "," + Item.escape(loyalty) + "," + mergedInto;
+    }
     public static Customer fromCsv(String line){
-        String[] p = Item.split(line, 2);
-        return new Customer(Integer.parseInt(p[0]), Item.unescape(p[1]));
+        String[] p = Item.split(line, 5);
+        Customer c = new Customer(Integer.parseInt(p[0]), p[1], p[2], p[3]);
+        if (!p[4].isEmpty()) c.mergedInto = Integer.parseInt(p[4]);
+        return c;
+    }
+    public static Customer fromCsv(CsvCodec.Row r){
+        Customer c = new Customer(r.getInt(0), r.getString(1), r.getString(2), r.getString(3));
+        if (!r.isBlank(4)) c.mergedInto = r.getInt(4);
+        return c;
     }
 }
@@ -0,0 +1,203 @@
+package pos;
+
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Secondary indexes over the store's customers: an id sequence, exact lookups by normalized
+ * name, phone digits and loyalty number, and trigram postings for fuzzy name matching while
+ * the cashier types. Only active (not merged) customers are indexed.
+ *
+ * Maintained by {@link SimpleStore} on every customer change.
+ */
+public class CustomerRegistry {
+    private final Map<Integer, Customer> customers;
+    private final AtomicInteger lastId = new AtomicInteger();
+    private final Map<String, Set<Integer>> byName = new ConcurrentHashMap<>();
+    private final Map<String, Integer> byPhone = new ConcurrentHashMap<>();
+    private final Map<String, Integer> byLoyalty = new ConcurrentHashMap<>();
+    private final Map<String, Set<Integer>> trigrams = new ConcurrentHashMap<>();
+    private final Map<Integer, Customer> indexed = new ConcurrentHashMap<>(); // copies, as indexed
+    private final Map<Integer, Integer> gramCount = new ConcurrentHashMap<>();
+
+    CustomerRegistry(Map<Integer, Customer> customers) {
+        this.customers = customers;
+    }
+
+    /** Next unused customer id; ids handed out are never reused even if the customer is not saved. */
+    public int nextId(){ return lastId.incrementAndGet(); }
+
+    public Customer byPhone(String phone){ return get(byPhone.get(digits(phone))); }
+    public Customer byLoyalty(String loyalty){ return get(byLoyalty.get(loyaltyKey(loyalty))); }
+
+    public List<Customer> byName(String name) {
+        Set<Integer> ids = byName.get(normalize(name));
+        if (ids == null) return Collections.emptyList();
+        List<Customer> out = new ArrayList<>();
+        for (int id : ids) { Customer c = get(id); if (c != null) out.add(c); }
+        out.sort(Comparator.comparingInt(Customer::getId));
+        return out;
+    }
+
+    /**
+     * Best matches for what the cashier typed. Exact phone / loyalty / name hits come first,
+     * then names ranked by trigram similarity (Dice coefficient).
+     */
+    public List<Customer> search(String query, int limit) {
+        LinkedHashSet<Customer> out = new LinkedHashSet<>();
+        if (query == null || query.isBlank()) return new ArrayList<>();
+        Customer c = byLoyalty(query);
+        if (c != null) out.add(c);
+        if (digits(query).length() >= 4) {
+            c = byPhone(query);
+            if (c != null) out.add(c);
+        }
+        out.addAll(byName(query));
+
+        String norm = normalize(query);
+        Set<String> grams = trigramsOf(norm);
+        Map<Integer, Integer> hits = new HashMap<>();
+        for (String g : grams) {
+            Set<Integer> ids = trigrams.get(g);
+            if (ids != null) for (int id : ids) hits.merge(id, 1, Integer::sum);
+        }
+        int need = Math.max(1, grams.size() / 3);
+        hits.entrySet().stream()
+            .filter(e -> e.getValue() >= need)
+            .map(e -> {
+                Customer x = get(e.getKey());
+                if (x == null) return null;
+                int total = grams.size() + gramCount.getOrDefault(x.getId(), 0);
+                return Map.entry(x, 2.0 * e.getValue() / total);
+            })
+            .filter(Objects::nonNull)
+            .sorted((a, b) -> Double.compare(b.getValue(), a.getValue()))
+            .limit(limit)
+            .forEach(e -> out.add(e.getKey()));
+        return out.stream().limit(limit).collect(Collectors.toList());
+    }
+
+    /**
+     * Groups of active customers that are the same person: same normalized name, linked by a
+     * shared phone or loyalty number (directly or through others in the group). A name alone
+     * is not enough; see {@link #findLikelyDuplicates}. Names are grouped as a parallel stream;
+     * each group is sorted by id.
+     */
+    public List<List<Customer>> findDuplicates() {
+        return byNormalizedName()
+            .flatMap(g -> linked(g).stream())
+            .filter(g -> g.size() > 1)
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Same-name customers that {@link #findDuplicates} would not merge because no phone or
+     * loyalty number links them all, for someone to review. Each group is every active customer
+     * with that name, sorted by id.
+     */
+    public List<List<Customer>> findLikelyDuplicates() {
+        return byNormalizedName()
+            .filter(g -> linked(g).size() > 1)
+            .collect(Collectors.toList());
+    }
+
+    private Stream<List<Customer>> byNormalizedName() {
+        return customers.values().parallelStream()
+            .filter(Customer::isActive)
+            .collect(Collectors.groupingByConcurrent(c -> normalize(c.getName())))
+            .values().parallelStream()
+            .filter(g -> g.size() > 1)
+            .map(g -> g.stream().sorted(Comparator.comparingInt(Customer::getId)).collect(Collectors.toList()));
+    }
+
+    /** Splits a same-name group into the parts joined by shared phones or loyalty numbers, each in id order. */
+    private static List<List<Customer>> linked(List<Customer> group) {
+        int[] parent = new int[group.size()];
+        for (int i = 0; i < parent.length; i++) parent[i] = i;
+        Map<String, Integer> seen = new HashMap<>();
+        for (int i = 0; i < parent.length; i++) {
+            Customer c = group.get(i);
+            for (String key : new String[]{ "p" + digits(c.getPhone()), "l" + loyaltyKey(c.getLoyalty()) }) {
+                if (key.length() == 1) continue;
+                Integer other = seen.putIfAbsent(key, i);
+                if (other != null) parent[root(parent, i)] = root(parent, other);
+            }
+        }
+        Map<Integer, List<Customer>> parts = new LinkedHashMap<>();
+        for (int i = 0; i < parent.length; i++) parts.computeIfAbsent(root(parent, i), k -> new ArrayList<>()).add(group.get(i));
+        return new ArrayList<>(parts.values());
+    }
+
+    private static int root(int[] parent, int i) {
+        while (parent[i] != i) i = parent[i] = parent[parent[i]];
+        return i;
+    }
+
+    // ---- Maintenance (called by the store) ----
+
+    void index(Customer c) {
+        lastId.accumulateAndGet(c.getId(), Math::max);
+        unindex(c.getId());
+        if (!c.isActive()) return;
+        indexed.put(c.getId(), c.copy());
+        String name = normalize(c.getName());
+        byName.computeIfAbsent(name, k -> ConcurrentHashMap.newKeySet()).add(c.getId());
+        if (!digits(c.getPhone()).isEmpty()) byPhone.put(digits(c.getPhone()), c.getId());
+        if (!loyaltyKey(c.getLoyalty()).isEmpty()) byLoyalty.put(loyaltyKey(c.getLoyalty()), c.getId());
+        Set<String> grams = trigramsOf(name);
+        for (String g : grams) trigrams.computeIfAbsent(g, k -> ConcurrentHashMap.newKeySet()).add(c.getId());
+        gramCount.put(c.getId(), grams.size());
+    }
+
+    void unindex(int id) {
+        Customer c = indexed.remove(id);
+        if (c == null) return;
+        gramCount.remove(id);
+        String name = normalize(c.getName());
+        Set<Integer> ids = byName.get(name);
+        if (ids != null) ids.remove(c.getId());
+        byPhone.remove(digits(c.getPhone()), c.getId());
+        byLoyalty.remove(loyaltyKey(c.getLoyalty()), c.getId());
+        for (String g : trigramsOf(name)) {
+            Set<Integer> t = trigrams.get(g);
+            if (t != null) t.remove(c.getId());
+        }
+    }
+
+    private Customer get(Integer id) {
+        if (id == null) return null;
+        Customer c = customers.get(id);
+        return c != null && c.isActive() ? c : null;
+    }
+
+    // ---- Normalization ----
+
+    /** Lower case, accents and punctuation stripped, single spaces. */
+    static String normalize(String s) {
+        if (s == null) return "";
+        String n = Normalizer.normalize(s, Normalizer.Form.NFD).replaceAll("\\p{M}+", "");
+        return n.toLowerCase(Locale.ROOT).replaceAll("[^\\p{L}\\p{N}]+", " ").trim();
+    }
+
+    static String digits(String s) {
+        if (s == null) return "";
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < s.length(); i++) if (Character.isDigit(s.charAt(i))) sb.append(s.charAt(i));
+        return sb.toString();
+    }
+
+    private static String loyaltyKey(String s) {
+        return s == null ? "" : s.trim().toUpperCase(Locale.ROOT);
+    }
+
+    private static Set<String> trigramsOf(String norm) {
+        Set<String> out = new HashSet<>();
+        String p = "  " + norm + " ";
+        for (int i = 0; i + 3 <= p.length(); i++) out.add(p.substring(i, i + 3));
+        return out;
+    }
+}
@@ -0,0 +1,202 @@
+package pos;
+
+import javax.swing.AbstractButton;
+import javax.swing.JComponent;
+import java.awt.*;
+import java.awt.event.InvocationEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Catches a frozen till in the act. Installed as the top of the AWT event queue, it times every
+ * event the event dispatch thread handles ({@code edt.dispatch} in {@link Metrics}); once one has
+ * been running longer than the threshold, a watchdog thread samples the EDT's stack every
+ * {@link #SAMPLE_MILLIS} ms until it finishes. The stall is then written to a rolling log with
+ * its duration, what triggered it (the button, key or posted task) and the distinct stacks seen,
+ * most frequent first.
+ *
+ * Time the EDT spends waiting for events inside a modal dialog does not count against the event
+ * that opened it.
+ */
+public class EdtWatchdog extends EventQueue {
+    static final int SAMPLE_MILLIS = 20;
+    static final int MAX_SAMPLES = 500;
+    static final long REPORT_STUCK_MILLIS = 10_000;   // still stalled: write what we have so far
+    static final long LOG_LIMIT = 1 << 20;           // bytes before the log rolls over to .1
+    static final int STACK_DEPTH = 40;
+
+    private final long thresholdNanos;
+    private final File log;
+    private final Thread sampler;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "pos-stall-log");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private volatile Dispatch current;   // innermost event being handled, null while the EDT waits
+    private volatile Thread edt;
+    private volatile boolean running = true;
+
+    /** One event being dispatched; samples are added by the watchdog, read by the EDT when it ends. */
+    private static final class Dispatch {
+        final AWTEvent event;
+        final long start = System.nanoTime();
+        volatile long busySince = start;
+        final List<StackTraceElement[]> samples = new ArrayList<>();
+        boolean reported;
+
+        Dispatch(AWTEvent event){ this.event = event; }
+    }
+
+    private EdtWatchdog(File log, long thresholdMillis) {
+        this.log = log;
+        this.thresholdNanos = thresholdMillis * 1_000_000L;
+        sampler = new Thread(this::sampleLoop, "pos-edt-watchdog");
+        sampler.setDaemon(true);
+        sampler.start();
+    }
+
+    /** Puts a watchdog on top of the system event queue; stalls of {@code thresholdMillis} or more go to {@code log}. */
+    public static EdtWatchdog install(File log, long thresholdMillis) {
+        EdtWatchdog w = new EdtWatchdog(log, thresholdMillis);
+        Toolkit.getDefaultToolkit().getSystemEventQueue().push(w);
+        return w;
+    }
+
+    /** Stops sampling and takes the watchdog off the event queue. */
+    public void uninstall() {
+        running = false;
+        sampler.interrupt();
+        writer.shutdown();
+        pop();
+    }
+
+    // ---- EDT side ----
+
+    @Override protected void dispatchEvent(AWTEvent event) {
+        if (edt == null) edt = Thread.currentThread();
+        Dispatch outer = current, d = new Dispatch(event);
+        current = d;
+        try {
+            super.dispatchEvent(event);
+        } finally {
+            long took = System.nanoTime() - d.start;
+            current = outer;
+            if (outer != null) outer.busySince = System.nanoTime();
+            Metrics.EDT_DISPATCH.record(took);
+            List<StackTraceElement[]> samples;
+            synchronized (d) { samples = d.samples.isEmpty() ? null : new ArrayList<>(d.samples); }
+            if (samples != null) report(d, took, samples, false);
+        }
+    }
+
+    /** Called by the EDT, and by modal dialogs' nested loops, whenever it waits for the next event. */
+    @Override public AWTEvent getNextEvent() throws InterruptedException {
+        Dispatch waiting = current;
+        current = null;
+        try {
+            return super.getNextEvent();
+        } finally {
+            if (waiting != null) waiting.busySince = System.nanoTime();
+            current = waiting;
+        }
+    }
+
+    // ---- Watchdog side ----
+
+    private void sampleLoop() {
+        while (running) {
+            try { Thread.sleep(SAMPLE_MILLIS); } catch (InterruptedException e) { return; }
+            Dispatch d = current;
+            Thread t = edt;
+            if (d == null || t == null) continue;
+            long now = System.nanoTime();
+            if (now - d.busySince < thresholdNanos) continue;
+            StackTraceElement[] stack = t.getStackTrace();
+            if (current != d) continue; // finished while we sampled
+            List<StackTraceElement[]> stuck = null;
+            synchronized (d) {
+                if (d.samples.size() < MAX_SAMPLES) d.samples.add(stack);
+                if (!d.reported && now - d.start >= REPORT_STUCK_MILLIS * 1_000_000L) {
+                    d.reported = true;
+                    stuck = new ArrayList<>(d.samples);
+                }
+            }
+            if (stuck != null) report(d, now - d.start, stuck, true);
+        }
+    }
+
+    private void report(Dispatch d, long nanos, List<StackTraceElement[]> samples, boolean stillRunning) {
+        String when = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS").format(new Date(System.currentTimeMillis() - nanos / 1_000_000));
+        String what = describe(d.event);
+        try {
+            writer.execute(() -> write(format(when, nanos, what, samples, stillRunning)));
+        } catch (java.util.concurrent.RejectedExecutionException ignored) {}
+    }
+
+    static String format(String when, long nanos, String what, List<StackTraceElement[]> samples, boolean stillRunning) {
+        Map<String, Integer> stacks = new LinkedHashMap<>();
+        for (StackTraceElement[] s : samples) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < Math.min(s.length, STACK_DEPTH); i++) sb.append("    at ").append(s[i]).append('\n');
+            if (s.length > STACK_DEPTH) sb.append("    ... ").append(s.length - STACK_DEPTH).append(" more\n");
+            stacks.merge(sb.toString(), 1, Integer::sum);
+        }
+        List<Map.Entry<String, Integer>> byCount = new ArrayList<>(stacks.entrySet());
+        byCount.sort((a, b) -> b.getValue() - a.getValue());
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("=== %s  EDT %s %d ms  %s  (%d samples every %d ms)%n", when,
+                stillRunning ? "STILL BLOCKED after" : "blocked", nanos / 1_000_000, what, samples.size(), SAMPLE_MILLIS));
+        for (Map.Entry<String, Integer> e : byCount) {
+            out.append(String.format("  %d of %d samples:%n", e.getValue(), samples.size())).append(e.getKey());
+        }
+        return out.append(System.lineSeparator()).toString();
+    }
+
+    /**
+     * The button, key or task behind an event, as a cashier's action where possible. A button's
+     * listeners run inside the mouse or key event that pressed it, so that is what gets named.
+     */
+    static String describe(AWTEvent e) {
+        String type = e.paramString();
+        int comma = type.indexOf(',');
+        if (comma > 0) type = type.substring(0, comma);
+        Object src = e.getSource();
+        if (e instanceof MouseEvent && src instanceof AbstractButton) return "click on " + component(src);
+        if (e instanceof KeyEvent k) return type + " " + KeyEvent.getKeyText(k.getKeyCode()) + " on " + component(src);
+        if (e instanceof InvocationEvent) {
+            String p = e.paramString();
+            int at = p.indexOf("runnable=");
+            return "posted task " + (at < 0 ? p : p.substring(at + 9, p.indexOf(',', at) < 0 ? p.length() : p.indexOf(',', at)));
+        }
+        return type + " on " + component(src);
+    }
+
+    private static String component(Object src) {
+        if (src instanceof AbstractButton b && b.getText() != null && !b.getText().isEmpty()) return "button \"" + b.getText() + "\"";
+        if (src instanceof Component c && c.getName() != null) return c.getClass().getSimpleName() + " \"" + c.getName() + "\"";
+        if (src instanceof JComponent c && c.getToolTipText() != null) return c.getClass().getSimpleName() + " \"" + c.getToolTipText() + "\"";
+        return src == null ? "?" : src.getClass().getSimpleName();
+    }
+
+    private void write(String entry) {
+        try {
+            if (log.length() + entry.length() > LOG_LIMIT) {
+                File old = new File(log.getParentFile(), log.getName() + ".1");
+                old.delete();
+                log.renameTo(old);
+            }
+            try (Writer w = new OutputStreamWriter(new FileOutputStream(log, true), StandardCharsets.UTF_8)) {
+                w.write(entry);
+            }
+        } catch (IOException ignored) {}
+    }
+}
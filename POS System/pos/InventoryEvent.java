@@ -0,0 +1,18 @@
+package pos;
+
+/** A change to one inventory item, published by {@link SimpleStore} after it has been applied. */
+public class InventoryEvent {
+    public enum Type { ADDED, REMOVED, STOCK, PRICE }
+
+    /** Called on the thread that made the change, possibly while store locks are held: keep it short. */
+    public interface Listener {
+        void inventoryChanged(InventoryEvent e);
+    }
+
+    private final Type type;
+    private final Item item;
+
+    public InventoryEvent(Type type, Item item){ this.type = type; this.item = item; }
+    public Type getType(){ return type; }
+    public Item getItem(){ return item; }
+}
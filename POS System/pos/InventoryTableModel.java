@@ -0,0 +1,115 @@
+package pos;
+
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.table.AbstractTableModel;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Live inventory view. Rows point at the store's own {@link Item}s, so nothing is copied;
+ * store events are queued from any thread and applied on the EDT in one batch per
+ * {@link #COALESCE_MS}, as row-level insert/update/delete notifications.
+ */
+public class InventoryTableModel extends AbstractTableModel implements InventoryEvent.Listener {
+    private static final String[] COLS = {"ID", "Name", "Price", "Stock"};
+    private static final int COALESCE_MS = 150;
+
+    private final SimpleStore store;
+    private final List<Item> rows = new ArrayList<>();
+    private final Map<Integer, Integer> rowOf = new HashMap<>();
+
+    private final Queue<InventoryEvent> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Timer flushTimer;
+
+    public InventoryTableModel(SimpleStore store) {
+        this.store = store;
+        flushTimer = new Timer(COALESCE_MS, e -> flush());
+        flushTimer.setRepeats(false);
+        store.addInventoryListener(this);
+        for (Item it : store.getInventory().values()) {
+            rowOf.put(it.getId(), rows.size());
+            rows.add(it);
+        }
+    }
+
+    /** Stops listening; call when the view is closed. */
+    public void detach() {
+        store.removeInventoryListener(this);
+        flushTimer.stop();
+        pending.clear();
+    }
+
+    @Override public void inventoryChanged(InventoryEvent e) {
+        pending.add(e);
+        if (scheduled.compareAndSet(false, true)) SwingUtilities.invokeLater(flushTimer::restart);
+    }
+
+    private void flush() {
+        scheduled.set(false);
+        // Stock/price updates collapse to one notification per row; structural changes go first
+        Set<Integer> updated = new HashSet<>();
+        InventoryEvent e;
+        while ((e = pending.poll()) != null) {
+            Item it = e.getItem();
+            switch (e.getType()) {
+                case ADDED -> {
+                    Integer r = rowOf.get(it.getId());
+                    if (r != null) {
+                        rows.set(r, it);
+                        updated.add(r);
+                    } else {
+                        rowOf.put(it.getId(), rows.size());
+                        rows.add(it);
+                        fireTableRowsInserted(rows.size() - 1, rows.size() - 1);
+                    }
+                }
+                case REMOVED -> {
+                    Integer r = rowOf.remove(it.getId());
+                    if (r == null) break;
+                    rows.remove((int) r);
+                    for (int i = r; i < rows.size(); i++) rowOf.put(rows.get(i).getId(), i);
+                    Set<Integer> shifted = new HashSet<>();
+                    for (int u : updated) if (u != r) shifted.add(u > r ? u - 1 : u);
+                    updated = shifted;
+                    fireTableRowsDeleted(r, r);
+                }
+                case STOCK, PRICE -> {
+                    Integer r = rowOf.get(it.getId());
+                    if (r != null) {
+                        rows.set(r, it); // putItem may have swapped in a new instance
+                        updated.add(r);
+                    }
+                }
+            }
+        }
+        if (updated.size() > rows.size() / 4 && updated.size() > 64) {
+            fireTableRowsUpdated(0, rows.size() - 1);
+            return;
+        }
+        int[] sorted = updated.stream().mapToInt(Integer::intValue).sorted().toArray();
+        for (int i = 0; i < sorted.length; ) {
+            int j = i;
+            while (j + 1 < sorted.length && sorted[j + 1] == sorted[j] + 1) j++;
+            fireTableRowsUpdated(sorted[i], sorted[j]);
+            i = j + 1;
+        }
+    }
+
+    @Override public int getRowCount(){ return rows.size(); }
+    @Override public int getColumnCount(){ return COLS.length; }
+    @Override public String getColumnName(int c){ return COLS[c]; }
+    @Override public Class<?> getColumnClass(int c){ return c == 0 || c == 3 ? Integer.class : String.class; }
+
+    @Override public Object getValueAt(int row, int col) {
+        Item it = rows.get(row);
+        return switch (col) {
+            case 0 -> it.getId();
+            case 1 -> it.getName();
+            case 2 -> Money.format(it.getPriceCents());
+            default -> store.getAvailable(it.getId());  // less what open carts hold
+        };
+    }
+}
@@ -1,48 +1,141 @@
 package pos;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
+/**
+ * A sale, and while it is being rung up, the live cart. Subtotal is kept as a running sum that
+ * every line change adjusts by its delta, so subtotal, discount, tax and total are O(1) however
+ * long the basket; attached promotions are evaluated per changed line as well. Amounts are
+ * cents and rates basis points; see {@link Money}. Not thread-safe: a cart belongs to one till.
+ */
 public class Invoice {
     public static class Line {
         private final Item item;
-        private final int quantity;
-        public Line(Item item, int quantity){ this.item = item; this.quantity = quantity; }
+        private int quantity;
+        private final long unitPrice; // cents, price at the time the line was rung up
+        public Line(Item item, int quantity){ this(item, quantity, item.getPriceCents()); }
+        public Line(Item item, int quantity, long unitCents){ this.item = item; this.quantity = quantity; this.unitPrice = unitCents; }
         public Item getItem(){ return item; }
         public int getQuantity(){ return quantity; }
-        public double getLineTotal(){ return item.getPrice() * quantity; }
+        public long getUnitCents(){ return unitPrice; }
+        public long getLineCents(){ return Money.times(unitPrice, quantity); }
     }
 
     private final Customer customer;
     private final String showroom;
-    private final double taxRate;
+    private final long taxBasisPoints;
     private final List<Line> items = new ArrayList<>();
+    private long subtotal;            // running sum of line totals
+    private long discountBasisPoints; // percent discount, or
+    private long discountCents;       // fixed discount; at most one of the two is set
+    private PromotionEngine.Session promotions; // live cart: evaluated on every line change
+    private long recordedPromotionCents;        // loaded sale: saving as recorded
+    private ReservationLedger.Reservation reservation; // live cart: the stock its lines hold
+    private CartRecoveryLog recovery;                  // live cart: where its edits are kept, or null
+    private long id;          // assigned by the store when the sale is logged
+    private long timestamp;   // epoch millis of the sale
 
-    public Invoice(Customer customer, String showroom, double taxRate) {
-        this.customer = customer; this.showroom = showroom; this.taxRate = taxRate;
+    public Invoice(Customer customer, String showroom, long taxBasisPoints) {
+        this.customer = customer; this.showroom = showroom; this.taxBasisPoints = taxBasisPoints;
     }
-    public void addItem(Item item, int qty){ items.add(new Line(item, qty)); }
-    public List<Line> getLines(){ return items; }
+    Invoice(long id, long timestamp, Customer customer, String showroom, long taxBasisPoints) {
+        this(customer, showroom, taxBasisPoints);
+        this.id = id; this.timestamp = timestamp;
+    }
+    public void addItem(Item item, int qty){ addLine(new Line(item, qty)); }
+    public void addLine(Line line){
+        subtotal = Math.addExact(subtotal, line.getLineCents());
+        items.add(line);
+        if (promotions != null) promotions.update(line.item.getId(), line.unitPrice, line.quantity);
+    }
+    /** Changes the quantity of line {@code index}; returns the old quantity. */
+    public int setQuantity(int index, int qty){
+        Line l = items.get(index);
+        int old = l.quantity;
+        subtotal = Math.addExact(subtotal, Money.times(l.unitPrice, qty - old));
+        l.quantity = qty;
+        if (promotions != null) promotions.update(l.item.getId(), l.unitPrice, qty - old);
+        return old;
+    }
+    public Line removeLine(int index){
+        Line l = items.remove(index);
+        subtotal -= l.getLineCents();
+        if (promotions != null) promotions.update(l.item.getId(), l.unitPrice, -l.quantity);
+        return l;
+    }
+    /** Empties the cart and drops any discount. */
+    public void clear(){
+        if (promotions != null) for (Line l : items) promotions.update(l.item.getId(), l.unitPrice, -l.quantity);
+        items.clear();
+        subtotal = 0;
+        discountBasisPoints = discountCents = 0;
+    }
+    /** Read-only view of the lines, in the order they were rung up. */
+    public List<Line> getLines(){ return Collections.unmodifiableList(items); }
+    public int getLineCount(){ return items.size(); }
     public Customer getCustomer(){ return customer; }
     public String getShowroom(){ return showroom; }
-    public double getTaxRate(){ return taxRate; }
+    public long getTaxBasisPoints(){ return taxBasisPoints; }
+    public long getId(){ return id; }
+    public long getTimestamp(){ return timestamp; }
+    void stamp(long id, long timestamp){ this.id = id; this.timestamp = timestamp; }
 
-    public double calculateSubtotal(){
-        double s=0; for(Line l:items) s+=l.getLineTotal(); return s;
+    // ---- Promotions ----
+    /** Attaches the promotion state this cart is priced with; lines already on it are counted in. */
+    public void setPromotions(PromotionEngine.Session session){
+        promotions = session;
+        for (Line l : items) session.update(l.item.getId(), l.unitPrice, l.quantity);
+    }
+    public PromotionEngine.Session getPromotions(){ return promotions; }
+    void setRecordedPromotionCents(long cents){ recordedPromotionCents = cents; }
+    /** Saving from promotions; never more than the subtotal. */
+    public long promotionCents(){
+        long p = promotions != null ? promotions.discountCents() : recordedPromotionCents;
+        return Math.max(0, Math.min(p, subtotal));
+    }
+
+    // ---- Stock holds (see CheckoutService) ----
+    void setReservation(ReservationLedger.Reservation r){ reservation = r; }
+    ReservationLedger.Reservation getReservation(){ return reservation; }
+    void setRecovery(CartRecoveryLog log){ recovery = log; }
+    CartRecoveryLog getRecovery(){ return recovery; }
+
+    // ---- Manual discount (on the subtotal after promotions) ----
+    public void setDiscountPercent(long basisPoints){ discountBasisPoints = basisPoints; discountCents = 0; }
+    public void setDiscountAmount(long cents){ discountCents = cents; discountBasisPoints = 0; }
+    /** Percent discount in basis points, or 0 when the discount is a fixed amount (or none). */
+    public long getDiscountBasisPoints(){ return discountBasisPoints; }
+    public boolean isPercentDiscount(){ return discountBasisPoints > 0; }
+
+    // ---- Totals (all O(1)) ----
+    public long subtotalCents(){ return subtotal; }
+    /** Never more than what is left after promotions. */
+    public long discountCents(){
+        long base = subtotal - promotionCents();
+        long d = discountBasisPoints > 0 ? Money.percent(base, discountBasisPoints) : discountCents;
+        return Math.max(0, Math.min(d, base));
+    }
+    /** Tax on the discounted subtotal. */
+    public long taxCents(){
+        return Money.percent(subtotal - promotionCents() - discountCents(), taxBasisPoints);
     }
-    public double calculateTotal(){
-        return calculateSubtotal() * (1 + taxRate);
+    public long totalCents(){
+        return subtotal - promotionCents() - discountCents() + taxCents();
     }
 
     @Override public String toString(){
         StringBuilder sb=new StringBuilder();
         sb.append("Invoice for ").append(customer.getName()).append(" @ ").append(showroom).append("\n");
         for(Line l:items){
-            sb.append(l.getItem().getName()).append(" x").append(l.getQuantity())
-              .append(" = $").append(String.format("%.2f", l.getLineTotal())).append("\n");
+            sb.append(l.getItem().getName()).append(" x").append(l.getQuantity()).append(" = ");
+            Money.append(sb, l.getLineCents()).append("\n");
         }
-        sb.append("Subtotal: $").append(String.format("%.2f", calculateSubtotal())).append("\n");
-        sb.append("Total: $").append(String.format("%.2f", calculateTotal()));
+        Money.append(sb.append("Subtotal: "), subtotalCents()).append("\n");
+        if (promotionCents() > 0) Money.append(sb.append("Promotions: "), promotionCents()).append("\n");
+        if (discountCents() > 0) Money.append(sb.append("Discount: "), discountCents()).append("\n");
+        Money.append(sb.append("Total: "), totalCents());
         return sb.toString();
     }
 }
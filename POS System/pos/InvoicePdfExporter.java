@@ -0,0 +1,199 @@
+package pos;
+
+import java.awt.Desktop;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import javax.swing.SwingUtilities;
+
+import com.itextpdf.text.Document;
+import com.itextpdf.text.Font;
+import com.itextpdf.text.Paragraph;
+import com.itextpdf.text.pdf.PdfPTable;
+import com.itextpdf.text.pdf.PdfWriter;
+
+/**
+ * Renders invoice PDFs on a small bounded worker pool so the till never waits for iText.
+ * Callers hand over an immutable {@link Snapshot}; the result (file or error plus render time)
+ * comes back on the Swing event thread.
+ */
+public class InvoicePdfExporter {
+    private static final int WORKERS = 2;
+    private static final int QUEUE = 16;
+
+    // iText fonts and the header row are immutable once built, so every job shares them
+    private static final Font TITLE_FONT = new Font(Font.FontFamily.HELVETICA, 18, Font.BOLD);
+    private static final PdfPTable HEADER = headerTemplate();
+
+    private static final ThreadLocal<StringBuilder> AMOUNT = ThreadLocal.withInitial(() -> new StringBuilder(24));
+    private static final ThreadLocal<SimpleDateFormat> STAMP =
+            ThreadLocal.withInitial(() -> new SimpleDateFormat("yyyy-MM-dd HH:mm:ss"));
+
+    private final ThreadPoolExecutor pool;
+    private final AtomicLong jobs = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /** Everything a PDF needs, copied off the live cart so the cashier can move on. */
+    public static final class Snapshot {
+        final String customer, showroom, payment;
+        final Date date;
+        final List<String> names = new ArrayList<>();
+        final long[] prices; final int[] qtys;   // cents
+        final long subtotal, discount, tax, grand;
+        final String discountPrefix; // "" or "10.00% = "
+
+        public Snapshot(String customer, String showroom, String payment, Date date,
+                        List<Invoice.Line> lines, long subtotal, long discount,
+                        String discountPrefix, long tax, long grand) {
+            this.customer = customer; this.showroom = showroom; this.payment = payment;
+            this.date = new Date(date.getTime());
+            prices = new long[lines.size()];
+            qtys = new int[lines.size()];
+            for (int i = 0; i < lines.size(); i++) {
+                Invoice.Line l = lines.get(i);
+                names.add(l.getItem().getName());
+                prices[i] = l.getUnitCents();
+                qtys[i] = l.getQuantity();
+            }
+            this.subtotal = subtotal; this.discount = discount; this.discountPrefix = discountPrefix;
+            this.tax = tax; this.grand = grand;
+        }
+    }
+
+    /** Outcome of one job; {@code file} is null when {@code error} is set. */
+    public static final class Result {
+        public final File file;
+        public final Exception error;
+        public final long renderNanos;
+        Result(File file, Exception error, long renderNanos){ this.file = file; this.error = error; this.renderNanos = renderNanos; }
+    }
+
+    public InvoicePdfExporter() {
+        AtomicInteger n = new AtomicInteger();
+        pool = new ThreadPoolExecutor(WORKERS, WORKERS, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE), r -> {
+                    Thread t = new Thread(r, "pos-pdf-" + n.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        pool.allowCoreThreadTimeOut(true);
+    }
+
+    /** Queues a render; {@code done} runs on the EDT. A full queue is reported as an immediate failure. */
+    public void export(Snapshot snap, boolean openWhenDone, Consumer<Result> done) {
+        try {
+            pool.execute(() -> {
+                long t0 = System.nanoTime();
+                File file = null;
+                Exception error = null;
+                try (Metrics.Span s = Metrics.PDF_EXPORT.begin()) {
+                    file = render(snap);
+                    s.bytes(file.length());
+                } catch (Exception e) {
+                    error = e;
+                }
+                long took = System.nanoTime() - t0;
+                record(took);
+                Result r = new Result(file, error, took);
+                SwingUtilities.invokeLater(() -> done.accept(r));
+                if (file != null && openWhenDone) {
+                    try { Desktop.getDesktop().open(file); } catch (Exception ignored) {}
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Result r = new Result(null, new IllegalStateException("export queue is full"), 0);
+            SwingUtilities.invokeLater(() -> done.accept(r));
+        }
+    }
+
+    /** "n jobs, avg x ms, max y ms" over everything rendered so far. */
+    public String getStats() {
+        long n = jobs.get();
+        if (n == 0) return "no exports yet";
+        return String.format("%d jobs, avg %.1f ms, max %.1f ms", n,
+                totalNanos.get() / 1e6 / n, maxNanos.get() / 1e6);
+    }
+
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private void record(long nanos) {
+        jobs.incrementAndGet();
+        totalNanos.addAndGet(nanos);
+        maxNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    private static File render(Snapshot s) throws Exception {
+        String ts = new SimpleDateFormat("yyyyMMdd_HHmmss").format(s.date);
+        File file = uniqueFile("invoice_" + ts);
+        Document document = new Document();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            PdfWriter.getInstance(document, out);
+            document.open();
+
+            Paragraph title = new Paragraph("SuperMart POS - Sales Invoice\n\n", TITLE_FONT);
+            title.setAlignment(Paragraph.ALIGN_CENTER);
+            document.add(title);
+
+            document.add(new Paragraph("Customer : " + s.customer));
+            document.add(new Paragraph("Showroom : " + s.showroom));
+            document.add(new Paragraph("Date     : " + STAMP.get().format(s.date)));
+            document.add(new Paragraph("Payment  : " + s.payment));
+            document.add(new Paragraph(" "));
+
+            PdfPTable t = new PdfPTable(HEADER);
+            for (int i = 0; i < s.qtys.length; i++) {
+                t.addCell(s.names.get(i));
+                t.addCell(amount(s.prices[i]));
+                t.addCell(String.valueOf(s.qtys[i]));
+                t.addCell(amount(Money.times(s.prices[i], s.qtys[i])));
+            }
+            document.add(t);
+
+            document.add(new Paragraph("\nSubtotal    : " + amount(s.subtotal)));
+            if (s.discountPrefix != null) {
+                document.add(new Paragraph("Discount    : " + s.discountPrefix + amount(s.discount)));
+            }
+            document.add(new Paragraph("Tax (0%)   : " + amount(s.tax)));
+            document.add(new Paragraph("Grand Total : " + amount(s.grand)));
+            document.add(new Paragraph("\nThank you!"));
+            document.close();
+        } catch (Exception e) {
+            file.delete();
+            throw e;
+        }
+        return file;
+    }
+
+    private static String amount(long cents) {
+        StringBuilder sb = AMOUNT.get();
+        sb.setLength(0);
+        return Money.append(sb, cents).toString();
+    }
+
+    // Two jobs in the same second must not overwrite each other
+    private static synchronized File uniqueFile(String base) {
+        File f = new File(base + ".pdf");
+        for (int i = 2; f.exists(); i++) f = new File(base + "_" + i + ".pdf");
+        try { f.createNewFile(); } catch (Exception ignored) {}
+        return f;
+    }
+
+    private static PdfPTable headerTemplate() {
+        PdfPTable t = new PdfPTable(4);
+        t.setWidthPercentage(100);
+        t.addCell("Item");
+        t.addCell("Price (LKR)");
+        t.addCell("Qty");
+        t.addCell("Line Total (LKR)");
+        t.setHeaderRows(1);
+        return t;
+    }
+}
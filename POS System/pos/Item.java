@@ -1,38 +1,52 @@
 package pos;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class Item {
     private final int id;
-    private String name;
-    private double price;
-    private int stock;
+    private volatile String name;
+    private volatile long price; // cents, see Money
+    private final AtomicInteger stock;
 
-    public Item(int id, String name, double price, int stock) {
-        this.id = id; this.name = name; this.price = price; this.stock = stock;
+    public Item(int id, String name, long priceCents, int stock) {
+        this.id = id; this.name = name; this.price = priceCents; this.stock = new AtomicInteger(stock);
     }
     public int getId() { return id; }
     public String getName() { return name; }
-    public double getPrice() { return price; }
-    public int getStock() { return stock; }
+    public long getPriceCents() { return price; }
+    public int getStock() { return stock.get(); }
 
     public void setName(String name) { this.name = name; }
-    public void setPrice(double price) { this.price = price; }
-    public void setStock(int stock) { this.stock = stock; }
-    public void reduceStock(int qty) { stock = Math.max(0, stock - qty); }
+    public void setPriceCents(long price) { this.price = price; }
+    public void setStock(int stock) { this.stock.set(stock); }
+    public void addStock(int qty) { stock.addAndGet(qty); }
+    public void reduceStock(int qty) { stock.updateAndGet(s -> Math.max(0, s - qty)); }
+
+    /** Takes {@code qty} units only if that many are on hand; never oversells under concurrent callers. */
+    public boolean tryReserve(int qty) {
+        if (qty <= 0) return false;
+        int s;
+        do {
+            s = stock.get();
+            if (s < qty) return false;
+        } while (!stock.compareAndSet(s, s - qty));
+        return true;
+    }
 
     // CSV helpers
     public String toCsv() {
-        return id + "," + escape(name) + "," + price + "," + stock;
+        return id + "," + escape(name) + "," + Money.plain(price) + "," + stock.get();
     }
     public static Item fromCsv(String line) {
         String[] p = split(line, 4);
-        return new Item(Integer.parseInt(p[0]), unescape(p[1]),
-                Double.parseDouble(p[2]), Integer.parseInt(p[3]));
+        return new Item(Integer.parseInt(p[0]), p[1],
+                Money.parse(p[2]), Integer.parseInt(p[3]));
     }
-    static String escape(String s){ return s.replace(",", "⎜"); }
-    static String unescape(String s){ return s.replace("⎜", ","); }
-    static String[] split(String s,int n){
-        String[] a=s.split(",",-1);
-        if(a.length<n){String[] b=new String[n];System.arraycopy(a,0,b,0,a.length);for(int i=a.length;i<n;i++)b[i]="";return b;}
-        return a;
+    /** The same from a row of {@link CsvCodec#read}. */
+    public static Item fromCsv(CsvCodec.Row r) {
+        return new Item(r.getInt(0), r.getString(1), r.getCents(2), r.getInt(3));
     }
+    // RFC 4180 quoting; see CsvCodec
+    static String escape(String s){ return CsvCodec.field(s); }
+    static String[] split(String s,int n){ return CsvCodec.split(s, n); }
 }
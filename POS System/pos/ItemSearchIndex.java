@@ -0,0 +1,234 @@
+package pos;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Type-ahead index over item names.
+ *
+ * Names are lower-cased and split into alphanumeric tokens. Every token is inserted into a
+ * prefix trie whose nodes carry a sorted posting list of the items having a token with that
+ * prefix, so a query token costs one walk of its own length. Trigram postings back this up for
+ * matches inside a word ("phone" in "iPhone"). Multi-token queries intersect postings starting
+ * from the shortest list and stop as soon as {@code limit} hits are found.
+ *
+ * Kept current through {@link InventoryEvent}s; safe for one writer and many readers.
+ */
+public class ItemSearchIndex implements InventoryEvent.Listener {
+    private final SimpleStore store;
+    private final Node root = new Node();
+    private final Map<String, IntList> trigrams = new HashMap<>();
+    private final Map<Integer, String> indexed = new HashMap<>(); // id -> name as indexed
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public ItemSearchIndex(SimpleStore store) {
+        this.store = store;
+        store.addInventoryListener(this);
+        lock.writeLock().lock();
+        try {
+            for (Item it : store.getInventory().values()) add(it.getId(), it.getName());
+        } finally { lock.writeLock().unlock(); }
+    }
+
+    @Override public void inventoryChanged(InventoryEvent e) {
+        if (e.getType() == InventoryEvent.Type.STOCK) return;
+        Item it = e.getItem();
+        lock.writeLock().lock();
+        try {
+            String old = indexed.get(it.getId());
+            if (e.getType() == InventoryEvent.Type.REMOVED) {
+                if (old != null) remove(it.getId(), old);
+            } else if (!it.getName().equals(old)) {
+                if (old != null) remove(it.getId(), old);
+                add(it.getId(), it.getName());
+            }
+        } finally { lock.writeLock().unlock(); }
+    }
+
+    /**
+     * Items with a name word starting with each token of {@code query}, in id order, then items
+     * whose name contains each token anywhere; at most {@code limit}.
+     */
+    public List<Item> search(String query, int limit) {
+        List<String> tokens = tokens(query);
+        if (tokens.isEmpty() || limit <= 0) return Collections.emptyList();
+        int[] ids;
+        lock.readLock().lock();
+        try {
+            ids = byPrefix(tokens, limit);
+            if (ids.length < limit) ids = withInfix(tokens, query.toLowerCase(Locale.ROOT), ids, limit);
+        } finally { lock.readLock().unlock(); }
+        List<Item> out = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            Item it = store.getInventory().get(id);
+            if (it != null) out.add(it);
+        }
+        return out;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try { return indexed.size(); } finally { lock.readLock().unlock(); }
+    }
+
+    // ---- Query ----
+
+    private int[] byPrefix(List<String> tokens, int limit) {
+        IntList[] lists = new IntList[tokens.size()];
+        for (int i = 0; i < lists.length; i++) {
+            Node n = root.find(tokens.get(i));
+            if (n == null || n.ids.size == 0) return new int[0];
+            lists[i] = n.ids;
+        }
+        return intersect(lists, limit, null);
+    }
+
+    /** Fills up with items whose name contains each token anywhere, using trigram postings as a filter. */
+    private int[] withInfix(List<String> tokens, String lowerQuery, int[] have, int limit) {
+        List<IntList> lists = new ArrayList<>();
+        for (String t : tokens) {
+            for (int i = 0; i + 3 <= t.length(); i++) {
+                IntList l = trigrams.get(t.substring(i, i + 3));
+                if (l == null) return have;
+                lists.add(l);
+            }
+        }
+        if (lists.isEmpty()) return have; // tokens too short for trigrams: prefix hits only
+        Set<Integer> seen = new HashSet<>();
+        for (int id : have) seen.add(id);
+        int[] extra = intersect(lists.toArray(new IntList[0]), limit + have.length, id -> {
+            if (seen.contains(id)) return false;
+            String name = indexed.get(id);
+            for (String t : tokens) if (!name.contains(t)) return false;
+            return true;
+        });
+        int[] out = Arrays.copyOf(have, Math.min(limit, have.length + extra.length));
+        System.arraycopy(extra, 0, out, have.length, out.length - have.length);
+        return out;
+    }
+
+    private interface IdFilter { boolean test(int id); }
+
+    private static int[] intersect(IntList[] lists, int limit, IdFilter filter) {
+        Arrays.sort(lists, Comparator.comparingInt(l -> l.size));
+        IntList first = lists[0];
+        int[] out = new int[Math.min(limit, first.size)];
+        int n = 0;
+        outer:
+        for (int i = 0; i < first.size && n < out.length; i++) {
+            int id = first.a[i];
+            for (int k = 1; k < lists.length; k++) if (lists[k].indexOf(id) < 0) continue outer;
+            if (filter != null && !filter.test(id)) continue;
+            out[n++] = id;
+        }
+        return n == out.length ? out : Arrays.copyOf(out, n);
+    }
+
+    // ---- Maintenance (write lock held) ----
+
+    private void add(int id, String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        indexed.put(id, lower);
+        for (String t : tokens(lower)) {
+            Node n = root;
+            for (int i = 0; i < t.length(); i++) {
+                n = n.child(t.charAt(i), true);
+                n.ids.add(id);
+            }
+        }
+        for (String g : trigramsOf(lower)) trigrams.computeIfAbsent(g, k -> new IntList()).add(id);
+    }
+
+    private void remove(int id, String lower) {
+        indexed.remove(id);
+        for (String t : tokens(lower)) {
+            Node n = root;
+            for (int i = 0; i < t.length() && n != null; i++) {
+                n = n.child(t.charAt(i), false);
+                if (n != null) n.ids.remove(id);
+            }
+        }
+        for (String g : trigramsOf(lower)) {
+            IntList l = trigrams.get(g);
+            if (l != null && l.remove(id) && l.size == 0) trigrams.remove(g);
+        }
+    }
+
+    private static Set<String> trigramsOf(String lower) {
+        Set<String> out = new HashSet<>();
+        for (String t : tokens(lower)) for (int i = 0; i + 3 <= t.length(); i++) out.add(t.substring(i, i + 3));
+        return out;
+    }
+
+    static List<String> tokens(String s) {
+        List<String> out = new ArrayList<>(4);
+        int start = -1;
+        for (int i = 0; i <= s.length(); i++) {
+            boolean word = i < s.length() && Character.isLetterOrDigit(s.charAt(i));
+            if (word && start < 0) start = i;
+            else if (!word && start >= 0) {
+                out.add(s.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return out;
+    }
+
+    // ---- Structures ----
+
+    private static final class Node {
+        char[] keys = new char[0];
+        Node[] kids = new Node[0];
+        final IntList ids = new IntList();
+
+        Node child(char c, boolean create) {
+            int i = Arrays.binarySearch(keys, c);
+            if (i >= 0) return kids[i];
+            if (!create) return null;
+            i = -i - 1;
+            char[] k = new char[keys.length + 1];
+            Node[] n = new Node[kids.length + 1];
+            System.arraycopy(keys, 0, k, 0, i);
+            System.arraycopy(kids, 0, n, 0, i);
+            k[i] = c;
+            n[i] = new Node();
+            System.arraycopy(keys, i, k, i + 1, keys.length - i);
+            System.arraycopy(kids, i, n, i + 1, kids.length - i);
+            keys = k;
+            kids = n;
+            return n[i];
+        }
+
+        Node find(String prefix) {
+            Node n = this;
+            for (int i = 0; i < prefix.length() && n != null; i++) n = n.child(prefix.charAt(i), false);
+            return n;
+        }
+    }
+
+    /** Sorted set of ints in a growable array; a token shared by many items costs 4 bytes per item. */
+    private static final class IntList {
+        int[] a = new int[2];
+        int size;
+
+        int indexOf(int v){ return Arrays.binarySearch(a, 0, size, v); }
+
+        void add(int v) {
+            int i = indexOf(v);
+            if (i >= 0) return;
+            i = -i - 1;
+            if (size == a.length) a = Arrays.copyOf(a, size * 2);
+            System.arraycopy(a, i, a, i + 1, size - i);
+            a[i] = v;
+            size++;
+        }
+
+        boolean remove(int v) {
+            int i = indexOf(v);
+            if (i < 0) return false;
+            System.arraycopy(a, i + 1, a, i, size - i - 1);
+            size--;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,276 @@
+package pos;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead journal kept as numbered segments in the data directory.
+ * One record = one line: {@code seq <TAB> crc32 <TAB> op <TAB> op ...}; all ops of a record
+ * are applied together on replay, so a record is the unit of atomicity. A single writer
+ * thread drains whatever has been queued, writes it in one go and fsyncs once (group commit).
+ */
+public class Journal implements AutoCloseable {
+    private static final String PREFIX = "journal-", SUFFIX = ".log";
+    private static final Object ROTATE = new Object();
+    private static final Object STOP = new Object();
+
+    private final File dir;
+    private final File metaFile;
+    private final BlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+    private final Thread writer;
+
+    private long nextSeq = 1;       // carried across checkpoints in the meta file, so it never goes back
+    private long durableSeq = 0;
+    private long rotatedSeq;        // last seq in the segment closed by rotate()
+    private Tap tap;
+    private int segment;
+    private int coveredSegment;     // highest segment already folded into the CSV snapshots
+    private long coveredSalesLength = -1;
+    private IOException failure;
+    private boolean closed;
+
+    private FileChannel channel;    // owned by the writer thread
+
+    /** Sees every record as it is appended, in sequence order; called under the journal's lock, so keep it short. */
+    public interface Tap {
+        void record(long seq, String[] ops);
+    }
+
+    private static final class Entry {
+        final long seq; final byte[] bytes;
+        Entry(long seq, byte[] bytes){ this.seq = seq; this.bytes = bytes; }
+    }
+
+    public Journal(File dir) {
+        this.dir = dir;
+        this.metaFile = new File(dir, "journal.ckpt");
+        readMeta();
+        rotatedSeq = nextSeq - 1;
+        int last = coveredSegment;
+        for (int s : segments()) last = Math.max(last, s);
+        segment = last + 1;
+        int first = segment;
+        writer = new Thread(() -> writeLoop(first), "pos-journal");
+        writer.setDaemon(true);
+    }
+
+    // ---- Recovery ----
+
+    /** Sales file length recorded by the last completed checkpoint, or -1 if unknown. */
+    public long getCoveredSalesLength(){ return coveredSalesLength; }
+    /** Highest segment folded into the snapshots by the last completed checkpoint. */
+    public synchronized int getCoveredSegment(){ return coveredSegment; }
+
+    /** Feeds the ops of every intact record newer than the last checkpoint, in order, then starts the writer. */
+    public void replay(Consumer<String[]> apply) {
+        for (int s : segments()) {
+            if (s <= coveredSegment) { segmentFile(s).delete(); continue; }
+            try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(segmentFile(s)), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = br.readLine()) != null) {
+                    String[] ops = parse(line);
+                    if (ops == null) break; // torn tail: everything after it was never acknowledged
+                    apply.accept(ops);
+                }
+            } catch (IOException ignored) {}
+        }
+        writer.start();
+    }
+
+    // ---- Appending ----
+
+    /** Queues one atomic record and returns its sequence number; it is durable once {@link #awaitDurable} returns. */
+    public synchronized long append(String... ops) {
+        if (closed) throw new IllegalStateException("journal closed");
+        long seq = nextSeq++;
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < ops.length; i++) {
+            if (i > 0) body.append('\t');
+            body.append(encode(ops[i]));
+        }
+        CRC32 crc = new CRC32();
+        crc.update(body.toString().getBytes(StandardCharsets.UTF_8));
+        String line = seq + "\t" + Long.toHexString(crc.getValue()) + "\t" + body + "\n";
+        queue.add(new Entry(seq, line.getBytes(StandardCharsets.UTF_8)));
+        if (tap != null) tap.record(seq, ops);
+        return seq;
+    }
+
+    public synchronized void setTap(Tap tap){ this.tap = tap; }
+
+    /** Sequence number of the last record appended (0 if none ever was). */
+    public synchronized long lastSeq(){ return nextSeq - 1; }
+
+    /**
+     * Returns once record {@code seq} is on disk. Throws {@link UncheckedIOException} if the
+     * writer failed, or if the caller is interrupted first (with the interrupt flag kept): the
+     * record may still be lost, so it must not be reported as saved.
+     */
+    public synchronized void awaitDurable(long seq) {
+        while (durableSeq < seq && failure == null) {
+            try { wait(); } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new UncheckedIOException(new InterruptedIOException("interrupted before record " + seq + " was on disk"));
+            }
+        }
+        if (failure != null) throw new UncheckedIOException(failure);
+    }
+
+    /**
+     * Closes the current segment: records appended after this call land in a new one.
+     * Returns the number of the closed segment, which a checkpoint may discard once its snapshot is on disk.
+     */
+    public synchronized int rotate() {
+        queue.add(ROTATE);
+        rotatedSeq = nextSeq - 1;
+        return segment++;
+    }
+
+    /** Records that every segment up to {@code upto} is folded into the snapshots, then deletes them. */
+    public void checkpointed(int upto, long salesLength) {
+        long seq;
+        synchronized (this) { seq = rotatedSeq; }
+        File tmp = new File(dir, metaFile.getName() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(("segment=" + upto + "\nsales=" + salesLength + "\nseq=" + seq + "\n").getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        } catch (IOException e) { return; }
+        try {
+            Files.move(tmp.toPath(), metaFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) { return; }
+        synchronized (this) { coveredSegment = upto; coveredSalesLength = salesLength; }
+        for (int s : segments()) if (s <= upto) segmentFile(s).delete();
+    }
+
+    /** Drains everything queued so far and stops the writer. */
+    @Override public void close() {
+        synchronized (this) {
+            if (closed) return;
+            closed = true;
+            queue.add(STOP);
+        }
+        try { writer.join(); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+    }
+
+    // ---- Writer thread ----
+
+    private void writeLoop(int current) {
+        List<Object> batch = new ArrayList<>();
+        boolean running = true;
+        while (running) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch);
+                long last = 0;
+                ByteArrayOutputStream buf = new ByteArrayOutputStream();
+                for (Object o : batch) {
+                    if (o == STOP) { running = false; break; }
+                    if (o == ROTATE) {
+                        flush(buf, current);
+                        closeChannel();
+                        current++;
+                    } else {
+                        Entry e = (Entry) o;
+                        buf.write(e.bytes, 0, e.bytes.length);
+                        last = e.seq;
+                    }
+                }
+                flush(buf, current);
+                if (channel != null) {
+                    try (Metrics.Span s = Metrics.JOURNAL_SYNC.begin()) { channel.force(false); }
+                }
+                synchronized (this) {
+                    if (last > durableSeq) durableSeq = last;
+                    notifyAll();
+                }
+            } catch (InterruptedException e) {
+                running = false;
+            } catch (IOException e) {
+                synchronized (this) { failure = e; notifyAll(); }
+            }
+            batch.clear();
+        }
+        try { closeChannel(); } catch (IOException ignored) {}
+    }
+
+    private void flush(ByteArrayOutputStream buf, int seg) throws IOException {
+        if (buf.size() == 0) return;
+        if (channel == null) {
+            channel = FileChannel.open(segmentFile(seg).toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        ByteBuffer bb = ByteBuffer.wrap(buf.toByteArray());
+        while (bb.hasRemaining()) channel.write(bb);
+        buf.reset();
+    }
+
+    private void closeChannel() throws IOException {
+        if (channel == null) return;
+        channel.force(false);
+        channel.close();
+        channel = null;
+    }
+
+    // ---- Format helpers ----
+
+    private File segmentFile(int s){ return new File(dir, PREFIX + String.format("%06d", s) + SUFFIX); }
+
+    private int[] segments() {
+        String[] names = dir.list((d, n) -> n.startsWith(PREFIX) && n.endsWith(SUFFIX));
+        if (names == null) return new int[0];
+        return Arrays.stream(names)
+                .mapToInt(n -> Integer.parseInt(n.substring(PREFIX.length(), n.length() - SUFFIX.length())))
+                .sorted().toArray();
+    }
+
+    private void readMeta() {
+        if (!metaFile.exists()) return;
+        try {
+            for (String line : Files.readAllLines(metaFile.toPath(), StandardCharsets.UTF_8)) {
+                if (line.startsWith("segment=")) coveredSegment = Integer.parseInt(line.substring(8).trim());
+                else if (line.startsWith("sales=")) coveredSalesLength = Long.parseLong(line.substring(6).trim());
+                else if (line.startsWith("seq=")) nextSeq = Long.parseLong(line.substring(4).trim()) + 1;
+            }
+        } catch (Exception ignored) {}
+    }
+
+    private String[] parse(String line) {
+        int a = line.indexOf('\t');
+        int b = a < 0 ? -1 : line.indexOf('\t', a + 1);
+        if (b < 0) return null;
+        String body = line.substring(b + 1);
+        CRC32 crc = new CRC32();
+        crc.update(body.getBytes(StandardCharsets.UTF_8));
+        if (!Long.toHexString(crc.getValue()).equals(line.substring(a + 1, b))) return null;
+        try { nextSeq = Math.max(nextSeq, Long.parseLong(line.substring(0, a)) + 1); }
+        catch (NumberFormatException e) { return null; }
+        String[] ops = body.split("\t", -1);
+        for (int i = 0; i < ops.length; i++) ops[i] = decode(ops[i]);
+        return ops;
+    }
+
+    static String encode(String s) {
+        return s.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    static String decode(String s) {
+        if (s.indexOf('\\') < 0) return s;
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\' && i + 1 < s.length()) {
+                char n = s.charAt(++i);
+                sb.append(n == 't' ? '\t' : n == 'n' ? '\n' : n == 'r' ? '\r' : n);
+            } else sb.append(c);
+        }
+        return sb.toString();
+    }
+}
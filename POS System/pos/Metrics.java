@@ -0,0 +1,176 @@
+package pos;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import javax.management.ObjectName;
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Latency of the till's hot paths. Each {@link Timer} keeps a {@link LatencyHistogram} and, while
+ * a flight recording is running, emits a {@code pos.Operation} JFR event per call:
+ * <pre>
+ * try (Metrics.Span s = Metrics.LOG_SALE.begin()) { ... }
+ * </pre>
+ * The histograms are published as {@code pos:type=Latency,name=...} MXBeans by {@link #register()}
+ * and written to a text file by {@link #startDump}.
+ */
+public final class Metrics {
+    private static final Map<String, Timer> TIMERS = new ConcurrentSkipListMap<>();
+
+    public static final Timer ADD_ITEM     = timer("checkout.addItem");
+    public static final Timer CONFIRM      = timer("checkout.confirm");
+    public static final Timer LOG_SALE     = timer("store.logSale");
+    public static final Timer CHECKPOINT   = timer("store.checkpoint");   // saveAll, the periodic one and close
+    public static final Timer FILE_READ    = timer("store.file.read");
+    public static final Timer FILE_WRITE   = timer("store.file.write");   // written and synced
+    public static final Timer JOURNAL_SYNC = timer("journal.fsync");      // one per group commit
+    public static final Timer PDF_EXPORT   = timer("pdf.export");
+    public static final Timer EDT_DISPATCH = timer("edt.dispatch");       // see EdtWatchdog
+
+    private static ScheduledExecutorService dumper;
+    private static File dumpFile;
+
+    private Metrics(){}
+
+    /** The timer called {@code name}, created on first use. */
+    public static Timer timer(String name){ return TIMERS.computeIfAbsent(name, Timer::new); }
+
+    public static Collection<Timer> getTimers(){ return Collections.unmodifiableCollection(TIMERS.values()); }
+
+    public static final class Timer {
+        private final String name;
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        private Timer(String name){ this.name = name; }
+
+        public String getName(){ return name; }
+        public LatencyHistogram.Snapshot snapshot(){ return histogram.snapshot(); }
+
+        public Span begin(){ return new Span(this, null); }
+        /** As {@link #begin()}, with a detail such as the file name for the JFR event. */
+        public Span begin(String detail){ return new Span(this, detail); }
+
+        public void record(long nanos){ histogram.record(nanos); }
+    }
+
+    /** One timed call; closing it records the latency and commits the event if JFR wants it. */
+    @Name("pos.Operation")
+    @Label("POS Operation")
+    @Category("POS")
+    @Description("A timed till operation: checkout, sale, checkpoint, file I/O or PDF export")
+    @StackTrace(false)
+    public static final class Span extends Event implements AutoCloseable {
+        @Label("Operation") String operation;
+        @Label("Detail") String detail;
+        @Label("Bytes") long bytes;
+        private final transient Timer timer;
+        private final transient long start;
+
+        Span(Timer timer, String detail) {
+            this.timer = timer;
+            this.detail = detail;
+            start = System.nanoTime();
+            begin();
+        }
+
+        /** Bytes read or written, for file spans. */
+        public Span bytes(long n){ bytes = n; return this; }
+
+        @Override public void close() {
+            timer.record(System.nanoTime() - start);
+            end();
+            if (shouldCommit()) {
+                operation = timer.name;
+                commit();
+            }
+        }
+    }
+
+    // ---- JMX ----
+
+    /** Read-only view of one timer; latencies in microseconds. */
+    public interface LatencyMXBean {
+        long getCount();
+        double getMeanMicros();
+        double getP50Micros();
+        double getP99Micros();
+        double getP999Micros();
+        double getMaxMicros();
+    }
+
+    private static final class LatencyView implements LatencyMXBean {
+        private final Timer timer;
+        LatencyView(Timer timer){ this.timer = timer; }
+        public long getCount(){ return timer.snapshot().getCount(); }
+        public double getMeanMicros(){ return timer.snapshot().getMean() / 1e3; }
+        public double getP50Micros(){ return timer.snapshot().percentile(.5) / 1e3; }
+        public double getP99Micros(){ return timer.snapshot().percentile(.99) / 1e3; }
+        public double getP999Micros(){ return timer.snapshot().percentile(.999) / 1e3; }
+        public double getMaxMicros(){ return timer.snapshot().getMax() / 1e3; }
+    }
+
+    /** Registers every timer with the platform MBean server; timers made later are not included. */
+    public static void register() {
+        try {
+            var server = ManagementFactory.getPlatformMBeanServer();
+            for (Timer t : TIMERS.values()) {
+                ObjectName name = new ObjectName("pos:type=Latency,name=" + ObjectName.quote(t.name));
+                if (!server.isRegistered(name)) server.registerMBean(new LatencyView(t), name);
+            }
+        } catch (Exception ignored) {}
+    }
+
+    // ---- Dump ----
+
+    /** Every timer as one line: count, mean, p50, p99, p999 and max in microseconds. */
+    public static String report() {
+        StringBuilder sb = new StringBuilder(String.format("%-18s %10s %10s %10s %10s %10s %10s%n",
+                "operation", "count", "mean_us", "p50_us", "p99_us", "p999_us", "max_us"));
+        for (Timer t : TIMERS.values()) {
+            LatencyHistogram.Snapshot s = t.snapshot();
+            sb.append(String.format("%-18s %10d %10.1f %10.1f %10.1f %10.1f %10.1f%n", t.name, s.getCount(),
+                    s.getMean() / 1e3, s.percentile(.5) / 1e3, s.percentile(.99) / 1e3,
+                    s.percentile(.999) / 1e3, s.getMax() / 1e3));
+        }
+        return sb.toString();
+    }
+
+    /** Rewrites {@code file} with {@link #report()} every {@code seconds} until {@link #stopDump()}. */
+    public static synchronized void startDump(File file, long seconds) {
+        stopDump();
+        dumpFile = file;
+        dumper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "pos-metrics");
+            t.setDaemon(true);
+            return t;
+        });
+        dumper.scheduleWithFixedDelay(() -> dump(file), seconds, seconds, TimeUnit.SECONDS);
+    }
+
+    /** Stops the periodic dump after writing the file one last time. */
+    public static synchronized void stopDump() {
+        if (dumper == null) return;
+        dumper.shutdownNow();
+        dumper = null;
+        dump(dumpFile);
+    }
+
+    public static void dump(File file) {
+        File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try {
+            Files.writeString(tmp.toPath(), new Date() + System.lineSeparator() + report(), StandardCharsets.UTF_8);
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException ignored) {}
+    }
+}
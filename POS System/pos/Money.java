@@ -0,0 +1,111 @@
+package pos;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Money arithmetic on plain {@code long} minor units (cents), so totals are exact and the hot
+ * path allocates nothing. Percentages and rates are basis points (1/100 of a percent), which is
+ * what {@link #parse} yields for a percent typed as "12.5".
+ *
+ * Rounding is defined once: whenever a result falls between two cents it is rounded half away
+ * from zero, the way a till receipt does it. Overflow throws {@link ArithmeticException} rather
+ * than wrapping.
+ */
+public final class Money {
+    private Money(){}
+
+    public static final String CURRENCY = "LKR";
+
+    public static long times(long cents, int qty){ return Math.multiplyExact(cents, qty); }
+
+    /** {@code cents * basisPoints / 10 000}, rounded half away from zero. */
+    public static long percent(long cents, long basisPoints) {
+        long p = Math.multiplyExact(cents, basisPoints);
+        long q = p / 10_000, r = p % 10_000;
+        if (Math.abs(r) >= 5_000) q += Long.signum(p);
+        return q;
+    }
+
+    /** Exact value of a double amount, rounded to the cent; for reading old data, not for arithmetic. */
+    public static long ofDouble(double amount) {
+        return new BigDecimal(Double.toString(amount)).setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    public static double toDouble(long cents){ return cents / 100.0; }
+
+    /**
+     * Parses a decimal amount such as "1234", "1,234.5" or "-0.05" into cents without going
+     * through double; digits past the second decimal round half up. Throws
+     * {@link NumberFormatException} like {@link Double#parseDouble} on anything else.
+     */
+    public static long parse(CharSequence s) {
+        int i = 0, n = s.length();
+        while (i < n && s.charAt(i) == ' ') i++;
+        while (n > i && s.charAt(n - 1) == ' ') n--;
+        boolean neg = false;
+        if (i < n && (s.charAt(i) == '-' || s.charAt(i) == '+')) neg = s.charAt(i++) == '-';
+        long units = 0, frac = 0;
+        int decimals = -1, digits = 0;
+        boolean roundUp = false;
+        for (; i < n; i++) {
+            char ch = s.charAt(i);
+            if (ch >= '0' && ch <= '9') {
+                digits++;
+                if (decimals < 0) units = Math.addExact(Math.multiplyExact(units, 10), ch - '0');
+                else if (decimals < 2) { frac = frac * 10 + (ch - '0'); decimals++; }
+                else if (decimals++ == 2) roundUp = ch >= '5';
+            } else if (ch == '.' && decimals < 0) {
+                decimals = 0;
+            } else if (ch == ',' && decimals < 0) {
+                // grouping separator
+            } else if ((ch == 'E' || ch == 'e') && digits > 0) {
+                return ofDouble(Double.parseDouble(s.toString().trim())); // "1.0E7" as written by Double.toString
+            } else {
+                throw new NumberFormatException("not an amount: \"" + s + "\"");
+            }
+        }
+        if (digits == 0) throw new NumberFormatException("not an amount: \"" + s + "\"");
+        for (int d = Math.max(decimals, 0); d < 2; d++) frac *= 10;
+        long cents = Math.addExact(Math.multiplyExact(units, 100), frac + (roundUp ? 1 : 0));
+        return neg ? -cents : cents;
+    }
+
+    // ---- Formatting ----
+
+    /** Appends e.g. {@code LKR1,234.50} or {@code -LKR3.46}; nothing but the builder's own buffer is touched. */
+    public static StringBuilder append(StringBuilder sb, long cents) {
+        if (cents < 0) sb.append('-');
+        sb.append(CURRENCY);
+        return digits(sb, cents, true);
+    }
+
+    /** Appends e.g. {@code -1234.50}: no currency and no grouping, as stored in the data files. */
+    public static StringBuilder appendPlain(StringBuilder sb, long cents) {
+        if (cents < 0) sb.append('-');
+        return digits(sb, cents, false);
+    }
+
+    public static String format(long cents){ return append(new StringBuilder(16), cents).toString(); }
+    public static String plain(long cents){ return appendPlain(new StringBuilder(16), cents).toString(); }
+
+    private static StringBuilder digits(StringBuilder sb, long cents, boolean grouped) {
+        if (cents == Long.MIN_VALUE) throw new ArithmeticException("amount out of range");
+        long abs = Math.abs(cents);
+        if (grouped) group(sb, abs / 100); else sb.append(abs / 100);
+        int c = (int) (abs % 100);
+        sb.append('.');
+        if (c < 10) sb.append('0');
+        return sb.append(c);
+    }
+
+    private static void group(StringBuilder sb, long n) {
+        if (n < 1000) { sb.append(n); return; }
+        group(sb, n / 1000);
+        int r = (int) (n % 1000);
+        sb.append(',');
+        if (r < 100) sb.append('0');
+        if (r < 10) sb.append('0');
+        sb.append(r);
+    }
+}
@@ -1,29 +1,23 @@
 package pos;
 
 import javax.swing.*;
+import javax.swing.table.DefaultTableCellRenderer;
 import javax.swing.table.DefaultTableModel;
 import javax.swing.table.TableColumnModel;
 import javax.swing.plaf.FontUIResource;
 import java.awt.*;
 import java.awt.event.*;
-import java.io.File;
-import java.io.FileOutputStream;
-import java.text.NumberFormat;
 import java.text.SimpleDateFormat;
-import java.util.Locale;
-
-import com.itextpdf.text.Document;
-import com.itextpdf.text.Paragraph;
-import com.itextpdf.text.pdf.PdfPTable;
-import com.itextpdf.text.pdf.PdfWriter;
 
 public class POSSystemGUI extends JFrame {
 
     private final SimpleStore store;
+    private final CheckoutService checkout;
+    private final CartRecoveryLog lane;   // keeps the open cart across a crash; may be null
 
     // Table/model
     private JTable invoiceTable;
-    private DefaultTableModel tableModel;
+    private final CartTableModel cartModel = new CartTableModel();
 
     // Footer labels
     private JLabel subtotalLabel;
@@ -34,26 +28,42 @@ public class POSSystemGUI extends JFrame {
     // Payment
     private JComboBox<String> paymentCombo;
 
-    // Current invoice
+    // Current invoice: the live cart, shown through cartModel
     private Invoice currentInvoice;
 
-    // Discount state
-    private String discountType = "AMOUNT";
-    private double discountValue = 0.0;
-
-    // LKR currency formatter
-    private final NumberFormat LKR = NumberFormat.getCurrencyInstance(new Locale("en", "LK"));
-
     // Live inventory dialog
     private JDialog inventoryDialog;
 
     // Animated background panel
     private AnimatedBackgroundPanel backgroundPanel;
 
-    public POSSystemGUI(SimpleStore store) {
-        this.store = store;
+    // Type-ahead search over checkout.getSearchIndex()
+    private static final int SEARCH_RESULTS = 15;
+
+    // Background PDF rendering and its status line
+    private final InvoicePdfExporter pdfExporter = new InvoicePdfExporter();
+    private JLabel statusLabel;
+
+    // Run before the store is closed, e.g. stopping the API server
+    private final java.util.List<Runnable> shutdownTasks = new java.util.concurrent.CopyOnWriteArrayList<>();
+
+    public POSSystemGUI(CheckoutService checkout) {
+        this(checkout, null);
+    }
+
+    public POSSystemGUI(CheckoutService checkout, CartRecoveryLog lane) {
+        this.store = checkout.getStore();
+        this.checkout = checkout;
+        this.lane = lane;
         setupGlobalLookAndFeel();
         buildUI();
+        checkout.getSearchIndex();   // starts building it
+        if (lane != null) SwingUtilities.invokeLater(this::recoverCart);
+        if (store.needsDuplicateReview()) SwingUtilities.invokeLater(() -> {
+            int merged = reviewDuplicates();
+            store.markDuplicatesReviewed();
+            if (merged > 0) msg("✅ Merged " + merged + " duplicate customer(s).");
+        });
     }
 
     private void setupGlobalLookAndFeel() {
@@ -72,15 +82,16 @@ public class POSSystemGUI extends JFrame {
         addWindowListener(new WindowAdapter() {
             @Override
             public void windowClosing(WindowEvent e) {
-                if (inventoryDialog != null && inventoryDialog.isDisplayable()) {
-                    inventoryDialog.dispose();
-                }
-                System.exit(0);
+                shutdown();
             }
+            @Override public void windowIconified(WindowEvent e){ backgroundPanel.windowVisible(false); }
+            @Override public void windowDeiconified(WindowEvent e){ backgroundPanel.windowVisible(isActive()); }
+            @Override public void windowDeactivated(WindowEvent e){ backgroundPanel.windowVisible(false); }
+            @Override public void windowActivated(WindowEvent e){ backgroundPanel.windowVisible(true); }
         });
 
         // ========= ANIMATED BACKGROUND PANEL =========
-        backgroundPanel = new AnimatedBackgroundPanel();
+        backgroundPanel = new AnimatedBackgroundPanel(BackgroundRenderer.Mode.fromProperty());
         backgroundPanel.setLayout(new BorderLayout());
         setContentPane(backgroundPanel);
 
@@ -99,7 +110,11 @@ public class POSSystemGUI extends JFrame {
         timeLabel.setFont(new Font("Segoe UI", Font.PLAIN, 14));
         header.add(timeLabel, BorderLayout.EAST);
 
-        backgroundPanel.add(header, BorderLayout.NORTH);
+        statusLabel = new JLabel(" ", SwingConstants.CENTER);
+        statusLabel.setForeground(Color.LIGHT_GRAY);
+        statusLabel.setFont(new Font("Segoe UI", Font.ITALIC, 13));
+        header.add(statusLabel, BorderLayout.CENTER);
+
 
         // ========= BUTTON PANEL (3x5 on TOP) =========
         JPanel top = new JPanel(new GridLayout(3, 5, 12, 10));
@@ -153,25 +168,14 @@ public class POSSystemGUI extends JFrame {
         top.add(btnRefresh);
         top.add(btnExit);
 
-        backgroundPanel.add(top, BorderLayout.NORTH);
+        JPanel north = new JPanel(new BorderLayout());
+        north.setOpaque(false);
+        north.add(header, BorderLayout.NORTH);
+        north.add(top, BorderLayout.CENTER);
+        backgroundPanel.add(north, BorderLayout.NORTH);
 
         // ========= INVOICE TABLE =========
-        String[] cols = {"Item ID", "Name", "Qty", "Price", "Total", "__ITEM"};
-        tableModel = new DefaultTableModel(cols, 0) {
-            @Override
-            public boolean isCellEditable(int row, int column) { return false; }
-
-            @Override
-            public Class<?> getColumnClass(int column) {
-                return switch (column) {
-                    case 0, 2 -> Integer.class;
-                    case 3, 4 -> Double.class;
-                    default -> String.class;
-                };
-            }
-        };
-
-        invoiceTable = new JTable(tableModel);
+        invoiceTable = new JTable(cartModel);
         invoiceTable.setRowHeight(30);
         invoiceTable.getTableHeader().setFont(new Font("Segoe UI", Font.BOLD, 15));
         invoiceTable.setFont(new Font("Segoe UI", Font.PLAIN, 15));
@@ -180,7 +184,15 @@ public class POSSystemGUI extends JFrame {
         invoiceTable.setSelectionForeground(Color.WHITE);
 
         TableColumnModel cm = invoiceTable.getColumnModel();
-        cm.removeColumn(cm.getColumn(cm.getColumnCount() - 1));
+        DefaultTableCellRenderer moneyRenderer = new DefaultTableCellRenderer() {
+            @Override
+            protected void setValue(Object value) {
+                setText(value instanceof Long ? fmtAmount((Long) value) : "");
+            }
+        };
+        moneyRenderer.setHorizontalAlignment(SwingConstants.RIGHT);
+        cm.getColumn(3).setCellRenderer(moneyRenderer);
+        cm.getColumn(4).setCellRenderer(moneyRenderer);
 
         JScrollPane scroll = new JScrollPane(invoiceTable);
         scroll.setOpaque(false);
@@ -188,7 +200,12 @@ public class POSSystemGUI extends JFrame {
         scroll.setBorder(BorderFactory.createTitledBorder(
                 BorderFactory.createLineBorder(new Color(200, 200, 200)),
                 "Invoice Items", 0, 0, new Font("Segoe UI", Font.ITALIC, 13), Color.GRAY));
-        backgroundPanel.add(scroll, BorderLayout.CENTER);
+        JPanel center = new JPanel(new BorderLayout(0, 8));
+        center.setOpaque(false);
+        center.setBorder(BorderFactory.createEmptyBorder(0, 15, 0, 15));
+        center.add(buildSearchBar(), BorderLayout.NORTH);
+        center.add(scroll, BorderLayout.CENTER);
+        backgroundPanel.add(center, BorderLayout.CENTER);
 
         // ========= BOTTOM PANEL: Totals & Payment =========
         JPanel bottomPanel = new JPanel(new BorderLayout());
@@ -244,8 +261,7 @@ public class POSSystemGUI extends JFrame {
         btnExit.addActionListener(e -> {
             if (JOptionPane.showConfirmDialog(this, "Exit the POS system?", "Confirm Exit",
                     JOptionPane.YES_NO_OPTION) == JOptionPane.YES_OPTION) {
-                if (inventoryDialog != null) inventoryDialog.dispose();
-                System.exit(0);
+                shutdown();
             }
         });
     }
@@ -280,46 +296,146 @@ public class POSSystemGUI extends JFrame {
     }
 
     // ========= ANIMATED BACKGROUND PANEL =========
+    /**
+     * Draws the {@link BackgroundRenderer} and drives its animation. The animation stops while
+     * the window is minimised or in the background, and after {@link #IDLE_MILLIS} without a key
+     * or mouse event; the next one starts it again.
+     */
     class AnimatedBackgroundPanel extends JPanel {
-        private float hue = 0f;
+        static final int IDLE_MILLIS = 60_000;
+        private final BackgroundRenderer renderer;
         private final Timer timer;
-
-        public AnimatedBackgroundPanel() {
-            setOpaque(false);
-            timer = new Timer(100, e -> {
-                hue = (hue + 0.003f) % 1.0f;
-                repaint();
+        private long lastInput = System.currentTimeMillis();
+        private boolean hidden;
+
+        public AnimatedBackgroundPanel(BackgroundRenderer.Mode mode) {
+            setOpaque(true); // covers everything: nothing behind it needs painting
+            renderer = new BackgroundRenderer(mode);
+            timer = new Timer(BackgroundRenderer.TICK_MILLIS, e -> {
+                if (System.currentTimeMillis() - lastInput > IDLE_MILLIS) ((Timer) e.getSource()).stop();
+                else if (renderer.advance()) repaint();
             });
-            timer.start();
+            if (mode == BackgroundRenderer.Mode.ANIMATED) {
+                Toolkit.getDefaultToolkit().addAWTEventListener(e -> {
+                    lastInput = System.currentTimeMillis();
+                    if (!hidden && !timer.isRunning()) timer.start();
+                }, AWTEvent.KEY_EVENT_MASK | AWTEvent.MOUSE_EVENT_MASK | AWTEvent.MOUSE_MOTION_EVENT_MASK | AWTEvent.MOUSE_WHEEL_EVENT_MASK);
+                timer.start();
+            }
+        }
+
+        /** Pauses the animation while the window cannot be seen or is behind another one. */
+        void windowVisible(boolean visible) {
+            hidden = !visible;
+            if (hidden) timer.stop();
+            else if (renderer.getMode() == BackgroundRenderer.Mode.ANIMATED) {
+                lastInput = System.currentTimeMillis();
+                timer.start();
+            }
+        }
+
+        void dispose() {
+            timer.stop();
+            renderer.close();
         }
 
         @Override
         protected void paintComponent(Graphics g) {
-            super.paintComponent(g);
-            Graphics2D g2d = (Graphics2D) g;
-            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-
-            int w = getWidth(), h = getHeight();
-            Color darkBlue = Color.getHSBColor(hue, 0.4f, 0.15f);
-            Color darkTeal = Color.getHSBColor((hue + 0.2f) % 1.0f, 0.3f, 0.2f);
-            GradientPaint gp = new GradientPaint(0, 0, darkBlue, w, h, darkTeal);
-            g2d.setPaint(gp);
-            g2d.fillRect(0, 0, w, h);
-
-            g2d.setColor(new Color(255, 255, 255, 10));
-            int spacing = 60;
-            for (int x = 0; x < w; x += spacing) {
-                g2d.drawLine(x, 0, x, h);
+            renderer.paint(g, this);
+        }
+    }
+
+    // ========= ITEM SEARCH (TYPE-AHEAD) =========
+    private JPanel buildSearchBar() {
+        JLabel label = new JLabel("Find item: ");
+        label.setForeground(Color.WHITE);
+        label.setFont(new Font("Segoe UI", Font.BOLD, 15));
+
+        JTextField field = new JTextField();
+        field.setFont(new Font("Segoe UI", Font.PLAIN, 16));
+
+        DefaultListModel<Item> results = new DefaultListModel<>();
+        JList<Item> list = new JList<>(results);
+        list.setFont(new Font("Segoe UI", Font.PLAIN, 15));
+        list.setFocusable(false);
+        list.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> l, Object value, int index, boolean sel, boolean focus) {
+                Item it = (Item) value;
+                String text = it.getId() + "   " + it.getName() + "   " + fmtAmount(it.getPriceCents()) + "   (stock " + store.getAvailable(it.getId()) + ")";
+                return super.getListCellRendererComponent(l, text, index, sel, focus);
+            }
+        });
+        JPopupMenu popup = new JPopupMenu();
+        popup.setFocusable(false);
+        popup.add(new JScrollPane(list));
+
+        Runnable refresh = () -> {
+            results.clear();
+            ItemSearchIndex index = checkout.getSearchIndex();
+            String q = field.getText().trim();
+            if (index == null || q.isEmpty()) {
+                popup.setVisible(false);
+                return;
             }
-            for (int y = 0; y < h; y += spacing) {
-                g2d.drawLine(0, y, w, y);
+            for (Item it : index.search(q, SEARCH_RESULTS)) results.addElement(it);
+            if (results.isEmpty()) {
+                popup.setVisible(false);
+                return;
             }
-        }
+            list.setSelectedIndex(0);
+            list.setVisibleRowCount(Math.min(results.size(), 10));
+            popup.setPopupSize(field.getWidth(), list.getPreferredScrollableViewportSize().height + 6);
+            if (!popup.isVisible()) popup.show(field, 0, field.getHeight());
+            else popup.pack();
+        };
+        Runnable pick = () -> {
+            Item it = list.getSelectedValue();
+            if (it == null) return;
+            popup.setVisible(false);
+            field.setText("");
+            if (ensureInvoice()) addItemToCart(it);
+        };
+
+        field.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            public void insertUpdate(javax.swing.event.DocumentEvent e) { refresh.run(); }
+            public void removeUpdate(javax.swing.event.DocumentEvent e) { refresh.run(); }
+            public void changedUpdate(javax.swing.event.DocumentEvent e) { refresh.run(); }
+        });
+        field.addKeyListener(new KeyAdapter() {
+            @Override
+            public void keyPressed(KeyEvent e) {
+                int i = list.getSelectedIndex();
+                switch (e.getKeyCode()) {
+                    case KeyEvent.VK_DOWN -> list.setSelectedIndex(Math.min(i + 1, results.size() - 1));
+                    case KeyEvent.VK_UP -> list.setSelectedIndex(Math.max(i - 1, 0));
+                    case KeyEvent.VK_ENTER -> pick.run();
+                    case KeyEvent.VK_ESCAPE -> popup.setVisible(false);
+                    default -> { return; }
+                }
+                list.ensureIndexIsVisible(list.getSelectedIndex());
+                e.consume();
+            }
+        });
+        list.addMouseListener(new MouseAdapter() {
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                list.setSelectedIndex(list.locationToIndex(e.getPoint()));
+                pick.run();
+            }
+        });
+
+        JPanel bar = new JPanel(new BorderLayout());
+        bar.setOpaque(false);
+        bar.add(label, BorderLayout.WEST);
+        bar.add(field, BorderLayout.CENTER);
+        return bar;
     }
 
     // ========= LIVE INVENTORY WINDOW =========
     private void showInventoryLive() {
-        if (inventoryDialog != null && inventoryDialog.isVisible()) {
+        if (inventoryDialog != null && inventoryDialog.isDisplayable()) {
+            if (!inventoryDialog.isVisible()) inventoryDialog.setVisible(true);
             inventoryDialog.toFront();
             return;
         }
@@ -330,19 +446,16 @@ public class POSSystemGUI extends JFrame {
         inventoryDialog.setDefaultCloseOperation(JDialog.DISPOSE_ON_CLOSE);
         inventoryDialog.setLayout(new BorderLayout());
 
-        String[] cols = {"ID", "Name", "Price", "Stock"};
-        Object[][] data = new Object[store.getInventory().size()][4];
-        int i = 0;
-        for (Item item : store.getInventory().values()) {
-            data[i++] = new Object[]{
-                item.getId(),
-                item.getName(),
-                fmtAmount(item.getPrice()),
-                item.getStock()
-            };
-        }
+        // Updated row by row from store events; no polling
+        InventoryTableModel model = new InventoryTableModel(store);
+        inventoryDialog.addWindowListener(new WindowAdapter() {
+            @Override
+            public void windowClosed(WindowEvent e) {
+                model.detach();
+            }
+        });
 
-        JTable liveTable = new JTable(data, cols);
+        JTable liveTable = new JTable(model);
         liveTable.setFont(new Font("Segoe UI", Font.PLAIN, 14));
         liveTable.setRowHeight(26);
         liveTable.setEnabled(false);
@@ -357,48 +470,25 @@ public class POSSystemGUI extends JFrame {
         inventoryDialog.add(bottom, BorderLayout.SOUTH);
 
         inventoryDialog.setVisible(true);
-
-        Timer timer = new Timer(2000, e -> {
-            if (!inventoryDialog.isDisplayable()) {
-                ((Timer) e.getSource()).stop();
-                return;
-            }
-            showInventoryLive();
-        });
-        timer.start();
     }
 
     // ========== ACTIONS ==========
 
     private void newInvoice() {
         try {
-            int nextId = getNextAvailableCustomerId();
-
-            int choice = JOptionPane.showConfirmDialog(this,
-                    "Create new invoice for Customer ID: " + nextId + "?",
-                    "New Customer", JOptionPane.YES_NO_OPTION);
-            if (choice != JOptionPane.YES_OPTION) return;
-
-            String name = JOptionPane.showInputDialog(this, "Enter Customer Name:");
-            if (name == null || name.trim().isEmpty()) {
-                msg("Name cannot be empty.");
-                return;
+            if (currentInvoice != null && currentInvoice.getLineCount() > 0) {
+                int answer = JOptionPane.showConfirmDialog(this, "Discard the unconfirmed invoice for "
+                        + currentInvoice.getCustomer().getName() + "?", "New invoice", JOptionPane.YES_NO_OPTION);
+                if (answer != JOptionPane.YES_OPTION) return;
             }
-            name = name.trim();
-
-            Customer customer = new Customer(nextId, name);
-            store.getCustomers().put(nextId, customer);
-            store.saveAll();
-            msg("✅ Created customer: " + name + " (ID: " + nextId + ")");
+            Customer customer = pickCustomer();
+            if (customer == null) return;
 
             String showroom = JOptionPane.showInputDialog(this, "Enter Showroom (optional):", "Showroom");
-            if (showroom == null) showroom = "Showroom";
-            showroom = showroom.trim().isEmpty() ? "Showroom" : showroom.trim();
 
-            currentInvoice = new Invoice(customer, showroom, 0.00);
-            tableModel.setRowCount(0);
-            discountType = "AMOUNT";
-            discountValue = 0.0;
+            if (currentInvoice != null) checkout.clear(currentInvoice); // its holds go back now, not when they run out
+            currentInvoice = checkout.start(customer, showroom, lane);
+            cartModel.setInvoice(currentInvoice);
             updateTotals();
             msg("New invoice started for " + customer.getName());
         } catch (Exception ex) {
@@ -406,9 +496,102 @@ public class POSSystemGUI extends JFrame {
         }
     }
 
-    private int getNextAvailableCustomerId() {
-        if (store.getCustomers().isEmpty()) return 1;
-        return store.getCustomers().keySet().stream().mapToInt(Integer::intValue).max().orElse(0) + 1;
+    /** Offers to bring back the cart this lane had open when the till last went down. */
+    private void recoverCart() {
+        try {
+            CartRecoveryLog.Saved saved = checkout.unfinished(lane);
+            if (saved == null) return;
+            int answer = JOptionPane.showConfirmDialog(this, "Restore the unfinished invoice for " + saved.getCustomer().getName()
+                    + " (" + saved.getLines().size() + " lines)?", "Unfinished invoice", JOptionPane.YES_NO_OPTION);
+            if (answer != JOptionPane.YES_OPTION) {
+                lane.finished();
+                return;
+            }
+            currentInvoice = checkout.restore(saved, lane);
+            cartModel.setInvoice(currentInvoice);
+            updateTotals();
+            int dropped = saved.getLines().size() - currentInvoice.getLineCount();
+            msg(dropped == 0 ? "Invoice restored." : "Invoice restored; " + dropped + " line(s) no longer in stock were left out.");
+        } catch (Exception ex) {
+            msg("Could not restore the unfinished invoice: " + ex.getMessage());
+        }
+    }
+
+    /** Attach an existing customer (matched as the cashier types) or register a new one; null if cancelled. */
+    private Customer pickCustomer() {
+        CustomerRegistry registry = store.getCustomerRegistry();
+
+        JTextField query = new JTextField(24);
+        query.setFont(new Font("Segoe UI", Font.PLAIN, 16));
+        DefaultListModel<Customer> matches = new DefaultListModel<>();
+        JList<Customer> list = new JList<>(matches);
+        list.setFont(new Font("Segoe UI", Font.PLAIN, 15));
+        list.setVisibleRowCount(8);
+        list.setCellRenderer(new DefaultListCellRenderer() {
+            @Override
+            public Component getListCellRendererComponent(JList<?> l, Object value, int index, boolean sel, boolean focus) {
+                Customer c = (Customer) value;
+                String text = "#" + c.getId() + "   " + c.getName()
+                        + (c.getPhone().isEmpty() ? "" : "   ☎ " + c.getPhone())
+                        + (c.getLoyalty().isEmpty() ? "" : "   ★ " + c.getLoyalty());
+                return super.getListCellRendererComponent(l, text, index, sel, focus);
+            }
+        });
+        query.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            private void refresh() {
+                matches.clear();
+                for (Customer c : registry.search(query.getText().trim(), 10)) matches.addElement(c);
+                if (!matches.isEmpty()) list.setSelectedIndex(0);
+            }
+            public void insertUpdate(javax.swing.event.DocumentEvent e) { refresh(); }
+            public void removeUpdate(javax.swing.event.DocumentEvent e) { refresh(); }
+            public void changedUpdate(javax.swing.event.DocumentEvent e) { refresh(); }
+        });
+        query.addAncestorListener(new javax.swing.event.AncestorListener() {
+            public void ancestorAdded(javax.swing.event.AncestorEvent e) { query.requestFocusInWindow(); }
+            public void ancestorRemoved(javax.swing.event.AncestorEvent e) {}
+            public void ancestorMoved(javax.swing.event.AncestorEvent e) {}
+        });
+
+        JPanel panel = new JPanel(new BorderLayout(0, 8));
+        panel.add(new JLabel("Name, phone or loyalty no.:"), BorderLayout.NORTH);
+        panel.add(query, BorderLayout.CENTER);
+        panel.add(new JScrollPane(list), BorderLayout.SOUTH);
+
+        Object[] options = {"Use Selected", "New Customer", "Cancel"};
+        int choice = JOptionPane.showOptionDialog(this, panel, "Customer", JOptionPane.DEFAULT_OPTION,
+                JOptionPane.PLAIN_MESSAGE, null, options, options[0]);
+        if (choice == 0) {
+            if (list.getSelectedValue() == null) msg("No customer selected.");
+            return list.getSelectedValue();
+        }
+        if (choice != 1) return null;
+
+        String typed = query.getText().trim();
+        boolean typedPhone = !typed.isEmpty() && CustomerRegistry.digits(typed).length() == typed.replaceAll("[\\s+()-]", "").length();
+        String name = (String) JOptionPane.showInputDialog(this, "Enter Customer Name:", "New Customer",
+                JOptionPane.PLAIN_MESSAGE, null, null, typedPhone ? "" : typed);
+        if (name == null) return null;
+        String phone = (String) JOptionPane.showInputDialog(this, "Phone (optional):", "New Customer",
+                JOptionPane.PLAIN_MESSAGE, null, null, typedPhone ? typed : "");
+        phone = phone == null ? "" : phone.trim();
+
+        Customer existing = phone.isEmpty() ? null : registry.byPhone(phone);
+        if (existing != null && JOptionPane.showConfirmDialog(this,
+                "Phone " + phone + " belongs to " + existing.getName() + " (ID: " + existing.getId() + "). Use that customer?",
+                "Existing Customer", JOptionPane.YES_NO_OPTION) == JOptionPane.YES_OPTION) {
+            return existing;
+        }
+
+        try {
+            // Persisted together with the sale when the invoice is confirmed
+            Customer customer = checkout.newCustomer(name, phone);
+            msg("✅ Created customer: " + customer.getName() + " (ID: " + customer.getId() + ")");
+            return customer;
+        } catch (IllegalArgumentException ex) {
+            msg(ex.getMessage());
+            return null;
+        }
     }
 
     private void addItem() {
@@ -418,29 +601,26 @@ public class POSSystemGUI extends JFrame {
         try {
             String idStr = keypad("Enter Item ID (see Live Inventory)");
             if (idStr == null || idStr.isEmpty()) return;
-            int id = Integer.parseInt(idStr);
-            Item item = store.getInventory().get(id);
+            Item item = store.getInventory().get(Integer.parseInt(idStr));
             if (item == null) {
                 msg("Item not found!");
                 return;
             }
+            addItemToCart(item);
+        } catch (Exception ex) {
+            msg("Error adding item: " + ex.getMessage());
+        }
+    }
 
-            String qtyStr = keypad("Enter Quantity (Stock: " + item.getStock() + ")");
+    private void addItemToCart(Item item) {
+        try {
+            String qtyStr = keypad("Enter Quantity (Stock: " + store.getAvailable(item.getId()) + ")");
             if (qtyStr == null || qtyStr.isEmpty()) return;
-            int qty = Integer.parseInt(qtyStr);
-            if (qty <= 0 || qty > item.getStock()) {
-                msg("Invalid quantity!");
-                return;
-            }
-
-            item.reduceStock(qty);
-            store.saveAll();
-
-            double lineTotal = qty * item.getPrice();
-            tableModel.addRow(new Object[]{
-                item.getId(), item.getName(), qty, item.getPrice(), lineTotal, item
-            });
+            checkout.addItem(currentInvoice, item.getId(), Integer.parseInt(qtyStr));
+            cartModel.lineAdded();
             updateTotals();
+        } catch (IllegalArgumentException ex) {
+            msg(ex instanceof NumberFormatException ? "Invalid quantity!" : ex.getMessage());
         } catch (Exception ex) {
             msg("Error adding item: " + ex.getMessage());
         }
@@ -467,15 +647,14 @@ public class POSSystemGUI extends JFrame {
 
             String priceStr = keypad("Enter Price (LKR)");
             if (priceStr == null || priceStr.isEmpty()) return;
-            double price = Double.parseDouble(priceStr);
+            long price = Money.parse(priceStr);
 
             String stockStr = keypad("Enter Stock");
             if (stockStr == null || stockStr.isEmpty()) return;
             int stock = Integer.parseInt(stockStr);
 
             Item newItem = new Item(id, name, price, stock);
-            store.getInventory().put(id, newItem);
-            store.saveAll();
+            store.putItem(newItem);
 
             msg("✅ Added: " + name);
             showInventoryLive();
@@ -500,14 +679,10 @@ public class POSSystemGUI extends JFrame {
             int confirm = JOptionPane.showConfirmDialog(this, "Delete " + item.getName() + "?");
             if (confirm != JOptionPane.YES_OPTION) return;
 
-            store.getInventory().remove(id);
-            store.saveAll();
+            store.removeItem(id);
 
-            for (int i = tableModel.getRowCount() - 1; i >= 0; i--) {
-                Item it = (Item) tableModel.getValueAt(i, 5);
-                if (it.getId() == id) {
-                    tableModel.removeRow(i);
-                }
+            if (currentInvoice != null && checkout.dropItem(currentInvoice, id) > 0) {
+                cartModel.fireTableDataChanged();
             }
             updateTotals();
             msg("🗑️ Deleted: " + item.getName());
@@ -525,35 +700,18 @@ public class POSSystemGUI extends JFrame {
         }
 
         int modelRow = invoiceTable.convertRowIndexToModel(row);
-        Item item = (Item) tableModel.getValueAt(modelRow, 5);
-        int oldQty = (int) tableModel.getValueAt(modelRow, 2);
+        Item item = cartModel.getLine(modelRow).getItem();
 
         try {
             String qtyStr = keypad("New Quantity for " + item.getName());
             if (qtyStr == null || qtyStr.isEmpty()) return;
-            int newQty = Integer.parseInt(qtyStr);
-            if (newQty <= 0) {
-                msg("Must be > 0");
-                return;
-            }
-
-            int diff = newQty - oldQty;
-            if (diff > 0) {
-                if (diff > item.getStock()) {
-                    msg("Not enough stock!");
-                    return;
-                }
-                item.reduceStock(diff);
-            } else if (diff < 0) {
-                item.setStock(item.getStock() + (-diff));
-            }
-            store.saveAll();
-
-            tableModel.setValueAt(newQty, modelRow, 2);
-            tableModel.setValueAt(item.getPrice() * newQty, modelRow, 4);
+            checkout.setQuantity(currentInvoice, modelRow, Integer.parseInt(qtyStr));
+            cartModel.lineChanged(modelRow);
             updateTotals();
-        } catch (Exception ex) {
+        } catch (NumberFormatException ex) {
             msg("Invalid input.");
+        } catch (IllegalArgumentException ex) {
+            msg(ex.getMessage());
         }
     }
 
@@ -566,23 +724,16 @@ public class POSSystemGUI extends JFrame {
         }
 
         int modelRow = invoiceTable.convertRowIndexToModel(row);
-        Item item = (Item) tableModel.getValueAt(modelRow, 5);
-        int qty = (int) tableModel.getValueAt(modelRow, 2);
-        item.setStock(item.getStock() + qty);
-        store.saveAll();
-        tableModel.removeRow(modelRow);
+        checkout.removeLine(currentInvoice, modelRow);
+        cartModel.lineRemoved(modelRow);
         updateTotals();
     }
 
     private void clearInvoice() {
         if (!ensureInvoice()) return;
-        for (int i = tableModel.getRowCount() - 1; i >= 0; i--) {
-            Item it = (Item) tableModel.getValueAt(i, 5);
-            int qty = (int) tableModel.getValueAt(i, 2);
-            it.setStock(it.getStock() + qty);
-        }
-        tableModel.setRowCount(0);
-        store.saveAll();
+        int rows = currentInvoice.getLineCount();
+        checkout.clear(currentInvoice);
+        cartModel.cleared(rows);
         updateTotals();
     }
 
@@ -597,155 +748,86 @@ public class POSSystemGUI extends JFrame {
         if (input == null || input.isEmpty()) return;
 
         try {
-            double val = Double.parseDouble(input);
-            if (val < 0) {
-                msg("Cannot be negative.");
-                return;
-            }
-            if (choice == 0 && val > 100) {
-                msg("Percent ≤ 100");
-                return;
-            }
-
-            discountType = choice == 0 ? "PERCENT" : "AMOUNT";
-            discountValue = val;
+            long val = Money.parse(input); // a percent parses to basis points
+            if (choice == 0) checkout.discountPercent(currentInvoice, val);
+            else checkout.discountAmount(currentInvoice, val);
             updateTotals();
-        } catch (Exception ex) {
+        } catch (NumberFormatException ex) {
             msg("Invalid number.");
+        } catch (IllegalArgumentException ex) {
+            msg(ex.getMessage());
         }
     }
 
     private void confirmInvoice() {
-        if (!ensureInvoice() || tableModel.getRowCount() == 0) {
-            msg("No items.");
-            return;
-        }
+        if (!ensureInvoice()) return;
 
-        Invoice inv = new Invoice(currentInvoice.getCustomer(), currentInvoice.getShowroom(), currentInvoice.getTaxRate());
-        for (int i = 0; i < tableModel.getRowCount(); i++) {
-            Item it = (Item) tableModel.getValueAt(i, 5);
-            int qty = (int) tableModel.getValueAt(i, 2);
-            inv.addItem(it, qty);
+        try {
+            checkout.confirm(currentInvoice);
+        } catch (IllegalArgumentException ex) {
+            msg(ex.getMessage());
+            return;
+        } catch (Exception ex) {
+            msg("Failed to record sale: " + ex.getMessage());
+            return;
         }
-        currentInvoice = inv;
-        store.logSale(currentInvoice);
 
-        msg("Invoice confirmed. Total: " + fmtAmount(computeSubtotalFromTable() * (1 + currentTax())));
-        tableModel.setRowCount(0);
-        discountType = "AMOUNT";
-        discountValue = 0.0;
-        updateTotals();
+        msg("Invoice confirmed. Total: " + fmtAmount(currentInvoice.totalCents()));
         currentInvoice = null;
+        cartModel.setInvoice(null);
+        updateTotals();
     }
 
     private void exportPDF() {
-        if (currentInvoice == null && tableModel.getRowCount() == 0) {
-            if (store.getSalesHistory().isEmpty()) {
-                msg("Nothing to export.");
-                return;
-            }
+        Invoice inv = currentInvoice != null && currentInvoice.getLineCount() > 0 ? currentInvoice : store.getLastSale();
+        if (inv == null) {
+            msg("Nothing to export.");
+            return;
         }
-
-        try {
-            String ts = new SimpleDateFormat("yyyyMMdd_HHmmss").format(new java.util.Date());
-            String filename = "invoice_" + ts + ".pdf";
-            Document document = new Document();
-            PdfWriter.getInstance(document, new FileOutputStream(filename));
-            document.open();
-
-            Paragraph title = new Paragraph("SuperMart POS - Sales Invoice\n\n",
-                    new com.itextpdf.text.Font(com.itextpdf.text.Font.FontFamily.HELVETICA, 18, com.itextpdf.text.Font.BOLD));
-            title.setAlignment(Paragraph.ALIGN_CENTER);
-            document.add(title);
-
-            if (currentInvoice != null) {
-                document.add(new Paragraph("Customer : " + currentInvoice.getCustomer().getName()));
-                document.add(new Paragraph("Showroom : " + currentInvoice.getShowroom()));
+        long off = inv.promotionCents() + inv.discountCents();
+        String prefix = off == 0 ? (inv == currentInvoice ? "" : null)
+                : inv.promotionCents() > 0 ? "incl. promotions " : discountPrefix(inv);
+        InvoicePdfExporter.Snapshot snap = new InvoicePdfExporter.Snapshot(inv.getCustomer().getName(), inv.getShowroom(),
+                String.valueOf(paymentCombo.getSelectedItem()), new java.util.Date(),
+                inv.getLines(), inv.subtotalCents(), off, prefix, inv.taxCents(), inv.totalCents());
+
+        statusLabel.setText("Exporting PDF...");
+        pdfExporter.export(snap, true, r -> {
+            if (r.error != null) {
+                statusLabel.setText(" ");
+                msg("Export failed: " + r.error.getMessage());
             } else {
-                Invoice last = store.getSalesHistory().get(store.getSalesHistory().size() - 1);
-                document.add(new Paragraph("Customer : " + last.getCustomer().getName()));
-                document.add(new Paragraph("Showroom : " + last.getShowroom()));
-            }
-            document.add(new Paragraph("Date     : " + new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").format(new java.util.Date())));
-            document.add(new Paragraph("Payment  : " + paymentCombo.getSelectedItem()));
-            document.add(new Paragraph(" "));
-
-            PdfPTable t = new PdfPTable(4);
-            t.setWidthPercentage(100);
-            t.addCell("Item");
-            t.addCell("Price (LKR)");
-            t.addCell("Qty");
-            t.addCell("Line Total (LKR)");
-
-            if (tableModel.getRowCount() > 0) {
-                for (int r = 0; r < tableModel.getRowCount(); r++) {
-                    Item it = (Item) tableModel.getValueAt(r, 5);
-                    int qty = (int) tableModel.getValueAt(r, 2);
-                    t.addCell(it.getName());
-                    t.addCell(fmtAmount(it.getPrice()));
-                    t.addCell(String.valueOf(qty));
-                    t.addCell(fmtAmount(it.getPrice() * qty));
-                }
-                document.add(t);
-
-                double subtotal = computeSubtotalFromTable();
-                double discount = computeDiscount(subtotal);
-                double tax = (subtotal - discount) * 0.00;
-                double grand = (subtotal - discount) + tax;
-                if (grand < 0) grand = 0;
-
-                document.add(new Paragraph("\nSubtotal    : " + fmtAmount(subtotal)));
-                document.add(new Paragraph("Discount    : " + (discountType.equals("PERCENT") ? (String.format("%.2f", discountValue) + "% = ") : "") + fmtAmount(discount)));
-                document.add(new Paragraph("Tax (0%)   : " + fmtAmount(tax)));
-                document.add(new Paragraph("Grand Total : " + fmtAmount(grand)));
-            } else {
-                Invoice last = store.getSalesHistory().get(store.getSalesHistory().size() - 1);
-                for (Invoice.Line ln : last.getLines()) {
-                    t.addCell(ln.getItem().getName());
-                    t.addCell(fmtAmount(ln.getItem().getPrice()));
-                    t.addCell(String.valueOf(ln.getQuantity()));
-                    t.addCell(fmtAmount(ln.getLineTotal()));
-                }
-                document.add(t);
-
-                document.add(new Paragraph("\nSubtotal    : " + fmtAmount(last.calculateSubtotal())));
-                document.add(new Paragraph("Tax (0%)   : " + fmtAmount(last.calculateSubtotal() * 0.00)));
-                document.add(new Paragraph("Grand Total : " + fmtAmount(last.calculateTotal())));
+                statusLabel.setText(String.format("Exported %s in %.0f ms", r.file.getName(), r.renderNanos / 1e6));
             }
-
-            document.add(new Paragraph("\nThank you!"));
-            document.close();
-
-            msg("Exported: " + filename);
-            try {
-                Desktop.getDesktop().open(new File(filename));
-            } catch (Exception ignored) {}
-        } catch (Exception e) {
-            msg("Export failed: " + e.getMessage());
-        }
+        });
     }
 
     private void viewSales() {
-        if (store.getSalesHistory().isEmpty()) {
+        java.util.List<Invoice> sales = store.getSalesHistory();
+        if (sales.isEmpty()) {
             msg("No sales yet.");
             return;
         }
 
         StringBuilder sb = new StringBuilder("Sales History (latest first):\n\n");
-        for (int i = store.getSalesHistory().size() - 1; i >= 0; i--) {
-            Invoice inv = store.getSalesHistory().get(i);
-            sb.append("Invoice #").append(i + 1).append("\n");
+        for (int i = sales.size() - 1; i >= 0; i--) {
+            Invoice inv = sales.get(i);
+            sb.append("Invoice #").append(inv.getId())
+                    .append("  (").append(new SimpleDateFormat("yyyy-MM-dd HH:mm").format(new java.util.Date(inv.getTimestamp()))).append(")\n");
             sb.append("  Customer: ").append(inv.getCustomer().getName()).append("\n");
-            sb.append("  Subtotal: ").append(fmtAmount(inv.calculateSubtotal())).append("\n");
-            sb.append("  Tax (0%): ").append(fmtAmount(inv.calculateSubtotal() * 0.00)).append("\n");
-            sb.append("  Total: ").append(fmtAmount(inv.calculateTotal())).append("\n");
+            Money.append(sb.append("  Subtotal: "), inv.subtotalCents()).append("\n");
+            if (inv.promotionCents() > 0) Money.append(sb.append("  Promotions: "), inv.promotionCents()).append("\n");
+            if (inv.discountCents() > 0) Money.append(sb.append("  Discount: ").append(discountPrefix(inv)), inv.discountCents()).append("\n");
+            Money.append(sb.append("  Tax (0%): "), inv.taxCents()).append("\n");
+            Money.append(sb.append("  Total: "), inv.totalCents()).append("\n");
             sb.append("  Items:\n");
 
             for (Invoice.Line line : inv.getLines()) {
                 sb.append("    • ").append(line.getItem().getName())
                         .append(" x").append(line.getQuantity())
-                        .append(" @ ").append(fmtAmount(line.getItem().getPrice()))
-                        .append(" = ").append(fmtAmount(line.getLineTotal())).append("\n");
+                        .append(" @ ");
+                Money.append(sb, line.getUnitCents()).append(" = ");
+                Money.append(sb, line.getLineCents()).append("\n");
             }
             sb.append("-".repeat(50)).append("\n");
         }
@@ -753,8 +835,62 @@ public class POSSystemGUI extends JFrame {
         JTextArea textArea = new JTextArea(sb.toString());
         textArea.setFont(new Font("Monospaced", Font.PLAIN, 12));
         JScrollPane scroll = new JScrollPane(textArea);
-        scroll.setPreferredSize(new Dimension(800, 600));
-        JOptionPane.showMessageDialog(this, scroll, "Sales History", JOptionPane.PLAIN_MESSAGE);
+
+        JTabbedPane tabs = new JTabbedPane();
+        tabs.addTab("Reports", buildSalesReport());
+        tabs.addTab("History", scroll);
+        tabs.setPreferredSize(new Dimension(800, 600));
+        JOptionPane.showMessageDialog(this, tabs, "Sales", JOptionPane.PLAIN_MESSAGE);
+    }
+
+    /** Revenue grouped by item / showroom / hour / customer / day over a chosen period. */
+    private JPanel buildSalesReport() {
+        SalesAnalytics analytics = store.getAnalytics();
+        JComboBox<String> period = new JComboBox<>(new String[]{"Today", "Last 7 days", "Last 30 days", "All time"});
+        JComboBox<SalesAnalytics.Dimension> groupBy = new JComboBox<>(SalesAnalytics.Dimension.values());
+        DefaultTableModel model = new DefaultTableModel(new String[]{"Group", "Revenue", "Units", "Lines"}, 0) {
+            @Override
+            public boolean isCellEditable(int row, int column) { return false; }
+        };
+        JTable table = new JTable(model);
+        table.setRowHeight(24);
+        JLabel summary = new JLabel(" ");
+        summary.setFont(new Font("Segoe UI", Font.BOLD, 14));
+
+        Runnable refresh = () -> {
+            java.time.LocalDate today = java.time.LocalDate.now();
+            long to = analytics.startOfDay(today.plusDays(1));
+            long from = switch (period.getSelectedIndex()) {
+                case 0 -> analytics.startOfDay(today);
+                case 1 -> analytics.startOfDay(today.minusDays(6));
+                case 2 -> analytics.startOfDay(today.minusDays(29));
+                default -> Long.MIN_VALUE;
+            };
+            long t0 = System.nanoTime();
+            java.util.List<SalesAnalytics.Row> rows = analytics.groupBy((SalesAnalytics.Dimension) groupBy.getSelectedItem(), from, to);
+            long total = analytics.revenue(from, to);
+            long took = System.nanoTime() - t0;
+            model.setRowCount(0);
+            for (SalesAnalytics.Row r : rows) {
+                model.addRow(new Object[]{r.label, fmtAmount(r.revenueCents), r.units, r.lines});
+            }
+            summary.setText(String.format("Revenue: %s   (%d groups, %.1f ms)", fmtAmount(total), rows.size(), took / 1e6));
+        };
+        period.addActionListener(e -> refresh.run());
+        groupBy.addActionListener(e -> refresh.run());
+        refresh.run();
+
+        JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        controls.add(new JLabel("Period:"));
+        controls.add(period);
+        controls.add(new JLabel("Group by:"));
+        controls.add(groupBy);
+
+        JPanel panel = new JPanel(new BorderLayout(0, 6));
+        panel.add(controls, BorderLayout.NORTH);
+        panel.add(new JScrollPane(table), BorderLayout.CENTER);
+        panel.add(summary, BorderLayout.SOUTH);
+        return panel;
     }
 
     private void viewCustomers() {
@@ -764,9 +900,11 @@ public class POSSystemGUI extends JFrame {
         }
 
         StringBuilder sb = new StringBuilder("<html><table width='100%' border='1' cellpadding='5' cellspacing='0'>");
-        sb.append("<tr bgcolor='#f0f0f0'><th>ID</th><th>Name</th></tr>");
+        sb.append("<tr bgcolor='#f0f0f0'><th>ID</th><th>Name</th><th>Phone</th><th>Loyalty</th></tr>");
         for (Customer c : store.getCustomers().values()) {
-            sb.append(String.format("<tr><td>%d</td><td>%s</td></tr>", c.getId(), c.getName()));
+            if (!c.isActive()) continue;
+            sb.append(String.format("<tr><td>%d</td><td>%s</td><td>%s</td><td>%s</td></tr>",
+                    c.getId(), c.getName(), c.getPhone(), c.getLoyalty()));
         }
         sb.append("</table></html>");
 
@@ -780,8 +918,15 @@ public class POSSystemGUI extends JFrame {
         btnRemove.setForeground(Color.WHITE);
         btnRemove.addActionListener(e -> removeCustomer());
 
+        JButton btnMerge = new JButton("Merge Duplicates");
+        btnMerge.addActionListener(e -> {
+            int merged = store.mergeDuplicates() + reviewDuplicates();
+            msg(merged == 0 ? "No duplicate customers merged." : "✅ Merged " + merged + " duplicate customer(s).");
+        });
+
         JPanel buttonPanel = new JPanel();
         buttonPanel.add(btnRemove);
+        buttonPanel.add(btnMerge);
 
         JPanel panel = new JPanel(new BorderLayout());
         panel.add(scroll, BorderLayout.CENTER);
@@ -790,6 +935,22 @@ public class POSSystemGUI extends JFrame {
         JOptionPane.showMessageDialog(this, panel, "Customers", JOptionPane.INFORMATION_MESSAGE);
     }
 
+    /** Asks about each group of same-name customers in turn; returns the number merged. */
+    private int reviewDuplicates() {
+        int merged = 0;
+        // Same name only: could be two people, so each group is the cashier's call
+        for (java.util.List<Customer> group : store.getCustomerRegistry().findLikelyDuplicates()) {
+            StringBuilder list = new StringBuilder("These customers share a name but no phone or loyalty number:\n");
+            for (Customer c : group)
+                list.append(String.format("  ID %d  %s  %s  %s%n", c.getId(), c.getName(), c.getPhone(), c.getLoyalty()));
+            list.append("Merge them into ID ").append(group.get(0).getId()).append("?");
+            int answer = JOptionPane.showConfirmDialog(this, list.toString(), "Possible Duplicates", JOptionPane.YES_NO_CANCEL_OPTION);
+            if (answer == JOptionPane.YES_OPTION) merged += store.mergeCustomers(group);
+            else if (answer != JOptionPane.NO_OPTION) break;
+        }
+        return merged;
+    }
+
     private void removeCustomer() {
         String idStr = JOptionPane.showInputDialog(this, "Enter Customer ID to remove:");
         if (idStr == null || idStr.trim().isEmpty()) return;
@@ -807,8 +968,7 @@ public class POSSystemGUI extends JFrame {
                     JOptionPane.YES_NO_OPTION);
             if (confirm != JOptionPane.YES_OPTION) return;
 
-            store.getCustomers().remove(id);
-            store.saveAll();
+            store.removeCustomer(id);
             msg("✅ Removed customer: " + customer.getName());
         } catch (Exception e) {
             msg("Invalid ID.");
@@ -817,6 +977,30 @@ public class POSSystemGUI extends JFrame {
 
     // ========== HELPERS ==========
 
+    private void shutdown() {
+        if (inventoryDialog != null && inventoryDialog.isDisplayable()) {
+            inventoryDialog.dispose();
+        }
+        setEnabled(false);
+        setTitle("SuperMart POS System - saving...");
+        backgroundPanel.dispose();
+        pdfExporter.shutdown();
+        // Drain the journal off the EDT, then leave
+        Thread t = new Thread(() -> {
+            try {
+                for (Runnable task : shutdownTasks) {
+                    try { task.run(); } catch (Exception ignored) {}
+                }
+                store.close();
+                // An open cart stays in the lane file for the next start
+                if (lane != null) try { lane.close(); } catch (Exception ignored) {}
+            } finally {
+                System.exit(0);
+            }
+        }, "pos-shutdown");
+        t.start();
+    }
+
     private boolean ensureInvoice() {
         if (currentInvoice == null) {
             msg("Start a new invoice first!");
@@ -825,30 +1009,18 @@ public class POSSystemGUI extends JFrame {
         return true;
     }
 
-    private double computeSubtotalFromTable() {
-        double subtotal = 0;
-        for (int row = 0; row < tableModel.getRowCount(); row++) {
-            Object cellValue = tableModel.getValueAt(row, 4);
-            if (cellValue instanceof Number) {
-                subtotal += ((Number) cellValue).doubleValue();
-            }
-        }
-        return subtotal;
-    }
-
-    private double computeDiscount(double subtotal) {
-        if (discountValue <= 0) return 0;
-        return "PERCENT".equals(discountType)
-                ? subtotal * (discountValue / 100.0)
-                : Math.min(discountValue, subtotal);
+    /** "12.50% = " for a percent discount, "" otherwise. */
+    private String discountPrefix(Invoice inv) {
+        return inv.isPercentDiscount() ? Money.plain(inv.getDiscountBasisPoints()) + "% = " : "";
     }
 
-    private double currentTax() {
-        return 0.00;
+    /** Runs {@code task} on shutdown, before the store is closed. */
+    public void onShutdown(Runnable task) {
+        shutdownTasks.add(task);
     }
 
-    private String fmtAmount(double amount) {
-        return LKR.format(amount);
+    private String fmtAmount(long cents) {
+        return Money.format(cents);
     }
 
     private void msg(String s) {
@@ -901,16 +1073,14 @@ public class POSSystemGUI extends JFrame {
         return field.getText().trim();
     }
 
+    // O(1): the invoice keeps running totals
     private void updateTotals() {
-        double subtotal = computeSubtotalFromTable();
-        double discount = computeDiscount(subtotal);
-        double tax = (subtotal - discount) * currentTax();
-        double grand = (subtotal - discount) + tax;
-        if (grand < 0) grand = 0;
-
-        subtotalLabel.setText("Subtotal: " + fmtAmount(subtotal));
-        discountLabel.setText("Discount: " + (discountType.equals("PERCENT") ? (String.format("%.2f", discountValue) + "% = ") : "") + fmtAmount(discount));
-        taxLabel.setText("Tax (0%): " + fmtAmount(tax));
-        totalLabel.setText("Grand Total: " + fmtAmount(grand));
+        Invoice inv = currentInvoice;
+        subtotalLabel.setText("Subtotal: " + fmtAmount(inv == null ? 0 : inv.subtotalCents()));
+        long promo = inv == null ? 0 : inv.promotionCents();
+        discountLabel.setText("Discount: " + (inv == null ? "" : discountPrefix(inv)) + fmtAmount(inv == null ? 0 : inv.discountCents())
+                + (promo > 0 ? "  + promos " + fmtAmount(promo) : ""));
+        taxLabel.setText("Tax (0%): " + fmtAmount(inv == null ? 0 : inv.taxCents()));
+        totalLabel.setText("Grand Total: " + fmtAmount(inv == null ? 0 : inv.totalCents()));
     }
 }
\ No newline at end of file
@@ -0,0 +1,277 @@
+package pos;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.*;
+import java.util.*;
+
+/**
+ * Promotions read from {@code data/promotions.txt} and compiled once into per-item tables, so a
+ * cart edit re-evaluates only the promotions that mention the edited item.
+ *
+ * One promotion per line, whitespace separated, {@code #} starts a comment:
+ * <pre>
+ * PERCENT  id items=101,102 percent=10                 percent off each unit
+ * AMOUNT   id items=104 off=20.00                      fixed amount off each unit
+ * BUYXGETY id items=105,106 buy=2 get=1                of every buy+get units, the cheapest get are free
+ * MIXMATCH id items=101,102,103 qty=3 price=2500.00    any qty units of the set for price
+ * </pre>
+ * Any line may add {@code from=2025-01-01 to=2025-12-31} (inclusive), {@code days=MON-FRI} or
+ * {@code days=SAT,SUN}, {@code hours=09-17} (end exclusive) and {@code tier=G} (loyalty numbers
+ * starting with G; {@code tier=*} is any loyalty member).
+ *
+ * Per item at most one PERCENT/AMOUNT promotion applies, the one worth most; BUYXGETY and
+ * MIXMATCH apply on top of it, valuing each unit at its price after that promotion.
+ */
+public class PromotionEngine {
+    enum Kind { PERCENT, AMOUNT, BUYXGETY, MIXMATCH }
+
+    static final class Promotion {
+        final String id;
+        final Kind kind;
+        final int[] items;
+        final long value;     // PERCENT: basis points, AMOUNT: cents per unit, MIXMATCH: price of a set
+        final int buy, get;   // BUYXGETY; MIXMATCH uses buy as the set size
+        long from = Long.MIN_VALUE, to = Long.MAX_VALUE; // epoch day range
+        int days = 0x7F;      // bit (dayOfWeek - 1)
+        int fromHour = 0, toHour = 24;
+        String tier;          // null: everyone
+
+        Promotion(String id, Kind kind, int[] items, long value, int buy, int get) {
+            this.id = id; this.kind = kind; this.items = items; this.value = value; this.buy = buy; this.get = get;
+        }
+    }
+
+    private static final int[] NONE = new int[0];
+
+    private final Promotion[] promos;
+    private final Map<Integer, int[]> itemLevel = new HashMap<>(); // item -> PERCENT/AMOUNT promotions
+    private final Map<Integer, int[]> groupLevel = new HashMap<>(); // item -> BUYXGETY/MIXMATCH promotions
+    private final ZoneId zone;
+    private final int skipped;
+
+    PromotionEngine(List<Promotion> list, int skipped, ZoneId zone) {
+        this.promos = list.toArray(new Promotion[0]);
+        this.skipped = skipped;
+        this.zone = zone;
+        Map<Integer, List<Integer>> il = new HashMap<>(), gl = new HashMap<>();
+        for (int p = 0; p < promos.length; p++) {
+            boolean item = promos[p].kind == Kind.PERCENT || promos[p].kind == Kind.AMOUNT;
+            for (int id : promos[p].items) (item ? il : gl).computeIfAbsent(id, k -> new ArrayList<>()).add(p);
+        }
+        il.forEach((k, v) -> itemLevel.put(k, v.stream().mapToInt(Integer::intValue).toArray()));
+        gl.forEach((k, v) -> groupLevel.put(k, v.stream().mapToInt(Integer::intValue).toArray()));
+    }
+
+    /** An engine with no promotions. */
+    public static PromotionEngine empty(){ return new PromotionEngine(Collections.emptyList(), 0, ZoneId.systemDefault()); }
+
+    /** Reads and compiles {@code file}; a missing file means no promotions, a bad line is skipped. */
+    public static PromotionEngine load(File file) {
+        List<Promotion> list = new ArrayList<>();
+        int skipped = 0;
+        if (file.exists()) {
+            try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = br.readLine()) != null) {
+                    int hash = line.indexOf('#');
+                    if (hash >= 0) line = line.substring(0, hash);
+                    if (line.isBlank()) continue;
+                    try { list.add(parse(line.trim())); } catch (RuntimeException e) { skipped++; }
+                }
+            } catch (IOException ignored) {}
+        }
+        return new PromotionEngine(list, skipped, ZoneId.systemDefault());
+    }
+
+    public int size(){ return promos.length; }
+    /** Lines of the file that could not be read. */
+    public int getSkipped(){ return skipped; }
+
+    static Promotion parse(String line) {
+        String[] tok = line.split("\\s+");
+        Kind kind = Kind.valueOf(tok[0].toUpperCase(Locale.ROOT));
+        Map<String, String> kv = new HashMap<>();
+        for (int i = 2; i < tok.length; i++) {
+            int eq = tok[i].indexOf('=');
+            if (eq <= 0) throw new IllegalArgumentException("expected key=value: " + tok[i]);
+            kv.put(tok[i].substring(0, eq).toLowerCase(Locale.ROOT), tok[i].substring(eq + 1));
+        }
+        int[] items = Arrays.stream(kv.get("items").split(",")).mapToInt(Integer::parseInt).distinct().toArray();
+        Promotion p = switch (kind) {
+            case PERCENT -> new Promotion(tok[1], kind, items, Money.parse(kv.get("percent")), 0, 0);
+            case AMOUNT -> new Promotion(tok[1], kind, items, Money.parse(kv.get("off")), 0, 0);
+            case BUYXGETY -> new Promotion(tok[1], kind, items, 0,
+                    Integer.parseInt(kv.get("buy")), Integer.parseInt(kv.get("get")));
+            case MIXMATCH -> new Promotion(tok[1], kind, items, Money.parse(kv.get("price")),
+                    Integer.parseInt(kv.get("qty")), 0);
+        };
+        if (p.value < 0 || p.buy < 0 || p.get < 0 || (kind == Kind.PERCENT && p.value > 10_000)
+                || (kind == Kind.BUYXGETY && p.get == 0) || (kind == Kind.MIXMATCH && p.buy == 0)) {
+            throw new IllegalArgumentException("bad values: " + line);
+        }
+        if (kv.containsKey("from")) p.from = LocalDate.parse(kv.get("from")).toEpochDay();
+        if (kv.containsKey("to")) p.to = LocalDate.parse(kv.get("to")).toEpochDay();
+        if (kv.containsKey("days")) {
+            p.days = 0;
+            for (String part : kv.get("days").split(",")) {
+                String[] r = part.split("-");
+                int a = DayOfWeek.valueOf(full(r[0])).ordinal(), b = r.length > 1 ? DayOfWeek.valueOf(full(r[1])).ordinal() : a;
+                for (int d = a; ; d = (d + 1) % 7) { p.days |= 1 << d; if (d == b) break; }
+            }
+        }
+        if (kv.containsKey("hours")) {
+            String[] h = kv.get("hours").split("-");
+            p.fromHour = Integer.parseInt(h[0]);
+            p.toHour = Integer.parseInt(h[1]);
+        }
+        p.tier = kv.get("tier");
+        return p;
+    }
+
+    private static String full(String day) {
+        String d = day.toUpperCase(Locale.ROOT);
+        for (DayOfWeek w : DayOfWeek.values()) if (w.name().startsWith(d)) return w.name();
+        throw new IllegalArgumentException("day: " + day);
+    }
+
+    /** Starts evaluation for one cart. Time windows and tiers are judged at {@code atMillis}. */
+    public Session newSession(Customer customer, long atMillis) {
+        return new Session(customer, Instant.ofEpochMilli(atMillis).atZone(zone));
+    }
+
+    /**
+     * Incremental promotion state of one cart. Each line change updates the quantities of its
+     * item and re-evaluates only that item's promotions, keeping the total as a running sum.
+     * Not thread-safe; owned by the cart's {@link Invoice}.
+     */
+    public final class Session {
+        private final String loyalty;
+        private final ZonedDateTime at;
+        private final byte[] active = new byte[promos.length]; // 0 unknown, 1 active, 2 not
+        private final Map<Integer, ItemState> items = new HashMap<>();
+        private final Map<Integer, GroupState> groups = new HashMap<>();
+        private long total;
+        private long evaluations;
+
+        Session(Customer customer, ZonedDateTime at) {
+            this.loyalty = customer == null ? "" : customer.getLoyalty().trim().toUpperCase(Locale.ROOT);
+            this.at = at;
+        }
+
+        /** Records {@code qty} more units (negative: fewer) of {@code itemId} at {@code unitCents}. */
+        public void update(int itemId, long unitCents, int qty) {
+            if (qty == 0) return;
+            int[] il = itemLevel.getOrDefault(itemId, NONE);
+            if (il.length > 0) {
+                ItemState s = items.computeIfAbsent(itemId, k -> new ItemState());
+                s.units += qty;
+                s.cents += Money.times(unitCents, qty);
+                long best = 0;
+                int bestPromo = -1;
+                for (int p : il) {
+                    if (!active(p)) continue;
+                    evaluations++;
+                    Promotion pr = promos[p];
+                    long d = pr.kind == Kind.PERCENT ? Money.percent(s.cents, pr.value)
+                            : Math.min(Money.times(pr.value, s.units), s.cents);
+                    if (d > best) { best = d; bestPromo = p; }
+                }
+                total += best - s.discount;
+                s.discount = best;
+                s.promo = bestPromo;
+                if (s.units == 0) items.remove(itemId);
+            }
+            int[] gl = groupLevel.getOrDefault(itemId, NONE);
+            long net = gl.length > 0 ? net(il, unitCents) : unitCents;
+            for (int p : gl) {
+                if (!active(p)) continue;
+                evaluations++;
+                GroupState g = groups.computeIfAbsent(p, k -> new GroupState());
+                g.add(net, qty);
+                long d = promos[p].kind == Kind.BUYXGETY ? g.cheapest(g.units / (promos[p].buy + promos[p].get) * promos[p].get)
+                        : mixMatch(promos[p], g);
+                total += d - g.discount;
+                g.discount = d;
+                if (g.units == 0) groups.remove(p);
+            }
+        }
+
+        /** Current saving over the whole cart. */
+        public long discountCents(){ return total; }
+
+        /** Promotion evaluations done so far; for measurements. */
+        public long getEvaluations(){ return evaluations; }
+
+        /** Ids of the promotions currently saving something, item-level first. */
+        public List<String> applied() {
+            Set<String> out = new LinkedHashSet<>();
+            for (ItemState s : items.values()) if (s.discount > 0) out.add(promos[s.promo].id);
+            for (Map.Entry<Integer, GroupState> e : groups.entrySet()) if (e.getValue().discount > 0) out.add(promos[e.getKey()].id);
+            return new ArrayList<>(out);
+        }
+
+        /** A unit's price less the best item-level promotion on it, so a free unit is not discounted twice. */
+        private long net(int[] il, long unitCents) {
+            long off = 0;
+            for (int p : il) {
+                if (!active(p)) continue;
+                Promotion pr = promos[p];
+                off = Math.max(off, pr.kind == Kind.PERCENT ? Money.percent(unitCents, pr.value) : Math.min(pr.value, unitCents));
+            }
+            return unitCents - off;
+        }
+
+        private long mixMatch(Promotion p, GroupState g) {
+            int sets = g.units / p.buy;
+            long full = g.dearest(sets * p.buy);
+            return Math.max(0, full - Money.times(p.value, sets));
+        }
+
+        private boolean active(int p) {
+            if (active[p] == 0) active[p] = (byte) (applies(promos[p]) ? 1 : 2);
+            return active[p] == 1;
+        }
+
+        private boolean applies(Promotion p) {
+            long day = at.toLocalDate().toEpochDay();
+            if (day < p.from || day > p.to) return false;
+            if ((p.days & (1 << (at.getDayOfWeek().ordinal()))) == 0) return false;
+            if (at.getHour() < p.fromHour || at.getHour() >= p.toHour) return false;
+            if (p.tier == null) return true;
+            if (loyalty.isEmpty()) return false;
+            return p.tier.equals("*") || loyalty.startsWith(p.tier.toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private static final class ItemState {
+        int units, promo; // promo: the one applied
+        long cents, discount;
+    }
+
+    /** Units of a promotion's items in the cart, by unit price net of item-level promotions. */
+    private static final class GroupState {
+        final TreeMap<Long, Integer> byPrice = new TreeMap<>();
+        int units;
+        long discount;
+
+        void add(long unitCents, int qty) {
+            byPrice.merge(unitCents, qty, (a, b) -> a + b == 0 ? null : a + b);
+            units += qty;
+        }
+
+        long cheapest(int n){ return take(byPrice, n); }
+        long dearest(int n){ return take(byPrice.descendingMap(), n); }
+
+        private static long take(NavigableMap<Long, Integer> m, int n) {
+            long sum = 0;
+            for (Map.Entry<Long, Integer> e : m.entrySet()) {
+                if (n <= 0) break;
+                int k = Math.min(n, e.getValue());
+                sum += Money.times(e.getKey(), k);
+                n -= k;
+            }
+            return sum;
+        }
+    }
+}
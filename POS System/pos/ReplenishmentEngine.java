@@ -0,0 +1,280 @@
+package pos;
+
+import java.util.*;
+import java.util.function.IntFunction;
+
+/**
+ * Which items are running out, and what to order from whom.
+ *
+ * Every sold unit feeds an exponentially smoothed sales rate per item (time constant
+ * {@link #SMOOTHING_DAYS}), and days of cover is stock over that rate. The rate is kept as the
+ * log of a forward-decayed sum, {@code ln Σ qty/τ·e^(t/τ)}, so a sale is one log-add in any
+ * order (replayed history included) and the rate at time {@code now} is
+ * {@code e^(logRate - now/τ)}. Then {@code ln(cover) = ln(stock) - logRate + now/τ}: the first
+ * two terms are a key that only changes when the item sells or its stock moves, and the last is
+ * the same for every item. So "less than N days of cover" is "key below a bound" at any time,
+ * and the bound only falls as time passes.
+ *
+ * Items are indexed by key in buckets of 1/{@link #BUCKETS_PER_E} of a natural log (about 6% of
+ * cover); a sale or stock change that stays in its bucket costs no index work at all. The draft
+ * orders are kept between calls: {@link #draftOrders} re-examines only the items that sold,
+ * moved stock or had their offers change since the last call, the items whose cover has since
+ * risen past the bound, and lines on the draft that have grown stale; never the whole
+ * catalogue. Items that never sold are not indexed.
+ *
+ * Fed by {@link SimpleStore} with every confirmed (or replayed) sale and every inventory event.
+ */
+public class ReplenishmentEngine implements InventoryEvent.Listener {
+    public static final double SMOOTHING_DAYS = 14;
+    static final int BUCKETS_PER_E = 16;
+    static final long STALE_MILLIS = 3_600_000;   // a draft line is worked out again once it is this old
+    private static final double DAY_MILLIS = 86_400_000d;
+
+    /** One line of a draft order. */
+    public static final class Line {
+        public final Item item;
+        public final int quantity;
+        public final long costCents;    // per unit, 0 when no supplier offers it
+        public final double daysOfCover;
+        public final double ratePerDay;
+        Line(Item item, int quantity, long costCents, double daysOfCover, double ratePerDay){
+            this.item = item; this.quantity = quantity; this.costCents = costCents; this.daysOfCover = daysOfCover; this.ratePerDay = ratePerDay;
+        }
+    }
+
+    /** A draft purchase order to one supplier. */
+    public static final class PurchaseOrder {
+        public final String supplier;
+        public final List<Line> lines;
+        PurchaseOrder(String supplier, List<Line> lines){ this.supplier = supplier; this.lines = lines; }
+        public long getTotalCents(){
+            long t = 0;
+            for (Line l : lines) t += Money.times(l.costCents, l.quantity);
+            return t;
+        }
+    }
+
+    private static final class Entry {
+        final int itemId;
+        double logRate = Double.NEGATIVE_INFINITY;
+        double key;
+        Bucket bucket;       // null while not indexed
+        int slot;            // position in bucket.entries
+        boolean dirty;       // changed since the last draft
+        Line line;           // on the current draft, or null
+        String supplier;     // ... to whom
+        long placedAt;       // ... worked out when
+        Entry(int itemId){ this.itemId = itemId; }
+    }
+
+    /** Entries with keys in [id, id + 1) / BUCKETS_PER_E, unordered; a removal swaps in the last. */
+    private static final class Bucket {
+        final int id;
+        Entry[] entries = new Entry[4];
+        int size;
+        Bucket(int id){ this.id = id; }
+    }
+
+    private final Map<Integer, Item> inventory;
+    private final IntFunction<List<SupplierOffer>> offers;
+    private final Map<Integer, Entry> entries = new HashMap<>();
+    private final TreeMap<Integer, Bucket> buckets = new TreeMap<>();   // non-empty only; a few thousand at most
+
+    // The draft as of the last call
+    private final List<Entry> changed = new ArrayList<>();
+    private final Map<String, Map<Integer, Entry>> orders = new LinkedHashMap<>();
+    private double draftReorder = Double.NaN, draftUpTo, draftBound;
+
+    /** @param offers every supplier's offer for an item */
+    public ReplenishmentEngine(Map<Integer, Item> inventory, IntFunction<List<SupplierOffer>> offers) {
+        this.inventory = inventory;
+        this.offers = offers;
+    }
+
+    /** Adds the units of a sale at its own time stamp. */
+    public synchronized void recordSale(Invoice inv) {
+        for (Invoice.Line l : inv.getLines()) recordSale(l.getItem().getId(), l.getQuantity(), inv.getTimestamp());
+    }
+
+    public synchronized void recordSale(int itemId, int qty, long timeMillis) {
+        if (qty <= 0) return;
+        Entry e = entries.get(itemId);
+        if (e == null) entries.put(itemId, e = new Entry(itemId));
+        e.logRate = logAdd(e.logRate, Math.log(qty / SMOOTHING_DAYS) + now(timeMillis));
+        reindex(e);
+    }
+
+    @Override public void inventoryChanged(InventoryEvent ev) {
+        if (ev.getType() == InventoryEvent.Type.REMOVED) remove(ev.getItem().getId());
+        else restock(ev.getItem().getId());
+    }
+
+    /** Items whose supplier offers changed; their draft lines are redone at the next draft. */
+    public synchronized void offersChanged(Collection<Integer> itemIds) {
+        for (int id : itemIds) {
+            Entry e = entries.get(id);
+            if (e != null) markChanged(e);
+        }
+    }
+
+    /** Re-reads the stock of every indexed item, e.g. after the journal was replayed without events. */
+    public synchronized void refresh() {
+        for (Entry e : entries.values()) reindex(e);
+    }
+
+    /** Smoothed units sold per day at {@code nowMillis}; 0 for an item that never sold. */
+    public synchronized double getRatePerDay(int itemId, long nowMillis) {
+        Entry e = entries.get(itemId);
+        return e == null ? 0 : rate(e, nowMillis);
+    }
+
+    /** Days the stock lasts at the smoothed rate; infinite for an item that never sold. */
+    public synchronized double getDaysOfCover(int itemId, long nowMillis) {
+        Entry e = entries.get(itemId);
+        return e == null || e.bucket == null ? Double.POSITIVE_INFINITY : Math.exp(e.key + now(nowMillis));
+    }
+
+    /**
+     * Draft orders for every item with less than {@code reorderDays} of cover, enough to bring it
+     * up to {@code orderUpToDays}. Each item goes to the cheapest supplier that has units, capped
+     * at what it has; items nobody can supply are listed under supplier "". An item that has not
+     * changed since an earlier call keeps the line worked out then, for up to an hour.
+     */
+    public synchronized Map<String, PurchaseOrder> draftOrders(double reorderDays, double orderUpToDays, long nowMillis) {
+        double bound = Math.log(reorderDays) - now(nowMillis);
+        if (reorderDays != draftReorder || orderUpToDays != draftUpTo || bound > draftBound) {
+            // First draft, other terms, or the clock went back: start again from the low end of the index
+            for (Map<Integer, Entry> m : orders.values()) for (Entry e : m.values()) e.line = null;
+            orders.clear();
+            draftReorder = reorderDays;
+            draftUpTo = orderUpToDays;
+            for (Bucket b : buckets.headMap(bucketId(bound), true).values())
+                for (int i = 0; i < b.size; i++) if (b.entries[i].key < bound) place(b.entries[i], nowMillis);
+        } else {
+            // Cover grows as rates decay: items between the new bound and the old one drop off
+            for (Bucket b : buckets.subMap(bucketId(bound), true, bucketId(draftBound), true).values())
+                for (int i = 0; i < b.size; i++) if (b.entries[i].key >= bound) unplace(b.entries[i]);
+            for (Entry e : changed) {
+                if (e.bucket != null && e.key < bound) place(e, nowMillis);
+                else unplace(e);
+            }
+        }
+        for (Entry e : changed) e.dirty = false;
+        changed.clear();
+        draftBound = bound;
+
+        // Rates decay: quantities of lines untouched for a while are worked out again
+        List<Entry> stale = new ArrayList<>();
+        for (Map<Integer, Entry> m : orders.values()) for (Entry e : m.values()) if (nowMillis - e.placedAt > STALE_MILLIS) stale.add(e);
+        for (Entry e : stale) place(e, nowMillis);
+
+        Map<String, PurchaseOrder> out = new LinkedHashMap<>();
+        for (Map.Entry<String, Map<Integer, Entry>> o : orders.entrySet()) {
+            if (o.getValue().isEmpty()) continue;
+            List<Line> lines = new ArrayList<>(o.getValue().size());
+            for (Entry e : o.getValue().values()) lines.add(e.line);
+            out.put(o.getKey(), new PurchaseOrder(o.getKey(), lines));
+        }
+        return out;
+    }
+
+    /** Items indexed, i.e. that have sold at least once. */
+    public synchronized int size(){ return entries.size(); }
+
+    // ---- Draft ----
+
+    /** Works out the entry's line now and files it under its supplier, or takes it off the draft. */
+    private void place(Entry e, long nowMillis) {
+        Item it = inventory.get(e.itemId);
+        if (it == null) { unplace(e); return; }
+        double rate = rate(e, nowMillis);
+        int stock = Math.max(0, it.getStock());
+        long want = Math.round(rate * draftUpTo) - stock;  // nothing for an item that has all but stopped selling
+        if (want <= 0) { unplace(e); return; }
+        SupplierOffer best = null;
+        for (SupplierOffer o : offers.apply(e.itemId))
+            if (o.getAvailable() > 0 && (best == null || o.getCostCents() < best.getCostCents())) best = o;
+        int qty = (int) Math.min(want, best == null ? Integer.MAX_VALUE : best.getAvailable());
+        String supplier = best == null ? "" : best.getSupplier();
+        if (e.line != null && !e.supplier.equals(supplier)) unplace(e);
+        e.line = new Line(it, qty, best == null ? 0 : best.getCostCents(), stock / rate, rate);
+        e.supplier = supplier;
+        e.placedAt = nowMillis;
+        orders.computeIfAbsent(supplier, k -> new LinkedHashMap<>()).put(e.itemId, e);
+    }
+
+    private void unplace(Entry e) {
+        if (e.line == null) return;
+        orders.get(e.supplier).remove(e.itemId);
+        e.line = null;
+    }
+
+    private void markChanged(Entry e) {
+        if (e.dirty) return;
+        e.dirty = true;
+        changed.add(e);
+    }
+
+    // ---- Index ----
+
+    private synchronized void restock(int itemId) {
+        Entry e = entries.get(itemId);
+        if (e != null) reindex(e);
+    }
+
+    private synchronized void remove(int itemId) {
+        Entry e = entries.remove(itemId);
+        if (e == null) return;
+        unbucket(e);
+        unplace(e);
+        if (e.dirty) changed.remove(e);
+    }
+
+    /** Sets the key from the current stock and moves the entry to its bucket; takes it out if the item is gone. */
+    private void reindex(Entry e) {
+        markChanged(e);
+        Item it = inventory.get(e.itemId);
+        if (it == null) { unbucket(e); return; }  // sold once, gone from the catalogue since
+        int stock = it.getStock();
+        e.key = (stock <= 0 ? Double.NEGATIVE_INFINITY : Math.log(stock)) - e.logRate;
+        int id = bucketId(e.key);
+        if (e.bucket != null && e.bucket.id == id) return;
+        unbucket(e);
+        Bucket b = buckets.get(id);
+        if (b == null) buckets.put(id, b = new Bucket(id));
+        if (b.size == b.entries.length) b.entries = Arrays.copyOf(b.entries, b.size * 2);
+        b.entries[b.size] = e;
+        e.slot = b.size++;
+        e.bucket = b;
+    }
+
+    private void unbucket(Entry e) {
+        Bucket b = e.bucket;
+        if (b == null) return;
+        Entry last = b.entries[--b.size];
+        b.entries[e.slot] = last;
+        last.slot = e.slot;
+        b.entries[b.size] = null;
+        if (b.size == 0) buckets.remove(b.id);
+        e.bucket = null;
+    }
+
+    private static int bucketId(double key) {
+        if (key == Double.NEGATIVE_INFINITY) return Integer.MIN_VALUE;  // out of stock
+        return (int) Math.floor(key * BUCKETS_PER_E);
+    }
+
+    private static double now(long millis){ return millis / DAY_MILLIS / SMOOTHING_DAYS; }
+
+    private static double rate(Entry e, long nowMillis) {
+        return Math.exp(e.logRate - now(nowMillis));
+    }
+
+    /** ln(e^a + e^b) without overflow. */
+    private static double logAdd(double a, double b) {
+        if (a == Double.NEGATIVE_INFINITY) return b;
+        if (b == Double.NEGATIVE_INFINITY) return a;
+        double hi = Math.max(a, b), lo = Math.min(a, b);
+        return hi + Math.log1p(Math.exp(lo - hi));
+    }
+}
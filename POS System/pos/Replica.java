@@ -0,0 +1,198 @@
+package pos;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Follower side of store replication: keeps a local {@link SimpleStore} in step with a
+ * {@link ReplicationServer} and sends this till's stock reservations, stock returns and sales to
+ * the primary, so every till sees one stock count.
+ *
+ * Records are applied in the primary's order and journaled locally with their position; after a
+ * disconnect or restart the follower asks for everything after the last position it applied,
+ * or gets a fresh catalogue if the primary no longer has those records. Calls to the primary wait
+ * until the change has come back down the stream, so the local store reflects it on return.
+ *
+ * While the primary is unreachable the till can look things up but not sell:
+ * {@link SimpleStore#tryReserve} and friends throw {@link IllegalStateException}.
+ * Catalogue edits (items, prices, customers) belong on the primary.
+ */
+public class Replica implements AutoCloseable {
+    static final int CONNECT_MILLIS = 2000, READ_MILLIS = 5000, CALL_MILLIS = 5000;
+
+    private final SimpleStore store;
+    private final String host;
+    private final int port;
+    private final String secret;
+    private final Thread follower;
+    private volatile boolean running = true;
+    private volatile boolean connected;
+    private volatile Socket streamSocket;
+
+    private final Object applied = new Object(); // notified as positions advance
+    private Socket callSocket;                   // guarded by "this"
+    private BufferedReader callIn;
+    private Writer callOut;
+
+    /** Follows the primary at {@code host}:{@code port}, which must have been given the same {@code secret}. */
+    public Replica(SimpleStore store, String host, int port, String secret) {
+        if (secret == null || secret.isEmpty()) throw new IllegalArgumentException("Replication needs a shared secret");
+        this.store = store;
+        this.host = host;
+        this.port = port;
+        this.secret = secret;
+        store.setUpstream(this);
+        follower = new Thread(this::followLoop, "pos-replica");
+        follower.setDaemon(true);
+        follower.start();
+    }
+
+    /** "host:port" */
+    public static Replica follow(SimpleStore store, String primary, String secret) {
+        int colon = primary.lastIndexOf(':');
+        return new Replica(store, primary.substring(0, colon), Integer.parseInt(primary.substring(colon + 1)), secret);
+    }
+
+    public boolean isConnected(){ return connected; }
+    public long getPosition(){ return store.getReplicatedSeq(); }
+
+    /** Waits until records up to {@code seq} are applied; false on timeout. */
+    public boolean awaitPosition(long seq, long millis) {
+        long deadline = System.currentTimeMillis() + millis;
+        synchronized (applied) {
+            while (store.getReplicatedSeq() < seq) {
+                long left = deadline - System.currentTimeMillis();
+                if (left <= 0) return false;
+                try { applied.wait(left); } catch (InterruptedException e) { Thread.currentThread().interrupt(); return false; }
+            }
+        }
+        return true;
+    }
+
+    @Override public void close() {
+        running = false;
+        store.setUpstream(null);
+        Socket s = streamSocket;
+        if (s != null) try { s.close(); } catch (IOException ignored) {}
+        synchronized (this) { dropCall(); }
+        try { follower.join(2000); } catch (InterruptedException ignored) {}
+    }
+
+    // ---- Stream ----
+
+    private void followLoop() {
+        long backoff = 100;
+        while (running) {
+            try (Socket s = new Socket()) {
+                s.connect(new InetSocketAddress(host, port), CONNECT_MILLIS);
+                s.setSoTimeout(READ_MILLIS); // heartbeats come every second
+                s.setTcpNoDelay(true);
+                streamSocket = s;
+                BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8), 1 << 16);
+                Writer out = new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8);
+                out.write("FOLLOW\t" + store.getReplicatedSeq() + "\t" + Journal.encode(secret) + "\n");
+                out.flush();
+                connected = true;
+                backoff = 100;
+                String line;
+                while ((line = in.readLine()) != null) receive(line, in);
+            } catch (IOException | RuntimeException e) {
+                // reconnect below
+            } finally {
+                connected = false;
+                streamSocket = null;
+            }
+            if (!running) return;
+            try { Thread.sleep(backoff); } catch (InterruptedException e) { return; }
+            backoff = Math.min(5000, backoff * 2);
+        }
+    }
+
+    private void receive(String line, BufferedReader in) throws IOException {
+        String[] f = line.split("\t", -1);
+        switch (f[0]) {
+            case "R" -> {
+                String[] ops = new String[f.length - 2];
+                for (int i = 0; i < ops.length; i++) ops[i] = Journal.decode(f[i + 2]);
+                store.applyReplicated(Long.parseLong(f[1]), ops);
+            }
+            case "B" -> {
+                List<String> ops = new ArrayList<>();
+                String x;
+                while ((x = in.readLine()) != null && !x.equals("E")) {
+                    if (x.startsWith("X\t")) ops.add(Journal.decode(x.substring(2)));
+                }
+                if (x == null) throw new EOFException("snapshot cut short");
+                store.resetReplicated(Long.parseLong(f[1]), ops);
+            }
+            default -> { } // H: heartbeat
+        }
+        synchronized (applied) { applied.notifyAll(); }
+    }
+
+    // ---- Calls to the primary ----
+
+    boolean reserve(int itemId, int qty) {
+        String[] r = call("reserve\t" + itemId + "\t" + qty);
+        return r[0].equals("ok");
+    }
+
+    void adjust(int itemId, int delta) {
+        call("adjust\t" + itemId + "\t" + delta);
+    }
+
+    void logSale(Invoice inv) {
+        String[] r = call("sale\t" + Journal.encode(SalesLog.format(inv)) + "\t" + Journal.encode(inv.getCustomer().toCsv()));
+        inv.stamp(Long.parseLong(r[2]), System.currentTimeMillis());
+    }
+
+    /** Waits until everything the primary has recorded so far is applied here. */
+    void catchUp() {
+        call("pos");
+    }
+
+    /** One request/reply; waits for the change to arrive on the stream. */
+    private String[] call(String request) {
+        String reply;
+        synchronized (this) {
+            try {
+                if (callSocket == null) {
+                    Socket s = new Socket();
+                    s.connect(new InetSocketAddress(host, port), CONNECT_MILLIS);
+                    s.setSoTimeout(CALL_MILLIS);
+                    s.setTcpNoDelay(true);
+                    callSocket = s;
+                    callIn = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+                    callOut = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8));
+                    callOut.write("CALL\t" + Journal.encode(secret) + "\n");
+                }
+                callOut.write(request);
+                callOut.write('\n');
+                callOut.flush();
+                reply = callIn.readLine();
+                if (reply == null) throw new EOFException();
+            } catch (IOException e) {
+                // A request cut off mid-way may or may not have been applied; reservations and
+                // returns are not retried blind, the cashier sees the failure.
+                dropCall();
+                throw new IllegalStateException("Primary unreachable: " + e.getMessage(), e);
+            }
+        }
+        String[] r = reply.split("\t", -1);
+        if (r[0].equals("err")) throw new IllegalArgumentException(r.length > 1 ? r[1] : "Rejected by primary");
+        if (!awaitPosition(Long.parseLong(r[1]), CALL_MILLIS)) {
+            throw new IllegalStateException("Primary accepted the change but it has not arrived yet");
+        }
+        return r;
+    }
+
+    private void dropCall() {
+        if (callSocket != null) try { callSocket.close(); } catch (IOException ignored) {}
+        callSocket = null;
+        callIn = null;
+        callOut = null;
+    }
+}
@@ -0,0 +1,236 @@
+package pos;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Primary side of store replication. Every journal record of the primary's {@link SimpleStore}
+ * (item, stock, customer and sale changes, already atomic per record) is kept in a ring of
+ * recent records and streamed, once durable, to each connected {@link Replica} in journal order.
+ *
+ * Wire format: one UTF-8 line per message, tab separated, ops escaped as in the journal.
+ * <pre>
+ * follower: FOLLOW seq secret           stream every record after seq
+ * primary:  R seq op op ...             one journal record
+ *           B seq / X op ... / E        full catalogue as of seq, when seq is too old or unknown
+ *           H seq                       heartbeat with the primary's last seq, when idle
+ *
+ * follower: CALL secret                 then, one request at a time:
+ *           reserve id qty          ->  ok seq | no seq
+ *           adjust id delta         ->  ok seq
+ *           sale record customer    ->  ok seq saleId
+ *           pos                     ->  ok seq
+ *                                   ->  err message
+ * </pre>
+ * The {@code seq} in a reply is a journal position at or after the change, so the follower can
+ * wait until it has applied it before answering its own caller.
+ *
+ * A follower can change stock and record sales, and the stream carries every customer, so the
+ * server listens only on the address it is given and drops any connection whose hello lacks the
+ * shared secret. The secret crosses the store network in clear text: it keeps other machines
+ * out, not someone who can read the traffic.
+ */
+public class ReplicationServer implements Journal.Tap {
+    static final int RING = 1 << 16;
+    static final int HEARTBEAT_MILLIS = 1000;
+
+    private final SimpleStore store;
+    private final byte[] secret;
+    private final ServerSocket socket;
+    private final Thread acceptor;
+    private final AtomicInteger followers = new AtomicInteger();
+    private volatile boolean running = true;
+
+    // Recent records: seq s lives at ringOps[s % RING] while first <= s <= last
+    private final String[][] ringOps = new String[RING][];
+    private long first, last; // oldest and newest seq in the ring; first > last when empty
+
+    /** Listens on {@code bind}:{@code port} (0 for any free port) for followers that know {@code secret}. */
+    public ReplicationServer(SimpleStore store, InetAddress bind, int port, String secret) throws IOException {
+        if (secret == null || secret.isEmpty()) throw new IllegalArgumentException("Replication needs a shared secret");
+        this.store = store;
+        this.secret = secret.getBytes(StandardCharsets.UTF_8);
+        socket = new ServerSocket(port, 50, bind);
+        long now = store.getJournal().lastSeq();
+        first = now + 1;
+        last = now;
+        store.setJournalTap(this);
+        acceptor = new Thread(this::acceptLoop, "pos-repl-accept");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public int getPort(){ return socket.getLocalPort(); }
+    public int getFollowers(){ return followers.get(); }
+    /** Last journal record of the primary; followers are current when they reach it. */
+    public long getPosition(){ return store.getJournal().lastSeq(); }
+
+    public void close() {
+        running = false;
+        store.setJournalTap(null);
+        try { socket.close(); } catch (IOException ignored) {}
+        synchronized (this) { notifyAll(); }
+    }
+
+    @Override public synchronized void record(long seq, String[] ops) {
+        int i = (int) (seq % RING);
+        ringOps[i] = ops;
+        last = seq;
+        if (last - first >= RING) first = last - RING + 1;
+        notifyAll();
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket s = socket.accept();
+                s.setTcpNoDelay(true);
+                Thread t = new Thread(() -> serve(s), "pos-repl-" + s.getRemoteSocketAddress());
+                t.setDaemon(true);
+                t.start();
+            } catch (IOException e) {
+                if (!running) return;
+            }
+        }
+    }
+
+    private void serve(Socket s) {
+        try (s;
+             BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8))) {
+            String line = in.readLine();
+            if (line == null) return;
+            String[] hello = line.split("\t", -1);
+            if (!authorized(hello)) {
+                log(s, "refused " + hello[0] + ": missing or wrong secret");
+                return;
+            }
+            if (hello[0].equals("FOLLOW")) {
+                followers.incrementAndGet();
+                try { stream(Long.parseLong(hello[1]), out); } finally { followers.decrementAndGet(); }
+            } else {
+                String req;
+                while ((req = in.readLine()) != null) {
+                    out.write(call(req.split("\t", -1)));
+                    out.write('\n');
+                    out.flush();
+                }
+            }
+        } catch (SocketException ignored) {
+            // follower went away; it reconnects with its position
+        } catch (IOException | RuntimeException e) {
+            log(s, e.toString());
+        }
+    }
+
+    /** A FOLLOW or CALL hello carrying the shared secret, compared in constant time. */
+    private boolean authorized(String[] hello) {
+        int at = hello[0].equals("FOLLOW") && hello.length == 3 ? 2 : hello[0].equals("CALL") && hello.length == 2 ? 1 : -1;
+        return at > 0 && MessageDigest.isEqual(secret, Journal.decode(hello[at]).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void log(Socket s, String what) {
+        System.err.println("Replication " + s.getRemoteSocketAddress() + ": " + what);
+    }
+
+    // ---- Streaming ----
+
+    private void stream(long after, Writer out) throws IOException {
+        long pos = after;
+        boolean needSnapshot;
+        synchronized (this) { needSnapshot = pos <= 0 || pos < first - 1 || pos > last; }
+        if (needSnapshot) pos = sendSnapshot(out);
+        while (running) {
+            String[] ops = null;
+            long next = pos + 1, newest;
+            boolean lost;
+            synchronized (this) {
+                if (next > last) {
+                    try { wait(HEARTBEAT_MILLIS); } catch (InterruptedException e) { return; }
+                }
+                lost = next < first; // fell out of the ring while we were slow
+                newest = last;
+                if (!lost && next <= last) ops = ringOps[(int) (next % RING)];
+            }
+            // Never write under the lock: the journal calls record() holding its own
+            if (lost) { pos = sendSnapshot(out); continue; }
+            if (ops == null) {
+                out.write("H\t" + newest + "\n");
+                out.flush();
+                continue;
+            }
+            store.getJournal().awaitDurable(next); // never ship what a primary crash could still lose
+            StringBuilder sb = new StringBuilder(64).append("R\t").append(next);
+            for (String op : ops) sb.append('\t').append(Journal.encode(op));
+            out.write(sb.append('\n').toString());
+            if (next >= newest) out.flush();
+            pos = next;
+        }
+    }
+
+    private long sendSnapshot(Writer out) throws IOException {
+        List<String> ops = new ArrayList<>();
+        long seq = store.replicationSnapshot(ops);
+        out.write("B\t" + seq + "\n");
+        for (String op : ops) { out.write("X\t"); out.write(Journal.encode(op)); out.write('\n'); }
+        out.write("E\n");
+        out.flush();
+        return seq;
+    }
+
+    // ---- Calls from followers ----
+
+    private String call(String[] req) {
+        try {
+            switch (req[0]) {
+                case "reserve" -> {
+                    boolean ok = store.tryReserve(Integer.parseInt(req[1]), Integer.parseInt(req[2]));
+                    return (ok ? "ok\t" : "no\t") + store.getJournal().lastSeq();
+                }
+                case "adjust" -> {
+                    Item it = store.getInventory().get(Integer.parseInt(req[1]));
+                    if (it == null) return "err\tItem not found!";
+                    store.adjustStock(it, Integer.parseInt(req[2]));
+                    return "ok\t" + store.getJournal().lastSeq();
+                }
+                case "sale" -> {
+                    Invoice inv = rebuild(Journal.decode(req[1]), Customer.fromCsv(Journal.decode(req[2])));
+                    if (inv == null) return "err\tUnreadable sale";
+                    store.logSale(inv);
+                    return "ok\t" + store.getJournal().lastSeq() + "\t" + inv.getId();
+                }
+                case "pos" -> { return "ok\t" + store.getJournal().lastSeq(); }
+                default -> { return "err\tUnknown request " + req[0]; }
+            }
+        } catch (RuntimeException e) {
+            return "err\t" + e;
+        }
+    }
+
+    /**
+     * The follower's sale as an invoice over the primary's items. A customer the follower
+     * registered keeps its id unless the primary has since given that id to someone else.
+     */
+    private Invoice rebuild(String record, Customer sent) {
+        Customer known = store.getCustomers().get(sent.getId());
+        Customer customer = sent;
+        if (known != null && !known.getName().equals(sent.getName())) {
+            customer = new Customer(store.getCustomerRegistry().nextId(), sent.getName(), sent.getPhone(), sent.getLoyalty());
+        } else if (known != null) {
+            customer = known;
+        }
+        Map<Integer, Customer> one = Map.of(sent.getId(), customer);
+        Invoice[] out = new Invoice[1];
+        SalesLog.Reader r = new SalesLog.Reader(one, store.getInventory(), inv -> out[0] = inv);
+        for (String line : record.split("\n")) r.line(line);
+        r.finish();
+        return out[0];
+    }
+}
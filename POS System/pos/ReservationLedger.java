@@ -0,0 +1,122 @@
+package pos;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+/**
+ * Stock held by open carts. Ringing up a line puts a hold on the units instead of taking them
+ * from stock; the sale takes them at confirm, and a cart nobody touches for
+ * {@link #getHoldMillis} loses its holds. Holds live in memory only, so a till that crashes or
+ * is closed with a cart open leaves the stock as it was.
+ *
+ * The ledger keeps a running total of what is held per item, so what is available to a new
+ * cart, stock on hand less that total, is O(1). Expiry runs off a {@link TimingWheel}: each
+ * reservation has one timeout at a time, and a touch only moves its deadline, so a busy cart
+ * does not reschedule anything until the old timeout comes round.
+ *
+ * {@link SimpleStore} owns the ledger and calls it with the stripe locks of the items held, so
+ * holds, stock and the sale of an item change together.
+ */
+public class ReservationLedger implements AutoCloseable {
+    static final long TICK_MILLIS = 1000;
+    static final int WHEEL_SLOTS = 512;
+
+    /** What one cart holds. Belongs to one lane; the expiry thread may empty it. */
+    public static final class Reservation {
+        private final Map<Integer, Integer> units = new HashMap<>();  // item -> units held; guarded by this
+        private long expiresAt;                                       // guarded by this
+        private TimingWheel.Timeout timeout;                          // guarded by this
+        private boolean expired;                                      // lost holds since the last touch
+
+        /** Units of an item this cart holds. */
+        public synchronized int getHeld(int itemId){ return units.getOrDefault(itemId, 0); }
+        /** True once the holds have run out; the next hold re-arms it. */
+        public synchronized boolean isExpired(){ return expired; }
+        synchronized int[] itemIds(){
+            int[] ids = new int[units.size()];
+            int i = 0;
+            for (int id : units.keySet()) ids[i++] = id;
+            return ids;
+        }
+    }
+
+    private final ConcurrentMap<Integer, Integer> held = new ConcurrentHashMap<>();  // item -> units held by all carts
+    private final long holdMillis;
+    private final Consumer<Reservation> onExpiry;
+    private final TimingWheel wheel;
+
+    /** @param onExpiry called on the wheel thread with a reservation whose time ran out */
+    ReservationLedger(long holdMillis, Consumer<Reservation> onExpiry) {
+        this.holdMillis = holdMillis;
+        this.onExpiry = onExpiry;
+        wheel = new TimingWheel("pos-holds", Math.min(TICK_MILLIS, Math.max(1, holdMillis / 8)), WHEEL_SLOTS);
+    }
+
+    public long getHoldMillis(){ return holdMillis; }
+
+    /** Units of an item held by all open carts. */
+    public int getHeld(int itemId){ return held.getOrDefault(itemId, 0); }
+
+    /** Items with any units held. */
+    public int size(){ return held.size(); }
+
+    public Reservation open(){ return new Reservation(); }
+
+    /** Adds {@code qty} units to what {@code r} holds and restarts its time. Caller holds the item's stripe. */
+    void hold(Reservation r, int itemId, int qty) {
+        synchronized (r) {
+            touch(r);
+            r.units.merge(itemId, qty, Integer::sum);
+        }
+        held.merge(itemId, qty, Integer::sum);
+    }
+
+    /** Gives back up to {@code qty} units of what {@code r} holds; returns how many. Caller holds the item's stripe. */
+    int release(Reservation r, int itemId, int qty) {
+        int freed;
+        synchronized (r) {
+            int had = r.units.getOrDefault(itemId, 0);
+            freed = Math.min(had, qty);
+            if (freed <= 0) return 0;
+            if (had == freed) r.units.remove(itemId); else r.units.put(itemId, had - freed);
+            if (r.units.isEmpty() && r.timeout != null) { r.timeout.cancel(); r.timeout = null; }
+        }
+        held.merge(itemId, -freed, (a, b) -> a + b == 0 ? null : a + b);
+        return freed;
+    }
+
+    /** Restarts the time of {@code r} without changing what it holds. */
+    void touch(Reservation r) {
+        synchronized (r) {
+            r.expired = false;
+            r.expiresAt = System.currentTimeMillis() + holdMillis;
+            if (r.timeout == null) r.timeout = wheel.schedule(() -> due(r), holdMillis);
+        }
+    }
+
+    /**
+     * Marks {@code r} expired if its time is up; false if it was touched since. The caller then
+     * releases its holds with the stripes of {@link Reservation#itemIds} held.
+     */
+    boolean expire(Reservation r) {
+        synchronized (r) {
+            if (r.expiresAt > System.currentTimeMillis()) return false;
+            r.expired = true;
+            return true;
+        }
+    }
+
+    private void due(Reservation r) {
+        synchronized (r) {
+            r.timeout = null;
+            if (r.units.isEmpty()) return;
+            long left = r.expiresAt - System.currentTimeMillis();
+            if (left > 0) { r.timeout = wheel.schedule(() -> due(r), left); return; }
+        }
+        onExpiry.accept(r);
+    }
+
+    @Override public void close(){ wheel.close(); }
+}
@@ -0,0 +1,292 @@
+package pos;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.IntStream;
+
+/**
+ * Column store of every sold invoice line for reporting.
+ *
+ * Each line is one row across primitive arrays: timestamp, local day and hour, item, customer
+ * and showroom (dictionary-encoded to dense ints), quantity and line total in cents. Rows are
+ * appended in sale order, so a date range is two binary searches; a group-by over the range is
+ * split into chunks that aggregate into plain {@code long[]} accumulators on the common
+ * fork/join pool and are merged at the end. Per-day rollups (revenue, units, invoices and an
+ * hourly profile) are maintained on append, so whole-day totals never touch the rows.
+ *
+ * One writer (the store), any number of readers: readers work on an immutable {@link Cols}
+ * view whose arrays are only ever written past its {@code size}.
+ */
+public class SalesAnalytics {
+    private static final int CHUNK = 1 << 16;
+
+    public enum Dimension { ITEM, SHOWROOM, HOUR, CUSTOMER, DAY }
+
+    /** One group of a report; amounts are in cents. */
+    public static final class Row {
+        public final String label;
+        public final long revenueCents;
+        public final long units;
+        public final int lines;
+        Row(String label, long revenueCents, long units, int lines){
+            this.label = label; this.revenueCents = revenueCents; this.units = units; this.lines = lines;
+        }
+    }
+
+    /** Pre-aggregated figures for one calendar day. */
+    public static final class Day {
+        long revenueCents, units;
+        int invoices, lines;
+        final long[] hourlyCents = new long[24];
+        public long getRevenueCents(){ return revenueCents; }
+        public long getUnits(){ return units; }
+        public int getInvoices(){ return invoices; }
+        public int getLines(){ return lines; }
+        public long[] getHourlyCents(){ return hourlyCents.clone(); }
+        Day copy() {
+            Day d = new Day();
+            d.revenueCents = revenueCents; d.units = units; d.invoices = invoices; d.lines = lines;
+            System.arraycopy(hourlyCents, 0, d.hourlyCents, 0, 24);
+            return d;
+        }
+    }
+
+    private static final class Cols {
+        final long[] ts; final int[] day; final byte[] hour;
+        final int[] item, customer, showroom, qty;
+        final long[] cents;
+        final int size;
+        final boolean ordered; // timestamps never went backwards
+
+        Cols(int cap) {
+            ts = new long[cap]; day = new int[cap]; hour = new byte[cap];
+            item = new int[cap]; customer = new int[cap]; showroom = new int[cap]; qty = new int[cap];
+            cents = new long[cap];
+            size = 0; ordered = true;
+        }
+        Cols(Cols o, int size, boolean ordered) {
+            ts = o.ts; day = o.day; hour = o.hour; item = o.item; customer = o.customer;
+            showroom = o.showroom; qty = o.qty; cents = o.cents;
+            this.size = size; this.ordered = ordered;
+        }
+        Cols(Cols o, int cap) {
+            ts = Arrays.copyOf(o.ts, cap); day = Arrays.copyOf(o.day, cap); hour = Arrays.copyOf(o.hour, cap);
+            item = Arrays.copyOf(o.item, cap); customer = Arrays.copyOf(o.customer, cap);
+            showroom = Arrays.copyOf(o.showroom, cap); qty = Arrays.copyOf(o.qty, cap);
+            cents = Arrays.copyOf(o.cents, cap);
+            size = o.size; ordered = o.ordered;
+        }
+    }
+
+    /** Dense int codes for sparse keys, with the latest label seen for each. */
+    private static final class Dict {
+        final Map<Object, Integer> codes = new ConcurrentHashMap<>();
+        volatile String[] labels = new String[16];
+        int size;
+
+        int code(Object key, String label) {
+            Integer c = codes.get(key);
+            if (c == null) {
+                c = size;
+                if (size == labels.length) labels = Arrays.copyOf(labels, size * 2);
+                codes.put(key, c);
+                size++;
+            }
+            labels[c] = label;
+            return c;
+        }
+    }
+
+    private final ZoneId zone;
+    private final Dict items = new Dict(), customers = new Dict(), showrooms = new Dict();
+    private final ConcurrentNavigableMap<Integer, Day> days = new ConcurrentSkipListMap<>();
+    private volatile Cols cols = new Cols(1024);
+    private long cachedDayStart = 1, cachedDayEnd; // bounds of the last plain 24-hour day seen (writer only)
+    private int cachedDay;
+
+    public SalesAnalytics(){ this(ZoneId.systemDefault()); }
+    public SalesAnalytics(ZoneId zone){ this.zone = zone; }
+
+    // ---- Ingest ----
+
+    /** Appends every line of a logged sale. */
+    public synchronized void add(Invoice inv) {
+        List<Invoice.Line> lines = inv.getLines();
+        Cols c = cols;
+        if (c.size + lines.size() > c.ts.length) c = new Cols(c, Math.max(c.ts.length * 2, c.size + lines.size()));
+
+        long ts = inv.getTimestamp();
+        int day, hour;
+        if (ts >= cachedDayStart && ts < cachedDayEnd) {
+            // sales arrive in time order, so nearly every one falls in the cached day
+            day = cachedDay;
+            hour = (int) ((ts - cachedDayStart) / 3_600_000);
+        } else {
+            ZonedDateTime t = Instant.ofEpochMilli(ts).atZone(zone);
+            day = (int) t.toLocalDate().toEpochDay();
+            hour = t.getHour();
+            long s = startOfDay(day), e = startOfDay(day + 1);
+            if (e - s == 86_400_000L) { cachedDay = day; cachedDayStart = s; cachedDayEnd = e; }
+        }
+        int cust = customers.code(inv.getCustomer().getId(), inv.getCustomer().getName());
+        int room = showrooms.code(inv.getShowroom(), inv.getShowroom());
+        boolean ordered = c.ordered && (c.size == 0 || c.ts[c.size - 1] <= ts);
+
+        Day d = days.computeIfAbsent(day, k -> new Day());
+        int n = c.size;
+        for (Invoice.Line l : lines) {
+            long cents = l.getLineCents();
+            c.ts[n] = ts;
+            c.day[n] = day;
+            c.hour[n] = (byte) hour;
+            c.item[n] = items.code(l.getItem().getId(), l.getItem().getName());
+            c.customer[n] = cust;
+            c.showroom[n] = room;
+            c.qty[n] = l.getQuantity();
+            c.cents[n] = cents;
+            n++;
+            synchronized (d) {
+                d.revenueCents += cents;
+                d.units += l.getQuantity();
+                d.lines++;
+                d.hourlyCents[hour] += cents;
+            }
+        }
+        synchronized (d) { d.invoices++; }
+        cols = new Cols(c, n, ordered);
+    }
+
+    public int getLineCount(){ return cols.size; }
+
+    // ---- Queries ----
+
+    /**
+     * Revenue, units and line count per {@code dim} for sales in {@code [fromMillis, toMillis)},
+     * highest revenue first. HOUR groups by hour of day, DAY by calendar date.
+     */
+    public List<Row> groupBy(Dimension dim, long fromMillis, long toMillis) {
+        Cols c = cols;
+        int lo = lowerBound(c, fromMillis), hi = c.ordered ? lowerBound(c, toMillis) : c.size;
+        int firstDay = dim == Dimension.DAY && hi > lo ? minDay(c, lo, hi) : 0;
+        int keys = switch (dim) {
+            case ITEM -> items.size;
+            case CUSTOMER -> customers.size;
+            case SHOWROOM -> showrooms.size;
+            case HOUR -> 24;
+            case DAY -> hi > lo ? maxDay(c, lo, hi) - firstDay + 1 : 0;
+        };
+        int[] key = switch (dim) {
+            case ITEM -> c.item;
+            case CUSTOMER -> c.customer;
+            case SHOWROOM -> c.showroom;
+            default -> null;
+        };
+        long[][] acc = aggregate(c, lo, hi, keys, dim, key, firstDay, fromMillis, toMillis);
+
+        String[] labels = switch (dim) {
+            case ITEM -> items.labels;
+            case CUSTOMER -> customers.labels;
+            case SHOWROOM -> showrooms.labels;
+            default -> null;
+        };
+        List<Row> out = new ArrayList<>();
+        for (int k = 0; k < keys; k++) {
+            if (acc[2][k] == 0) continue;
+            String label = switch (dim) {
+                case HOUR -> String.format("%02d:00", k);
+                case DAY -> LocalDate.ofEpochDay(firstDay + k).toString();
+                default -> labels[k];
+            };
+            out.add(new Row(label, acc[0][k], acc[1][k], (int) acc[2][k]));
+        }
+        out.sort((a, b) -> Long.compare(b.revenueCents, a.revenueCents));
+        return out;
+    }
+
+    /** Total revenue in cents for {@code [fromMillis, toMillis)}; whole days inside the range come from the rollups. */
+    public long revenue(long fromMillis, long toMillis) {
+        Cols c = cols;
+        if (!c.ordered) return sumRows(c, 0, c.size, fromMillis, toMillis);
+        int firstFull = (int) Instant.ofEpochMilli(fromMillis).atZone(zone).toLocalDate().toEpochDay();
+        if (startOfDay(firstFull) < fromMillis) firstFull++;
+        int endFull = (int) Instant.ofEpochMilli(toMillis).atZone(zone).toLocalDate().toEpochDay(); // exclusive
+        if (endFull <= firstFull) return sumRows(c, lowerBound(c, fromMillis), lowerBound(c, toMillis), fromMillis, toMillis);
+
+        long total = 0;
+        for (Day d : days.subMap(firstFull, endFull).values()) synchronized (d) { total += d.revenueCents; }
+        long dayStart = startOfDay(firstFull), dayEnd = startOfDay(endFull);
+        total += sumRows(c, lowerBound(c, fromMillis), lowerBound(c, dayStart), fromMillis, dayStart);
+        total += sumRows(c, lowerBound(c, dayEnd), lowerBound(c, toMillis), dayEnd, toMillis);
+        return total;
+    }
+
+    /** Copies of the daily rollups for {@code [from, to]}, keyed by date. */
+    public SortedMap<LocalDate, Day> daily(LocalDate from, LocalDate to) {
+        SortedMap<LocalDate, Day> out = new TreeMap<>();
+        for (Map.Entry<Integer, Day> e : days.subMap((int) from.toEpochDay(), true, (int) to.toEpochDay(), true).entrySet()) {
+            synchronized (e.getValue()) { out.put(LocalDate.ofEpochDay(e.getKey()), e.getValue().copy()); }
+        }
+        return out;
+    }
+
+    public long startOfDay(LocalDate d){ return d.atStartOfDay(zone).toInstant().toEpochMilli(); }
+    private long startOfDay(int epochDay){ return startOfDay(LocalDate.ofEpochDay(epochDay)); }
+
+    // ---- Scans ----
+
+    /** Returns {revenue[], units[], lines[]} per key, aggregated in parallel chunks. */
+    private static long[][] aggregate(Cols c, int lo, int hi, int keys, Dimension dim, int[] key,
+                                      int firstDay, long from, long to) {
+        int chunks = Math.max(1, (hi - lo + CHUNK - 1) / CHUNK);
+        return IntStream.range(0, chunks).parallel().mapToObj(ch -> {
+            long[][] a = new long[3][keys];
+            int end = Math.min(hi, lo + (ch + 1) * CHUNK);
+            for (int i = lo + ch * CHUNK; i < end; i++) {
+                if (!c.ordered && (c.ts[i] < from || c.ts[i] >= to)) continue;
+                int k = key != null ? key[i] : dim == Dimension.HOUR ? c.hour[i] : c.day[i] - firstDay;
+                a[0][k] += c.cents[i];
+                a[1][k] += c.qty[i];
+                a[2][k]++;
+            }
+            return a;
+        }).reduce((x, y) -> {
+            for (int r = 0; r < 3; r++) for (int k = 0; k < keys; k++) x[r][k] += y[r][k];
+            return x;
+        }).orElseGet(() -> new long[3][keys]);
+    }
+
+    private static long sumRows(Cols c, int lo, int hi, long from, long to) {
+        long s = 0;
+        for (int i = lo; i < hi; i++) if (c.ts[i] >= from && c.ts[i] < to) s += c.cents[i];
+        return s;
+    }
+
+    /** First row at or after {@code t}; 0 when rows are not in time order (callers then filter). */
+    private static int lowerBound(Cols c, long t) {
+        if (!c.ordered) return 0;
+        int lo = 0, hi = c.size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (c.ts[mid] < t) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    private static int minDay(Cols c, int lo, int hi) {
+        int m = Integer.MAX_VALUE;
+        for (int i = lo; i < hi; i++) m = Math.min(m, c.day[i]);
+        return m;
+    }
+
+    private static int maxDay(Cols c, int lo, int hi) {
+        int m = Integer.MIN_VALUE;
+        for (int i = lo; i < hi; i++) m = Math.max(m, c.day[i]);
+        return m;
+    }
+}
@@ -0,0 +1,179 @@
+package pos;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Line-delimited sale records. One sale is a header line followed by one line per invoice line:
+ * <pre>
+ * H,invoiceId,epochMillis,customerId,taxRate,showroom,customerName,discountBasisPoints,discountAmount,promotionAmount
+ * L,invoiceId,itemId,qty,unitPrice,itemName
+ * </pre>
+ * Text fields are escaped like the other CSV files. The tax rate is a fraction ("0.1") and
+ * prices are plain decimal amounts ("999.00"). The discount and promotion fields are absent in
+ * records written before those were kept; at most one discount field is non-zero. Reading is
+ * streaming: only the sale being assembled is held, never the file.
+ */
+public final class SalesLog {
+    private SalesLog(){}
+
+    public static String format(Invoice inv) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("H,").append(inv.getId()).append(',').append(inv.getTimestamp()).append(',')
+          .append(inv.getCustomer().getId()).append(',').append(inv.getTaxBasisPoints() / 10_000.0).append(',')
+          .append(Item.escape(inv.getShowroom())).append(',').append(Item.escape(inv.getCustomer().getName()))
+          .append(',').append(inv.getDiscountBasisPoints()).append(',');
+        Money.appendPlain(sb, inv.isPercentDiscount() ? 0 : inv.discountCents()).append(',');
+        Money.appendPlain(sb, inv.promotionCents());
+        for (Invoice.Line l : inv.getLines()) {
+            sb.append("\nL,").append(inv.getId()).append(',').append(l.getItem().getId()).append(',')
+              .append(l.getQuantity()).append(',');
+            Money.appendPlain(sb, l.getUnitCents()).append(',').append(Item.escape(l.getItem().getName()));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Turns record lines back into invoices. Customers and items are resolved against the live
+     * maps; ones that no longer exist are rebuilt from the names stored in the record.
+     */
+    public static final class Reader {
+        private final Map<Integer, Customer> customers;
+        private final Map<Integer, Item> inventory;
+        private final Consumer<Invoice> sink;
+        private Invoice current;
+
+        public Reader(Map<Integer, Customer> customers, Map<Integer, Item> inventory, Consumer<Invoice> sink) {
+            this.customers = customers; this.inventory = inventory; this.sink = sink;
+        }
+
+        public void line(String line) {
+            if (line.isEmpty()) return;
+            try {
+                if (line.startsWith("H,")) {
+                    finish();
+                    String[] p = Item.split(line, 10);
+                    int cid = Integer.parseInt(p[3]);
+                    Customer c = customers.get(cid);
+                    for (int hops = 0; c != null && !c.isActive() && hops < 8; hops++) c = customers.get(c.getMergedInto());
+                    if (c == null) c = new Customer(cid, p[6]);
+                    current = new Invoice(Long.parseLong(p[1]), Long.parseLong(p[2]), c,
+                            p[5], Math.round(Double.parseDouble(p[4]) * 10_000));
+                    if (!p[7].isEmpty() && Long.parseLong(p[7]) > 0) current.setDiscountPercent(Long.parseLong(p[7]));
+                    else if (!p[8].isEmpty()) current.setDiscountAmount(Money.parse(p[8]));
+                    if (!p[9].isEmpty()) current.setRecordedPromotionCents(Money.parse(p[9]));
+                } else if (line.startsWith("L,") && current != null) {
+                    String[] p = Item.split(line, 6);
+                    int itemId = Integer.parseInt(p[2]);
+                    long unit = Money.parse(p[4]);
+                    Item it = inventory.get(itemId);
+                    if (it == null) it = new Item(itemId, p[5], unit, 0);
+                    current.addLine(new Invoice.Line(it, Integer.parseInt(p[3]), unit));
+                }
+            } catch (RuntimeException ignored) {
+                // a damaged line loses that line only
+            }
+        }
+
+        /** Emits the sale being assembled, if any. */
+        public void finish() {
+            if (current != null) sink.accept(current);
+            current = null;
+        }
+    }
+
+    public static void read(File f, Reader r) {
+        if (!f.exists()) return;
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(f), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = br.readLine()) != null) r.line(line.trim());
+        } catch (IOException ignored) {}
+        r.finish();
+    }
+
+    // ---- Legacy flat log ----
+
+    /** True for lines of the old {@code Date :: Invoice.toString()} log. */
+    public static boolean isLegacy(String line) {
+        return line.contains(" :: Invoice for ");
+    }
+
+    /**
+     * Rebuilds an invoice from one old-format line, e.g.
+     * {@code Wed Aug 20 19:46:28 IST 2025 :: Invoice for Jane Smith @ Showroom | Apple iPhone 14 x1 = $999.00 | Subtotal: $999.00 | Total: $1098.90}.
+     * Customers and items are matched by name; unknown ones get id 0. Returns null if the line is unreadable.
+     */
+    public static Invoice parseLegacy(String line, long id, Map<String, Customer> customersByName, Map<String, Item> itemsByName) {
+        int sep = line.indexOf(" :: Invoice for ");
+        if (sep < 0) return null;
+        long ts = 0;
+        try {
+            ts = new SimpleDateFormat("EEE MMM dd HH:mm:ss zzz yyyy", Locale.US).parse(line.substring(0, sep)).getTime();
+        } catch (Exception ignored) {}
+
+        String[] parts = line.substring(sep + " :: Invoice for ".length()).split(" \\| ");
+        int at = parts[0].lastIndexOf(" @ ");
+        String name = at < 0 ? parts[0] : parts[0].substring(0, at);
+        String showroom = at < 0 ? "Showroom" : parts[0].substring(at + 3);
+        Customer c = customersByName.getOrDefault(name, new Customer(0, name));
+
+        List<Invoice.Line> lines = new ArrayList<>();
+        long subtotal = 0, total = 0;
+        try {
+            for (int i = 1; i < parts.length; i++) {
+                String p = parts[i];
+                if (p.startsWith("Subtotal: $")) subtotal = Money.parse(p.substring(11));
+                else if (p.startsWith("Total: $")) total = Money.parse(p.substring(8));
+                else {
+                    int x = p.lastIndexOf(" x"), eq = p.lastIndexOf(" = $");
+                    if (x < 0 || eq < x) continue;
+                    String itemName = p.substring(0, x);
+                    int qty = Integer.parseInt(p.substring(x + 2, eq));
+                    long lineTotal = Money.parse(p.substring(eq + 4));
+                    Item it = itemsByName.getOrDefault(itemName, new Item(0, itemName, 0, 0));
+                    lines.add(new Invoice.Line(it, qty, qty == 0 ? 0 : Math.round((double) lineTotal / qty)));
+                }
+            }
+        } catch (RuntimeException e) {
+            return null;
+        }
+        long tax = subtotal > 0 ? Math.round(((double) total / subtotal - 1) * 10_000) : 0;
+        Invoice inv = new Invoice(id, ts, c, showroom, tax);
+        for (Invoice.Line l : lines) inv.addLine(l);
+        return inv;
+    }
+
+    /**
+     * One-time streaming conversion of an old flat log into the record format. Writes to a
+     * temporary file and renames it into place, so an interrupted run simply starts over.
+     * Returns the number of sales converted.
+     */
+    public static long convertLegacy(File legacy, File out, Map<Integer, Customer> customers, Map<Integer, Item> inventory) throws IOException {
+        Map<String, Customer> byName = new HashMap<>();
+        for (Customer c : customers.values()) byName.putIfAbsent(c.getName(), c);
+        Map<String, Item> itemsByName = new HashMap<>();
+        for (Item it : inventory.values()) itemsByName.putIfAbsent(it.getName(), it);
+
+        File tmp = new File(out.getParentFile(), out.getName() + ".tmp");
+        long n = 0;
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(legacy), StandardCharsets.UTF_8));
+             FileOutputStream fos = new FileOutputStream(tmp);
+             Writer w = new BufferedWriter(new OutputStreamWriter(fos, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                Invoice inv = parseLegacy(line.trim(), n + 1, byName, itemsByName);
+                if (inv == null) continue;
+                w.write(format(inv));
+                w.write(System.lineSeparator());
+                n++;
+            }
+            w.flush();
+            fos.getFD().sync();
+        }
+        java.nio.file.Files.move(tmp.toPath(), out.toPath(), java.nio.file.StandardCopyOption.ATOMIC_MOVE);
+        return n;
+    }
+}
@@ -1,79 +1,1010 @@
 package pos;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 public class SimpleStore {
-    private final File dataDir = new File("data");
-    private final File itemsFile      = new File(dataDir, "items.csv");
-    private final File customersFile  = new File(dataDir, "customers.csv");
-    private final File suppliersFile  = new File(dataDir, "suppliers.txt");
-    private final File salesFile      = new File(dataDir, "sales.txt"); // basic log
+    private final File dataDir;
+    private final File itemsFile, customersFile, suppliersFile;
+    private final File salesFile;       // see SalesLog
+    private final File legacySalesFile; // pre-SalesLog flat log
+    private final File promotionsFile;  // see PromotionEngine; edited by hand
+    private final File replicaFile;     // follower: last primary record folded into the snapshots
+    private final File offersFile;      // see SupplierFeeds
+    private final FileChannel dirLock;  // holds store.lock while open, see lockDataDir
 
-    private final Map<Integer, Item> inventory   = new LinkedHashMap<>();
-    private final Map<Integer, Customer> customers = new LinkedHashMap<>();
-    private final List<Supplier> suppliers = new ArrayList<>();
-    private final List<Invoice> salesHistory = new ArrayList<>();
+    private final ConcurrentMap<Integer, Item> inventory = new ConcurrentSkipListMap<>();
+    private final ConcurrentMap<Integer, Customer> customers = new ConcurrentSkipListMap<>();
+    private final List<Supplier> suppliers = new CopyOnWriteArrayList<>();
+    private final ConcurrentMap<String, ConcurrentMap<Integer, SupplierOffer>> offers = new ConcurrentHashMap<>(); // supplier -> item -> offer
+    private final Object feedLock = new Object();
+    private final ConcurrentNavigableMap<Long, Invoice> salesHistory = new ConcurrentSkipListMap<>();
+    private final AtomicLong saleSeq = new AtomicLong();
+    private final SalesAnalytics analytics = new SalesAnalytics();
+    private final ReplenishmentEngine replenishment = new ReplenishmentEngine(inventory, this::getOffers);
+    private volatile PromotionEngine promotions = PromotionEngine.empty();
+    private final ReservationLedger ledger = new ReservationLedger(HOLD_MILLIS, this::expire);
+
+    // Mutations are journaled; the CSV files are only rewritten by checkpoints.
+    private final Journal journal;
+    private final Queue<String> pendingSales = new ConcurrentLinkedQueue<>(); // sale records not yet checkpointed
+    private final ScheduledExecutorService checkpointer;
+    private final AtomicBoolean dirty = new AtomicBoolean();
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    // Mutations hold the shared side of stateLock, so a checkpoint (exclusive side) sees each one
+    // either applied and journaled or not at all. The per-item stripe keeps the stock records of
+    // one item in the journal in the same order as the updates themselves.
+    private final ReentrantReadWriteLock stateLock = new ReentrantReadWriteLock();
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+    private final ReentrantLock customerLock = new ReentrantLock();
+    private final Object checkpointLock = new Object();
+
+    private final CustomerRegistry customerRegistry = new CustomerRegistry(customers);
+    private final File dedupMarker;
+
+    private final List<InventoryEvent.Listener> inventoryListeners = new CopyOnWriteArrayList<>();
+
+    // Replication (see ReplicationServer / Replica)
+    private volatile Replica upstream;     // set on a follower: stock and sales go to the primary
+    private volatile long replicatedSeq;   // follower: last primary record applied
+    private final ConcurrentMap<ReservationLedger.Reservation, Unconfirmed> unconfirmed = new ConcurrentHashMap<>(); // follower: sales sent with no answer
+
+    private static final long CHECKPOINT_SECONDS = 30;
+    private static final int STRIPES = 64;
+    private static final int IMPORT_BATCH = 1000;  // rows per journal record
+    private static final int IMPORT_THREADS = Runtime.getRuntime().availableProcessors();
+    private static final long HOLD_MILLIS = TimeUnit.MINUTES.toMillis(Long.getLong("pos.hold.minutes", 15));
+    private static final Set<String> OPEN_DIRS = ConcurrentHashMap.newKeySet(); // locked by this process
 
     public SimpleStore() {
+        this(new File("data"));
+    }
+
+    /** A store kept in {@code dataDir}, created if missing. */
+    public SimpleStore(File dataDir) {
+        this.dataDir = dataDir;
+        itemsFile       = new File(dataDir, "items.csv");
+        customersFile   = new File(dataDir, "customers.csv");
+        suppliersFile   = new File(dataDir, "suppliers.txt");
+        salesFile       = new File(dataDir, "sales.log");
+        legacySalesFile = new File(dataDir, "sales.txt");
+        promotionsFile  = new File(dataDir, "promotions.txt");
+        dedupMarker     = new File(dataDir, "customers.dedup");
+        replicaFile     = new File(dataDir, "replica.pos");
+        offersFile      = new File(dataDir, "offers.csv");
         if (!dataDir.exists()) dataDir.mkdirs();
+        dirLock = lockDataDir();
+        for (int i = 0; i < STRIPES; i++) stripes[i] = new ReentrantLock();
+        journal = new Journal(dataDir);
         loadAll();
-        if (inventory.isEmpty() && customers.isEmpty() && suppliers.isEmpty()) seed();
+        journal.replay(this::apply);
+        boolean seeded = inventory.isEmpty() && customers.isEmpty() && suppliers.isEmpty();
+        if (seeded) seed();
+        replenishment.refresh();       // the replay moved stock without events
+        inventoryListeners.add(replenishment);
+        for (Customer c : customers.values()) customerRegistry.index(c);
+        checkpointer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "pos-checkpoint");
+            t.setDaemon(true);
+            return t;
+        });
+        checkpointer.scheduleWithFixedDelay(() -> { if (dirty.get()) checkpoint(); },
+                CHECKPOINT_SECONDS, CHECKPOINT_SECONDS, TimeUnit.SECONDS);
+        if (!dedupMarker.exists()) {
+            // Builds before the registry created a new customer on every visit. The pass is done
+            // once it has seen real customers and left nothing for a person (see needsDuplicateReview).
+            mergeDuplicates();
+            if (!seeded && customerRegistry.findLikelyDuplicates().isEmpty()) markDuplicatesReviewed();
+        }
     }
 
-    // ---- Public accessors ----
-    public Map<Integer, Item> getInventory(){ return inventory; }
-    public Map<Integer, Customer> getCustomers(){ return customers; }
-    public List<Supplier> getSuppliers(){ return suppliers; }
-    public List<Invoice> getSalesHistory(){ return salesHistory; }
+    // ---- Public accessors (read-only views; mutate through the methods below) ----
+    public Map<Integer, Item> getInventory(){ return Collections.unmodifiableMap(inventory); }
+    public Map<Integer, Customer> getCustomers(){ return Collections.unmodifiableMap(customers); }
+    public CustomerRegistry getCustomerRegistry(){ return customerRegistry; }
+    public SalesAnalytics getAnalytics(){ return analytics; }
+    public ReplenishmentEngine getReplenishment(){ return replenishment; }
+    public ReservationLedger getLedger(){ return ledger; }
+    /** Stock on hand less what open carts hold; 0 for an unknown item. */
+    public int getAvailable(int itemId){
+        Item it = inventory.get(itemId);
+        return it == null ? 0 : it.getStock() - ledger.getHeld(itemId);
+    }
+    /** Promotions as compiled at startup or by the last {@link #reloadPromotions()}. */
+    public PromotionEngine getPromotions(){ return promotions; }
 
+    /** Re-reads the promotions file; carts already open keep the promotions they started with. */
+    public PromotionEngine reloadPromotions(){
+        promotions = PromotionEngine.load(promotionsFile);
+        return promotions;
+    }
+    public List<Supplier> getSuppliers(){ return Collections.unmodifiableList(suppliers); }
+    /** Every supplier's offer for an item, in the order of suppliers.txt. */
+    public List<SupplierOffer> getOffers(int itemId){
+        List<SupplierOffer> out = new ArrayList<>(2);
+        for (Supplier s : suppliers) {
+            Map<Integer, SupplierOffer> m = offers.get(s.getName());
+            SupplierOffer o = m == null ? null : m.get(itemId);
+            if (o != null) out.add(o);
+        }
+        return out;
+    }
+    /** A supplier's offers by item id, as of its last feed. */
+    public Map<Integer, SupplierOffer> getOffers(String supplier){
+        Map<Integer, SupplierOffer> m = offers.get(supplier);
+        return m == null ? Map.of() : Collections.unmodifiableMap(m);
+    }
+    /** Copy of the sales so far, oldest first. */
+    public List<Invoice> getSalesHistory(){ return new ArrayList<>(salesHistory.values()); }
+    /** Sales stamped at or after {@code sinceMillis}, newest first. */
+    public List<Invoice> getRecentSales(long sinceMillis){
+        List<Invoice> out = new ArrayList<>();
+        for (Invoice inv : salesHistory.descendingMap().values()) {
+            if (inv.getTimestamp() < sinceMillis) break;
+            out.add(inv);
+        }
+        return out;
+    }
+    /** Most recent sale, or null if there is none. */
+    public Invoice getLastSale(){
+        Map.Entry<Long, Invoice> e = salesHistory.lastEntry();
+        return e == null ? null : e.getValue();
+    }
+
+    public void addInventoryListener(InventoryEvent.Listener l){ inventoryListeners.add(l); }
+    public void removeInventoryListener(InventoryEvent.Listener l){ inventoryListeners.remove(l); }
+
+    /** Forces a checkpoint: every journaled change is written to the CSV snapshots now. */
     public void saveAll(){
-        saveItems(); saveCustomers(); saveSuppliers(); // sales saved on confirm
+        checkpoint();
     }
 
+    // ---- Journaled mutations ----
+    public void putItem(Item it){
+        int[] held = lockItems(it.getId());
+        try {
+            Item old = inventory.put(it.getId(), it);
+            log("I," + it.toCsv());
+            fire(old == null ? InventoryEvent.Type.ADDED : InventoryEvent.Type.PRICE, it);
+        } finally { unlockItems(held); }
+    }
+    public Item removeItem(int id){
+        int[] held = lockItems(id);
+        try {
+            Item it = inventory.remove(id);
+            if (it != null) {
+                log("i," + id);
+                fire(InventoryEvent.Type.REMOVED, it);
+            }
+            return it;
+        } finally { unlockItems(held); }
+    }
+    /** Adds {@code delta} to the stock of {@code it} (negative to take stock) and journals the new level. */
+    public void adjustStock(Item it, int delta){
+        Replica up = upstream;
+        if (up != null) { up.adjust(it.getId(), delta); return; }
+        int[] held = lockItems(it.getId());
+        try {
+            if (delta < 0) it.reduceStock(-delta); else it.addStock(delta);
+            log("K," + it.getId() + "," + it.getStock());
+            fire(InventoryEvent.Type.STOCK, it);
+        } finally { unlockItems(held); }
+    }
+    /**
+     * Atomically takes {@code qty} units of an item. Fails without side effects when the item
+     * is unknown or has fewer than {@code qty} available, so concurrent lanes can never oversell.
+     */
+    public boolean tryReserve(int itemId, int qty){
+        Replica up = upstream;
+        if (up != null) return up.reserve(itemId, qty);
+        int[] held = lockItems(itemId);
+        try {
+            Item it = inventory.get(itemId);
+            if (it == null || it.getStock() - ledger.getHeld(itemId) < qty || !it.tryReserve(qty)) return false;
+            log("K," + itemId + "," + it.getStock());
+            fire(InventoryEvent.Type.STOCK, it);
+            return true;
+        } finally { unlockItems(held); }
+    }
+
+    // ---- Cart holds (see ReservationLedger) ----
+
+    /**
+     * Holds {@code qty} units of an item for cart {@code r} if that many are available; not
+     * journaled. On a follower the holds are this till's own and the primary settles the sale.
+     */
+    public boolean hold(ReservationLedger.Reservation r, int itemId, int qty){
+        if (qty <= 0) return false;
+        int[] held = lockItems(itemId);
+        try {
+            Item it = inventory.get(itemId);
+            if (it == null || it.getStock() - ledger.getHeld(itemId) < qty) return false;
+            ledger.hold(r, itemId, qty);
+            fire(InventoryEvent.Type.STOCK, it);
+            return true;
+        } finally { unlockItems(held); }
+    }
+
+    /** Gives back up to {@code qty} of the units {@code r} holds of an item; returns how many. */
+    public int release(ReservationLedger.Reservation r, int itemId, int qty){
+        int[] held = lockItems(itemId);
+        try {
+            int freed = ledger.release(r, itemId, qty);
+            Item it = inventory.get(itemId);
+            if (freed > 0 && it != null) fire(InventoryEvent.Type.STOCK, it);
+            return freed;
+        } finally { unlockItems(held); }
+    }
+
+    /**
+     * Gives back everything {@code r} holds. On a follower, a cart whose sale went to the primary
+     * without an answer gives back the units the primary took for it, unless the sale is there.
+     */
+    public void releaseAll(ReservationLedger.Reservation r){
+        Unconfirmed u = unconfirmed.remove(r);
+        if (u != null) abandon(u);
+        int[] ids = r.itemIds();
+        int[] held = lockItems(ids);
+        try {
+            for (int id : ids) releaseLocked(r, id);
+        } finally { unlockItems(held); }
+    }
+
+    /** Wheel thread: a cart's time ran out. */
+    private void expire(ReservationLedger.Reservation r){
+        int[] ids = r.itemIds();
+        int[] held = lockItems(ids);
+        try {
+            if (ledger.expire(r)) for (int id : ids) releaseLocked(r, id);
+        } finally { unlockItems(held); }
+    }
+
+    private void releaseLocked(ReservationLedger.Reservation r, int itemId){
+        Item it = inventory.get(itemId);
+        if (ledger.release(r, itemId, Integer.MAX_VALUE) > 0 && it != null) fire(InventoryEvent.Type.STOCK, it);
+    }
+
+    public void putCustomer(Customer c){
+        stateLock.readLock().lock();
+        customerLock.lock();
+        try {
+            customers.put(c.getId(), c);
+            customerRegistry.index(c);
+            log("C," + c.toCsv());
+        } finally { customerLock.unlock(); stateLock.readLock().unlock(); }
+    }
+    public Customer removeCustomer(int id){
+        stateLock.readLock().lock();
+        customerLock.lock();
+        try {
+            Customer c = customers.remove(id);
+            if (c != null) {
+                customerRegistry.unindex(id);
+                log("c," + id);
+            }
+            return c;
+        } finally { customerLock.unlock(); stateLock.readLock().unlock(); }
+    }
+
+    /**
+     * Commits a confirmed invoice as one atomic journal record: the customer, the resulting
+     * stock level of every item on it and the sale itself. Returns once the record is durable.
+     */
     public void logSale(Invoice inv){
-        salesHistory.add(inv);
-        try (PrintWriter pw = new PrintWriter(new OutputStreamWriter(new FileOutputStream(salesFile, true), StandardCharsets.UTF_8))) {
-            pw.println(new Date() + " :: " + inv.toString().replace("\n"," | "));
-        } catch (Exception ignored) {}
+        try (Metrics.Span s = Metrics.LOG_SALE.begin()) {
+            Replica up = upstream;
+            if (up != null) up.logSale(inv); else logSaleLocally(inv);
+        }
     }
 
-    // ---- Load/Save helpers ----
-    private void loadAll(){ loadItems(); loadCustomers(); loadSuppliers(); loadSales(); }
+    /**
+     * Like {@link #logSale(Invoice)} for a cart whose units are held by {@code r} rather than
+     * taken: takes them from stock, drops the holds and logs the sale in one journal record.
+     * Units no longer held (the holds ran out) are taken if still available; otherwise throws
+     * {@link IllegalArgumentException} naming the item and changes nothing.
+     */
+    public void logSale(Invoice inv, ReservationLedger.Reservation r){
+        Map<Integer, Integer> want = new LinkedHashMap<>();
+        Map<Integer, Item> items = new HashMap<>();
+        for (Invoice.Line l : inv.getLines()) {
+            want.merge(l.getItem().getId(), l.getQuantity(), Integer::sum);
+            items.put(l.getItem().getId(), l.getItem());
+        }
+        try (Metrics.Span s = Metrics.LOG_SALE.begin()) {
+            Replica up = upstream;
+            if (up != null) { logHeldSaleUpstream(up, inv, r, want, items); return; }
+            int[] ids = new int[want.size()];
+            int n = 0;
+            for (int id : want.keySet()) ids[n++] = id;
+            long seq;
+            int[] held = lockItems(ids);
+            try {
+                for (Map.Entry<Integer, Integer> e : want.entrySet()) {
+                    Item it = items.get(e.getKey());
+                    int stock = it.getStock(), extra = e.getValue() - r.getHeld(e.getKey());
+                    if (stock < e.getValue() || extra > 0 && extra > stock - ledger.getHeld(e.getKey()))
+                        throw new IllegalArgumentException("Not enough stock of " + it.getName() + "!");
+                }
+                for (Map.Entry<Integer, Integer> e : want.entrySet()) {
+                    ledger.release(r, e.getKey(), Integer.MAX_VALUE);
+                    items.get(e.getKey()).reduceStock(e.getValue());
+                }
+                seq = appendSale(inv);   // same stripes, so no other change to these items in between
+                for (Item it : items.values()) fire(InventoryEvent.Type.STOCK, it);
+            } finally { unlockItems(held); }
+            journal.awaitDurable(seq);
+        }
+    }
 
-    private void loadItems() {
-        if (!itemsFile.exists()) return;
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(itemsFile), StandardCharsets.UTF_8))) {
-            String line;
-            while ((line = br.readLine()) != null){
-                line = line.trim(); if (line.isEmpty()) continue;
-                Item it = Item.fromCsv(line);
-                inventory.put(it.getId(), it);
+    /**
+     * Follower: the primary takes the units, then logs the sale; the local holds go once it has.
+     * If the sale was sent but no answer came back, the cart stays confirming: the units taken
+     * stay taken, and the next try looks for the sale on the primary before taking any more.
+     */
+    private void logHeldSaleUpstream(Replica up, Invoice inv, ReservationLedger.Reservation r, Map<Integer, Integer> want, Map<Integer, Item> items){
+        Unconfirmed u = unconfirmed.remove(r);
+        Map<Integer, Integer> taken = new LinkedHashMap<>();
+        if (u != null) {
+            Invoice sold;
+            try { sold = findUnconfirmed(up, u); }
+            catch (RuntimeException e) { unconfirmed.put(r, u); throw e; }
+            if (sold != null) {
+                releaseAll(r);
+                if (!u.units.equals(want))
+                    throw new IllegalStateException("This cart was sold as it stood before the last change (sale #" + sold.getId() + "). Start a new one.");
+                inv.stamp(sold.getId(), sold.getTimestamp());
+                return;
             }
-        } catch (Exception ignored){}
+            taken.putAll(u.taken);   // not sold: what the primary took is still this cart's
+        }
+        long after = lastSaleId();
+        boolean sent = false;
+        try {
+            for (Map.Entry<Integer, Integer> e : want.entrySet()) {
+                int more = e.getValue() - taken.getOrDefault(e.getKey(), 0);
+                if (more > 0 && !up.reserve(e.getKey(), more))
+                    throw new IllegalArgumentException("Not enough stock of " + items.get(e.getKey()).getName() + "!");
+                if (more > 0) taken.merge(e.getKey(), more, Integer::sum);
+            }
+            for (Map.Entry<Integer, Integer> t : taken.entrySet()) {
+                int extra = t.getValue() - want.getOrDefault(t.getKey(), 0);  // lines dropped since the last try
+                if (extra > 0) { up.adjust(t.getKey(), extra); t.setValue(t.getValue() - extra); }
+            }
+            sent = true;
+            up.logSale(inv);
+        } catch (RuntimeException e) {
+            if (sent && !(e instanceof IllegalArgumentException)) {
+                unconfirmed.put(r, new Unconfirmed(taken, after, inv.getCustomer().getName(), new LinkedHashMap<>(want)));
+                throw new IllegalStateException("No answer from the primary; the sale may have gone through. Confirm again to check. (" + e.getMessage() + ")", e);
+            }
+            // Refused, or never sent: nothing was sold, so the units go back
+            giveBack(up, taken);
+            throw e;
+        }
+        releaseAll(r);
     }
-    private void saveItems(){
-        try (PrintWriter pw = new PrintWriter(new OutputStreamWriter(new FileOutputStream(itemsFile), StandardCharsets.UTF_8))) {
-            for (Item it : inventory.values()) pw.println(it.toCsv());
-        } catch (Exception ignored){}
+
+    /** Follower: a sale sent to the primary that never answered. */
+    private static final class Unconfirmed {
+        final Map<Integer, Integer> taken;   // item -> units the primary took for it
+        final long afterSaleId;              // its sale, if any, comes after this one
+        final String customer;
+        final Map<Integer, Integer> units;   // item -> units sold
+
+        Unconfirmed(Map<Integer, Integer> taken, long afterSaleId, String customer, Map<Integer, Integer> units) {
+            this.taken = taken;
+            this.afterSaleId = afterSaleId;
+            this.customer = customer;
+            this.units = units;
+        }
     }
 
-    private void loadCustomers(){
-        if (!customersFile.exists()) return;
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(customersFile), StandardCharsets.UTF_8))) {
-            String line;
-            while ((line = br.readLine()) != null){
-                line = line.trim(); if (line.isEmpty()) continue;
-                Customer c = Customer.fromCsv(line);
-                customers.put(c.getId(), c);
+    /** The primary's record of {@code u}'s sale, once this store has caught up with it; null if it has none. */
+    private Invoice findUnconfirmed(Replica up, Unconfirmed u){
+        up.catchUp();
+        for (Invoice sale : salesHistory.tailMap(u.afterSaleId, false).values()) {
+            if (!sale.getCustomer().getName().equals(u.customer)) continue;
+            Map<Integer, Integer> units = new HashMap<>();
+            for (Invoice.Line l : sale.getLines()) units.merge(l.getItem().getId(), l.getQuantity(), Integer::sum);
+            if (units.equals(u.units)) return sale;
+        }
+        return null;
+    }
+
+    /** A cart given up while confirming: unless the primary has its sale, its units go back. */
+    private void abandon(Unconfirmed u){
+        Replica up = upstream;
+        try {
+            if (up == null) throw new IllegalStateException("not following a primary");
+            if (findUnconfirmed(up, u) == null) giveBack(up, u.taken);
+        } catch (RuntimeException e) {
+            System.err.println("Could not settle an unconfirmed sale to " + u.customer + ", units " + u.taken + ": " + e.getMessage());
+        }
+    }
+
+    /** Returns units the primary took; best effort, as the caller is already failing. */
+    private static void giveBack(Replica up, Map<Integer, Integer> taken){
+        for (Map.Entry<Integer, Integer> t : taken.entrySet()) {
+            try { up.adjust(t.getKey(), t.getValue()); }
+            catch (RuntimeException e) { System.err.println("Could not give back " + t.getValue() + " of item " + t.getKey() + " to the primary: " + e.getMessage()); }
+        }
+    }
+
+    private long lastSaleId(){
+        Map.Entry<Long, Invoice> e = salesHistory.lastEntry();
+        return e == null ? 0 : e.getKey();
+    }
+
+    private void logSaleLocally(Invoice inv){
+        journal.awaitDurable(appendSale(inv));
+    }
+
+    /** Applies and journals the sale; returns its journal position without waiting for it to be durable. */
+    private long appendSale(Invoice inv){
+        int[] ids = new int[inv.getLines().size()];
+        for (int i = 0; i < ids.length; i++) ids[i] = inv.getLines().get(i).getItem().getId();
+        long seq;
+        int[] held = lockItems(ids);
+        customerLock.lock();
+        try {
+            customers.put(inv.getCustomer().getId(), inv.getCustomer());
+            customerRegistry.index(inv.getCustomer());
+            List<String> ops = new ArrayList<>();
+            ops.add("C," + inv.getCustomer().toCsv());
+            for (Invoice.Line l : inv.getLines()) ops.add("K," + l.getItem().getId() + "," + l.getItem().getStock());
+            inv.stamp(saleSeq.incrementAndGet(), System.currentTimeMillis());
+            String record = SalesLog.format(inv);
+            ops.add("S," + record);
+            salesHistory.put(inv.getId(), inv);
+            analytics.add(inv);
+            replenishment.recordSale(inv);
+            pendingSales.add(record);
+            dirty.set(true);
+            seq = journal.append(ops.toArray(new String[0]));
+        } finally { customerLock.unlock(); unlockItems(held); }
+        return seq;
+    }
+
+    /** The customer that {@code id} refers to after following merges, or null. */
+    public Customer resolveCustomer(int id){
+        Customer c = customers.get(id);
+        for (int hops = 0; c != null && !c.isActive() && hops < 8; hops++) c = customers.get(c.getMergedInto());
+        return c;
+    }
+
+    /**
+     * Merges duplicate customers found by {@link CustomerRegistry#findDuplicates()}, those with
+     * the same name and a phone or loyalty number in common. Same-name customers with nothing
+     * else in common are left for {@link CustomerRegistry#findLikelyDuplicates()} and a person
+     * to decide. Returns the number merged.
+     */
+    public int mergeDuplicates(){
+        int merged = 0;
+        for (List<Customer> group : customerRegistry.findDuplicates()) merged += mergeCustomers(group);
+        return merged;
+    }
+
+    /**
+     * True while the startup merge has left same-name customers for a person to review and
+     * nobody has yet; the till offers them once, then calls {@link #markDuplicatesReviewed}.
+     */
+    public boolean needsDuplicateReview(){
+        return !dedupMarker.exists() && !customerRegistry.findLikelyDuplicates().isEmpty();
+    }
+
+    public void markDuplicatesReviewed(){
+        try { dedupMarker.createNewFile(); } catch (IOException ignored) {}
+    }
+
+    /**
+     * Merges {@code group} into the customer with the lowest id, which picks up any phone/loyalty
+     * number it lacks; the others are kept as aliases pointing at it so their past sales still
+     * resolve. Returns the number merged.
+     */
+    public int mergeCustomers(List<Customer> group){
+        List<Customer> byId = new ArrayList<>(group);
+        byId.sort(Comparator.comparingInt(Customer::getId));
+        Customer keep = byId.get(0).copy();
+        for (Customer dup : byId.subList(1, byId.size())) {
+            if (keep.getPhone().isEmpty()) keep.setPhone(dup.getPhone());
+            if (keep.getLoyalty().isEmpty()) keep.setLoyalty(dup.getLoyalty());
+            Customer alias = dup.copy();
+            alias.setMergedInto(keep.getId());
+            putCustomer(alias);
+        }
+        putCustomer(keep);
+        return byId.size() - 1;
+    }
+
+    /** Drains the journal and folds it into the snapshots; the store is unusable afterwards. */
+    public void close(){
+        if (!closed.compareAndSet(false, true)) return;
+        ledger.close();
+        checkpointer.shutdown();
+        try { checkpointer.awaitTermination(CHECKPOINT_SECONDS, TimeUnit.SECONDS); } catch (InterruptedException ignored) {}
+        checkpoint();
+        journal.close();
+        try { dirLock.close(); } catch (IOException ignored) {}
+        OPEN_DIRS.remove(dirKey());
+    }
+
+    /**
+     * Takes data/store.lock for as long as the store is open. A second till or a BulkImport on the
+     * same folder would replay the same journal and overwrite this one's checkpoints, so it fails
+     * here instead. The lock goes with the process, so a crashed till does not leave it behind.
+     */
+    private FileChannel lockDataDir() {
+        String key = dirKey();
+        if (!OPEN_DIRS.add(key)) throw inUse(); // a second channel in this process would drop the OS lock on close
+        try {
+            FileChannel ch = FileChannel.open(new File(dataDir, "store.lock").toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            if (ch.tryLock() != null) return ch;
+            ch.close();
+        } catch (IOException e) {
+            OPEN_DIRS.remove(key);
+            throw new UncheckedIOException("Cannot lock data folder " + dataDir.getAbsolutePath(), e);
+        }
+        OPEN_DIRS.remove(key);
+        throw inUse();
+    }
+
+    private IllegalStateException inUse() {
+        return new IllegalStateException("Data folder " + dataDir.getAbsolutePath()
+                + " is in use by another till or a BulkImport. Close it and try again.");
+    }
+
+    private String dirKey() {
+        try { return dataDir.getCanonicalPath(); } catch (IOException e) { return dataDir.getAbsolutePath(); }
+    }
+
+    /** Changes the selling price (cents) of an existing item; returns false if there is no such item. */
+    public boolean setItemPrice(int itemId, long priceCents){
+        int[] held = lockItems(itemId);
+        try {
+            Item it = inventory.get(itemId);
+            if (it == null) return false;
+            it.setPriceCents(priceCents);
+            log("I," + it.toCsv());
+            fire(InventoryEvent.Type.PRICE, it);
+            return true;
+        } finally { unlockItems(held); }
+    }
+
+    private void fire(InventoryEvent.Type type, Item it){
+        if (inventoryListeners.isEmpty()) return;
+        InventoryEvent e = new InventoryEvent(type, it);
+        for (InventoryEvent.Listener l : inventoryListeners) l.inventoryChanged(e);
+    }
+
+    private void log(String op){
+        dirty.set(true);
+        journal.append(op);
+    }
+
+    /** Takes the shared state lock plus the stripes of the given items in a fixed order; returns what to unlock. */
+    private int[] lockItems(int... itemIds){
+        int[] s = new int[itemIds.length];
+        for (int i = 0; i < s.length; i++) s[i] = (itemIds[i] ^ (itemIds[i] >>> 16)) & (STRIPES - 1);
+        Arrays.sort(s);
+        stateLock.readLock().lock();
+        for (int i = 0; i < s.length; i++) if (i == 0 || s[i] != s[i - 1]) stripes[s[i]].lock();
+        return s;
+    }
+    private void unlockItems(int[] s){
+        for (int i = 0; i < s.length; i++) if (i == 0 || s[i] != s[i - 1]) stripes[s[i]].unlock();
+        stateLock.readLock().unlock();
+    }
+
+    // ---- Bulk import ----
+
+    /** What an import did: rows applied, rows that could not be read, file size and time taken. */
+    public static final class ImportResult {
+        public final long rows, rejected, bytes, nanos;
+        ImportResult(long rows, long rejected, long bytes, long nanos){ this.rows = rows; this.rejected = rejected; this.bytes = bytes; this.nanos = nanos; }
+        public double rowsPerSecond(){ return nanos == 0 ? 0 : rows * 1e9 / nanos; }
+        @Override public String toString(){
+            return String.format("%d rows (%d rejected) in %.2f s = %.0f rows/s, %.1f MB/s",
+                    rows, rejected, nanos / 1e9, rowsPerSecond(), nanos == 0 ? 0 : bytes * 1e3 / nanos);
+        }
+    }
+
+    /**
+     * Adds or replaces every item in a file laid out like items.csv, read with {@link CsvCodec}.
+     * Items are applied and journaled {@link #IMPORT_BATCH} at a time, each batch atomic, so lanes
+     * keep selling in between and followers receive the import; a checkpoint follows. An item
+     * already in the catalogue is updated in place, so open carts see the new price and name.
+     */
+    public ImportResult importItems(File csv) throws IOException {
+        long t0 = System.nanoTime();
+        CsvCodec.Result<Item> read = CsvCodec.read(csv, Item::fromCsv, IMPORT_THREADS);
+        requirePrimary();
+        List<Item> rows = read.rows;
+        for (int from = 0; from < rows.size(); from += IMPORT_BATCH) {
+            List<Item> batch = rows.subList(from, Math.min(rows.size(), from + IMPORT_BATCH));
+            String[] ops = new String[batch.size()];
+            stateLock.writeLock().lock();
+            try {
+                for (int i = 0; i < ops.length; i++) {
+                    Item it = batch.get(i), old = inventory.get(it.getId());
+                    if (old == null) inventory.put(it.getId(), it);
+                    else { old.setName(it.getName()); old.setPriceCents(it.getPriceCents()); old.setStock(it.getStock()); }
+                    ops[i] = "I," + it.toCsv();
+                    fire(old == null ? InventoryEvent.Type.ADDED : InventoryEvent.Type.PRICE, old == null ? it : old);
+                }
+                dirty.set(true);
+                journal.append(ops);
+            } finally { stateLock.writeLock().unlock(); }
+        }
+        checkpoint();
+        return new ImportResult(rows.size(), read.rejected, read.bytes, System.nanoTime() - t0);
+    }
+
+    /** As {@link #importItems} for a file laid out like customers.csv. */
+    public ImportResult importCustomers(File csv) throws IOException {
+        long t0 = System.nanoTime();
+        CsvCodec.Result<Customer> read = CsvCodec.read(csv, Customer::fromCsv, IMPORT_THREADS);
+        requirePrimary();
+        List<Customer> rows = read.rows;
+        for (int from = 0; from < rows.size(); from += IMPORT_BATCH) {
+            List<Customer> batch = rows.subList(from, Math.min(rows.size(), from + IMPORT_BATCH));
+            String[] ops = new String[batch.size()];
+            stateLock.writeLock().lock();
+            try {
+                for (int i = 0; i < ops.length; i++) {
+                    Customer c = batch.get(i);
+                    customers.put(c.getId(), c);
+                    customerRegistry.index(c);
+                    ops[i] = "C," + c.toCsv();
+                }
+                dirty.set(true);
+                journal.append(ops);
+            } finally { stateLock.writeLock().unlock(); }
+        }
+        checkpoint();
+        return new ImportResult(rows.size(), read.rejected, read.bytes, System.nanoTime() - t0);
+    }
+
+    private void requirePrimary(){
+        if (upstream != null) throw new IllegalStateException("Import on the primary till; this one follows it.");
+    }
+
+    /** Reads every supplier's feed and applies what changed since the last time; see {@link SupplierFeeds}. */
+    public SupplierFeeds.Report ingestSupplierFeeds() throws IOException {
+        requirePrimary();
+        synchronized (feedLock) {
+            return SupplierFeeds.ingest(this, dataDir, IMPORT_THREADS);
+        }
+    }
+
+    /**
+     * Applies the outcome of a feed run as one atomic, durable journal record: offers that are new
+     * or changed, offers a supplier no longer lists, and new selling prices.
+     */
+    void applySupplierFeed(List<SupplierOffer> changed, List<SupplierOffer> dropped, Map<Integer, Long> prices){
+        List<String> ops = new ArrayList<>(changed.size() + dropped.size() + prices.size());
+        List<Item> repriced = new ArrayList<>(prices.size());
+        long seq;
+        stateLock.writeLock().lock();
+        try {
+            for (SupplierOffer o : changed) { putOffer(o); ops.add("O," + o.toCsv()); }
+            for (SupplierOffer o : dropped) { dropOffer(o.getSupplier(), o.getItemId()); ops.add("o," + o.getItemId() + "," + Item.escape(o.getSupplier())); }
+            for (Map.Entry<Integer, Long> e : prices.entrySet()) {
+                Item it = inventory.get(e.getKey());
+                if (it == null) continue;
+                it.setPriceCents(e.getValue());
+                ops.add("I," + it.toCsv());
+                repriced.add(it);
             }
-        } catch (Exception ignored){}
+            if (ops.isEmpty()) return;
+            dirty.set(true);
+            seq = journal.append(ops.toArray(new String[0]));
+        } finally { stateLock.writeLock().unlock(); }
+        journal.awaitDurable(seq);
+        for (Item it : repriced) fire(InventoryEvent.Type.PRICE, it);
+        Set<Integer> ids = new HashSet<>();
+        for (SupplierOffer o : changed) ids.add(o.getItemId());
+        for (SupplierOffer o : dropped) ids.add(o.getItemId());
+        replenishment.offersChanged(ids);
     }
-    private void saveCustomers(){
-        try (PrintWriter pw = new PrintWriter(new OutputStreamWriter(new FileOutputStream(customersFile), StandardCharsets.UTF_8))) {
-            for (Customer c : customers.values()) pw.println(c.toCsv());
-        } catch (Exception ignored){}
+
+    private void putOffer(SupplierOffer o){
+        offers.computeIfAbsent(o.getSupplier(), k -> new ConcurrentHashMap<>()).put(o.getItemId(), o);
+    }
+
+    private void dropOffer(String supplier, int itemId){
+        Map<Integer, SupplierOffer> m = offers.get(supplier);
+        if (m != null) m.remove(itemId);
+    }
+
+    private void dropOffer(String op){
+        String[] p = Item.split(op, 2);
+        dropOffer(p[1], Integer.parseInt(p[0]));
+    }
+
+    // ---- Checkpoint / replay ----
+
+    /**
+     * Takes a consistent copy of the in-memory state together with a journal rotation, writes
+     * each snapshot file atomically, appends the pending sales and only then lets the journal
+     * drop the covered segments. A crash at any point leaves either the old or the new snapshot
+     * plus the journal needed to roll it forward.
+     */
+    private void checkpoint(){
+        synchronized (checkpointLock) {
+            try (Metrics.Span s = Metrics.CHECKPOINT.begin()) {
+                checkpointLocked();
+            }
+        }
+    }
+
+    private void checkpointLocked(){
+        List<Item> items = new ArrayList<>();
+        List<Customer> cust = new ArrayList<>();
+        List<String> sup = new ArrayList<>(), sales;
+        List<SupplierOffer> off = new ArrayList<>();
+        int upto;
+        long replicated;
+        stateLock.writeLock().lock();
+        try {
+            upto = journal.rotate();
+            replicated = replicatedSeq;
+            for (Item it : inventory.values()) items.add(new Item(it.getId(), it.getName(), it.getPriceCents(), it.getStock()));
+            for (Customer c : customers.values()) cust.add(c.copy());
+            for (Supplier s : suppliers) sup.add(s.toLine());
+            for (Map<Integer, SupplierOffer> m : offers.values()) off.addAll(m.values());
+            sales = new ArrayList<>(pendingSales);
+            pendingSales.clear();
+            dirty.set(false);
+        } finally { stateLock.writeLock().unlock(); }
+        try {
+            List<String> lines = new ArrayList<>(items.size());
+            for (Item it : items) lines.add(it.toCsv());
+            writeAtomically(itemsFile, lines);
+            lines.clear();
+            for (Customer c : cust) lines.add(c.toCsv());
+            writeAtomically(customersFile, lines);
+            writeAtomically(suppliersFile, sup);
+            if (!off.isEmpty() || offersFile.exists()) {
+                lines.clear();
+                for (SupplierOffer o : off) lines.add(o.toCsv());
+                writeAtomically(offersFile, lines);
+            }
+            long salesLength = appendSales(sales);
+            if (replicated > 0) writeAtomically(replicaFile, List.of(Long.toString(replicated)));
+            journal.checkpointed(upto, salesLength);
+        } catch (IOException e) {
+            // The journal segments were not released, so a later checkpoint still covers them;
+            // requeue the sales ahead of anything logged since.
+            stateLock.writeLock().lock();
+            try {
+                List<String> newer = new ArrayList<>(pendingSales);
+                pendingSales.clear();
+                pendingSales.addAll(sales);
+                pendingSales.addAll(newer);
+                dirty.set(true);
+            } finally { stateLock.writeLock().unlock(); }
+        }
+    }
+
+    private void apply(String[] ops){
+        for (String op : ops) {
+            String arg = op.substring(2);
+            switch (op.charAt(0)) {
+                case 'I' -> { Item it = Item.fromCsv(arg); inventory.put(it.getId(), it); }
+                case 'i' -> inventory.remove(Integer.parseInt(arg));
+                case 'K' -> {
+                    String[] p = arg.split(",");
+                    Item it = inventory.get(Integer.parseInt(p[0]));
+                    if (it != null) it.setStock(Integer.parseInt(p[1]));
+                }
+                case 'C' -> { Customer c = Customer.fromCsv(arg); customers.put(c.getId(), c); }
+                case 'c' -> customers.remove(Integer.parseInt(arg));
+                case 'O' -> putOffer(SupplierOffer.fromCsv(arg));
+                case 'o' -> dropOffer(arg);
+                case 'S' -> replaySale(arg);
+                case 'R' -> replicatedSeq = Long.parseLong(arg);
+                default -> { }
+            }
+        }
+        dirty.set(true);
+    }
+
+    // ---- Replication ----
+
+    /** Follower side: forwards reservations, stock changes and sales to {@code primary} (null: local again). */
+    void setUpstream(Replica primary){ upstream = primary; }
+
+    /** Follower side: position in the primary's journal up to which this store is current. */
+    long getReplicatedSeq(){ return replicatedSeq; }
+
+    /** Primary side: sees every journal record in order; see {@link Journal.Tap}. */
+    void setJournalTap(Journal.Tap tap){ journal.setTap(tap); }
+    Journal getJournal(){ return journal; }
+
+    /**
+     * Primary side: the whole catalogue as item and customer ops, consistent with the returned
+     * journal position (no mutation can slip in between the copy and the position).
+     */
+    long replicationSnapshot(List<String> ops){
+        stateLock.writeLock().lock();
+        try {
+            for (Item it : inventory.values()) ops.add("I," + it.toCsv());
+            for (Customer c : customers.values()) ops.add("C," + c.toCsv());
+            for (Map<Integer, SupplierOffer> m : offers.values()) for (SupplierOffer o : m.values()) ops.add("O," + o.toCsv());
+            return journal.lastSeq();
+        } finally { stateLock.writeLock().unlock(); }
+    }
+
+    /**
+     * Follower side: applies one record of the primary's journal, journals it locally with its
+     * position so a restart resumes after it, and tells listeners what changed.
+     */
+    void applyReplicated(long seq, String[] ops){
+        List<InventoryEvent> events = new ArrayList<>();
+        stateLock.writeLock().lock();
+        try {
+            if (seq <= replicatedSeq) return; // already have it
+            for (String op : ops) {
+                String arg = op.substring(2);
+                switch (op.charAt(0)) {
+                    case 'I' -> {
+                        Item it = Item.fromCsv(arg), old = inventory.get(it.getId());
+                        if (old == null) { inventory.put(it.getId(), it); events.add(new InventoryEvent(InventoryEvent.Type.ADDED, it)); }
+                        else {
+                            old.setName(it.getName()); old.setPriceCents(it.getPriceCents()); old.setStock(it.getStock());
+                            events.add(new InventoryEvent(InventoryEvent.Type.PRICE, old));
+                        }
+                    }
+                    case 'i' -> {
+                        Item it = inventory.remove(Integer.parseInt(arg));
+                        if (it != null) events.add(new InventoryEvent(InventoryEvent.Type.REMOVED, it));
+                    }
+                    case 'K' -> {
+                        String[] p = arg.split(",");
+                        Item it = inventory.get(Integer.parseInt(p[0]));
+                        if (it != null) { it.setStock(Integer.parseInt(p[1])); events.add(new InventoryEvent(InventoryEvent.Type.STOCK, it)); }
+                    }
+                    case 'C' -> { Customer c = Customer.fromCsv(arg); customers.put(c.getId(), c); customerRegistry.index(c); }
+                    case 'c' -> { customers.remove(Integer.parseInt(arg)); customerRegistry.unindex(Integer.parseInt(arg)); }
+                    case 'O' -> putOffer(SupplierOffer.fromCsv(arg));
+                    case 'o' -> dropOffer(arg);
+                    case 'S' -> replaySale(arg);
+                    default -> { }
+                }
+            }
+            String[] record = Arrays.copyOf(ops, ops.length + 1);
+            record[ops.length] = "R," + seq;
+            journal.append(record);
+            replicatedSeq = seq;
+            dirty.set(true);
+        } finally { stateLock.writeLock().unlock(); }
+        for (InventoryEvent e : events) for (InventoryEvent.Listener l : inventoryListeners) l.inventoryChanged(e);
+    }
+
+    /**
+     * Follower side: replaces the catalogue with a snapshot of the primary taken at {@code seq}
+     * and checkpoints at once, so a restart never mixes the old catalogue with the new position.
+     * Sales already recorded here are kept.
+     */
+    void resetReplicated(long seq, List<String> ops){
+        List<Item> gone;
+        stateLock.writeLock().lock();
+        try {
+            Map<Integer, Item> before = new HashMap<>(inventory);
+            inventory.clear();
+            for (Integer id : new ArrayList<>(customers.keySet())) customerRegistry.unindex(id);
+            customers.clear();
+            offers.clear();
+            for (String op : ops) {
+                if (op.startsWith("I,")) { Item it = Item.fromCsv(op.substring(2)); inventory.put(it.getId(), it); before.remove(it.getId()); }
+                else if (op.startsWith("C,")) { Customer c = Customer.fromCsv(op.substring(2)); customers.put(c.getId(), c); customerRegistry.index(c); }
+                else if (op.startsWith("O,")) putOffer(SupplierOffer.fromCsv(op.substring(2)));
+            }
+            gone = new ArrayList<>(before.values());
+            replicatedSeq = seq;
+            dirty.set(true);
+        } finally { stateLock.writeLock().unlock(); }
+        checkpoint();
+        for (Item it : gone) fire(InventoryEvent.Type.REMOVED, it);
+        for (Item it : inventory.values()) fire(InventoryEvent.Type.ADDED, it);
+    }
+
+    private void readReplicaPosition(){
+        if (!replicaFile.exists()) return;
+        try { replicatedSeq = Long.parseLong(Files.readAllLines(replicaFile.toPath(), StandardCharsets.UTF_8).get(0).trim()); }
+        catch (Exception ignored) {}
+    }
+
+    private void replaySale(String record){
+        if (SalesLog.isLegacy(record)) {
+            // written by a build that still kept the flat log
+            Invoice inv = SalesLog.parseLegacy(record, saleSeq.get() + 1, customersByName(), itemsByName());
+            if (inv == null) return;
+            record = SalesLog.format(inv);
+        }
+        SalesLog.Reader r = new SalesLog.Reader(customers, inventory, this::addLoadedSale);
+        for (String line : record.split("\n")) r.line(line);
+        r.finish();
+        pendingSales.add(record);
+    }
+
+    private void addLoadedSale(Invoice inv){
+        salesHistory.put(inv.getId(), inv);
+        analytics.add(inv);
+        replenishment.recordSale(inv);
+        saleSeq.accumulateAndGet(inv.getId(), Math::max);
+    }
+
+    /** Drops sales lines appended by a checkpoint that crashed before it was recorded; the journal still holds them. */
+    private void truncateUncheckpointedSales(){
+        long covered = journal.getCoveredSalesLength();
+        if (covered < 0 || !salesFile.exists() || salesFile.length() <= covered) return;
+        try (FileChannel ch = FileChannel.open(salesFile.toPath(), StandardOpenOption.WRITE)) {
+            ch.truncate(covered);
+        } catch (IOException ignored) {}
+    }
+
+    private static void writeAtomically(File f, List<String> lines) throws IOException {
+        File tmp = new File(f.getParentFile(), f.getName() + ".tmp");
+        try (Metrics.Span s = Metrics.FILE_WRITE.begin(f.getName());
+             FileOutputStream out = new FileOutputStream(tmp);
+             Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
+            for (String l : lines) { w.write(l); w.write(System.lineSeparator()); }
+            w.flush();
+            out.getFD().sync();
+            s.bytes(out.getChannel().size());
+        }
+        Files.move(tmp.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private long appendSales(List<String> lines) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(salesFile, true)) {
+            if (!lines.isEmpty()) {
+                try (Metrics.Span s = Metrics.FILE_WRITE.begin(salesFile.getName())) {
+                    long before = out.getChannel().size();
+                    Writer w = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+                    for (String l : lines) { w.write(l); w.write(System.lineSeparator()); }
+                    w.flush();
+                    out.getFD().sync();
+                    s.bytes(out.getChannel().size() - before);
+                }
+            }
+            return out.getChannel().size();
+        }
+    }
+
+    // ---- Load helpers ----
+    private void loadAll(){
+        try (Metrics.Span s = Metrics.FILE_READ.begin(itemsFile.getName())) { loadItems(); s.bytes(itemsFile.length()); }
+        try (Metrics.Span s = Metrics.FILE_READ.begin(customersFile.getName())) { loadCustomers(); s.bytes(customersFile.length()); }
+        loadSuppliers();
+        loadOffers();
+        readReplicaPosition();
+        reloadPromotions();
+        migrateLegacySales();
+        truncateUncheckpointedSales();
+        loadSales();
+    }
+
+    private void loadItems() {
+        try {
+            for (Item it : CsvCodec.read(itemsFile, Item::fromCsv, IMPORT_THREADS).rows) inventory.put(it.getId(), it);
+        } catch (IOException ignored) {}
+    }
+
+    private void loadCustomers(){
+        try {
+            for (Customer c : CsvCodec.read(customersFile, Customer::fromCsv, IMPORT_THREADS).rows) customers.put(c.getId(), c);
+        } catch (IOException ignored) {}
     }
 
     private void loadSuppliers(){
@@ -86,23 +1017,60 @@ public class SimpleStore {
             }
         } catch (Exception ignored){}
     }
-    private void saveSuppliers(){
-        try (PrintWriter pw = new PrintWriter(new OutputStreamWriter(new FileOutputStream(suppliersFile), StandardCharsets.UTF_8))){
-            for (Supplier s: suppliers) pw.println(s.toLine());
-        } catch (Exception ignored){}
+
+    private void loadOffers(){
+        try {
+            for (SupplierOffer o : CsvCodec.read(offersFile, SupplierOffer::fromCsv, IMPORT_THREADS).rows) putOffer(o);
+        } catch (IOException ignored) {}
     }
 
     private void loadSales(){
-        // optional: not reconstructing items per sale (kept as a flat log)
-        if (!salesFile.exists()) return;
+        try (Metrics.Span s = Metrics.FILE_READ.begin(salesFile.getName())) {
+            SalesLog.read(salesFile, new SalesLog.Reader(customers, inventory, this::addLoadedSale));
+            s.bytes(salesFile.length());
+        }
+    }
+
+    /**
+     * One-time upgrade of the old flat sales.txt. The converted log is recorded as the
+     * checkpointed sales length before the old file is set aside, so a crash in between
+     * only repeats the bookkeeping.
+     */
+    private void migrateLegacySales(){
+        if (!legacySalesFile.exists()) return;
+        try {
+            if (!salesFile.exists()) {
+                long covered = journal.getCoveredSalesLength();
+                if (covered >= 0 && legacySalesFile.length() > covered) {
+                    try (FileChannel ch = FileChannel.open(legacySalesFile.toPath(), StandardOpenOption.WRITE)) {
+                        ch.truncate(covered);
+                    }
+                }
+                SalesLog.convertLegacy(legacySalesFile, salesFile, customers, inventory);
+            }
+            journal.checkpointed(journal.getCoveredSegment(), salesFile.length());
+            Files.move(legacySalesFile.toPath(), new File(dataDir, "sales.txt.migrated").toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ignored) {}
+    }
+
+    private Map<String, Customer> customersByName(){
+        Map<String, Customer> m = new HashMap<>();
+        for (Customer c : customers.values()) m.putIfAbsent(c.getName(), c);
+        return m;
+    }
+    private Map<String, Item> itemsByName(){
+        Map<String, Item> m = new HashMap<>();
+        for (Item it : inventory.values()) m.putIfAbsent(it.getName(), it);
+        return m;
     }
 
     private void seed(){
-        inventory.put(101, new Item(101, "Apple iPhone 14", 999.00, 10));
-        inventory.put(102, new Item(102, "Samsung Galaxy S23", 899.00, 8));
-        inventory.put(103, new Item(103, "Dell Inspiron 15", 1199.00, 5));
-        inventory.put(104, new Item(104, "HP LaserJet Pro", 249.00, 12));
-        inventory.put(105, new Item(105, "Logitech MX Master 3", 99.00, 20));
+        inventory.put(101, new Item(101, "Apple iPhone 14", 99_900, 10));
+        inventory.put(102, new Item(102, "Samsung Galaxy S23", 89_900, 8));
+        inventory.put(103, new Item(103, "Dell Inspiron 15", 119_900, 5));
+        inventory.put(104, new Item(104, "HP LaserJet Pro", 24_900, 12));
+        inventory.put(105, new Item(105, "Logitech MX Master 3", 9_900, 20));
 
         customers.put(1, new Customer(1, "John Doe"));
         customers.put(2, new Customer(2, "Jane Smith"));
@@ -112,6 +1080,7 @@ public class SimpleStore {
         suppliers.add(new Supplier("Global Gadgets Ltd."));
         suppliers.add(new Supplier("Mega Electronics PLC"));
 
-        saveAll();
+        dirty.set(true);
+        checkpoint();
     }
 }
@@ -0,0 +1,355 @@
+package pos;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.*;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * HTTP/JSON API for price checkers and self-checkout kiosks, served from the same process and
+ * {@link SimpleStore} as the till, through the same {@link CheckoutService}.
+ *
+ * <pre>
+ * GET    /api/items/{id}                     one item
+ * GET    /api/items?q=sams+gal&amp;limit=10       type-ahead search
+ * POST   /api/carts                          customerId=7 | name=..&amp;phone=..; showroom=..   -> cart
+ * GET    /api/carts/{cart}
+ * POST   /api/carts/{cart}/lines             itemId=101&amp;qty=2
+ * PUT    /api/carts/{cart}/lines/{row}       qty=3
+ * DELETE /api/carts/{cart}/lines/{row}
+ * DELETE /api/carts/{cart}                   abandon; stock goes back
+ * </pre>
+ * Parameters come from the query string, a form body or a flat JSON object body. Amounts are
+ * returned in cents. A rejected cart operation answers 409 with {@code {"error": "..."}}.
+ *
+ * Item lookups are open to anyone who can reach the address the server is bound to. Cart
+ * routes need {@code Authorization: Bearer <token>} with the token the server was given, and
+ * answer 403 without it or when it has none. Discounts and confirming a sale are the cashier's
+ * and stay at the till: a kiosk cart holds its stock until it is abandoned or idles out.
+ *
+ * Each request runs on its own virtual thread when the JVM has them (Java 21+), otherwise on a
+ * bounded pool. Carts idle for {@link #CART_IDLE_MINUTES} are abandoned and their stock returned.
+ */
+public class StoreApiServer {
+    static final int CART_IDLE_MINUTES = 30;
+
+    private final CheckoutService checkout;
+    private final byte[] token;        // null: carts closed
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService sweeper;
+    private final ConcurrentMap<Long, Cart> carts = new ConcurrentHashMap<>();
+    private final AtomicLong cartSeq = new AtomicLong();
+
+    /** A cart held for a remote client; requests on one cart are serialised by its lock. */
+    private static final class Cart {
+        final long id;
+        final Invoice invoice;
+        final ReentrantLock lock = new ReentrantLock(); // not a monitor: confirm waits on the journal and would pin a virtual thread
+        volatile long lastUsed = System.currentTimeMillis();
+        Cart(long id, Invoice invoice){ this.id = id; this.invoice = invoice; }
+    }
+
+    /** Serves on {@code bind}:{@code port} (0 for any free port); cart routes need {@code token}, none if null. */
+    public StoreApiServer(CheckoutService checkout, InetAddress bind, int port, String token) throws IOException {
+        this.checkout = checkout;
+        this.token = token == null || token.isEmpty() ? null : token.getBytes(StandardCharsets.UTF_8);
+        // Headers and body go out as two writes; with Nagle on, every keep-alive response then
+        // waits out the client's delayed ACK (~40 ms). Read once, when the server classes load.
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) System.setProperty("sun.net.httpserver.nodelay", "true");
+        server = HttpServer.create(new InetSocketAddress(bind, port), 256);
+        executor = newRequestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/api/items", this::items);
+        server.createContext("/api/carts", this::carts);
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "pos-api-sweeper");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Virtual thread per request where available, else a pool sized for blocking on the journal. */
+    static ExecutorService newRequestExecutor() {
+        try {
+            Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) m.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            int n = Math.max(16, Runtime.getRuntime().availableProcessors() * 8);
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(n, n, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+                Thread t = new Thread(r, "pos-api");
+                t.setDaemon(true);
+                return t;
+            });
+            pool.allowCoreThreadTimeOut(true);
+            return pool;
+        }
+    }
+
+    public void start() {
+        checkout.getSearchIndex();   // starts building it, unless the till already has
+        sweeper.scheduleWithFixedDelay(this::sweep, 1, 1, TimeUnit.MINUTES);
+        server.start();
+    }
+
+    public int getPort(){ return server.getAddress().getPort(); }
+    public int getOpenCarts(){ return carts.size(); }
+
+    /** Stops accepting requests, waits up to {@code seconds} for those in flight and abandons open carts. */
+    public void stop(int seconds) {
+        server.stop(seconds);
+        sweeper.shutdownNow();
+        executor.shutdown();
+        for (Cart c : carts.values()) abandon(c);
+    }
+
+    private void sweep() {
+        long cutoff = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(CART_IDLE_MINUTES);
+        for (Cart c : carts.values()) if (c.lastUsed < cutoff) abandon(c);
+    }
+
+    private void abandon(Cart c) {
+        c.lock.lock();
+        try {
+            if (carts.remove(c.id, c)) checkout.clear(c.invoice);
+        } finally { c.lock.unlock(); }
+    }
+
+    // ---- Handlers ----
+
+    private void items(HttpExchange ex) throws IOException {
+        try {
+            if (!ex.getRequestMethod().equals("GET")) { send(ex, 405, error("GET only")); return; }
+            String[] path = path(ex, "/api/items");
+            if (path.length == 1) {
+                Item it = checkout.getStore().getInventory().get(Integer.parseInt(path[0]));
+                send(ex, it == null ? 404 : 200, it == null ? error("Item not found!") : item(new StringBuilder(), it).toString());
+                return;
+            }
+            Map<String, String> p = params(ex);
+            ItemSearchIndex index = checkout.getSearchIndex();
+            if (index == null) { send(ex, 503, error("Search index is still loading")); return; }
+            List<Item> hits = index.search(p.getOrDefault("q", ""), Math.min(100, Integer.parseInt(p.getOrDefault("limit", "20"))));
+            StringBuilder sb = new StringBuilder(64 * hits.size() + 16).append("{\"items\":[");
+            for (int i = 0; i < hits.size(); i++) item(i == 0 ? sb : sb.append(','), hits.get(i));
+            send(ex, 200, sb.append("]}").toString());
+        } catch (NumberFormatException e) {
+            send(ex, 400, error("Bad number: " + e.getMessage()));
+        } catch (Exception e) {
+            send(ex, 500, error(String.valueOf(e)));
+        }
+    }
+
+    private void carts(HttpExchange ex) throws IOException {
+        try {
+            if (!authorized(ex)) { send(ex, 403, error(token == null ? "Carts are closed: no API token set" : "Missing or wrong token")); return; }
+            String method = ex.getRequestMethod();
+            String[] path = path(ex, "/api/carts");
+            Map<String, String> p = params(ex);
+            if (path.length == 0) {
+                if (!method.equals("POST")) { send(ex, 405, error("POST to open a cart")); return; }
+                send(ex, 201, open(p));
+                return;
+            }
+            Cart cart = carts.get(Long.parseLong(path[0]));
+            if (cart == null) { send(ex, 404, error("No such cart")); return; }
+            String op = path.length > 1 ? path[1] : "";
+            cart.lock.lock();
+            try {
+                if (carts.get(cart.id) != cart) { send(ex, 404, error("No such cart")); return; }
+                cart.lastUsed = System.currentTimeMillis();
+                Invoice inv = cart.invoice;
+                switch (method + " " + op + (path.length > 2 ? "/" : "")) {
+                    case "GET " -> { }
+                    case "POST lines" -> checkout.addItem(inv, Integer.parseInt(req(p, "itemId")), Integer.parseInt(p.getOrDefault("qty", "1")));
+                    case "PUT lines/" -> checkout.setQuantity(inv, row(inv, path[2]), Integer.parseInt(req(p, "qty")));
+                    case "DELETE lines/" -> checkout.removeLine(inv, row(inv, path[2]));
+                    case "DELETE " -> {
+                        abandon(cart);
+                        send(ex, 204, null);
+                        return;
+                    }
+                    default -> { send(ex, 405, error("Unsupported: " + method + " " + ex.getRequestURI().getPath())); return; }
+                }
+                send(ex, 200, cart(new StringBuilder(), cart).toString());
+            } finally { cart.lock.unlock(); }
+        } catch (NumberFormatException e) {
+            send(ex, 400, error("Bad number: " + e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            send(ex, 409, error(e.getMessage()));
+        } catch (Exception e) {
+            send(ex, 500, error(String.valueOf(e)));
+        }
+    }
+
+    /** Bearer token check, in constant time. */
+    private boolean authorized(HttpExchange ex) {
+        String h = ex.getRequestHeaders().getFirst("Authorization");
+        if (token == null || h == null || !h.startsWith("Bearer ")) return false;
+        return MessageDigest.isEqual(token, h.substring(7).trim().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String open(Map<String, String> p) {
+        Customer c;
+        if (p.containsKey("customerId")) {
+            c = checkout.getStore().resolveCustomer(Integer.parseInt(p.get("customerId")));
+            if (c == null) throw new IllegalArgumentException("No such customer");
+        } else {
+            String phone = p.getOrDefault("phone", "");
+            c = phone.isBlank() ? null : checkout.getStore().getCustomerRegistry().byPhone(phone);
+            if (c == null) c = checkout.newCustomer(p.getOrDefault("name", "Walk-in"), phone);
+        }
+        Cart cart = new Cart(cartSeq.incrementAndGet(), checkout.start(c, p.getOrDefault("showroom", "Kiosk")));
+        carts.put(cart.id, cart);
+        return cart(new StringBuilder(), cart).toString();
+    }
+
+    private static int row(Invoice inv, String s) {
+        int row = Integer.parseInt(s);
+        if (row < 0 || row >= inv.getLineCount()) throw new IllegalArgumentException("No such line");
+        return row;
+    }
+
+    private static String req(Map<String, String> p, String key) {
+        String v = p.get(key);
+        if (v == null || v.isBlank()) throw new IllegalArgumentException("Missing " + key);
+        return v;
+    }
+
+    // ---- Request parsing ----
+
+    private static String[] path(HttpExchange ex, String context) {
+        String rest = ex.getRequestURI().getPath().substring(context.length());
+        return Arrays.stream(rest.split("/")).filter(s -> !s.isEmpty()).toArray(String[]::new);
+    }
+
+    /** Query string, then the body: a form or a flat JSON object of strings and numbers. */
+    static Map<String, String> params(HttpExchange ex) throws IOException {
+        Map<String, String> p = new HashMap<>();
+        form(ex.getRequestURI().getRawQuery(), p);
+        String body;
+        try (InputStream in = ex.getRequestBody()) { body = new String(in.readNBytes(64 * 1024), StandardCharsets.UTF_8).trim(); }
+        if (body.startsWith("{")) json(body, p); else form(body, p);
+        return p;
+    }
+
+    private static void form(String s, Map<String, String> p) {
+        if (s == null || s.isEmpty()) return;
+        for (String kv : s.split("&")) {
+            int eq = kv.indexOf('=');
+            if (eq > 0) p.put(URLDecoder.decode(kv.substring(0, eq), StandardCharsets.UTF_8),
+                    URLDecoder.decode(kv.substring(eq + 1), StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void json(String s, Map<String, String> p) {
+        int i = 1, n = s.length();
+        while (i < n) {
+            i = skip(s, i);
+            if (i >= n || s.charAt(i) == '}') return;
+            if (s.charAt(i) == ',') { i++; continue; }
+            StringBuilder key = new StringBuilder();
+            i = string(s, i, key);
+            i = skip(s, i);
+            if (i >= n || s.charAt(i) != ':') throw new IllegalArgumentException("Bad JSON body");
+            i = skip(s, i + 1);
+            StringBuilder val = new StringBuilder();
+            if (i < n && s.charAt(i) == '"') i = string(s, i, val);
+            else while (i < n && ",} \t\r\n".indexOf(s.charAt(i)) < 0) val.append(s.charAt(i++));
+            p.put(key.toString(), val.toString());
+        }
+    }
+
+    private static int skip(String s, int i) {
+        while (i < s.length() && Character.isWhitespace(s.charAt(i))) i++;
+        return i;
+    }
+
+    private static int string(String s, int i, StringBuilder out) {
+        if (s.charAt(i) != '"') throw new IllegalArgumentException("Bad JSON body");
+        for (i++; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"') return i + 1;
+            if (c == '\\' && i + 1 < s.length()) {
+                c = s.charAt(++i);
+                switch (c) {
+                    case 'n' -> out.append('\n');
+                    case 't' -> out.append('\t');
+                    case 'u' -> { out.append((char) Integer.parseInt(s.substring(i + 1, i + 5), 16)); i += 4; }
+                    default -> out.append(c);
+                }
+            } else out.append(c);
+        }
+        throw new IllegalArgumentException("Bad JSON body");
+    }
+
+    // ---- Responses ----
+
+    private StringBuilder item(StringBuilder sb, Item it) {
+        sb.append("{\"id\":").append(it.getId()).append(",\"name\":");
+        quote(sb, it.getName()).append(",\"priceCents\":").append(it.getPriceCents());
+        return sb.append(",\"stock\":").append(checkout.getStore().getAvailable(it.getId())).append('}');
+    }
+
+    private static StringBuilder cart(StringBuilder sb, Cart cart) {
+        Invoice inv = cart.invoice;
+        sb.append("{\"cart\":").append(cart.id).append(",\"customer\":{\"id\":").append(inv.getCustomer().getId()).append(",\"name\":");
+        quote(sb, inv.getCustomer().getName()).append("},\"lines\":[");
+        List<Invoice.Line> lines = inv.getLines();
+        for (int i = 0; i < lines.size(); i++) {
+            Invoice.Line l = lines.get(i);
+            if (i > 0) sb.append(',');
+            sb.append("{\"row\":").append(i).append(",\"itemId\":").append(l.getItem().getId()).append(",\"name\":");
+            quote(sb, l.getItem().getName()).append(",\"qty\":").append(l.getQuantity())
+              .append(",\"unitCents\":").append(l.getUnitCents()).append(",\"lineCents\":").append(l.getLineCents()).append('}');
+        }
+        sb.append("],\"subtotalCents\":").append(inv.subtotalCents()).append(",\"promotionCents\":").append(inv.promotionCents())
+          .append(",\"discountCents\":").append(inv.discountCents()).append(",\"taxCents\":").append(inv.taxCents())
+          .append(",\"totalCents\":").append(inv.totalCents());
+        return sb.append('}');
+    }
+
+    static StringBuilder quote(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c)); else sb.append(c);
+                }
+            }
+        }
+        return sb.append('"');
+    }
+
+    private static String error(String message) {
+        return quote(new StringBuilder("{\"error\":"), message == null ? "" : message).append('}').toString();
+    }
+
+    private static void send(HttpExchange ex, int status, String json) throws IOException {
+        if (json == null) {
+            ex.sendResponseHeaders(status, -1);
+            ex.close();
+            return;
+        }
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        ex.sendResponseHeaders(status, body.length);
+        try (OutputStream out = ex.getResponseBody()) { out.write(body); }
+    }
+}
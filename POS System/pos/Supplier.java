@@ -1,10 +1,21 @@
 package pos;
 
+import java.io.File;
+
 public class Supplier {
     private final String name;
-    public Supplier(String name){ this.name = name; }
+    private final String feed; // path of its price/stock feed, relative to the data folder; "" for the default
+    public Supplier(String name){ this(name, ""); }
+    public Supplier(String name, String feed){ this.name = name; this.feed = feed; }
     public String getName(){ return name; }
 
-    public String toLine(){ return Item.escape(name); }
-    public static Supplier fromLine(String line){ return new Supplier(Item.unescape(line)); }
+    /** The supplier's feed in {@code dataDir}: as set in suppliers.txt, else feeds/&lt;name&gt;.csv. */
+    public File getFeed(File dataDir){ return new File(dataDir, feed.isEmpty() ? "feeds/" + name + ".csv" : feed); }
+
+    // suppliers.txt: name[,feed]
+    public String toLine(){ return feed.isEmpty() ? Item.escape(name) : Item.escape(name) + "," + Item.escape(feed); }
+    public static Supplier fromLine(String line){
+        String[] p = Item.split(line, 2);
+        return new Supplier(p[0], p[1].trim());
+    }
 }
@@ -0,0 +1,132 @@
+package pos;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Supplier price and stock feeds. Each supplier in suppliers.txt may have a feed file
+ * ({@link Supplier#getFeed}) with one row per SKU:
+ * <pre>sku,item,cost,price,available</pre>
+ * where {@code item} is our item id (empty while the SKU is not mapped yet), {@code cost} what we
+ * pay, {@code price} the supplier's shelf price and {@code available} what the supplier has.
+ *
+ * A run reads and diffs the feeds concurrently, one task per feed, against the offers kept from
+ * the previous run, so a feed that did not change costs a read and nothing else. The outcome
+ * goes into the store as one journal record ({@link SimpleStore#applySupplierFeed}):
+ * <ul>
+ * <li>offers that are new or whose terms changed;</li>
+ * <li>offers for items a supplier's feed no longer lists;</li>
+ * <li>the selling price of items whose offers changed, taken from the first supplier in
+ *     suppliers.txt that offers the item, if that differs from the price on the shelf.</li>
+ * </ul>
+ * A supplier without a feed file keeps its offers. Rows for items we do not stock are counted
+ * and skipped; when a feed maps two SKUs to one item, the later row wins.
+ */
+public final class SupplierFeeds {
+    private SupplierFeeds(){}
+
+    /** What a run read and changed. */
+    public static final class Report {
+        public int feeds;
+        public long rows, rejected, unmapped, unknownItems;
+        public long changedOffers, droppedOffers, repriced;
+        public long bytes, nanos;
+
+        public double rowsPerSecond(){ return nanos == 0 ? 0 : rows * 1e9 / nanos; }
+        @Override public String toString(){
+            return String.format("%d feeds, %d rows (%d rejected, %d unmapped, %d unknown items): %d offers changed, %d dropped, %d prices changed; %.2f s = %.0f rows/s",
+                    feeds, rows, rejected, unmapped, unknownItems, changedOffers, droppedOffers, repriced, nanos / 1e9, rowsPerSecond());
+        }
+    }
+
+    /** One feed, read and compared with what the store holds for its supplier. */
+    private static final class Diff {
+        final Supplier supplier;
+        Map<Integer, SupplierOffer> offers;   // the feed, by item
+        final List<SupplierOffer> changed = new ArrayList<>(), dropped = new ArrayList<>();
+        long rows, rejected, unmapped, unknownItems, bytes;
+        Diff(Supplier supplier){ this.supplier = supplier; }
+    }
+
+    static Report ingest(SimpleStore store, File dataDir, int threads) throws IOException {
+        long t0 = System.nanoTime();
+        List<Diff> diffs = new ArrayList<>();
+        for (Supplier s : store.getSuppliers()) if (s.getFeed(dataDir).isFile()) diffs.add(new Diff(s));
+        Report report = new Report();
+        report.feeds = diffs.size();
+        if (!diffs.isEmpty()) {
+            int perFeed = Math.max(1, threads / diffs.size());
+            ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, diffs.size())), r -> {
+                Thread t = new Thread(r, "pos-feed");
+                t.setDaemon(true);
+                return t;
+            });
+            try {
+                List<Future<?>> done = new ArrayList<>();
+                for (Diff d : diffs) done.add(pool.submit(() -> { diff(store, dataDir, d, perFeed); return null; }));
+                for (Future<?> f : done) f.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("interrupted", e);
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof IOException io ? io : new IOException(e.getCause());
+            } finally { pool.shutdownNow(); }
+        }
+
+        // Items whose offers moved may take a new price from their first supplier
+        Map<String, Diff> bySupplier = new HashMap<>();
+        Set<Integer> touched = new HashSet<>();
+        List<SupplierOffer> changed = new ArrayList<>(), dropped = new ArrayList<>();
+        for (Diff d : diffs) {
+            bySupplier.put(d.supplier.getName(), d);
+            for (SupplierOffer o : d.changed) touched.add(o.getItemId());
+            for (SupplierOffer o : d.dropped) touched.add(o.getItemId());
+            changed.addAll(d.changed);
+            dropped.addAll(d.dropped);
+            report.rows += d.rows;
+            report.rejected += d.rejected;
+            report.unmapped += d.unmapped;
+            report.unknownItems += d.unknownItems;
+            report.bytes += d.bytes;
+        }
+        Map<Integer, Long> prices = new HashMap<>();
+        for (int id : touched) {
+            Item it = store.getInventory().get(id);
+            if (it == null) continue;
+            for (Supplier s : store.getSuppliers()) {
+                Diff d = bySupplier.get(s.getName());
+                SupplierOffer o = d != null ? d.offers.get(id) : store.getOffers(s.getName()).get(id);
+                if (o == null) continue;
+                if (o.getListPriceCents() != it.getPriceCents()) prices.put(id, o.getListPriceCents());
+                break;
+            }
+        }
+        store.applySupplierFeed(changed, dropped, prices);
+        report.changedOffers = changed.size();
+        report.droppedOffers = dropped.size();
+        report.repriced = prices.size();
+        report.nanos = System.nanoTime() - t0;
+        return report;
+    }
+
+    private static void diff(SimpleStore store, File dataDir, Diff d, int threads) throws IOException {
+        String name = d.supplier.getName();
+        CsvCodec.Result<SupplierOffer> read = CsvCodec.read(d.supplier.getFeed(dataDir), r -> SupplierOffer.fromFeed(name, r), threads);
+        d.bytes = read.bytes;
+        d.rejected = read.rejected;
+        d.unmapped = read.skipped;
+        d.rows = read.rows.size() + read.rejected + read.skipped;
+        Map<Integer, SupplierOffer> feed = new HashMap<>(read.rows.size() * 2);
+        Map<Integer, Item> items = store.getInventory();
+        for (SupplierOffer o : read.rows) {
+            if (items.containsKey(o.getItemId())) feed.put(o.getItemId(), o);
+            else d.unknownItems++;
+        }
+        d.offers = feed;
+        Map<Integer, SupplierOffer> before = store.getOffers(name);
+        for (SupplierOffer o : feed.values()) if (!o.sameTerms(before.get(o.getItemId()))) d.changed.add(o);
+        for (SupplierOffer o : before.values()) if (!feed.containsKey(o.getItemId())) d.dropped.add(o);
+    }
+}
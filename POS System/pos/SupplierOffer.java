@@ -0,0 +1,48 @@
+package pos;
+
+/** What one supplier offers one of our items at, as last read from its feed; immutable. */
+public class SupplierOffer {
+    private final String supplier;
+    private final String sku;
+    private final int itemId;
+    private final long cost;       // cents, what we pay
+    private final long listPrice;  // cents, the supplier's shelf price
+    private final int available;   // units the supplier has
+
+    public SupplierOffer(String supplier, String sku, int itemId, long costCents, long listPriceCents, int available) {
+        this.supplier = supplier; this.sku = sku; this.itemId = itemId;
+        this.cost = costCents; this.listPrice = listPriceCents; this.available = available;
+    }
+    public String getSupplier() { return supplier; }
+    public String getSku() { return sku; }
+    public int getItemId() { return itemId; }
+    public long getCostCents() { return cost; }
+    public long getListPriceCents() { return listPrice; }
+    public int getAvailable() { return available; }
+
+    /** Same terms, whoever it is from. */
+    public boolean sameTerms(SupplierOffer o) {
+        return o != null && cost == o.cost && listPrice == o.listPrice && available == o.available && sku.equals(o.sku);
+    }
+
+    // CSV helpers: supplier,sku,item,cost,price,available
+    public String toCsv() {
+        return Item.escape(supplier) + "," + Item.escape(sku) + "," + itemId + "," + Money.plain(cost) + "," + Money.plain(listPrice) + "," + available;
+    }
+    public static SupplierOffer fromCsv(String line) {
+        String[] p = Item.split(line, 6);
+        return new SupplierOffer(p[0], p[1], Integer.parseInt(p[2]), Money.parse(p[3]), Money.parse(p[4]), Integer.parseInt(p[5]));
+    }
+    public static SupplierOffer fromCsv(CsvCodec.Row r) {
+        return new SupplierOffer(r.getString(0), r.getString(1), r.getInt(2), r.getCents(3), r.getCents(4), r.getInt(5));
+    }
+
+    /**
+     * A row of {@code supplier}'s feed: sku,item,cost,price,available. Null for a SKU not mapped
+     * to one of our items yet (empty item column).
+     */
+    public static SupplierOffer fromFeed(String supplier, CsvCodec.Row r) {
+        if (r.isBlank(1)) return null;
+        return new SupplierOffer(supplier, r.getString(0).trim(), r.getInt(1), r.getCents(2), r.getCents(3), Math.max(0, r.getInt(4)));
+    }
+}
@@ -0,0 +1,228 @@
+package pos;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.swing.SwingUtilities;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Product thumbnails for the catalogue grid, made off the event thread.
+ *
+ * A request is answered from, in order: an LRU of thumbnails in memory bounded by bytes, a
+ * thumbnail saved on disk by an earlier run, or a worker that decodes the image (subsampled
+ * while reading, so a large photo never sits in memory at full size), scales it to fit
+ * {@code size} x {@code size} and saves it. Disk entries are keyed by a hash of the image's path
+ * together with its length and modification time, so an edited image is made again.
+ *
+ * Workers take the newest request first: after a scroll, the cells now on screen are done
+ * before the ones scrolled past, and those can be {@link #cancel cancelled}. Callbacks run on
+ * the event thread; a picture that cannot be read gives null.
+ */
+public class ThumbnailCache {
+    private final File dir;
+    private final int size;
+    private final long maxBytes;
+    private final ThreadPoolExecutor workers;
+
+    // Memory LRU, by access order
+    private final LinkedHashMap<String, BufferedImage> memory = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes;
+
+    // In flight: source path -> its job and everyone waiting for it
+    private final Map<String, Job> pending = new HashMap<>();
+
+    private final class Job implements Runnable {
+        final File source;
+        final List<Consumer<BufferedImage>> waiting = new ArrayList<>();
+        Job(File source){ this.source = source; }
+
+        @Override public void run() {
+            BufferedImage thumb = null;
+            try { thumb = make(source); } catch (Exception ignored) {}
+            List<Consumer<BufferedImage>> done;
+            synchronized (ThumbnailCache.this) {
+                pending.remove(source.getPath());
+                if (thumb != null) remember(source.getPath(), thumb);
+                done = new ArrayList<>(waiting);
+            }
+            BufferedImage result = thumb;
+            SwingUtilities.invokeLater(() -> { for (Consumer<BufferedImage> c : done) c.accept(result); });
+        }
+    }
+
+    /** Newest first: offer puts at the head, the pool takes from the head. */
+    private static final class Lifo extends LinkedBlockingDeque<Runnable> {
+        @Override public boolean offer(Runnable r){ return offerFirst(r); }
+    }
+
+    /**
+     * @param dir      where thumbnails are kept between runs, created if missing
+     * @param size     the box a thumbnail fits in, pixels
+     * @param maxBytes memory the in-memory thumbnails may take
+     */
+    public ThumbnailCache(File dir, int size, long maxBytes) {
+        this.dir = dir;
+        this.size = size;
+        this.maxBytes = maxBytes;
+        dir.mkdirs();
+        int n = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        AtomicInteger id = new AtomicInteger();
+        workers = new ThreadPoolExecutor(n, n, 30, TimeUnit.SECONDS, new Lifo(), r -> {
+            Thread t = new Thread(r, "pos-thumbnail-" + id.incrementAndGet());
+            t.setDaemon(true);
+            t.setPriority(Thread.NORM_PRIORITY - 1);
+            return t;
+        });
+        workers.allowCoreThreadTimeOut(true);
+    }
+
+    /** The thumbnail if it is in memory, else null; never blocks. */
+    public synchronized BufferedImage getIfCached(File source) {
+        return memory.get(source.getPath());
+    }
+
+    /**
+     * Calls {@code done} on the event thread with the thumbnail of {@code source}: at once if it
+     * is in memory, otherwise when a worker has it.
+     */
+    public void load(File source, Consumer<BufferedImage> done) {
+        BufferedImage hit;
+        synchronized (this) {
+            hit = memory.get(source.getPath());
+            if (hit == null) {
+                Job job = pending.get(source.getPath());
+                if (job == null) {
+                    job = new Job(source);
+                    pending.put(source.getPath(), job);
+                    workers.execute(job);
+                }
+                job.waiting.add(done);
+                return;
+            }
+        }
+        if (SwingUtilities.isEventDispatchThread()) done.accept(hit);
+        else SwingUtilities.invokeLater(() -> done.accept(hit));
+    }
+
+    /** Drops a request that has not started yet, e.g. for a cell scrolled out of view. */
+    public synchronized void cancel(File source) {
+        Job job = pending.get(source.getPath());
+        if (job != null && workers.remove(job)) pending.remove(source.getPath());
+    }
+
+    public synchronized long getMemoryBytes(){ return bytes; }
+    public synchronized int getMemoryCount(){ return memory.size(); }
+
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    // ---- Memory ----
+
+    private void remember(String key, BufferedImage thumb) {
+        BufferedImage old = memory.put(key, thumb);
+        if (old != null) bytes -= cost(old);
+        bytes += cost(thumb);
+        Iterator<BufferedImage> it = memory.values().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            BufferedImage eldest = it.next();
+            if (eldest == thumb) break;
+            bytes -= cost(eldest);
+            it.remove();
+        }
+    }
+
+    private static long cost(BufferedImage img){ return 4L * img.getWidth() * img.getHeight(); }
+
+    // ---- Disk and decoding (worker threads) ----
+
+    BufferedImage make(File source) throws IOException {
+        if (!source.isFile()) return null;
+        File cached = cachedFile(source);
+        if (cached.isFile()) {
+            BufferedImage img = ImageIO.read(cached);
+            if (img != null) return img;
+        }
+        BufferedImage full = decode(source);
+        if (full == null) return null;
+        BufferedImage thumb = scale(full);
+        File tmp = new File(dir, cached.getName() + ".tmp");
+        if (ImageIO.write(thumb, "png", tmp) && tmp.renameTo(cached)) dropStale(cached);
+        else tmp.delete();
+        return thumb;
+    }
+
+    /** thumbs/&lt;hash of path&gt;-&lt;mtime&gt;-&lt;length&gt;-&lt;size&gt;.png */
+    File cachedFile(File source) {
+        return new File(dir, pathHash(source) + "-" + Long.toHexString(source.lastModified())
+                + "-" + Long.toHexString(source.length()) + "-" + size + ".png");
+    }
+
+    /** Removes thumbnails of older versions of the same image. */
+    private void dropStale(File current) {
+        String prefix = current.getName().substring(0, current.getName().indexOf('-') + 1);
+        File[] all = dir.listFiles((d, name) -> name.startsWith(prefix) && !name.equals(current.getName()));
+        if (all != null) for (File f : all) f.delete();
+    }
+
+    private static String pathHash(File source) {
+        try {
+            byte[] d = MessageDigest.getInstance("SHA-1").digest(source.getAbsolutePath().getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < 10; i++) sb.append(String.format("%02x", d[i]));
+            return sb.toString();
+        } catch (Exception e) {
+            return Integer.toHexString(source.getAbsolutePath().hashCode());
+        }
+    }
+
+    /** Reads the image, skipping rows and columns it does not need for a thumbnail. */
+    private BufferedImage decode(File source) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(source)) {
+            if (in == null) return null;
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) return null;
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                int w = reader.getWidth(0), h = reader.getHeight(0);
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = Math.max(1, Math.min(w, h) / (size * 2)); // keep at least twice the detail
+                if (step > 1) param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally { reader.dispose(); }
+        }
+    }
+
+    /** Fits the image in the box, halving with bilinear filtering until the last step. */
+    private BufferedImage scale(BufferedImage img) {
+        double f = Math.min((double) size / img.getWidth(), (double) size / img.getHeight());
+        int tw = Math.max(1, (int) Math.round(img.getWidth() * Math.min(1, f)));
+        int th = Math.max(1, (int) Math.round(img.getHeight() * Math.min(1, f)));
+        BufferedImage cur = img;
+        int w = img.getWidth(), h = img.getHeight();
+        do {
+            w = Math.max(tw, w / 2);
+            h = Math.max(th, h / 2);
+            BufferedImage next = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D g = next.createGraphics();
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.drawImage(cur, 0, 0, w, h, null);
+            g.dispose();
+            cur = next;
+        } while (w != tw || h != th);
+        return cur;
+    }
+}
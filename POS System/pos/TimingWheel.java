@@ -0,0 +1,85 @@
+package pos;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Hashed timing wheel: a ring of {@code slots} lists, one per tick, and a daemon thread that
+ * moves round it once per {@code tickMillis} and runs what is due in the slot it reaches.
+ * A timeout further away than one turn waits out the whole turns in its slot. Scheduling and
+ * cancelling are O(1) whatever the number of timeouts; a timeout runs up to one tick late.
+ *
+ * New timeouts are queued and only the wheel thread touches the slots. Tasks run on that
+ * thread and must be short; one that throws is skipped.
+ */
+final class TimingWheel implements AutoCloseable {
+    /** A scheduled task. */
+    static final class Timeout {
+        final Runnable task;
+        final long deadline;
+        long turns;                  // whole turns still to wait; wheel thread only
+        volatile boolean cancelled;
+        Timeout(Runnable task, long deadline){ this.task = task; this.deadline = deadline; }
+        /** The task will not run, unless it already has; costs nothing until its slot comes round. */
+        void cancel(){ cancelled = true; }
+    }
+
+    private final long tickMillis;
+    private final ArrayDeque<Timeout>[] wheel;
+    private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+    private final long start;
+    private final Thread thread;
+    private long tick;              // next tick to run; wheel thread only
+    private volatile boolean running = true;
+
+    @SuppressWarnings("unchecked")
+    TimingWheel(String name, long tickMillis, int slots) {
+        if (Integer.bitCount(slots) != 1) throw new IllegalArgumentException("slots must be a power of two");
+        this.tickMillis = tickMillis;
+        wheel = (ArrayDeque<Timeout>[]) new ArrayDeque<?>[slots];
+        for (int i = 0; i < slots; i++) wheel[i] = new ArrayDeque<>();
+        start = System.currentTimeMillis();
+        thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /** Runs {@code task} on the wheel thread once {@code delayMillis} have passed. */
+    Timeout schedule(Runnable task, long delayMillis) {
+        Timeout t = new Timeout(task, System.currentTimeMillis() + Math.max(0, delayMillis));
+        added.add(t);
+        return t;
+    }
+
+    @Override public void close() {
+        running = false;
+        thread.interrupt();
+    }
+
+    private void run() {
+        int mask = wheel.length - 1;
+        while (running) {
+            long wait = start + tick * tickMillis - System.currentTimeMillis();
+            if (wait > 0) {
+                try { Thread.sleep(wait); } catch (InterruptedException e) { continue; }
+            }
+            Timeout t;
+            while ((t = added.poll()) != null) {
+                if (t.cancelled) continue;
+                long due = Math.max(tick, (t.deadline - start + tickMillis - 1) / tickMillis);
+                t.turns = (due - tick) / wheel.length;
+                wheel[(int) (due & mask)].add(t);
+            }
+            for (Iterator<Timeout> it = wheel[(int) (tick & mask)].iterator(); it.hasNext(); ) {
+                t = it.next();
+                if (t.cancelled) { it.remove(); continue; }
+                if (t.turns-- > 0) continue;
+                it.remove();
+                try { t.task.run(); } catch (RuntimeException ignored) {}
+            }
+            tick++;
+        }
+    }
+}
@@ -1,6 +1,12 @@
 import javax.swing.*;
 import javax.swing.table.DefaultTableModel;
 import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import pos.ThumbnailCache;
 
 public class POSSystemGUI extends JFrame {
     private JTable cartTable;
@@ -8,6 +14,13 @@ public class POSSystemGUI extends JFrame {
     private JLabel totalLabel;
     private double total = 0;
 
+    // Product pictures: made in the background, only for the cells on screen
+    private static final int THUMB = 100;
+    private final ThumbnailCache thumbnails = new ThumbnailCache(new File("images/.thumbs"), THUMB, 32L << 20);
+    private final List<JButton> productButtons = new ArrayList<>();
+    private final List<File> productImages = new ArrayList<>();
+    private final Icon placeholder = new ImageIcon(new BufferedImage(THUMB, THUMB, BufferedImage.TYPE_INT_ARGB));
+
     public POSSystemGUI() {
         setTitle("Supermarket POS System");
         setSize(1200, 700);
@@ -30,22 +43,20 @@ public class POSSystemGUI extends JFrame {
 
         for (Object[] product : products) {
             String name = (String) product[0];
-            double price = (double) product[1];
+            double price = ((Number) product[1]).doubleValue();
             String imagePath = (String) product[2];
 
-            // Load image
-            ImageIcon icon = new ImageIcon(imagePath);
-            Image img = icon.getImage().getScaledInstance(100, 100, Image.SCALE_SMOOTH);
-            icon = new ImageIcon(img);
-
-            // Create button with image + text
-            JButton btn = new JButton("<html><center>" + name + "<br>₹" + price + "</center></html>", icon);
+            // Create button with text; the picture comes later, see showVisibleThumbnails
+            JButton btn = new JButton("<html><center>" + name + "<br>₹" + price + "</center></html>", placeholder);
             btn.setHorizontalTextPosition(SwingConstants.CENTER);
             btn.setVerticalTextPosition(SwingConstants.BOTTOM);
             btn.addActionListener(e -> addToCart(name, price));
 
             productPanel.add(btn);
+            productButtons.add(btn);
+            productImages.add(new File(imagePath));
         }
+        productScroll.getViewport().addChangeListener(e -> showVisibleThumbnails(productScroll.getViewport()));
 
         // Right: Cart
         String[] columns = {"Item", "Qty", "Price"};
@@ -76,6 +87,28 @@ public class POSSystemGUI extends JFrame {
         add(paymentPanel, BorderLayout.SOUTH);
     }
 
+    /**
+     * Asks for the pictures of the cells now in view. Cells scrolled away drop their request and
+     * go back to the placeholder, so only the cache's LRU keeps their pictures in memory.
+     */
+    private void showVisibleThumbnails(JViewport viewport) {
+        Rectangle view = viewport.getViewRect();
+        for (int i = 0; i < productButtons.size(); i++) {
+            JButton btn = productButtons.get(i);
+            File image = productImages.get(i);
+            if (!btn.getBounds().intersects(view)) {
+                thumbnails.cancel(image);
+                if (btn.getIcon() != placeholder) btn.setIcon(placeholder);
+                continue;
+            }
+            if (btn.getIcon() != placeholder) continue;
+            thumbnails.load(image, thumb -> {
+                // May arrive after the cell has been scrolled away again
+                if (thumb != null && btn.getBounds().intersects(viewport.getViewRect())) btn.setIcon(new ImageIcon(thumb));
+            });
+        }
+    }
+
     private void addToCart(String item, double price) {
         cartModel.addRow(new Object[]{item, 1, price});
         total += price;